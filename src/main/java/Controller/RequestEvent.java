@@ -0,0 +1,33 @@
+package Controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one HTTP request: begun by a before handler and committed by an after handler, so
+ * its duration covers every handler the request went through. Requests are grouped by route, the path pattern they
+ * matched, rather than by their literal path.
+ */
+@Name("socialmedia.Request")
+@Label("HTTP Request")
+@Category({"Social Media", "HTTP"})
+@Description("A request handled by Javalin")
+@StackTrace(false)
+public class RequestEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    String route;
+
+    @Label("Path")
+    String path;
+
+    @Label("Status")
+    int status;
+}
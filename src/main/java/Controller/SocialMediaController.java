@@ -2,40 +2,233 @@ package Controller;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.sse.SseClient;
+import io.javalin.http.sse.SseHandler;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import DAO.ReplicaSet;
+import DAO.SlowQueryLog;
+import DAO.StorageEngine;
+import DAO.Versioned;
 import Model.Account;
 import Model.Message;
+import Service.AccountMessagesCache;
 import Service.AccountService;
+import Service.ExportService;
+import Service.HealthService;
+import Service.HeapMessageCache;
+import Service.MessageCache;
+import Service.MessageCountService;
 import Service.MessageService;
+import Service.MessageStreamService;
+import Service.RecordingService;
+import Service.TimelineService;
+import Service.WarmUpService;
+import Util.AppConfig;
+import Util.ConcurrencyLimiter;
+import Util.ConnectionUtil;
+import Util.ErrorLog;
+import Util.LimitedInputStream;
+import Util.ModelJsonMapper;
+import Util.TokenBucketLimiter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static Util.ConcurrencyLimiter.Priority.HIGH;
+import static Util.ConcurrencyLimiter.Priority.LOW;
+import static Util.ConcurrencyLimiter.Priority.NORMAL;
 
 public class SocialMediaController {
 
+    /**
+     * Number of timeline Messages returned when no "limit" query parameter is given.
+     */
+    private static final int DEFAULT_TIMELINE_PAGE = 20;
+
+    /**
+     * How often an unreachable database is tried again before the server reports ready.
+     */
+    private static final long READINESS_RETRY_MILLIS = 100;
+
+    private static final Logger LOG = LoggerFactory.getLogger(SocialMediaController.class);
+
+    AppConfig config;
+    StorageEngine storage;
     AccountService accountService;
     MessageService messageService;
+    TimelineService timelineService;
+    MessageStreamService messageStreamService;
+    MessageCountService messageCountService;
+    ExportService exportService;
+    RecordingService recordingService;
+    HealthService healthService;
+    WarmUpService warmUpService;
+    TokenBucketLimiter ipLimiter;
+    TokenBucketLimiter accountLimiter;
+    ConcurrencyLimiter concurrencyLimiter;
+    ModelJsonMapper jsonMapper = new ModelJsonMapper();
+    SseHandler messageStream = new SseHandler(this::messageStreamHandler);
+    int maxBodyBytes;
+    int maxIdsPerRequest;
+    int maxQueuedRequests;
+    QueuedThreadPool threads;
+    final CompletableFuture<Void> readiness = new CompletableFuture<>();
 
     public SocialMediaController(){
-        this.accountService = new AccountService();
-        this.messageService = new MessageService();
+        this(AppConfig.load());
+    }
+
+    /**
+     * Constructor that sizes every service from a configuration and runs it against the configured storage engine.
+     *
+     * @param config The configuration that is being used.
+     */
+    public SocialMediaController(AppConfig config){
+        this(config, StorageEngine.fromConfig(config));
+    }
+
+    /**
+     * Constructor that sizes every service from a configuration and runs it against the DAOs of one storage engine.
+     *
+     * @param config The configuration that is being used.
+     * @param storage The storage engine that is being used.
+     */
+    public SocialMediaController(AppConfig config, StorageEngine storage){
+        this.config = config;
+        this.storage = storage;
+        this.accountService = new AccountService(storage.getAccountDAO());
+        // timelines and counts are built from one read and then kept for good, so that read goes to the primary
+        this.timelineService = new TimelineService(storage.getPrimaryFollowDAO(), storage.getPrimaryMessageDAO(),
+                config.getInt("timeline.capacity"), config.getInt("timeline.fan_out_limit"),
+                config.getInt("timeline.max_accounts"));
+        // a Message or list read from a replica that has not applied the latest write would stay cached after it,
+        // or be shared with a client that made that write, so both caches and coalescing are off with replicas
+        boolean cacheable = storage.getReplicas() == null;
+        MessageCache messageCache = cacheable ? MessageCache.fromConfig(config) : new HeapMessageCache(0);
+        int accountCacheCapacity = cacheable ? config.getInt("account_messages_cache.capacity") : 0;
+        this.messageService = new MessageService(storage.getMessageDAO(), timelineService,
+                messageCache, new AccountMessagesCache(accountCacheCapacity), cacheable);
+        this.messageStreamService = new MessageStreamService(config.getInt("stream.buffer_size"),
+                config.getInt("stream.delivery_threads"));
+        this.messageService.addListener(messageStreamService);
+        this.messageCountService = new MessageCountService(storage.getPrimaryMessageDAO());
+        this.messageService.addListener(messageCountService);
+        this.exportService = new ExportService(storage.getMessageDAO(), storage.getAccountDAO());
+        this.recordingService = new RecordingService(Duration.ofSeconds(config.getInt("jfr.max_age_seconds")));
+        int maxBuckets = config.getInt("ratelimit.max_buckets");
+        this.ipLimiter = new TokenBucketLimiter(config.getDouble("ratelimit.ip.rate"),
+                config.getInt("ratelimit.ip.burst"), maxBuckets);
+        this.accountLimiter = new TokenBucketLimiter(config.getDouble("ratelimit.account.rate"),
+                config.getInt("ratelimit.account.burst"), maxBuckets);
+        this.concurrencyLimiter = new ConcurrencyLimiter(config.getInt("http.concurrency.initial_limit"),
+                config.getInt("http.concurrency.min_limit"), config.getInt("http.concurrency.max_limit"),
+                config.getDouble("http.concurrency.tolerance"), config.getDouble("http.concurrency.smoothing"));
+        this.maxBodyBytes = config.getInt("http.max_body_bytes");
+        this.maxIdsPerRequest = config.getInt("http.max_ids_per_request");
+        this.healthService = new HealthService(storage::isReachable, config.getInt("health.db_check_ms"));
+        this.maxQueuedRequests = config.getInt("health.ready.max_queued_requests");
+        this.warmUpService = new WarmUpService(storage.getMessageDAO(), messageService, timelineService,
+                config.getInt("warmup.messages"), config.getInt("warmup.accounts"),
+                config.getInt("warmup.concurrency"));
     }
 
     /**
      * In order for the test cases to work, you will need to write the endpoints in the startAPI() method, as the test
-     * suite must receive a Javalin object from this method.
+     * suite must receive a Javalin object from this method. The Jetty thread pool is sized by the http.threads.*
+     * settings and JSON goes through ModelJsonMapper. Request bodies larger than http.max_body_bytes are answered
+     * with 413. Every request is timed as a RequestEvent for Java Flight Recorder, and with jfr.record=true a
+     * recording starts here. While the server runs, the HealthService checks the database in the background.
+     * The server reports ready once the WarmUpService has filled the caches.
+     * Every API route runs behind the ConcurrencyLimiter at the priority it is registered with; the SSE stream,
+     * probes and admin routes are not limited. The admin routes that dump data, queries or recordings are only
+     * served with http.admin.enabled=true, as nothing authenticates them.
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
-        app.post("/register", this::postAccountHandler);
-        app.post("/login", this::postLoginHandler);
-        app.post("/messages", this::postMessageHandler);
-        app.get("/messages", this::getAllMessagesHandler);
-        app.get("/messages/{message_id}", this::getMessageByIdHandler);
-        app.delete("/messages/{message_id}", this::deleteMessageHandler);
-        app.patch("/messages/{message_id}", this::patchMessageHandler);
-        app.get("/accounts/{account_id}/messages", this::getAllMessagesByUserId);
+        threads = new QueuedThreadPool(config.getInt("http.threads.max"),
+                config.getInt("http.threads.min"), config.getInt("http.threads.idle_timeout_ms"));
+        threads.setName("JettyServerThreadPool");
+        Javalin app = Javalin.create(cfg -> {
+            cfg.jetty.server(() -> new Server(threads));
+            cfg.jsonMapper(jsonMapper);
+        });
+        app.events(events -> {
+            events.serverStarted(this::awaitStorage);
+            events.serverStarted(healthService::start);
+            events.serverStopped(recordingService::close);
+            events.serverStopped(healthService::close);
+        });
+        app.before(this::beginRequestEvent);
+        app.before(ctx -> storage.beginRequest(clientOf(ctx)));
+        app.after(ctx -> storage.endRequest(clientOf(ctx)));
+        app.after(this::commitRequestEvent);
+        app.before("/login", ctx -> throttle(ipLimiter, "ip:" + ctx.ip()));
+        app.before("/messages", ctx -> {
+            if(ctx.method() == HandlerType.POST){
+                throttle(ipLimiter, "ip:" + ctx.ip());
+            }
+        });
+        app.exception(RateLimitedException.class, (e, ctx) -> {
+            ctx.header("Retry-After", String.valueOf(e.retryAfterSeconds));
+            ctx.status(429);
+        });
+        app.exception(LimitedInputStream.LimitExceededException.class, (e, ctx) -> ctx.status(413));
+        app.exception(MessageService.VersionConflictException.class, (e, ctx) -> ctx.status(412));
+        app.post("/register", limited(NORMAL, this::postAccountHandler));
+        app.post("/login", limited(HIGH, this::postLoginHandler));
+        app.post("/messages", limited(NORMAL, this::postMessageHandler));
+        Handler allMessages = limited(LOW, this::getAllMessagesHandler);
+        Handler messagesByIds = limited(HIGH, this::getMessagesByIdsHandler);
+        app.get("/messages", ctx -> (ctx.queryParam("ids") == null ? allMessages : messagesByIds).handle(ctx));
+        app.get("/messages/stream", this::getMessageStreamHandler);
+        app.get("/messages/count", limited(HIGH, this::getMessageCountHandler));
+        app.get("/messages/{message_id}", limited(HIGH, this::getMessageByIdHandler));
+        app.delete("/messages/{message_id}", limited(NORMAL, this::deleteMessageHandler));
+        app.patch("/messages/{message_id}", limited(NORMAL, this::patchMessageHandler));
+        app.get("/accounts/{account_id}/messages", limited(LOW, this::getAllMessagesByUserId));
+        app.get("/accounts/{account_id}/messages/count", limited(HIGH, this::getMessageCountByUserIdHandler));
+        app.post("/accounts/{account_id}/following/{followee_id}", limited(NORMAL, this::postFollowHandler));
+        app.delete("/accounts/{account_id}/following/{followee_id}", limited(NORMAL, this::deleteFollowHandler));
+        app.get("/accounts/{account_id}/timeline", limited(HIGH, this::getTimelineHandler));
+        app.get("/health", this::getHealthHandler);
+        app.get("/ready", this::getReadyHandler);
+        app.get("/admin/metrics", this::getMetricsHandler);
+        if(config.getBoolean("http.admin.enabled")){
+            app.get("/admin/export/{table}", this::getExportHandler);
+            app.get("/admin/slow-queries", this::getSlowQueriesHandler);
+            app.post("/admin/jfr/start", this::postRecordingStartHandler);
+            app.post("/admin/jfr/stop", this::postRecordingStopHandler);
+            app.get("/admin/jfr/dump", this::getRecordingDumpHandler);
+        }
+        if(config.getBoolean("jfr.record")){
+            try{
+                recordingService.start(config.getString("jfr.settings"));
+            } catch(IOException | ParseException e){
+                throw new IllegalArgumentException("jfr.settings is not a JFR configuration", e);
+            }
+        }
 
         return app;
     }
@@ -45,11 +238,11 @@ public class SocialMediaController {
      * Receives a full Account message if new account conditions are met, sets 400 error status if not.
      * 
      * @param ctx Represents POST request and response handler at endpoint "/register".
-     * @throws JsonProcessingException if method encounters an error processing JSON POST request.
+     * @throws UncheckedIOException if the request body is not a JSON Account.
+     * @throws LimitedInputStream.LimitExceededException if the request body is larger than http.max_body_bytes.
      */
-    private void postAccountHandler(Context ctx) throws JsonProcessingException{
-        ObjectMapper om = new ObjectMapper();
-        Account acc = om.readValue(ctx.body(), Account.class);
+    private void postAccountHandler(Context ctx){
+        Account acc = readBody(ctx, Account.class);
         Account addedAcc = accountService.addAccount(acc);
         if(addedAcc != null){
             ctx.json(addedAcc);
@@ -60,14 +253,15 @@ public class SocialMediaController {
 
     /**
      * Controller for logging in to existing account. Provides corresponding service level with Account object with all parameters except an Account ID.
-     * Receives a full Account object if successful, sets 401 error status if not.
+     * Receives a full Account object if successful, sets 401 error status if not, 429 if the username is being rate limited.
      * 
      * @param ctx Represents POST request and response handler at endpoint "/login".
-     * @throws JsonProcessingException if method encounters an error processing JSON POST request.
+     * @throws UncheckedIOException if the request body is not a JSON Account.
+     * @throws LimitedInputStream.LimitExceededException if the request body is larger than http.max_body_bytes.
      */
-    private void postLoginHandler(Context ctx) throws JsonProcessingException{
-        ObjectMapper om = new ObjectMapper();
-        Account acc = om.readValue(ctx.body(), Account.class);
+    private void postLoginHandler(Context ctx){
+        Account acc = readBody(ctx, Account.class);
+        throttle(accountLimiter, "username:" + acc.getUsername());
         Account loginAcc = accountService.loginAccount(acc);
         if(loginAcc != null){
             ctx.json(loginAcc);
@@ -78,14 +272,15 @@ public class SocialMediaController {
 
     /**
      * Controller for creating a new message. Provides corresponding service level with Message object with all parameters except a Message ID.
-     * Receives a full Message object if successful, sets 400 error status if not.
+     * Receives a full Message object if successful, sets 400 error status if not, 429 if the poster is being rate limited.
      * 
      * @param ctx Represents POST request and response handler at endpoint "/messages".
-     * @throws JsonProcessingException if method encounters an error processing JSON POST request.
+     * @throws UncheckedIOException if the request body is not a JSON Message.
+     * @throws LimitedInputStream.LimitExceededException if the request body is larger than http.max_body_bytes.
      */
-    private void postMessageHandler(Context ctx) throws JsonProcessingException{
-        ObjectMapper om = new ObjectMapper();
-        Message msg = om.readValue(ctx.body(), Message.class);
+    private void postMessageHandler(Context ctx){
+        Message msg = readBody(ctx, Message.class);
+        throttle(accountLimiter, "account:" + msg.getPosted_by());
         Message submitMsg = messageService.postMessage(msg);
         if(submitMsg != null){
             ctx.json(submitMsg);
@@ -104,19 +299,118 @@ public class SocialMediaController {
         ctx.json(messageService.getAllMessages());
     }
 
+    /**
+     * Controller for getting several messages at once by their Message IDs, as in "/messages?ids=3,1,2".
+     * Receives a List of the full Message objects that exist, in the order their IDs were given; IDs of Messages
+     * that do not exist are left out. Sets 400 error status if an ID is not a number or more than
+     * http.max_ids_per_request IDs are given.
+     * 
+     * @param ctx Represents GET request and response handler at endpoint "/messages?ids=".
+     */
+    private void getMessagesByIdsHandler(Context ctx){
+        String[] parts = ctx.queryParam("ids").split(",", -1);
+        if(parts.length > maxIdsPerRequest){
+            ctx.status(400);
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(parts.length);
+        for(String part : parts){
+            if(part.isBlank()){
+                continue;
+            }
+            try{
+                ids.add(Integer.parseInt(part.trim()));
+            } catch(NumberFormatException e){
+                ctx.status(400);
+                return;
+            }
+        }
+        ctx.json(messageService.getMessagesByIds(ids));
+    }
+
+    /**
+     * Controller for opening the Server-Sent Events stream of Message changes. Accepts an optional "posted_by"
+     * query parameter to only receive one Account's Messages. Sets 400 error status, before any event is sent, if
+     * posted_by is not a number.
+     * 
+     * @param ctx Represents GET request and response handler at endpoint "/messages/stream".
+     * @throws Exception if the stream cannot be opened.
+     */
+    private void getMessageStreamHandler(Context ctx) throws Exception{
+        String postedBy = ctx.queryParam("posted_by");
+        try{
+            ctx.attribute("posted_by", postedBy == null ? null : Integer.valueOf(postedBy.trim()));
+        } catch(NumberFormatException e){
+            ctx.status(400);
+            return;
+        }
+        messageStream.handle(ctx);
+    }
+
+    /**
+     * Streams Message changes as Server-Sent Events named "created", "updated" and "deleted", each carrying the
+     * JSON representation of the Message, filtered by the posted_by getMessageStreamHandler parsed. Clients must
+     * send "Accept: text/event-stream" and are disconnected if they fall too far behind.
+     * 
+     * @param client Represents the Server-Sent Events connection at endpoint "/messages/stream".
+     */
+    private void messageStreamHandler(SseClient client){
+        Integer postedBy = client.ctx.attribute("posted_by");
+        MessageStreamService.Subscriber sub = messageStreamService.subscribe(new MessageStreamService.Sink(){
+            @Override
+            public void send(String event, String data){
+                client.sendEvent(event, data);
+            }
+
+            @Override
+            public void close(){
+                client.close();
+            }
+        }, postedBy);
+        client.onClose(() -> messageStreamService.unsubscribe(sub));
+        client.keepAlive();
+    }
+
+    /**
+     * Controller for getting the number of Messages in the database, served from in-memory counters.
+     * Receives a JSON object of the form {"count": n}.
+     * 
+     * @param ctx Represents GET request and response handler at endpoint "/messages/count".
+     */
+    private void getMessageCountHandler(Context ctx){
+        ctx.json(Map.of("count", messageCountService.getMessageCount()));
+    }
+
+    /**
+     * Controller for getting the number of Messages posted by a specific Account ID, served from in-memory counters.
+     * Receives a JSON object of the form {"count": n}, 0 if the Account has not posted.
+     * 
+     * @param ctx Represents GET request and response handler at endpoint "/accounts/{account_id}/messages/count".
+     */
+    private void getMessageCountByUserIdHandler(Context ctx){
+        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        ctx.json(Map.of("count", messageCountService.getMessageCountByAccountId(accountId)));
+    }
 
     /**
      * Controller for getting a specific message. Provides corresponding service level with a Message ID.
-     * Receives a full Message object if successful, empty if there is no Message at Message ID.
+     * Receives a full Message object and its version as the ETag header if successful, empty if there is no
+     * Message at Message ID. Sets 304 status without a body if the If-None-Match header names the current ETag.
      * 
      * @param ctx Represents GET request and response handler at endpoint "/messages/{message_id}".
      * @throws JsonProcessingException if method encounters an error processing JSON GET request.
      */
     private void getMessageByIdHandler(Context ctx) throws JsonProcessingException{
         int msgId = Integer.parseInt(ctx.pathParam("message_id"));
-        Message getMsg = messageService.getMessageById(msgId);
+        Versioned<Message> getMsg = messageService.getVersionedMessageById(msgId);
         if(getMsg != null){
-            ctx.json(getMsg);
+            String etag = etagOf(getMsg.getVersion());
+            ctx.header("ETag", etag);
+            if(etag.equals(ctx.header("If-None-Match"))){
+                ctx.status(304);
+                return;
+            }
+            ctx.json(getMsg.getValue());
         }
     }
 
@@ -138,14 +432,28 @@ public class SocialMediaController {
     /**
      * Controller for replacing message text for a specific Message. Provides corresponding service level with a Message containing Message ID and Text only.
      * Receives a full updated Message object if successful, sets 400 error code if not.
+     * With an If-Match header naming the ETag from a GET, the text is only replaced if the Message is still at that
+     * version: the response then carries the new ETag, or sets 412 error status if the Message has changed since.
      * 
      * @param ctx Represents PATCH request and response handler at endpoint "/messages/{message_id}".
-     * @throws JsonProcessingException if method encounters an error processing JSON PATCH request.
+     * @throws UncheckedIOException if the request body is not a JSON Message.
+     * @throws LimitedInputStream.LimitExceededException if the request body is larger than http.max_body_bytes.
+     * @throws MessageService.VersionConflictException if the Message is not at the version If-Match names.
      */
-    private void patchMessageHandler(Context ctx) throws JsonProcessingException{
-        ObjectMapper om = new ObjectMapper();
-        Message msg = om.readValue(ctx.body(), Message.class);
+    private void patchMessageHandler(Context ctx){
+        Message msg = readBody(ctx, Message.class);
         msg.setMessage_id(Integer.parseInt(ctx.pathParam("message_id")));
+        String ifMatch = ctx.header("If-Match");
+        if(ifMatch != null && !ifMatch.trim().equals("*")){
+            Versioned<Message> patched = messageService.updateMessage(msg, versionOf(ifMatch));
+            if(patched != null){
+                ctx.header("ETag", etagOf(patched.getVersion()));
+                ctx.json(patched.getValue());
+            } else {
+                ctx.status(400);
+            }
+            return;
+        }
         Message patchMsg = messageService.updateMessage(msg);
 
         if(patchMsg != null){
@@ -166,4 +474,476 @@ public class SocialMediaController {
         ctx.json(messageService.getAllMessagesByAccountId(accountId));
     }
 
+    /**
+     * Controller for following an Account. Provides corresponding service level with the follower and followee Account IDs.
+     * Sets 400 error status if the follow is a self-follow, already exists or either Account does not exist.
+     * 
+     * @param ctx Represents POST request and response handler at endpoint "/accounts/{account_id}/following/{followee_id}".
+     */
+    private void postFollowHandler(Context ctx){
+        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        int followeeId = Integer.parseInt(ctx.pathParam("followee_id"));
+        if(!timelineService.follow(accountId, followeeId)){
+            ctx.status(400);
+        }
+    }
+
+    /**
+     * Controller for unfollowing an Account. Provides corresponding service level with the follower and followee Account IDs.
+     * Always responds with an empty 200, whether or not the follow existed.
+     * 
+     * @param ctx Represents DELETE request and response handler at endpoint "/accounts/{account_id}/following/{followee_id}".
+     */
+    private void deleteFollowHandler(Context ctx){
+        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        int followeeId = Integer.parseInt(ctx.pathParam("followee_id"));
+        timelineService.unfollow(accountId, followeeId);
+    }
+
+    /**
+     * Controller for getting the home timeline of an Account, newest first. Accepts an optional "limit" query parameter.
+     * Receives a List of full Message objects, empty if followed Accounts have not posted. Sets 400 error status if
+     * the limit is not a number.
+     * 
+     * @param ctx Represents GET request and response handler at endpoint "/accounts/{account_id}/timeline".
+     */
+    private void getTimelineHandler(Context ctx){
+        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        String limit = ctx.queryParam("limit");
+        int pageSize = DEFAULT_TIMELINE_PAGE;
+        if(limit != null){
+            try{
+                pageSize = Integer.parseInt(limit.trim());
+            } catch(NumberFormatException e){
+                ctx.status(400);
+                return;
+            }
+        }
+        ctx.json(timelineService.getTimeline(accountId, pageSize));
+    }
+
+    /**
+     * Controller for getting operational counters, e.g. how many requests have been rate limited.
+     * Receives a flat JSON object of counter names to values.
+     * 
+     * @param ctx Represents GET request and response handler at endpoint "/admin/metrics".
+     */
+    private void getMetricsHandler(Context ctx){
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("storage.engine", storage.getName());
+        metrics.put("db.pool.active", ConnectionUtil.getActiveConnections());
+        ReplicaSet replicas = storage.getReplicas();
+        if(replicas != null){
+            metrics.put("replication.replicas", replicas.getReplicaCount());
+            metrics.put("replication.last_lsn", replicas.getLastLsn());
+            metrics.put("replication.max_lag", replicas.getMaxLag());
+            metrics.put("replication.reads.replica", replicas.getReplicaReads());
+            metrics.put("replication.reads.primary", replicas.getPrimaryReads());
+        }
+        metrics.put("ratelimit.ip.allowed", ipLimiter.getAllowedCount());
+        metrics.put("ratelimit.ip.throttled", ipLimiter.getThrottledCount());
+        metrics.put("ratelimit.ip.buckets", ipLimiter.getBucketCount());
+        metrics.put("ratelimit.account.allowed", accountLimiter.getAllowedCount());
+        metrics.put("ratelimit.account.throttled", accountLimiter.getThrottledCount());
+        metrics.put("ratelimit.account.buckets", accountLimiter.getBucketCount());
+        metrics.put("concurrency.limit", concurrencyLimiter.getLimit());
+        metrics.put("concurrency.inflight", concurrencyLimiter.getInflight());
+        metrics.put("concurrency.accepted", concurrencyLimiter.getAcceptedCount());
+        metrics.put("concurrency.rejected", concurrencyLimiter.getRejectedCount());
+        metrics.put("concurrency.baseline_ms", concurrencyLimiter.getBaselineMillis());
+        metrics.put("coalesce.message.executed", messageService.getMessageReads().getExecutedCount()
+                + messageService.getVersionedReads().getExecutedCount());
+        metrics.put("coalesce.message.collapsed", messageService.getMessageReads().getCollapsedCount()
+                + messageService.getVersionedReads().getCollapsedCount());
+        metrics.put("coalesce.account_messages.executed", messageService.getAccountReads().getExecutedCount());
+        metrics.put("coalesce.account_messages.collapsed", messageService.getAccountReads().getCollapsedCount());
+        metrics.put("cache.messages.hits", messageService.getCache().getHitCount());
+        metrics.put("cache.messages.misses", messageService.getCache().getMissCount());
+        metrics.put("cache.messages.size", messageService.getCache().size());
+        metrics.put("cache.account_messages.hits", messageService.getAccountCache().getHitCount());
+        metrics.put("cache.account_messages.misses", messageService.getAccountCache().getMissCount());
+        metrics.put("cache.account_messages.size", messageService.getAccountCache().size());
+        metrics.put("cache.timeline.hits", timelineService.getHitCount());
+        metrics.put("cache.timeline.misses", timelineService.getMissCount());
+        metrics.put("cache.timeline.size", timelineService.size());
+        metrics.put("warmup.ms", warmUpService.getMillis());
+        metrics.put("warmup.messages", warmUpService.getMessagesLoaded());
+        metrics.put("warmup.timelines", warmUpService.getTimelinesLoaded());
+        metrics.put("warmup.account_messages", warmUpService.getAccountListsLoaded());
+        metrics.put("warmup.first_minute.messages.hit_rate", warmUpService.getFirstMinuteMessageHitRate());
+        metrics.put("warmup.first_minute.timeline.hit_rate", warmUpService.getFirstMinuteTimelineHitRate());
+        metrics.put("warmup.first_minute.account_messages.hit_rate",
+                warmUpService.getFirstMinuteAccountListHitRate());
+        metrics.put("stream.subscribers", messageStreamService.getSubscriberCount());
+        metrics.put("stream.delivered", messageStreamService.getDeliveredCount());
+        metrics.put("stream.slow_consumers_disconnected", messageStreamService.getSlowConsumersDisconnected());
+        ErrorLog errors = ErrorLog.shared();
+        errors.getOperationCounts().forEach((operation, count) -> metrics.put("errors.op." + operation, count));
+        errors.getClassCounts().forEach((errorClass, count) -> metrics.put("errors.class." + errorClass, count));
+        metrics.put("errors.last_minute", errors.getRecentCount());
+        metrics.put("errors.log.written", errors.getWrittenCount());
+        metrics.put("errors.log.dropped", errors.getDroppedCount());
+        metrics.put("db.slow_queries", SlowQueryLog.shared().getRecordedCount());
+        metrics.put("db.slow_queries.unexplained", SlowQueryLog.shared().getUnexplainedCount());
+        ctx.json(metrics);
+    }
+
+    /**
+     * Controller for streaming a whole table, "messages" or "accounts", as newline-delimited JSON. Accounts are
+     * written without their passwords; a full dump is only made by the Export command.
+     * Sets 404 error status for any other table name.
+     * 
+     * @param ctx Represents GET request and response handler at endpoint "/admin/export/{table}".
+     * @throws IOException if the response cannot be written.
+     */
+    private void getExportHandler(Context ctx) throws IOException{
+        String table = ctx.pathParam("table");
+        if(!table.equals("messages") && !table.equals("accounts")){
+            ctx.status(404);
+            return;
+        }
+        ctx.contentType("application/x-ndjson");
+        WritableByteChannel out = Channels.newChannel(ctx.res().getOutputStream());
+        ExportService.Report report = table.equals("messages")
+                ? exportService.exportMessages(out)
+                : exportService.exportAccounts(out, false);
+        LOG.info("Exported {}: {}", table, report);
+    }
+
+    /**
+     * Controller for the DAO calls that took at least db.slow_query.threshold_ms, newest first.
+     * Receives a List of JSON objects with the method, statement, parameters (passwords redacted), duration,
+     * connection wait and the plan H2 reported, which is null until it has been captured.
+     *
+     * @param ctx Represents GET request and response handler at endpoint "/admin/slow-queries".
+     */
+    private void getSlowQueriesHandler(Context ctx){
+        ctx.json(SlowQueryLog.shared().getEntries());
+    }
+
+    /**
+     * Controller for starting a Java Flight Recorder recording that keeps the last jfr.max_age_seconds of events.
+     * Accepts an optional "settings" query parameter naming a JDK configuration, "default" or "profile".
+     * Sets 200 status if a recording was started, 409 if one is already running, 400 for unknown settings.
+     *
+     * @param ctx Represents POST request and response handler at endpoint "/admin/jfr/start".
+     */
+    private void postRecordingStartHandler(Context ctx){
+        String settings = ctx.queryParam("settings");
+        try{
+            if(!recordingService.start(settings != null ? settings : config.getString("jfr.settings"))){
+                ctx.status(409);
+            }
+        } catch(IOException | ParseException e){
+            ctx.status(400).result(e.getMessage());
+        }
+    }
+
+    /**
+     * Controller for stopping the running recording; what it recorded can still be dumped.
+     * Sets 200 status if a recording was stopped, 409 if none was running.
+     *
+     * @param ctx Represents POST request and response handler at endpoint "/admin/jfr/stop".
+     */
+    private void postRecordingStopHandler(Context ctx){
+        if(!recordingService.stop()){
+            ctx.status(409);
+        }
+    }
+
+    /**
+     * Controller for downloading the current or last recording as a .jfr file, to open in JDK Mission Control or
+     * read with the jfr tool. A running recording keeps running. Sets 404 error status if there is nothing to dump.
+     *
+     * @param ctx Represents GET request and response handler at endpoint "/admin/jfr/dump".
+     * @throws IOException if the recording cannot be written out.
+     */
+    private void getRecordingDumpHandler(Context ctx) throws IOException{
+        Path file = Files.createTempFile("socialmedia-", ".jfr");
+        if(!recordingService.dump(file)){
+            Files.deleteIfExists(file);
+            ctx.status(404);
+            return;
+        }
+        InputStream in = Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
+        ctx.contentType("application/octet-stream");
+        ctx.header("Content-Disposition", "attachment; filename=\"socialmedia.jfr\"");
+        ctx.result(in);
+    }
+
+    /**
+     * Completes once the server is listening, the storage engine can serve requests and the caches are warm, so
+     * callers need not guess how long startup takes.
+     *
+     * @return Future that completes when the server is ready; it never completes exceptionally.
+     */
+    public CompletableFuture<Void> getReadiness(){
+        return readiness;
+    }
+
+    /**
+     * @return The warm-up run before the server reports ready, with its timing and first-minute hit rates.
+     */
+    public WarmUpService getWarmUpService(){
+        return warmUpService;
+    }
+
+    /**
+     * Controller for the liveness probe. Always sets 200 status while the server can answer at all.
+     * Receives the same JSON report as "/ready".
+     *
+     * @param ctx Represents GET request and response handler at endpoint "/health".
+     */
+    private void getHealthHandler(Context ctx){
+        ctx.json(healthReport(readiness.isDone() ? "up" : "starting"));
+    }
+
+    /**
+     * Controller for the readiness probe used by load balancers and rolling restarts.
+     * Sets 200 status once the server is ready, 503 while it is starting, while the last database check failed or
+     * while more than health.ready.max_queued_requests requests wait for a Jetty thread.
+     * Receives a JSON report whose "status" is "ready", "starting", "database_unreachable" or "saturated".
+     *
+     * @param ctx Represents GET request and response handler at endpoint "/ready".
+     */
+    private void getReadyHandler(Context ctx){
+        String status;
+        if(!readiness.isDone()){
+            status = "starting";
+        } else if(Boolean.FALSE.equals(healthService.isDatabaseReachable())){
+            status = "database_unreachable";
+        } else if(threads.getQueueSize() > maxQueuedRequests){
+            status = "saturated";
+        } else {
+            status = "ready";
+        }
+        ctx.status(status.equals("ready") ? 200 : 503).json(healthReport(status));
+    }
+
+    /**
+     * Reads the probes' report from counters already kept, without touching the database. Rates with nothing
+     * counted yet are null.
+     *
+     * @param status What the probe concluded.
+     * @return Flat map of report names to values.
+     */
+    private Map<String, Object> healthReport(String status){
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("status", status);
+        report.put("db.reachable", healthService.isDatabaseReachable());
+        report.put("db.checked_ms_ago", healthService.getMillisSinceCheck());
+        int active = ConnectionUtil.getActiveConnections();
+        int max = ConnectionUtil.getMaxConnections();
+        report.put("db.pool.active", active);
+        report.put("db.pool.max", max);
+        report.put("db.pool.utilization", ratio(active, max));
+        report.put("http.threads.busy", threads.getBusyThreads());
+        report.put("http.threads.max", threads.getMaxThreads());
+        report.put("http.queue.size", threads.getQueueSize());
+        report.put("cache.messages.hit_rate", ratio(messageService.getCache().getHitCount(),
+                messageService.getCache().getHitCount() + messageService.getCache().getMissCount()));
+        report.put("cache.account_messages.hit_rate", ratio(messageService.getAccountCache().getHitCount(),
+                messageService.getAccountCache().getHitCount() + messageService.getAccountCache().getMissCount()));
+        report.put("cache.timeline.hit_rate", ratio(timelineService.getHitCount(),
+                timelineService.getHitCount() + timelineService.getMissCount()));
+        long messagesCollapsed = messageService.getMessageReads().getCollapsedCount()
+                + messageService.getVersionedReads().getCollapsedCount();
+        long messagesExecuted = messageService.getMessageReads().getExecutedCount()
+                + messageService.getVersionedReads().getExecutedCount();
+        report.put("cache.coalesce.message.hit_rate", ratio(messagesCollapsed, messagesCollapsed + messagesExecuted));
+        report.put("cache.coalesce.account_messages.hit_rate",
+                ratio(messageService.getAccountReads().getCollapsedCount(),
+                        messageService.getAccountReads().getCollapsedCount()
+                                + messageService.getAccountReads().getExecutedCount()));
+        report.put("warmup.ms", warmUpService.getMillis());
+        long errors = ErrorLog.shared().getRecentCount();
+        report.put("errors.last_minute", errors);
+        report.put("errors.per_second", (double) errors / ErrorLog.RECENT_SECONDS);
+        return report;
+    }
+
+    /**
+     * @return part / whole, or null if whole is 0.
+     */
+    private static Double ratio(long part, long whole){
+        return whole == 0 ? null : (double) part / whole;
+    }
+
+    /**
+     * Called once Jetty is bound: warms the caches and marks the server ready now if the storage engine is
+     * reachable, otherwise keeps trying in the background.
+     */
+    private void awaitStorage(){
+        if(storage.isReachable()){
+            try{
+                becomeReady();
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        Thread waiter = new Thread(() -> {
+            try{
+                while(!storage.isReachable()){
+                    Thread.sleep(READINESS_RETRY_MILLIS);
+                }
+                becomeReady();
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }, "readiness-check");
+        waiter.setDaemon(true);
+        waiter.start();
+    }
+
+    /**
+     * Warms the caches, then marks the server ready.
+     *
+     * @throws InterruptedException if interrupted while warming.
+     */
+    private void becomeReady() throws InterruptedException {
+        warmUpService.run();
+        warmUpService.serverReady();
+        readiness.complete(null);
+    }
+
+    /**
+     * Begins timing a request for Java Flight Recorder if a recording wants RequestEvents.
+     *
+     * @param ctx The request.
+     */
+    private void beginRequestEvent(Context ctx){
+        RequestEvent event = new RequestEvent();
+        if(event.isEnabled()){
+            event.begin();
+            ctx.attribute(RequestEvent.class.getName(), event);
+        }
+    }
+
+    /**
+     * Commits the request's RequestEvent, if one was begun, with the route it matched and the status sent.
+     *
+     * @param ctx The request.
+     */
+    private void commitRequestEvent(Context ctx){
+        RequestEvent event = ctx.attribute(RequestEvent.class.getName());
+        if(event != null){
+            event.method = ctx.method().name();
+            event.route = ctx.endpointHandlerPath();
+            event.path = ctx.path();
+            event.status = ctx.statusCode();
+            event.commit();
+        }
+    }
+
+    /**
+     * Identifies the client a request comes from, for read-your-writes across requests.
+     *
+     * @param ctx The request.
+     * @return The X-Client-Id header if sent, otherwise the client's address.
+     */
+    private static String clientOf(Context ctx){
+        String client = ctx.header("X-Client-Id");
+        return client != null && !client.isBlank() ? client : ctx.ip();
+    }
+
+    /**
+     * @param version Version of a Message.
+     * @return The version as a strong ETag.
+     */
+    private static String etagOf(long version){
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Reads the version out of an If-Match header holding one ETag, weak or strong.
+     *
+     * @param ifMatch The header value.
+     * @return The version it names.
+     * @throws MessageService.VersionConflictException if it names no version, since no Message can match it.
+     */
+    private static long versionOf(String ifMatch){
+        String tag = ifMatch.trim();
+        if(tag.startsWith("W/")){
+            tag = tag.substring(2);
+        }
+        if(tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")){
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try{
+            return Long.parseLong(tag);
+        } catch(NumberFormatException e){
+            throw new MessageService.VersionConflictException(-1);
+        }
+    }
+
+    /**
+     * Wraps a handler so that it only runs if the ConcurrencyLimiter lets a request of its priority start, and
+     * reports how long it took when it ends. A refused request is answered with 503 straight away.
+     *
+     * @param priority Kind of request the route serves.
+     * @param handler The route's handler.
+     * @return The limited handler.
+     */
+    private Handler limited(ConcurrencyLimiter.Priority priority, Handler handler){
+        return ctx -> {
+            if(!concurrencyLimiter.tryAcquire(priority)){
+                ctx.status(503);
+                return;
+            }
+            long start = System.nanoTime();
+            try{
+                handler.handle(ctx);
+            } finally {
+                concurrencyLimiter.release(System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Takes a token for a key, ending the request with 429 and a Retry-After header if there is none.
+     * 
+     * @param limiter Token buckets to take from.
+     * @param key Identifies the bucket, e.g. "ip:127.0.0.1".
+     * @throws RateLimitedException if the key has no tokens left.
+     */
+    private static void throttle(TokenBucketLimiter limiter, String key){
+        long waitNanos = limiter.tryAcquire(key);
+        if(waitNanos > 0){
+            throw new RateLimitedException(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L));
+        }
+    }
+
+    /**
+     * Parses the request body straight from the request's InputStream, without first copying it into a String.
+     * A declared Content-Length over the limit is refused before anything is read; a body without one is refused as
+     * soon as it passes the limit.
+     *
+     * @param ctx The request being handled.
+     * @param type Class of the JSON object in the body.
+     * @return The object read.
+     * @throws LimitedInputStream.LimitExceededException if the body is larger than http.max_body_bytes.
+     * @throws UncheckedIOException if the body is not a JSON object of that class.
+     */
+    private <T> T readBody(Context ctx, Class<T> type){
+        if(ctx.contentLength() > maxBodyBytes){
+            throw new LimitedInputStream.LimitExceededException(maxBodyBytes);
+        }
+        return jsonMapper.fromJsonStream(new LimitedInputStream(ctx.bodyInputStream(), maxBodyBytes), type);
+    }
+
+    /**
+     * Thrown by a handler to end the request with 429 Too Many Requests.
+     */
+    static class RateLimitedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final long retryAfterSeconds;
+
+        RateLimitedException(long retryAfterSeconds){
+            super(null, null, false, false);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
 }
\ No newline at end of file
@@ -1,70 +1,47 @@
 package DAO;
 
-import Util.ConnectionUtil;
 import Model.Account;
-import java.sql.*;
 
-public class AccountDAO{
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage operations for Accounts. Implementations must behave like the account table: Account IDs are assigned
+ * in increasing order and usernames are unique. Every Account returned is a fresh object.
+ */
+public interface AccountDAO {
 
     /**
-     * DAO implementation to create a new Account in database.
-     * 
-     * @param acc Account to be inserted in database.
-     * @return Account if insertion successful, null if not.
+     * @param acc Account to be inserted.
+     * @return Account with its new Account ID if insertion successful, null if not.
      */
-    public Account insertAccount(Account acc){
-        Connection conn = ConnectionUtil.getConnection();
-
-        try{
-            String sql = "INSERT INTO account (username, password) VALUES (?, ?);";
-            PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
-            ps.setString(1, acc.getUsername());
-            ps.setString(2, acc.getPassword());
-
-            ps.executeUpdate();
-
-            ResultSet rs = ps.getGeneratedKeys();
-
-            if(rs.next()){
-                return new Account(rs.getInt(1), 
-                acc.getUsername(), 
-                acc.getPassword());
-            }
-        } catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-
-        return null;
-    }
+    Account insertAccount(Account acc);
 
     /**
-     * DAO implementation to get an Account in database by its username and password.
      * @param acc Account with username and password fields only.
-     * @return Account with Account ID if successful, null if not.
+     * @return Account with Account ID if the username and password match, null if not.
      */
-    public Account getAccount(Account acc){
-        Connection conn = ConnectionUtil.getConnection();
-        try{
-            String sql = "SELECT * FROM account WHERE username = ? AND password = ?;";
-            PreparedStatement ps = conn.prepareStatement(sql);
+    Account getAccount(Account acc);
 
-            ps.setString(1, acc.getUsername());
-            ps.setString(2, acc.getPassword());
-
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                return new Account(rs.getInt(1), 
-                rs.getString(2), 
-                rs.getString(3));
-            }
-        } catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return null;
-    }
+    /**
+     * Visits every Account in Account ID order without holding them all in memory.
+     *
+     * @param visitor Called once per Account.
+     * @return Number of Accounts visited.
+     */
+    long forEachAccount(Consumer<Account> visitor);
 
-    
+    /**
+     * Inserts many Accounts at once. Accounts with an Account ID above 0 keep it. Either every Account is inserted
+     * or none is.
+     *
+     * @param accs Accounts to be inserted.
+     * @return true if every Account was inserted, false if none were.
+     */
+    boolean insertAccounts(List<Account> accs);
 
-    
-}
\ No newline at end of file
+    /**
+     * Moves the Account ID sequence past the highest Account ID stored.
+     */
+    void restartAccountIds();
+}
@@ -0,0 +1,41 @@
+package DAO;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage operations for the follow graph. Both ends of a follow must be existing Accounts.
+ */
+public interface FollowDAO {
+
+    /**
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return true if the follow was inserted, false if it already exists or either Account does not exist.
+     */
+    boolean insertFollow(int followerId, int followeeId);
+
+    /**
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return true if a follow was removed, false if not.
+     */
+    boolean deleteFollow(int followerId, int followeeId);
+
+    /**
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return List of follower Account IDs, blank if the Account has no followers.
+     */
+    List<Integer> getFollowerIds(int followeeId);
+
+    /**
+     * @param followerId Account ID no. of the Account doing the following.
+     * @return List of followed Account IDs, blank if the Account follows nobody.
+     */
+    List<Integer> getFolloweeIds(int followerId);
+
+    /**
+     * @param visitor Called once per follow with the follower and followee Account IDs.
+     */
+    void forEachFollow(BiConsumer<Integer, Integer> visitor);
+}
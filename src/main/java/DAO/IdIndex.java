@@ -0,0 +1,75 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sorted set of IDs kept in a plain int array, used by the in-memory engine as a secondary index (an Account's
+ * Message IDs, an Account's followers, ...). An int per entry instead of a boxed Integer in a tree keeps large
+ * indexes small and scans cache-friendly. Every method locks only this index.
+ */
+class IdIndex {
+
+    private int[] ids = new int[4];
+    private int size;
+
+    /**
+     * @param id ID to be added.
+     * @return true if it was added, false if it was already present.
+     */
+    synchronized boolean add(int id){
+        int at = Arrays.binarySearch(ids, 0, size, id);
+        if(at >= 0){
+            return false;
+        }
+        at = -at - 1;
+        if(size == ids.length){
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, at, ids, at + 1, size - at);
+        ids[at] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * @param id ID to be removed.
+     * @return true if it was removed, false if it was not present.
+     */
+    synchronized boolean remove(int id){
+        int at = Arrays.binarySearch(ids, 0, size, id);
+        if(at < 0){
+            return false;
+        }
+        System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return Number of IDs held.
+     */
+    synchronized int size(){
+        return size;
+    }
+
+    /**
+     * @return Copy of the IDs in ascending order.
+     */
+    synchronized int[] toArray(){
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * @return Copy of the IDs in ascending order, boxed.
+     */
+    List<Integer> toList(){
+        int[] copy = toArray();
+        List<Integer> list = new ArrayList<>(copy.length);
+        for(int id : copy){
+            list.add(id);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,142 @@
+package DAO;
+
+import Model.Account;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * AccountDAO held entirely in memory. Accounts are kept by Account ID in a sorted concurrent map and by username in
+ * a hash map, which doubles as the unique constraint on usernames. Logins never take a lock.
+ */
+public class InMemoryAccountDAO implements AccountDAO {
+
+    /**
+     * Longest username or password the account table accepts.
+     */
+    static final int MAX_COLUMN_LENGTH = 255;
+
+    private final ConcurrentSkipListMap<Integer, Account> byId = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Account> byUsername = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * DAO implementation to create a new Account in memory.
+     *
+     * @param acc Account to be inserted.
+     * @return Account with its new Account ID if insertion successful, null if not.
+     */
+    @Override
+    public Account insertAccount(Account acc){
+        if(!fits(acc) || byUsername.containsKey(acc.getUsername())){
+            return null;
+        }
+        Account stored = new Account(lastId.incrementAndGet(), acc.getUsername(), acc.getPassword());
+        if(!put(stored)){
+            return null;
+        }
+        return copy(stored);
+    }
+
+    /**
+     * DAO implementation to get an Account by its username and password.
+     *
+     * @param acc Account with username and password fields only.
+     * @return Account with Account ID if the username and password match, null if not.
+     */
+    @Override
+    public Account getAccount(Account acc){
+        if(acc.getUsername() == null){
+            return null;
+        }
+        Account stored = byUsername.get(acc.getUsername());
+        if(stored == null || acc.getPassword() == null || !acc.getPassword().equals(stored.getPassword())){
+            return null;
+        }
+        return copy(stored);
+    }
+
+    /**
+     * DAO implementation to visit every Account in Account ID order.
+     *
+     * @param visitor Called once per Account, in Account ID order.
+     * @return Number of Accounts visited.
+     */
+    @Override
+    public long forEachAccount(Consumer<Account> visitor){
+        long rows = 0;
+        for(Account acc : byId.values()){
+            visitor.accept(copy(acc));
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * DAO implementation to insert many Accounts at once. Accounts with an Account ID above 0 keep it. If any
+     * Account cannot be inserted the ones already inserted are taken out again.
+     *
+     * @param accs Accounts to be inserted.
+     * @return true if every Account was inserted, false if none were.
+     */
+    @Override
+    public boolean insertAccounts(List<Account> accs){
+        List<Account> inserted = new ArrayList<>(accs.size());
+        for(Account acc : accs){
+            int id = acc.getAccount_id() > 0 ? acc.getAccount_id() : lastId.incrementAndGet();
+            Account stored = new Account(id, acc.getUsername(), acc.getPassword());
+            if(!fits(acc) || !put(stored)){
+                for(Account undo : inserted){
+                    byUsername.remove(undo.getUsername(), undo);
+                    byId.remove(undo.getAccount_id(), undo);
+                }
+                return false;
+            }
+            inserted.add(stored);
+        }
+        return true;
+    }
+
+    /**
+     * DAO implementation to move the Account ID sequence past the highest Account ID stored.
+     */
+    @Override
+    public void restartAccountIds(){
+        lastId.set(byId.isEmpty() ? 0 : byId.lastKey());
+    }
+
+    /**
+     * @param accountId Account ID no. to look for.
+     * @return true if an Account with that Account ID exists.
+     */
+    boolean exists(int accountId){
+        return byId.containsKey(accountId);
+    }
+
+    /**
+     * Claims the username, then the Account ID, releasing the username again if the Account ID is taken.
+     */
+    private boolean put(Account stored){
+        if(byUsername.putIfAbsent(stored.getUsername(), stored) != null){
+            return false;
+        }
+        if(byId.putIfAbsent(stored.getAccount_id(), stored) != null){
+            byUsername.remove(stored.getUsername(), stored);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean fits(Account acc){
+        return acc.getUsername() != null && acc.getUsername().length() <= MAX_COLUMN_LENGTH
+                && (acc.getPassword() == null || acc.getPassword().length() <= MAX_COLUMN_LENGTH);
+    }
+
+    private static Account copy(Account acc){
+        return new Account(acc.getAccount_id(), acc.getUsername(), acc.getPassword());
+    }
+}
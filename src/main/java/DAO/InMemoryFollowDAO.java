@@ -0,0 +1,113 @@
+package DAO;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * FollowDAO held entirely in memory as two adjacency maps, follower to followees and followee to followers, each
+ * list a primitive IdIndex so a popular Account's followers cost four bytes apiece.
+ */
+public class InMemoryFollowDAO implements FollowDAO {
+
+    private final InMemoryAccountDAO accounts;
+    private final ConcurrentHashMap<Integer, IdIndex> followees = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, IdIndex> followers = new ConcurrentHashMap<>();
+
+    /**
+     * @param accounts Accounts that both ends of a follow must exist in.
+     */
+    public InMemoryFollowDAO(InMemoryAccountDAO accounts){
+        this.accounts = accounts;
+    }
+
+    /**
+     * DAO implementation to record that one Account follows another.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return true if the follow was inserted, false if it already exists or either Account does not exist.
+     */
+    @Override
+    public boolean insertFollow(int followerId, int followeeId){
+        if(!accounts.exists(followerId) || !accounts.exists(followeeId)){
+            return false;
+        }
+        if(!index(followees, followerId).add(followeeId)){
+            return false;
+        }
+        index(followers, followeeId).add(followerId);
+        return true;
+    }
+
+    /**
+     * DAO implementation to remove a follow between two Accounts.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return true if a follow was removed, false if not.
+     */
+    @Override
+    public boolean deleteFollow(int followerId, int followeeId){
+        IdIndex following = followees.get(followerId);
+        if(following == null || !following.remove(followeeId)){
+            return false;
+        }
+        index(followers, followeeId).remove(followerId);
+        return true;
+    }
+
+    /**
+     * DAO implementation to get the Account IDs of every Account following an Account.
+     *
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return List of follower Account IDs, blank if the Account has no followers.
+     */
+    @Override
+    public List<Integer> getFollowerIds(int followeeId){
+        IdIndex index = followers.get(followeeId);
+        return index == null ? Collections.emptyList() : index.toList();
+    }
+
+    /**
+     * DAO implementation to get the Account IDs of every Account an Account follows.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @return List of followed Account IDs, blank if the Account follows nobody.
+     */
+    @Override
+    public List<Integer> getFolloweeIds(int followerId){
+        IdIndex index = followees.get(followerId);
+        return index == null ? Collections.emptyList() : index.toList();
+    }
+
+    /**
+     * DAO implementation to visit every follow.
+     *
+     * @param visitor Called once per follow with the follower and followee Account IDs.
+     */
+    @Override
+    public void forEachFollow(BiConsumer<Integer, Integer> visitor){
+        for(Map.Entry<Integer, IdIndex> entry : followees.entrySet()){
+            for(int followeeId : entry.getValue().toArray()){
+                visitor.accept(entry.getKey(), followeeId);
+            }
+        }
+    }
+
+    /**
+     * @param followerId Account ID no. of the Account doing the following.
+     * @return Followed Account IDs in ascending order, empty if the Account follows nobody.
+     */
+    int[] followeeIds(int followerId){
+        IdIndex index = followees.get(followerId);
+        return index == null ? new int[0] : index.toArray();
+    }
+
+    private static IdIndex index(ConcurrentHashMap<Integer, IdIndex> map, int id){
+        IdIndex index = map.get(id);
+        return index != null ? index : map.computeIfAbsent(id, k -> new IdIndex());
+    }
+}
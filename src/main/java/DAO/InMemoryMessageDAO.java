@@ -0,0 +1,381 @@
+package DAO;
+
+import Model.Message;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * MessageDAO held entirely in memory. Messages are kept by Message ID in a sorted concurrent map, which serves the
+ * full-table reads in order, and each Account's Message IDs are kept in a primitive IdIndex so per-Account reads
+ * never scan other Accounts' Messages. Single-Message writes are one atomic map operation plus one index update
+ * under that Account's index lock; there is no global lock.
+ */
+public class InMemoryMessageDAO implements MessageDAO {
+
+    /**
+     * Longest message_text the message table accepts.
+     */
+    static final int MAX_TEXT_LENGTH = 255;
+
+    private static final Comparator<Message> NEWEST_FIRST = Comparator
+            .comparingLong(Message::getTime_posted_epoch)
+            .thenComparingInt(Message::getMessage_id)
+            .reversed();
+
+    private final InMemoryAccountDAO accounts;
+    private final InMemoryFollowDAO follows;
+    private final ConcurrentSkipListMap<Integer, Message> byId = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, IdIndex> byAccount = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * @param accounts Accounts that posted_by must exist in.
+     * @param follows Follow graph used to build timelines.
+     */
+    public InMemoryMessageDAO(InMemoryAccountDAO accounts, InMemoryFollowDAO follows){
+        this.accounts = accounts;
+        this.follows = follows;
+    }
+
+    /**
+     * DAO implementation to create a new Message in memory.
+     *
+     * @param msg Message object to be created
+     * @return Message with its new Message ID if insertion successful, null if not.
+     */
+    @Override
+    public Message createMessage(Message msg){
+        if(!fits(msg)){
+            return null;
+        }
+        Message stored = copy(msg, lastId.incrementAndGet());
+        if(!put(stored)){
+            return null;
+        }
+        return copy(stored, stored.getMessage_id());
+    }
+
+    /**
+     * DAO implementation to get all Messages in Message ID order.
+     *
+     * @return List of Message objects, blank if there are none.
+     */
+    @Override
+    public List<Message> getAllMessages(){
+        List<Message> messageList = new ArrayList<>();
+        forEachMessage(messageList::add);
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get a Message by its Message ID.
+     *
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message if retrieval is successful, null if not.
+     */
+    @Override
+    public Message getMessageById(int id){
+        Message stored = byId.get(id);
+        return stored == null ? null : copy(stored, id);
+    }
+
+    /**
+     * DAO implementation to get a Message by its Message ID with the version it is stored at.
+     *
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message with its version if retrieval is successful, null if not.
+     */
+    @Override
+    public Versioned<Message> getVersionedMessageById(int id){
+        Message stored = byId.get(id);
+        return stored == null ? null : new Versioned<>(copy(stored, id), versionOf(stored));
+    }
+
+    /**
+     * DAO implementation to get several Messages by their Message IDs.
+     *
+     * @param ids ID nos. of the Messages to be retrieved.
+     * @return List of those of the Messages that exist with their versions, in no particular order.
+     */
+    @Override
+    public List<Versioned<Message>> getMessagesByIds(List<Integer> ids){
+        List<Versioned<Message>> messageList = new ArrayList<>(ids.size());
+        for(int id : ids){
+            Versioned<Message> stored = getVersionedMessageById(id);
+            if(stored != null){
+                messageList.add(stored);
+            }
+        }
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get the Message IDs of the most recently posted Messages from the top of the sorted
+     * map of Message IDs.
+     *
+     * @param limit Maximum number of Message IDs to return.
+     * @return ID nos. of the most recently posted Messages, highest first.
+     */
+    @Override
+    public List<Integer> getRecentMessageIds(int limit){
+        List<Integer> ids = new ArrayList<>(Math.min(limit, 1024));
+        for(Iterator<Integer> it = byId.descendingKeySet().iterator(); it.hasNext() && ids.size() < limit; ){
+            ids.add(it.next());
+        }
+        return ids;
+    }
+
+    /**
+     * DAO implementation to delete a Message by its Message ID.
+     *
+     * @param id ID no. of the Message to be deleted.
+     * @return The deleted Message if deletion was successful, null if not.
+     */
+    @Override
+    public Message deleteMessage(int id){
+        Message removed = byId.remove(id);
+        if(removed == null){
+            return null;
+        }
+        index(removed.getPosted_by()).remove(id);
+        count.decrement();
+        return copy(removed, id);
+    }
+
+    /**
+     * DAO implementation to update the text of a Message by its Message ID.
+     *
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @return The updated Message if successful, null if not.
+     */
+    @Override
+    public Message updateMessage(Message msg){
+        String text = msg.getMessage_text();
+        if(text != null && text.length() > MAX_TEXT_LENGTH){
+            return null;
+        }
+        Message updated = byId.computeIfPresent(msg.getMessage_id(), (id, stored) ->
+                new Stored(id, stored.getPosted_by(), text, stored.getTime_posted_epoch(), versionOf(stored) + 1));
+        return updated == null ? null : copy(updated, updated.getMessage_id());
+    }
+
+    /**
+     * DAO implementation to update the text of a Message only if it is still stored at the expected version.
+     * The version is part of the stored Message, so checking it and replacing the Message is one map operation.
+     *
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @param expectedVersion Version the caller last read.
+     * @return The updated Message with its new version, null if it does not exist or is at another version.
+     */
+    @Override
+    public Versioned<Message> updateMessage(Message msg, long expectedVersion){
+        String text = msg.getMessage_text();
+        if(text != null && text.length() > MAX_TEXT_LENGTH){
+            return null;
+        }
+        // the map may apply the function more than once; the value it keeps is the last one the function made
+        Message[] replacement = new Message[1];
+        Message updated = byId.computeIfPresent(msg.getMessage_id(), (id, stored) -> {
+            if(versionOf(stored) != expectedVersion){
+                return stored;
+            }
+            replacement[0] = new Stored(id, stored.getPosted_by(), text, stored.getTime_posted_epoch(),
+                    expectedVersion + 1);
+            return replacement[0];
+        });
+        if(updated == null || updated != replacement[0]){
+            return null;
+        }
+        return new Versioned<>(copy(updated, updated.getMessage_id()), expectedVersion + 1);
+    }
+
+    /**
+     * DAO implementation to get every Message an Account has posted, from its index.
+     *
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @return List of the Account's Messages in Message ID order, blank if there are none.
+     */
+    @Override
+    public List<Message> getAllMessagesByAccountId(int accountId){
+        return lookup(indexIds(accountId));
+    }
+
+    /**
+     * DAO implementation to get the newest Messages posted by an Account, newest first.
+     *
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    @Override
+    public List<Message> getRecentMessagesByAccountId(int accountId, int limit){
+        return newest(lookup(indexIds(accountId)), limit);
+    }
+
+    /**
+     * DAO implementation to get the newest Messages posted by every Account that an Account follows, newest first.
+     * Each followee contributes at most its own newest "limit" Messages before they are merged.
+     *
+     * @param followerId Account ID no. of the Account whose timeline is being built.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    @Override
+    public List<Message> getRecentMessagesFollowedBy(int followerId, int limit){
+        List<Message> merged = new ArrayList<>();
+        for(int followeeId : follows.followeeIds(followerId)){
+            merged.addAll(getRecentMessagesByAccountId(followeeId, limit));
+        }
+        return newest(merged, limit);
+    }
+
+    /**
+     * DAO implementation to count every Message.
+     *
+     * @return Number of Messages stored.
+     */
+    @Override
+    public long countMessages(){
+        return count.sum();
+    }
+
+    /**
+     * DAO implementation to count the Messages posted by each Account from the size of each Account's index.
+     *
+     * @return Map of Account ID to Message count, without Accounts that have not posted.
+     */
+    @Override
+    public Map<Integer, Long> countMessagesByAccount(){
+        Map<Integer, Long> counts = new HashMap<>();
+        for(Map.Entry<Integer, IdIndex> entry : byAccount.entrySet()){
+            int size = entry.getValue().size();
+            if(size > 0){
+                counts.put(entry.getKey(), (long) size);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * DAO implementation to visit every Message in Message ID order.
+     *
+     * @param visitor Called once per Message, in Message ID order.
+     * @return Number of Messages visited.
+     */
+    @Override
+    public long forEachMessage(Consumer<Message> visitor){
+        long rows = 0;
+        for(Message stored : byId.values()){
+            visitor.accept(copy(stored, stored.getMessage_id()));
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * DAO implementation to insert many Messages at once. Messages with a Message ID above 0 keep it. If any
+     * Message cannot be inserted the ones already inserted are taken out again.
+     *
+     * @param msgs Messages to be inserted.
+     * @return true if every Message was inserted, false if none were.
+     */
+    @Override
+    public boolean insertMessages(List<Message> msgs){
+        List<Message> inserted = new ArrayList<>(msgs.size());
+        for(Message msg : msgs){
+            int id = msg.getMessage_id() > 0 ? msg.getMessage_id() : lastId.incrementAndGet();
+            Message stored = copy(msg, id);
+            if(!fits(msg) || !put(stored)){
+                for(Message undo : inserted){
+                    deleteMessage(undo.getMessage_id());
+                }
+                return false;
+            }
+            inserted.add(stored);
+        }
+        return true;
+    }
+
+    /**
+     * DAO implementation to move the Message ID sequence past the highest Message ID stored.
+     */
+    @Override
+    public void restartMessageIds(){
+        lastId.set(byId.isEmpty() ? 0 : byId.lastKey());
+    }
+
+    private boolean put(Message stored){
+        if(byId.putIfAbsent(stored.getMessage_id(), stored) != null){
+            return false;
+        }
+        index(stored.getPosted_by()).add(stored.getMessage_id());
+        count.increment();
+        return true;
+    }
+
+    private boolean fits(Message msg){
+        return accounts.exists(msg.getPosted_by())
+                && (msg.getMessage_text() == null || msg.getMessage_text().length() <= MAX_TEXT_LENGTH);
+    }
+
+    private int[] indexIds(int accountId){
+        IdIndex index = byAccount.get(accountId);
+        return index == null ? new int[0] : index.toArray();
+    }
+
+    private IdIndex index(int accountId){
+        IdIndex index = byAccount.get(accountId);
+        return index != null ? index : byAccount.computeIfAbsent(accountId, id -> new IdIndex());
+    }
+
+    /**
+     * @return Copies of the Messages with the given IDs, skipping any deleted since the IDs were read.
+     */
+    private List<Message> lookup(int[] ids){
+        List<Message> messageList = new ArrayList<>(ids.length);
+        for(int id : ids){
+            Message stored = byId.get(id);
+            if(stored != null){
+                messageList.add(copy(stored, id));
+            }
+        }
+        return messageList;
+    }
+
+    private static List<Message> newest(List<Message> messageList, int limit){
+        messageList.sort(NEWEST_FIRST);
+        return messageList.size() > limit ? new ArrayList<>(messageList.subList(0, limit)) : messageList;
+    }
+
+    private static Message copy(Message msg, int id){
+        return new Message(id, msg.getPosted_by(), msg.getMessage_text(), msg.getTime_posted_epoch());
+    }
+
+    private static long versionOf(Message stored){
+        return stored instanceof Stored ? ((Stored) stored).version : 0;
+    }
+
+    /**
+     * A Message that has been updated, kept with its version. Messages never updated are stored as they were
+     * created and are at version 0. Never handed out; callers get copies.
+     */
+    private static final class Stored extends Message {
+        final long version;
+
+        Stored(int id, int postedBy, String text, long timePostedEpoch, long version){
+            super(id, postedBy, text, timePostedEpoch);
+            this.version = version;
+        }
+    }
+}
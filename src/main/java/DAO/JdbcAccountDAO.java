@@ -0,0 +1,270 @@
+package DAO;
+
+import Util.ConnectionUtil;
+import Util.ErrorLog;
+import Model.Account;
+import java.sql.*;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * AccountDAO backed by the account table of a JDBC database, by default the one in ConnectionUtil.
+ */
+public class JdbcAccountDAO implements AccountDAO {
+
+    private final DataSource dataSource;
+
+    /**
+     * No-args constructor for a DAO on the database in ConnectionUtil.
+     */
+    public JdbcAccountDAO(){
+        this(ConnectionUtil.getDataSource());
+    }
+
+    /**
+     * Constructor for a DAO on a specific database, such as a read replica.
+     *
+     * @param dataSource Where connections are taken from. They are closed after every call.
+     */
+    public JdbcAccountDAO(DataSource dataSource){
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * DAO implementation to create a new Account in database.
+     * 
+     * @param acc Account to be inserted in database.
+     * @return Account if insertion successful, null if not.
+     */
+    @Override
+    public Account insertAccount(Account acc){
+        try(QueryEvent query = QueryEvent.begin("JdbcAccountDAO.insertAccount");
+                Connection conn = query.connect(dataSource)){
+            String sql = "INSERT INTO account (username, password) VALUES (?, ?);";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql), Statement.RETURN_GENERATED_KEYS);
+
+            ps.setString(1, acc.getUsername());
+            ps.setString(2, acc.getPassword());
+            query.params(acc.getUsername(), QueryEvent.secret(acc.getPassword()));
+
+            query.rows(ps.executeUpdate());
+
+            ResultSet rs = ps.getGeneratedKeys();
+
+            if(rs.next()){
+                return new Account(rs.getInt(1), 
+                acc.getUsername(), 
+                acc.getPassword());
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.insertAccount", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * DAO implementation to get an Account in database by its username and password.
+     * @param acc Account with username and password fields only.
+     * @return Account with Account ID if successful, null if not.
+     */
+    @Override
+    public Account getAccount(Account acc){
+        try(QueryEvent query = QueryEvent.begin("JdbcAccountDAO.getAccount");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM account WHERE username = ? AND password = ?;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+
+            ps.setString(1, acc.getUsername());
+            ps.setString(2, acc.getPassword());
+            query.params(acc.getUsername(), QueryEvent.secret(acc.getPassword()));
+
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                query.rows(1);
+                return new Account(rs.getInt(1), 
+                rs.getString(2), 
+                rs.getString(3));
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.getAccount", e);
+        }
+        return null;
+    }
+
+    /**
+     * DAO implementation to visit every Account in database in Account ID order without holding them all in memory.
+     * Rows are read with a forward-only, read-only cursor fetched in batches.
+     * 
+     * @param visitor Called once per Account, in Account ID order.
+     * @return Number of Accounts visited.
+     */
+    @Override
+    public long forEachAccount(Consumer<Account> visitor){
+        long rows = 0;
+        try(QueryEvent query = QueryEvent.begin("JdbcAccountDAO.forEachAccount");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM account ORDER BY account_id;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql), ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(JdbcMessageDAO.STREAM_FETCH_SIZE);
+            ResultSet rs = ps.executeQuery();
+
+            while(rs.next()){
+                visitor.accept(new Account(rs.getInt(1), 
+                rs.getString(2), 
+                rs.getString(3)));
+                rows++;
+            }
+            query.rows(rows);
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.forEachAccount", e);
+        }
+        return rows;
+    }
+
+    /**
+     * DAO implementation to insert many Accounts in one transaction using JDBC batches. Accounts with an Account ID
+     * above 0 keep it; the rest are given one by the database. Either every Account is inserted or none is.
+     * 
+     * @param accs Accounts to be inserted.
+     * @return true if the whole batch was committed, false if it was rolled back.
+     */
+    @Override
+    public boolean insertAccounts(List<Account> accs){
+        QueryEvent query = QueryEvent.begin("JdbcAccountDAO.insertAccounts");
+        Connection conn = connect(query);
+        if(conn == null){
+            query.close();
+            return false;
+        }
+        try{
+            conn.setAutoCommit(false);
+            PreparedStatement withId = conn.prepareStatement(query.sql(
+                    "INSERT INTO account (account_id, username, password) VALUES (?, ?, ?);"));
+            PreparedStatement withoutId = conn.prepareStatement(query.sql(
+                    "INSERT INTO account (username, password) VALUES (?, ?);"));
+            for(Account acc : accs){
+                PreparedStatement ps = acc.getAccount_id() > 0 ? withId : withoutId;
+                int i = 1;
+                if(ps == withId){
+                    ps.setInt(i++, acc.getAccount_id());
+                }
+                ps.setString(i++, acc.getUsername());
+                ps.setString(i, acc.getPassword());
+                ps.addBatch();
+            }
+            withId.executeBatch();
+            withoutId.executeBatch();
+            conn.commit();
+            query.rows(accs.size());
+            return true;
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.insertAccounts", e);
+            ConnectionUtil.rollbackQuietly(conn);
+        } finally {
+            ConnectionUtil.closeQuietly(conn);
+            query.close();
+        }
+        return false;
+    }
+
+    /**
+     * DAO implementation to move the Account ID sequence past the highest Account ID in database, needed after
+     * Accounts were inserted with their own Account IDs.
+     */
+    @Override
+    public void restartAccountIds(){
+        try(QueryEvent query = QueryEvent.begin("JdbcAccountDAO.restartAccountIds");
+                Connection conn = query.connect(dataSource)){
+            ResultSet rs = conn.prepareStatement(query.sql("SELECT COALESCE(MAX(account_id), 0) + 1 FROM account;"))
+                    .executeQuery();
+            rs.next();
+            conn.prepareStatement(
+                    query.sql("ALTER TABLE account ALTER COLUMN account_id RESTART WITH " + rs.getInt(1) + ";"))
+                    .executeUpdate();
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.restartAccountIds", e);
+        }
+    }
+
+    /**
+     * DAO implementation to check that an Account ID is in use, for stores that cannot rely on a foreign key.
+     *
+     * @param accountId Account ID no. to look for.
+     * @return true if an Account with that Account ID exists, false if not or the query failed.
+     */
+    boolean exists(int accountId){
+        try(QueryEvent query = QueryEvent.begin("JdbcAccountDAO.exists");
+                Connection conn = query.connect(dataSource)){
+            PreparedStatement ps = conn.prepareStatement(query.sql("SELECT 1 FROM account WHERE account_id = ?;"));
+            ps.setInt(1, accountId);
+            query.params(accountId);
+            return ps.executeQuery().next();
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.exists", e);
+        }
+        return false;
+    }
+
+    /**
+     * DAO implementation to get the highest Account ID in database.
+     *
+     * @return Highest Account ID, 0 if there are no Accounts or the query failed.
+     */
+    int getMaxAccountId(){
+        try(QueryEvent query = QueryEvent.begin("JdbcAccountDAO.getMaxAccountId");
+                Connection conn = query.connect(dataSource)){
+            ResultSet rs = conn.prepareStatement(query.sql("SELECT COALESCE(MAX(account_id), 0) FROM account;"))
+                    .executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.getMaxAccountId", e);
+        }
+        return 0;
+    }
+
+    /**
+     * DAO implementation to get every Account with an Account ID above a given one, e.g. the rows a batch insert
+     * just added.
+     *
+     * @param id Account ID no. to start after.
+     * @return List of Accounts in Account ID order, blank if there are none.
+     */
+    List<Account> getAccountsAbove(int id){
+        List<Account> accountList = new ArrayList<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcAccountDAO.getAccountsAbove");
+                Connection conn = query.connect(dataSource)){
+            PreparedStatement ps = conn.prepareStatement(
+                    query.sql("SELECT * FROM account WHERE account_id > ? ORDER BY account_id;"));
+            ps.setInt(1, id);
+            query.params(id);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                accountList.add(new Account(rs.getInt(1), 
+                rs.getString(2), 
+                rs.getString(3)));
+            }
+            query.rows(accountList.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.getAccountsAbove", e);
+        }
+        return accountList;
+    }
+
+    /**
+     * @param query Event of the call, which records how long the connection took.
+     * @return A connection from this DAO's data source, null if none could be opened.
+     */
+    private Connection connect(QueryEvent query){
+        try{
+            return query.connect(dataSource);
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcAccountDAO.connect", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package DAO;
+
+import Util.ConnectionUtil;
+import Util.ErrorLog;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.sql.*;
+import javax.sql.DataSource;
+import java.util.function.BiConsumer;
+
+/**
+ * FollowDAO backed by the follow table of a JDBC database, by default the one in ConnectionUtil.
+ */
+public class JdbcFollowDAO implements FollowDAO {
+
+    private final DataSource dataSource;
+
+    /**
+     * No-args constructor for a DAO on the database in ConnectionUtil.
+     */
+    public JdbcFollowDAO(){
+        this(ConnectionUtil.getDataSource());
+    }
+
+    /**
+     * Constructor for a DAO on a specific database, such as a read replica.
+     *
+     * @param dataSource Where connections are taken from. They are closed after every call.
+     */
+    public JdbcFollowDAO(DataSource dataSource){
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * DAO implementation to record that one Account follows another.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return true if the follow was inserted, false if it already exists or either Account does not exist.
+     */
+    @Override
+    public boolean insertFollow(int followerId, int followeeId){
+        try(Connection conn = dataSource.getConnection()){
+            String sql = "INSERT INTO follow (follower_id, followee_id) VALUES (?, ?);";
+            PreparedStatement ps = conn.prepareStatement(sql);
+
+            ps.setInt(1, followerId);
+            ps.setInt(2, followeeId);
+
+            return ps.executeUpdate() > 0;
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcFollowDAO.insertFollow", e);
+        }
+        return false;
+    }
+
+    /**
+     * DAO implementation to remove a follow between two Accounts.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return true if a follow was removed, false if not.
+     */
+    @Override
+    public boolean deleteFollow(int followerId, int followeeId){
+        try(Connection conn = dataSource.getConnection()){
+            String sql = "DELETE FROM follow WHERE follower_id = ? AND followee_id = ?;";
+            PreparedStatement ps = conn.prepareStatement(sql);
+
+            ps.setInt(1, followerId);
+            ps.setInt(2, followeeId);
+
+            return ps.executeUpdate() > 0;
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcFollowDAO.deleteFollow", e);
+        }
+        return false;
+    }
+
+    /**
+     * DAO implementation to get the Account IDs of every follower of an Account.
+     *
+     * @param followeeId Account ID no. of the Account being followed.
+     * @return List of follower Account IDs, blank if the Account has no followers.
+     */
+    @Override
+    public List<Integer> getFollowerIds(int followeeId){
+        return getIds("SELECT follower_id FROM follow WHERE followee_id = ?;", followeeId);
+    }
+
+    /**
+     * DAO implementation to get the Account IDs of every Account that an Account follows.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @return List of followed Account IDs, blank if the Account follows nobody.
+     */
+    @Override
+    public List<Integer> getFolloweeIds(int followerId){
+        return getIds("SELECT followee_id FROM follow WHERE follower_id = ?;", followerId);
+    }
+
+    /**
+     * DAO implementation to visit every follow in database.
+     *
+     * @param visitor Called once per follow with the follower and followee Account IDs.
+     */
+    @Override
+    public void forEachFollow(BiConsumer<Integer, Integer> visitor){
+        try(Connection conn = dataSource.getConnection()){
+            String sql = "SELECT follower_id, followee_id FROM follow;";
+            PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(JdbcMessageDAO.STREAM_FETCH_SIZE);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                visitor.accept(rs.getInt(1), rs.getInt(2));
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcFollowDAO.forEachFollow", e);
+        }
+    }
+
+    /**
+     * Runs a single-column ID query with one int parameter.
+     *
+     * @param sql Query selecting a single int column.
+     * @param id Value bound to the query's only parameter.
+     * @return List of IDs, blank if there are none.
+     */
+    private List<Integer> getIds(String sql, int id){
+        List<Integer> ids = new ArrayList<>();
+        try(Connection conn = dataSource.getConnection()){
+            PreparedStatement ps = conn.prepareStatement(sql);
+
+            ps.setInt(1, id);
+
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                ids.add(rs.getInt(1));
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcFollowDAO.getIds", e);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,698 @@
+package DAO;
+
+import Util.ConnectionUtil;
+import Util.ErrorLog;
+import Model.Message;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.function.Consumer;
+import java.sql.*;
+import javax.sql.DataSource;
+
+/**
+ * MessageDAO backed by the message table of a JDBC database, by default the one in ConnectionUtil.
+ */
+public class JdbcMessageDAO implements MessageDAO {
+
+    /**
+     * Rows fetched per round trip when streaming the whole table.
+     */
+    static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    /**
+     * No-args constructor for a DAO on the database in ConnectionUtil.
+     */
+    public JdbcMessageDAO(){
+        this(ConnectionUtil.getDataSource());
+    }
+
+    /**
+     * Constructor for a DAO on a specific database, such as a read replica.
+     *
+     * @param dataSource Where connections are taken from. They are closed after every call.
+     */
+    public JdbcMessageDAO(DataSource dataSource){
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * DAO implementation to create a new Message in database.
+     * 
+     * @param msg Message object to be created
+     * @return Message if insertion successful, null if not.
+     */
+    @Override
+    public Message createMessage(Message msg){
+        return createMessage(msg, created -> {});
+    }
+
+    /**
+     * Creates a new Message in its own transaction, calling back with it before the transaction commits.
+     * 
+     * @param msg Message object to be created
+     * @param beforeCommit Given the new Message, with its Message ID, while no other connection can see it yet.
+     * @return Message if insertion successful, null if not.
+     */
+    Message createMessage(Message msg, Consumer<Message> beforeCommit){
+        QueryEvent query = QueryEvent.begin("JdbcMessageDAO.createMessage");
+        Connection conn = connect(query);
+        if(conn == null){
+            query.close();
+            return null;
+        }
+        try{
+            conn.setAutoCommit(false);
+            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql), Statement.RETURN_GENERATED_KEYS);
+
+            ps.setInt(1, msg.getPosted_by());
+            ps.setString(2, msg.getMessage_text());
+            ps.setLong(3, msg.getTime_posted_epoch());
+            query.params(msg.getPosted_by(), msg.getMessage_text(), msg.getTime_posted_epoch());
+
+            query.rows(ps.executeUpdate());
+            ResultSet rs = ps.getGeneratedKeys();
+
+            if(rs.next()){
+                Message created = new Message(rs.getInt("message_id"), 
+                msg.getPosted_by(), 
+                msg.getMessage_text(), 
+                msg.getTime_posted_epoch());
+                beforeCommit.accept(created);
+                conn.commit();
+                return created;
+            }
+            conn.rollback();
+        } catch (SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.createMessage", e);
+            ConnectionUtil.rollbackQuietly(conn);
+        } finally {
+            ConnectionUtil.closeQuietly(conn);
+            query.close();
+        }
+        return null;
+    }
+
+    /**
+     * DAO implementation to get all Message objects in database.
+     * 
+     * @return List of Message objects, blank if no Message objects are in database.
+     */
+    @Override
+    public List<Message> getAllMessages(){
+        List<Message> messageList = new ArrayList<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getAllMessages");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM message;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ResultSet rs = ps.executeQuery();
+
+            while(rs.next()){
+                Message msg = new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4));
+
+                messageList.add(msg);
+            }
+            query.rows(messageList.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getAllMessages", e);
+        }
+        
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get a Message by its Message ID.
+     * 
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message if retrieval is successful, null if not.
+     */
+    @Override
+    public Message getMessageById(int id){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getMessageById");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM message WHERE message_id = ?;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+
+            ps.setInt(1, id);
+            query.params(id);
+
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                query.rows(1);
+                Message msg = new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4));
+                return msg;
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getMessageById", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * DAO implementation to get a Message by its Message ID together with its version column.
+     * 
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message with its version if retrieval is successful, null if not.
+     */
+    @Override
+    public Versioned<Message> getVersionedMessageById(int id){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getVersionedMessageById");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM message WHERE message_id = ?;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ps.setInt(1, id);
+            query.params(id);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                query.rows(1);
+                return versioned(rs);
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getVersionedMessageById", e);
+        }
+        return null;
+    }
+
+    /**
+     * DAO implementation to get several Messages by their Message IDs in one query. The IDs are bound as one array
+     * parameter, so the statement is the same for any number of them and H2 looks each up in the primary key.
+     *
+     * @param ids ID nos. of the Messages to be retrieved.
+     * @return List of those of the Messages that exist with their versions, in no particular order.
+     */
+    @Override
+    public List<Versioned<Message>> getMessagesByIds(List<Integer> ids){
+        List<Versioned<Message>> messageList = new ArrayList<>();
+        if(ids.isEmpty()){
+            return messageList;
+        }
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getMessagesByIds");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM message WHERE message_id = ANY(?);";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ps.setArray(1, conn.createArrayOf("INTEGER", ids.toArray()));
+            query.params((Object) ids.toArray());
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                messageList.add(versioned(rs));
+            }
+            query.rows(messageList.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getMessagesByIds", e);
+        }
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get the Message IDs of the most recently posted Messages, read from the primary key
+     * index alone.
+     *
+     * @param limit Maximum number of Message IDs to return.
+     * @return ID nos. of the most recently posted Messages, highest first.
+     */
+    @Override
+    public List<Integer> getRecentMessageIds(int limit){
+        List<Integer> ids = new ArrayList<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getRecentMessageIds");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT message_id FROM message ORDER BY message_id DESC LIMIT ?;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ps.setInt(1, limit);
+            query.params(limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                ids.add(rs.getInt("message_id"));
+            }
+            query.rows(ids.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getRecentMessageIds", e);
+        }
+        return ids;
+    }
+
+    /**
+     * DAO implementation to delete a Message by its Message ID. The deleted row is read back by the delete
+     * statement itself, so the call holds one connection.
+     * 
+     * @param id ID no. of the Message to be deleted.
+     * @return Message if deletion was successful, null if not.
+     */
+    @Override
+    public Message deleteMessage(int id){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.deleteMessage");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?);";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+
+            ps.setInt(1, id);
+            query.params(id);
+
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                query.rows(1);
+                return new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4));
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.deleteMessage", e);
+        }
+
+
+        return null;
+    }
+
+    /**
+     * DAO implementation to update a Message by its Message ID. The updated row is read back by the update
+     * statement itself, so the call holds one connection.
+     * 
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @return Message object if successful, null if not.
+     */
+    @Override
+    public Message updateMessage(Message msg){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.updateMessage");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ?, version = version + 1 " +
+                    "WHERE message_id = ?);";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+
+            ps.setString(1, msg.getMessage_text());
+            ps.setInt(2, msg.getMessage_id());
+            query.params(msg.getMessage_text(), msg.getMessage_id());
+
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                query.rows(1);
+                return new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4));
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.updateMessage", e);
+        }
+        return null;
+    }
+
+    /**
+     * DAO implementation to update the text of a Message only if its version column still holds the expected
+     * version. The check, the update and reading the updated row back are one statement, so no other update can
+     * come in between.
+     * 
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @param expectedVersion Version the caller last read.
+     * @return The updated Message with its new version, null if it does not exist or is at another version.
+     */
+    @Override
+    public Versioned<Message> updateMessage(Message msg, long expectedVersion){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.updateMessageIfVersion");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ?, version = version + 1 " +
+                    "WHERE message_id = ? AND version = ?);";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ps.setString(1, msg.getMessage_text());
+            ps.setInt(2, msg.getMessage_id());
+            ps.setLong(3, expectedVersion);
+            query.params(msg.getMessage_text(), msg.getMessage_id(), expectedVersion);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                query.rows(1);
+                return versioned(rs);
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.updateMessageIfVersion", e);
+        }
+        return null;
+    }
+
+    /**
+     * DAO implementation to get List of Message objects from database by their Account ID.
+     * 
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @return List of Messages if successful, null if not.
+     */
+    @Override
+    public List<Message> getAllMessagesByAccountId(int accountId){
+        List<Message> messageList = new ArrayList<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getAllMessagesByAccountId");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM message WHERE posted_by = ?;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+
+            ps.setInt(1, accountId);
+            query.params(accountId);
+
+            ResultSet rs = ps.executeQuery();
+
+            while(rs.next()){
+                Message msg = new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4));
+
+                messageList.add(msg);
+            }
+            query.rows(messageList.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getAllMessagesByAccountId", e);
+        }
+        
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get the newest Messages posted by an Account, newest first.
+     *
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    @Override
+    public List<Message> getRecentMessagesByAccountId(int accountId, int limit){
+        String sql = "SELECT * FROM message WHERE posted_by = ? " +
+                "ORDER BY time_posted_epoch DESC, message_id DESC LIMIT ?;";
+        return getRecentMessages(sql, accountId, limit);
+    }
+
+    /**
+     * DAO implementation to get the newest Messages posted by every Account that an Account follows, newest first.
+     * Used to rebuild a home timeline that is not held in memory.
+     *
+     * @param followerId Account ID no. of the Account whose timeline is being built.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    @Override
+    public List<Message> getRecentMessagesFollowedBy(int followerId, int limit){
+        String sql = "SELECT m.* FROM message m JOIN follow f ON m.posted_by = f.followee_id " +
+                "WHERE f.follower_id = ? ORDER BY m.time_posted_epoch DESC, m.message_id DESC LIMIT ?;";
+        return getRecentMessages(sql, followerId, limit);
+    }
+
+    /**
+     * Runs a Message query that takes an Account ID and a row limit.
+     *
+     * @param sql Query selecting full Message rows.
+     * @param accountId Value bound to the first parameter.
+     * @param limit Value bound to the second parameter.
+     * @return List of Messages in query order, blank if there are none.
+     */
+    private List<Message> getRecentMessages(String sql, int accountId, int limit){
+        List<Message> messageList = new ArrayList<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getRecentMessages");
+                Connection conn = query.connect(dataSource)){
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+
+            ps.setInt(1, accountId);
+            ps.setInt(2, limit);
+            query.params(accountId, limit);
+
+            ResultSet rs = ps.executeQuery();
+
+            while(rs.next()){
+                Message msg = new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4));
+
+                messageList.add(msg);
+            }
+            query.rows(messageList.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getRecentMessages", e);
+        }
+
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to count every Message in database.
+     * 
+     * @return Number of Messages, 0 if the count failed.
+     */
+    @Override
+    public long countMessages(){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.countMessages");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT COUNT(*) FROM message;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                return rs.getLong(1);
+            }
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.countMessages", e);
+        }
+        return 0;
+    }
+
+    /**
+     * DAO implementation to count the Messages posted by each Account.
+     * 
+     * @return Map of Account ID to Message count, without Accounts that have not posted; null if the query failed,
+     *         so that a failure is not taken for an empty table.
+     */
+    @Override
+    public Map<Integer, Long> countMessagesByAccount(){
+        Map<Integer, Long> counts = new HashMap<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.countMessagesByAccount");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT posted_by, COUNT(*) FROM message GROUP BY posted_by;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                counts.put(rs.getInt(1), rs.getLong(2));
+            }
+            query.rows(counts.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.countMessagesByAccount", e);
+            return null;
+        }
+        return counts;
+    }
+
+    /**
+     * DAO implementation to visit every Message in database in Message ID order without holding them all in memory.
+     * Rows are read with a forward-only, read-only cursor fetched in batches.
+     * 
+     * @param visitor Called once per Message, in Message ID order.
+     * @return Number of Messages visited.
+     */
+    @Override
+    public long forEachMessage(Consumer<Message> visitor){
+        long rows = 0;
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.forEachMessage");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM message ORDER BY message_id;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql), ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ResultSet rs = ps.executeQuery();
+
+            while(rs.next()){
+                visitor.accept(new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4)));
+                rows++;
+            }
+            query.rows(rows);
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.forEachMessage", e);
+        }
+        return rows;
+    }
+
+    /**
+     * DAO implementation to insert many Messages in one transaction using JDBC batches. Messages with a Message ID
+     * above 0 keep it; the rest are given one by the database. Either every Message is inserted or none is.
+     * 
+     * @param msgs Messages to be inserted.
+     * @return true if the whole batch was committed, false if it was rolled back.
+     */
+    @Override
+    public boolean insertMessages(List<Message> msgs){
+        QueryEvent query = QueryEvent.begin("JdbcMessageDAO.insertMessages");
+        Connection conn = connect(query);
+        if(conn == null){
+            query.close();
+            return false;
+        }
+        try{
+            conn.setAutoCommit(false);
+            PreparedStatement withId = conn.prepareStatement(query.sql("INSERT INTO message " +
+                    "(message_id, posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?, ?);"));
+            PreparedStatement withoutId = conn.prepareStatement(query.sql(
+                    "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);"));
+            for(Message msg : msgs){
+                PreparedStatement ps = msg.getMessage_id() > 0 ? withId : withoutId;
+                int i = 1;
+                if(ps == withId){
+                    ps.setInt(i++, msg.getMessage_id());
+                }
+                ps.setInt(i++, msg.getPosted_by());
+                ps.setString(i++, msg.getMessage_text());
+                ps.setLong(i, msg.getTime_posted_epoch());
+                ps.addBatch();
+            }
+            withId.executeBatch();
+            withoutId.executeBatch();
+            conn.commit();
+            query.rows(msgs.size());
+            return true;
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.insertMessages", e);
+            ConnectionUtil.rollbackQuietly(conn);
+        } finally {
+            ConnectionUtil.closeQuietly(conn);
+            query.close();
+        }
+        return false;
+    }
+
+    /**
+     * DAO implementation to move the Message ID sequence past the highest Message ID in database, needed after
+     * Messages were inserted with their own Message IDs.
+     */
+    @Override
+    public void restartMessageIds(){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.restartMessageIds");
+                Connection conn = query.connect(dataSource)){
+            ResultSet rs = conn.prepareStatement(query.sql("SELECT COALESCE(MAX(message_id), 0) + 1 FROM message;"))
+                    .executeQuery();
+            rs.next();
+            conn.prepareStatement(
+                    query.sql("ALTER TABLE message ALTER COLUMN message_id RESTART WITH " + rs.getInt(1) + ";"))
+                    .executeUpdate();
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.restartMessageIds", e);
+        }
+    }
+
+    /**
+     * DAO implementation to get the highest Message ID in database.
+     *
+     * @return Highest Message ID, 0 if there are no Messages or the query failed.
+     */
+    int getMaxMessageId(){
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getMaxMessageId");
+                Connection conn = query.connect(dataSource)){
+            ResultSet rs = conn.prepareStatement(query.sql("SELECT COALESCE(MAX(message_id), 0) FROM message;"))
+                    .executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getMaxMessageId", e);
+        }
+        return 0;
+    }
+
+    /**
+     * DAO implementation to get every Message with a Message ID above a given one, e.g. the rows a batch insert
+     * just added.
+     *
+     * @param id Message ID no. to start after.
+     * @return List of Messages in Message ID order, blank if there are none.
+     */
+    List<Message> getMessagesAbove(int id){
+        return getMessagesAbove(id, Integer.MAX_VALUE);
+    }
+
+    /**
+     * DAO implementation to get one page of Messages in Message ID order, for walking a table a page at a time.
+     *
+     * @param id Message ID no. to start after.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages in Message ID order, blank if there are none.
+     */
+    List<Message> getMessagesAbove(int id, int limit){
+        List<Message> messageList = new ArrayList<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getMessagesAbove");
+                Connection conn = query.connect(dataSource)){
+            PreparedStatement ps = conn.prepareStatement(
+                    query.sql("SELECT * FROM message WHERE message_id > ? ORDER BY message_id LIMIT ?;"));
+            ps.setInt(1, id);
+            ps.setInt(2, limit);
+            query.params(id, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                messageList.add(new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4)));
+            }
+            query.rows(messageList.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getMessagesAbove", e);
+        }
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get the newest Messages posted by any of several Accounts, newest first. Used where
+     * the follow table is not in the same database as the Messages.
+     *
+     * @param accountIds Account ID nos. of the posters.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    List<Message> getRecentMessagesByAccountIds(List<Integer> accountIds, int limit){
+        List<Message> messageList = new ArrayList<>();
+        try(QueryEvent query = QueryEvent.begin("JdbcMessageDAO.getRecentMessagesByAccountIds");
+                Connection conn = query.connect(dataSource)){
+            String sql = "SELECT * FROM message WHERE posted_by = ANY(?) " +
+                    "ORDER BY time_posted_epoch DESC, message_id DESC LIMIT ?;";
+            PreparedStatement ps = conn.prepareStatement(query.sql(sql));
+            ps.setArray(1, conn.createArrayOf("INTEGER", accountIds.toArray()));
+            ps.setInt(2, limit);
+            query.params(accountIds.toArray(), limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                messageList.add(new Message(rs.getInt(1), 
+                rs.getInt(2), 
+                rs.getString(3), 
+                rs.getLong(4)));
+            }
+            query.rows(messageList.size());
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.getRecentMessagesByAccountIds", e);
+        }
+        return messageList;
+    }
+
+    /**
+     * @param rs Result set positioned on a row of the message table.
+     * @return The row's Message with its version column.
+     */
+    private static Versioned<Message> versioned(ResultSet rs) throws SQLException {
+        return new Versioned<>(new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                rs.getString("message_text"), rs.getLong("time_posted_epoch")), rs.getLong("version"));
+    }
+
+    /**
+     * @param query Event of the call, which records how long the connection took.
+     * @return A connection from this DAO's data source, null if none could be opened.
+     */
+    private Connection connect(QueryEvent query){
+        try{
+            return query.connect(dataSource);
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("JdbcMessageDAO.connect", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,702 @@
+package DAO;
+
+import Model.Message;
+import Util.ErrorLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * MessageDAO that stores Messages as an append-only log of memory-mapped segment files.
+ *
+ * Every write appends one record: a fixed header (type, text length, message_id, posted_by, time_posted_epoch)
+ * followed by the UTF-8 text. An update appends the new version and a delete appends a tombstone, so a write is a
+ * copy into the mapped page cache with no seek and no read. The type byte is written last, so a record cut short by
+ * a crash reads as the end of the log. An in-memory index maps each live Message ID to the segment and offset of
+ * its newest record, and each Account's Message IDs are kept in an IdIndex.
+ *
+ * Opening a directory replays its segments in order to rebuild the indexes. A background task rewrites sealed
+ * segments that are mostly superseded records into the active segment and deletes them.
+ *
+ * Records reach the operating system as soon as they are appended, so they survive the process dying; they are
+ * forced to disk when a segment fills and on close().
+ */
+public class LogMessageDAO implements MessageDAO, AutoCloseable {
+
+    /**
+     * Size of each segment file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Share of a sealed segment that must be superseded records before it is compacted.
+     */
+    static final double COMPACTION_GARBAGE_RATIO = 0.5;
+
+    private static final long COMPACTION_INTERVAL_SECONDS = 10;
+
+    private static final byte PUT = 1;
+    private static final byte TOMBSTONE = 2;
+
+    /**
+     * type(1) + text length(4) + message_id(4) + posted_by(4) + time_posted_epoch(8)
+     */
+    private static final int HEADER_SIZE = 21;
+
+    /**
+     * Longest record: the header plus 255 characters of up to 4 UTF-8 bytes each.
+     */
+    private static final int MAX_RECORD_SIZE = HEADER_SIZE + InMemoryMessageDAO.MAX_TEXT_LENGTH * 4;
+
+    private static final Comparator<Message> NEWEST_FIRST = Comparator
+            .comparingLong(Message::getTime_posted_epoch)
+            .thenComparingInt(Message::getMessage_id)
+            .reversed();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final IntPredicate accountExists;
+    private final FollowDAO follows;
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, Long> index = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, IdIndex> byAccount = new ConcurrentHashMap<>();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService compactor;
+    private final boolean fresh;
+    private volatile Segment active;
+    private int lastId;
+
+    /**
+     * Opens the log in a directory, creating it if needed, and replays any segments already in it.
+     *
+     * @param directory Directory holding the segment files.
+     * @param segmentSize Size of each segment file in bytes.
+     * @param accountExists Tells whether posted_by names an existing Account.
+     * @param follows Follow graph used to build timelines.
+     * @throws IOException if the directory or a segment cannot be read.
+     */
+    public LogMessageDAO(Path directory, int segmentSize, IntPredicate accountExists, FollowDAO follows)
+            throws IOException {
+        if(segmentSize < MAX_RECORD_SIZE){
+            throw new IllegalArgumentException("segment size must fit the largest record");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.accountExists = accountExists;
+        this.follows = follows;
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")){
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.naturalOrder());
+        this.fresh = files.isEmpty();
+        for(Path file : files){
+            replay(map(file, Integer.parseInt(file.getFileName().toString().replace(".log", ""))));
+        }
+        synchronized(writeLock){
+            if(segments.isEmpty()){
+                active = map(segmentFile(1), 1);
+                segments.put(1, active);
+            } else {
+                active = segments.lastEntry().getValue();
+            }
+        }
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "message-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compact,
+                COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * DAO implementation to append a new Message to the log.
+     *
+     * @param msg Message object to be created
+     * @return Message with its new Message ID if insertion successful, null if not.
+     */
+    @Override
+    public Message createMessage(Message msg){
+        if(!fits(msg)){
+            return null;
+        }
+        synchronized(writeLock){
+            do{
+                lastId++;
+            } while(index.containsKey(lastId));
+            Message stored = new Message(lastId, msg.getPosted_by(), msg.getMessage_text(),
+                    msg.getTime_posted_epoch());
+            return put(stored) ? stored : null;
+        }
+    }
+
+    /**
+     * DAO implementation to get all Messages in Message ID order.
+     *
+     * @return List of Message objects, blank if there are none.
+     */
+    @Override
+    public List<Message> getAllMessages(){
+        List<Message> messageList = new ArrayList<>();
+        forEachMessage(messageList::add);
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get a Message by its Message ID from its newest record.
+     *
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message if retrieval is successful, null if not.
+     */
+    @Override
+    public Message getMessageById(int id){
+        Versioned<Message> stored = getVersionedMessageById(id);
+        return stored == null ? null : stored.getValue();
+    }
+
+    /**
+     * DAO implementation to get a Message from its newest record. The version is where that record is in the log:
+     * every write appends a record at a new location, so the location changes whenever the Message is updated.
+     * Compaction moves records too, which also changes the version without changing the Message.
+     *
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message with its version if retrieval is successful, null if not.
+     */
+    @Override
+    public Versioned<Message> getVersionedMessageById(int id){
+        while(true){
+            Long location = index.get(id);
+            if(location == null){
+                return null;
+            }
+            Segment segment = segments.get(segmentOf(location));
+            if(segment != null){
+                return new Versioned<>(segment.read(offsetOf(location)), location);
+            }
+            // compacted away since the index was read; the index already points at the copy
+        }
+    }
+
+    /**
+     * DAO implementation to get several Messages by their Message IDs, each from its newest record.
+     *
+     * @param ids ID nos. of the Messages to be retrieved.
+     * @return List of those of the Messages that exist with their versions, in no particular order.
+     */
+    @Override
+    public List<Versioned<Message>> getMessagesByIds(List<Integer> ids){
+        List<Versioned<Message>> messageList = new ArrayList<>(ids.size());
+        for(int id : ids){
+            Versioned<Message> stored = getVersionedMessageById(id);
+            if(stored != null){
+                messageList.add(stored);
+            }
+        }
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get the Message IDs of the most recently posted Messages from the top of the index of
+     * Message IDs.
+     *
+     * @param limit Maximum number of Message IDs to return.
+     * @return ID nos. of the most recently posted Messages, highest first.
+     */
+    @Override
+    public List<Integer> getRecentMessageIds(int limit){
+        List<Integer> ids = new ArrayList<>(Math.min(limit, 1024));
+        for(Iterator<Integer> it = index.descendingKeySet().iterator(); it.hasNext() && ids.size() < limit; ){
+            ids.add(it.next());
+        }
+        return ids;
+    }
+
+    /**
+     * DAO implementation to delete a Message by appending a tombstone for it.
+     *
+     * @param id ID no. of the Message to be deleted.
+     * @return The deleted Message if deletion was successful, null if not.
+     */
+    @Override
+    public Message deleteMessage(int id){
+        synchronized(writeLock){
+            Message existing = getMessageById(id);
+            if(existing == null || append(encode(TOMBSTONE, existing)) < 0){
+                return null;
+            }
+            supersede(index.remove(id));
+            active.garbage += recordSize(existing);
+            index(existing.getPosted_by()).remove(id);
+            count.decrement();
+            return existing;
+        }
+    }
+
+    /**
+     * DAO implementation to update the text of a Message by appending its new version.
+     *
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @return The updated Message if successful, null if not.
+     */
+    @Override
+    public Message updateMessage(Message msg){
+        Versioned<Message> updated = update(msg, false, 0);
+        return updated == null ? null : updated.getValue();
+    }
+
+    /**
+     * DAO implementation to update the text of a Message only if its newest record is still at the expected
+     * location, checked under the write lock.
+     *
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @param expectedVersion Version the caller last read.
+     * @return The updated Message with its new version, null if it does not exist or is at another version.
+     */
+    @Override
+    public Versioned<Message> updateMessage(Message msg, long expectedVersion){
+        return update(msg, true, expectedVersion);
+    }
+
+    private Versioned<Message> update(Message msg, boolean checkVersion, long expectedVersion){
+        String text = msg.getMessage_text();
+        if(text != null && text.length() > InMemoryMessageDAO.MAX_TEXT_LENGTH){
+            return null;
+        }
+        synchronized(writeLock){
+            Versioned<Message> existing = getVersionedMessageById(msg.getMessage_id());
+            if(existing == null || checkVersion && existing.getVersion() != expectedVersion){
+                return null;
+            }
+            Message updated = new Message(existing.getValue().getMessage_id(), existing.getValue().getPosted_by(),
+                    text, existing.getValue().getTime_posted_epoch());
+            long location = append(encode(PUT, updated));
+            if(location < 0){
+                return null;
+            }
+            supersede(index.put(updated.getMessage_id(), location));
+            return new Versioned<>(updated, location);
+        }
+    }
+
+    /**
+     * DAO implementation to get every Message an Account has posted, from its index.
+     *
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @return List of the Account's Messages in Message ID order, blank if there are none.
+     */
+    @Override
+    public List<Message> getAllMessagesByAccountId(int accountId){
+        IdIndex ids = byAccount.get(accountId);
+        return ids == null ? new ArrayList<>() : lookup(ids.toArray());
+    }
+
+    /**
+     * DAO implementation to get the newest Messages posted by an Account, newest first.
+     *
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    @Override
+    public List<Message> getRecentMessagesByAccountId(int accountId, int limit){
+        return newest(getAllMessagesByAccountId(accountId), limit);
+    }
+
+    /**
+     * DAO implementation to get the newest Messages posted by every Account that an Account follows, newest first.
+     *
+     * @param followerId Account ID no. of the Account whose timeline is being built.
+     * @param limit Maximum number of Messages to return.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    @Override
+    public List<Message> getRecentMessagesFollowedBy(int followerId, int limit){
+        List<Message> merged = new ArrayList<>();
+        for(int followeeId : follows.getFolloweeIds(followerId)){
+            merged.addAll(getRecentMessagesByAccountId(followeeId, limit));
+        }
+        return newest(merged, limit);
+    }
+
+    /**
+     * DAO implementation to count every live Message.
+     *
+     * @return Number of Messages stored.
+     */
+    @Override
+    public long countMessages(){
+        return count.sum();
+    }
+
+    /**
+     * DAO implementation to count the Messages posted by each Account from the size of each Account's index.
+     *
+     * @return Map of Account ID to Message count, without Accounts that have not posted.
+     */
+    @Override
+    public Map<Integer, Long> countMessagesByAccount(){
+        Map<Integer, Long> counts = new HashMap<>();
+        for(Map.Entry<Integer, IdIndex> entry : byAccount.entrySet()){
+            int size = entry.getValue().size();
+            if(size > 0){
+                counts.put(entry.getKey(), (long) size);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * DAO implementation to visit every live Message in Message ID order.
+     *
+     * @param visitor Called once per Message, in Message ID order.
+     * @return Number of Messages visited.
+     */
+    @Override
+    public long forEachMessage(Consumer<Message> visitor){
+        long rows = 0;
+        for(Integer id : index.keySet()){
+            Message msg = getMessageById(id);
+            if(msg != null){
+                visitor.accept(msg);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * DAO implementation to append many Messages at once. Messages with a Message ID above 0 keep it. Every
+     * Message is checked before any is appended, so either all are inserted or none is.
+     *
+     * @param msgs Messages to be inserted.
+     * @return true if every Message was inserted, false if none were.
+     */
+    @Override
+    public boolean insertMessages(List<Message> msgs){
+        synchronized(writeLock){
+            int nextId = lastId;
+            List<Message> stored = new ArrayList<>(msgs.size());
+            Set<Integer> ids = new HashSet<>();
+            for(Message msg : msgs){
+                int id = msg.getMessage_id() > 0 ? msg.getMessage_id() : ++nextId;
+                if(!fits(msg) || index.containsKey(id) || !ids.add(id)){
+                    return false;
+                }
+                stored.add(new Message(id, msg.getPosted_by(), msg.getMessage_text(), msg.getTime_posted_epoch()));
+            }
+            for(Message msg : stored){
+                if(!put(msg)){
+                    return false;
+                }
+            }
+            lastId = nextId;
+            return true;
+        }
+    }
+
+    /**
+     * DAO implementation to move the Message ID sequence past the highest Message ID stored.
+     */
+    @Override
+    public void restartMessageIds(){
+        synchronized(writeLock){
+            lastId = index.isEmpty() ? 0 : index.lastKey();
+        }
+    }
+
+    /**
+     * Rewrites every sealed segment that is mostly superseded records: live records and still-needed tombstones
+     * are appended to the active segment, then the old segment is deleted. Runs in the background every few
+     * seconds; writers are only held up for one record at a time.
+     */
+    public void compact(){
+        for(Segment segment : segments.values()){
+            if(segment != active && segment.garbage >= segment.end * COMPACTION_GARBAGE_RATIO){
+                try{
+                    compact(segment);
+                } catch(IOException e){
+                    ErrorLog.failure("LogMessageDAO.compact", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the directory held no segments when the log was opened.
+     */
+    public boolean isFresh(){
+        return fresh;
+    }
+
+    /**
+     * @return Number of segment files in use.
+     */
+    public int getSegmentCount(){
+        return segments.size();
+    }
+
+    /**
+     * @return Number of segments compacted away since the log was opened.
+     */
+    public long getCompactionCount(){
+        return compactions.sum();
+    }
+
+    /**
+     * Stops compaction and forces the active segment to disk.
+     */
+    @Override
+    public void close(){
+        compactor.shutdownNow();
+        synchronized(writeLock){
+            active.buffer.force();
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        boolean olderSegments = segments.firstKey() < segment.number;
+        int offset = 0;
+        while(offset < segment.end){
+            byte type = segment.buffer.get(offset);
+            Message msg = segment.read(offset);
+            long location = locationOf(segment.number, offset);
+            synchronized(writeLock){
+                Long current = index.get(msg.getMessage_id());
+                if(type == PUT && current != null && current == location){
+                    long copy = append(encode(PUT, msg));
+                    if(copy < 0){
+                        throw new IOException("could not compact segment " + segment.number);
+                    }
+                    index.put(msg.getMessage_id(), copy);
+                } else if(type == TOMBSTONE && olderSegments && current == null){
+                    if(append(encode(TOMBSTONE, msg)) < 0){
+                        throw new IOException("could not compact segment " + segment.number);
+                    }
+                    active.garbage += recordSize(msg);
+                }
+            }
+            offset += recordSize(msg);
+        }
+        segments.remove(segment.number);
+        Files.deleteIfExists(segment.file);
+        compactions.increment();
+    }
+
+    /**
+     * Appends a new Message and indexes it. Caller holds the write lock.
+     */
+    private boolean put(Message msg){
+        long location = append(encode(PUT, msg));
+        if(location < 0){
+            return false;
+        }
+        index.put(msg.getMessage_id(), location);
+        index(msg.getPosted_by()).add(msg.getMessage_id());
+        count.increment();
+        return true;
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new segment if it does not fit. Caller holds the
+     * write lock.
+     *
+     * @return Location of the record, -1 if a new segment could not be created.
+     */
+    private long append(byte[] record){
+        if(active.end + record.length > segmentSize){
+            try{
+                active.buffer.force();
+                Segment next = map(segmentFile(active.number + 1), active.number + 1);
+                segments.put(next.number, next);
+                active = next;
+            } catch(IOException e){
+                ErrorLog.failure("LogMessageDAO.append", e);
+                return -1;
+            }
+        }
+        int offset = active.end;
+        ByteBuffer out = active.buffer.duplicate();
+        out.position(offset + 1);
+        out.put(record, 1, record.length - 1);
+        active.buffer.put(offset, record[0]);
+        active.end += record.length;
+        return locationOf(active.number, offset);
+    }
+
+    /**
+     * Counts a superseded record as garbage in its segment. Caller holds the write lock.
+     */
+    private void supersede(Long location){
+        if(location == null){
+            return;
+        }
+        Segment segment = segments.get(segmentOf(location));
+        if(segment != null){
+            segment.garbage += recordSize(segment.read(offsetOf(location)));
+        }
+    }
+
+    /**
+     * Rebuilds the indexes from one segment. Called from the constructor only.
+     */
+    private void replay(Segment segment){
+        segments.put(segment.number, segment);
+        int offset = 0;
+        while(offset + HEADER_SIZE <= segment.buffer.capacity()){
+            byte type = segment.buffer.get(offset);
+            if(type != PUT && type != TOMBSTONE){
+                break;
+            }
+            Message msg = segment.read(offset);
+            if(type == PUT){
+                supersede(index.put(msg.getMessage_id(), locationOf(segment.number, offset)));
+                if(index(msg.getPosted_by()).add(msg.getMessage_id())){
+                    count.increment();
+                }
+            } else {
+                Long removed = index.remove(msg.getMessage_id());
+                supersede(removed);
+                segment.garbage += recordSize(msg);
+                if(removed != null){
+                    index(msg.getPosted_by()).remove(msg.getMessage_id());
+                    count.decrement();
+                }
+            }
+            lastId = Math.max(lastId, msg.getMessage_id());
+            offset += recordSize(msg);
+        }
+        segment.end = offset;
+    }
+
+    private Segment map(Path file, int number) throws IOException {
+        try(FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            int size = (int) Math.max(segmentSize, channel.size());
+            return new Segment(number, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private Path segmentFile(int number){
+        return directory.resolve(String.format("%08d.log", number));
+    }
+
+    private boolean fits(Message msg){
+        return accountExists.test(msg.getPosted_by()) && (msg.getMessage_text() == null
+                || msg.getMessage_text().length() <= InMemoryMessageDAO.MAX_TEXT_LENGTH);
+    }
+
+    private IdIndex index(int accountId){
+        IdIndex ids = byAccount.get(accountId);
+        return ids != null ? ids : byAccount.computeIfAbsent(accountId, id -> new IdIndex());
+    }
+
+    private List<Message> lookup(int[] ids){
+        List<Message> messageList = new ArrayList<>(ids.length);
+        for(int id : ids){
+            Message msg = getMessageById(id);
+            if(msg != null){
+                messageList.add(msg);
+            }
+        }
+        return messageList;
+    }
+
+    private static List<Message> newest(List<Message> messageList, int limit){
+        messageList.sort(NEWEST_FIRST);
+        return messageList.size() > limit ? new ArrayList<>(messageList.subList(0, limit)) : messageList;
+    }
+
+    private static byte[] encode(byte type, Message msg){
+        byte[] text = msg.getMessage_text() == null ? new byte[0]
+                : msg.getMessage_text().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + text.length);
+        record.put(type);
+        record.putInt(msg.getMessage_text() == null ? -1 : text.length);
+        record.putInt(msg.getMessage_id());
+        record.putInt(msg.getPosted_by());
+        record.putLong(msg.getTime_posted_epoch());
+        record.put(text);
+        return record.array();
+    }
+
+    private static int recordSize(Message msg){
+        return HEADER_SIZE + (msg.getMessage_text() == null ? 0
+                : msg.getMessage_text().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static long locationOf(int segment, int offset){
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location){
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location){
+        return (int) location;
+    }
+
+    /**
+     * One mapped segment file. end and garbage are only changed under the write lock but read by compaction.
+     */
+    private static final class Segment {
+        final int number;
+        final Path file;
+        final MappedByteBuffer buffer;
+        volatile int end;
+        volatile long garbage;
+
+        Segment(int number, Path file, MappedByteBuffer buffer){
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Decodes the record at an offset. Absolute reads and a private duplicate for the text leave the shared
+         * buffer untouched, so any number of readers can run alongside the writer.
+         */
+        Message read(int offset){
+            int length = buffer.getInt(offset + 1);
+            int id = buffer.getInt(offset + 5);
+            int postedBy = buffer.getInt(offset + 9);
+            long epoch = buffer.getLong(offset + 13);
+            String text = null;
+            if(length >= 0){
+                byte[] bytes = new byte[length];
+                ByteBuffer in = buffer.duplicate();
+                in.position(offset + HEADER_SIZE);
+                in.get(bytes);
+                text = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new Message(id, postedBy, text, epoch);
+        }
+    }
+}
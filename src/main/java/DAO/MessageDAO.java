@@ -1,188 +1,126 @@
 package DAO;
 
-import Util.ConnectionUtil;
 import Model.Message;
 
 import java.util.List;
-import java.util.ArrayList;
-import java.sql.*;
+import java.util.Map;
+import java.util.function.Consumer;
 
-public class MessageDAO {
+/**
+ * Storage operations for Messages. Implementations must behave like the message table: Message IDs are assigned
+ * in increasing order, posted_by must name an existing Account and message_text may not exceed 255 characters.
+ * Every Message returned is a fresh object the caller may keep or modify. Every Message has a version that changes
+ * whenever it is updated.
+ */
+public interface MessageDAO {
 
     /**
-     * DAO implementation to create a new Message in database.
-     * 
      * @param msg Message object to be created
-     * @return Message if insertion successful, null if not.
-     */
-    public Message createMessage(Message msg){
-        Connection conn = ConnectionUtil.getConnection();
-        try{
-            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
-            PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
-            ps.setInt(1, msg.getPosted_by());
-            ps.setString(2, msg.getMessage_text());
-            ps.setLong(3, msg.getTime_posted_epoch());
-
-            ps.executeUpdate();
-            ResultSet rs = ps.getGeneratedKeys();
-
-            if(rs.next()){
-                return new Message(rs.getInt("message_id"), 
-                msg.getPosted_by(), 
-                msg.getMessage_text(), 
-                msg.getTime_posted_epoch());
-            }
-        } catch (SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return null;
-    }
-
-    /**
-     * DAO implementation to get all Message objects in database.
-     * 
-     * @return List of Message objects, blank if no Message objects are in database.
-     */
-    public List<Message> getAllMessages(){
-        Connection conn = ConnectionUtil.getConnection();
-        List<Message> messageList = new ArrayList<>();
-        try{
-            String sql = "SELECT * FROM message;";
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ResultSet rs = ps.executeQuery();
-
-            while(rs.next()){
-                Message msg = new Message(rs.getInt(1), 
-                rs.getInt(2), 
-                rs.getString(3), 
-                rs.getLong(4));
-
-                messageList.add(msg);
-            }
-        } catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        
-        return messageList;
-    }
-
-    /**
-     * DAO implementation to get a Message by its Message ID.
-     * 
+     * @return Message with its new Message ID if insertion successful, null if not.
+     */
+    Message createMessage(Message msg);
+
+    /**
+     * @return List of every Message in Message ID order, blank if there are none.
+     */
+    List<Message> getAllMessages();
+
+    /**
      * @param id ID no. for the Message to be retrieved.
      * @return Message if retrieval is successful, null if not.
      */
-    public Message getMessageById(int id){
-        Connection conn = ConnectionUtil.getConnection();
+    Message getMessageById(int id);
 
-        try{
-            String sql = "SELECT * FROM message WHERE message_id = ?;";
-            PreparedStatement ps = conn.prepareStatement(sql);
-
-            ps.setInt(1, id);
+    /**
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message with its current version if retrieval is successful, null if not.
+     */
+    Versioned<Message> getVersionedMessageById(int id);
 
-            ResultSet rs = ps.executeQuery();
-            while(rs.next()){
-                Message msg = new Message(rs.getInt(1), 
-                rs.getInt(2), 
-                rs.getString(3), 
-                rs.getLong(4));
-                return msg;
-            }
-        } catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
+    /**
+     * @param ids ID nos. of the Messages to be retrieved.
+     * @return List of those of the Messages that exist with their versions, in no particular order.
+     */
+    List<Versioned<Message>> getMessagesByIds(List<Integer> ids);
 
-        return null;
-    }
+    /**
+     * @param limit Maximum number of Message IDs to return.
+     * @return ID nos. of the most recently posted Messages, highest first.
+     */
+    List<Integer> getRecentMessageIds(int limit);
 
     /**
-     * DAO implementation to delete a Message by its Message ID.
-     * 
      * @param id ID no. of the Message to be deleted.
-     * @return Message if deletion was successful, null if not.
+     * @return The deleted Message if deletion was successful, null if not.
      */
-    public Message deleteMessage(int id){
-        Connection conn = ConnectionUtil.getConnection();
-        try{
-            Message msgExists = getMessageById(id);
-            if(msgExists != null){
-                String sql = "DELETE FROM message WHERE message_id = ?;";
-                PreparedStatement ps = conn.prepareStatement(sql);
+    Message deleteMessage(int id);
 
-                ps.setInt(1, id);
-
-                int result = ps.executeUpdate();
-                if(result > 0){
-                    return msgExists;
-                }
-            }
-        } catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
+    /**
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @return The updated Message if successful, null if not.
+     */
+    Message updateMessage(Message msg);
 
+    /**
+     * Updates the text of a Message only if it is still at the given version, checking and writing in one step.
+     *
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @param expectedVersion Version the caller last read.
+     * @return The updated Message with its new version, null if the Message does not exist, is at another version
+     *         or the text is invalid.
+     */
+    Versioned<Message> updateMessage(Message msg, long expectedVersion);
 
-        return null;
-    }
+    /**
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @return List of the Account's Messages in Message ID order, blank if there are none.
+     */
+    List<Message> getAllMessagesByAccountId(int accountId);
 
     /**
-     * DAO implementation to update a Message by its Message ID.
-     * 
-     * @param msg Message object with Message ID and Message Text fields only.
-     * @return Message object if successful, null if not.
-     */
-    public Message updateMessage(Message msg){
-        Connection conn = ConnectionUtil.getConnection();
-        try{
-            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?;";
-            PreparedStatement ps = conn.prepareStatement(sql);
-
-            ps.setString(1, msg.getMessage_text());
-            ps.setInt(2, msg.getMessage_id());
-
-            int result = ps.executeUpdate();
-            if(result > 0){
-                Message patchedMsg = getMessageById(msg.getMessage_id());
-                return patchedMsg;
-            }
-        } catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return null;
-    }
-
-    /**
-     * DAO implementation to get List of Message objects from database by their Account ID.
-     * 
      * @param accountId Account ID no. of Message objects to be retrieved.
-     * @return List of Messages if successful, null if not.
-     */
-    public List<Message> getAllMessagesByAccountId(int accountId){
-        Connection conn = ConnectionUtil.getConnection();
-        List<Message> messageList = new ArrayList<>();
-        try{
-            String sql = "SELECT * FROM message WHERE posted_by = ?;";
-            PreparedStatement ps = conn.prepareStatement(sql);
-
-            ps.setInt(1, accountId);
-
-            ResultSet rs = ps.executeQuery();
-
-            while(rs.next()){
-                Message msg = new Message(rs.getInt(1), 
-                rs.getInt(2), 
-                rs.getString(3), 
-                rs.getLong(4));
-
-                messageList.add(msg);
-            }
-        } catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        
-        return messageList;
-    }
-    
+     * @param limit Maximum number of Messages to return.
+     * @return List of the Account's newest Messages, newest first.
+     */
+    List<Message> getRecentMessagesByAccountId(int accountId, int limit);
+
+    /**
+     * @param followerId Account ID no. of the Account whose timeline is being built.
+     * @param limit Maximum number of Messages to return.
+     * @return List of the newest Messages posted by Accounts the follower follows, newest first.
+     */
+    List<Message> getRecentMessagesFollowedBy(int followerId, int limit);
+
+    /**
+     * @return Number of Messages stored.
+     */
+    long countMessages();
+
+    /**
+     * @return Map of Account ID to Message count, without Accounts that have not posted; null if the Messages could
+     *         not be counted.
+     */
+    Map<Integer, Long> countMessagesByAccount();
+
+    /**
+     * Visits every Message in Message ID order without holding them all in memory.
+     *
+     * @param visitor Called once per Message.
+     * @return Number of Messages visited.
+     */
+    long forEachMessage(Consumer<Message> visitor);
+
+    /**
+     * Inserts many Messages at once. Messages with a Message ID above 0 keep it. Either every Message is inserted
+     * or none is.
+     *
+     * @param msgs Messages to be inserted.
+     * @return true if every Message was inserted, false if none were.
+     */
+    boolean insertMessages(List<Message> msgs);
+
+    /**
+     * Moves the Message ID sequence past the highest Message ID stored.
+     */
+    void restartMessageIds();
 }
@@ -0,0 +1,134 @@
+package DAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event for one JDBC DAO call: which method ran, the SQL it sent, how many rows it read or
+ * changed and how long it waited for a pooled connection. Opened as the first resource of the call's
+ * try-with-resources block and closed when that block closes, so its duration covers the whole call.
+ *
+ * When no recording has the event enabled, begin and commit do nothing. Either way the call is timed for the
+ * SlowQueryLog, which is handed the call's last statement and its parameters if it took too long.
+ */
+@Name("socialmedia.Query")
+@Label("DAO Query")
+@Category({"Social Media", "Database"})
+@Description("A JDBC DAO call")
+@StackTrace(false)
+public class QueryEvent extends Event implements AutoCloseable {
+
+    @Label("Method")
+    String method;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Rows")
+    @Description("Rows read or changed")
+    long rows;
+
+    @Label("Connection Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long connectionWait;
+
+    // kept for the slow query log; transient fields are not part of the JFR event
+    private transient String callName;
+    private transient long startNanos;
+    private transient DataSource dataSource;
+    private transient String lastStatement;
+    private transient Object[] params;
+
+    /**
+     * @param method Class and method making the call, e.g. "JdbcMessageDAO.getMessageById".
+     * @return A started event.
+     */
+    static QueryEvent begin(String method){
+        QueryEvent event = new QueryEvent();
+        event.callName = method;
+        event.startNanos = System.nanoTime();
+        if(event.isEnabled()){
+            event.method = method;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Takes a connection, timing how long the pool made the call wait for it.
+     *
+     * @param dataSource Where the connection is taken from.
+     * @return The connection.
+     * @throws SQLException if none could be opened.
+     */
+    Connection connect(DataSource dataSource) throws SQLException {
+        this.dataSource = dataSource;
+        long start = System.nanoTime();
+        try{
+            return dataSource.getConnection();
+        } finally {
+            connectionWait = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Notes a statement the call prepares; a call that prepares several keeps them all, one per line.
+     *
+     * @param statement SQL about to be prepared.
+     * @return The same SQL, so this can wrap the argument to prepareStatement.
+     */
+    String sql(String statement){
+        lastStatement = statement;
+        if(isEnabled()){
+            sql = sql == null ? statement : sql + "\n" + statement;
+        }
+        return statement;
+    }
+
+    /**
+     * Notes the values bound to the last statement, for the slow query log. Wrap a password with secret.
+     *
+     * @param values Parameter values in order.
+     */
+    void params(Object... values){
+        params = values;
+    }
+
+    /**
+     * @param count Rows read or changed by the call so far.
+     */
+    void rows(long count){
+        rows = count;
+    }
+
+    /**
+     * @param value A parameter value that must not appear in the slow query log, such as a password.
+     * @return The value wrapped so that the log shows it as redacted.
+     */
+    static Object secret(Object value){
+        return new SlowQueryLog.Secret(value);
+    }
+
+    /**
+     * Ends and commits the event, and passes the call to the slow query log if it took longer than its threshold.
+     */
+    @Override
+    public void close(){
+        commit();
+        long elapsed = System.nanoTime() - startNanos;
+        SlowQueryLog log = SlowQueryLog.shared();
+        if(elapsed >= log.getThresholdNanos() && lastStatement != null){
+            log.record(callName, lastStatement, params, elapsed, connectionWait, dataSource);
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package DAO;
+
+import Util.ErrorLog;
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+
+/**
+ * A primary database and read replicas of it, each replica a separate in-memory H2 instance.
+ *
+ * Every write made through the replicated DAOs runs on the primary and is then appended to a change log as the
+ * row-level statements (MERGE or DELETE by key) that reproduce it, numbered with a log sequence number (LSN). One
+ * thread per replica applies the log in order, a batch per transaction, and records the highest LSN it has applied.
+ * Only numbering and queueing a write's changes is done under the log lock; the round trip to the primary is not.
+ * Writes to an existing row hold a lock striped by the row's key from before the primary write until their changes
+ * are queued, so two writes to one row are logged in the primary's commit order. Batch inserts, which find the rows
+ * they added by Message or Account ID, exclude every other write.
+ *
+ * A replica whose applier fails stops taking changes and is no longer read from; its backlog is dropped.
+ *
+ * Reads go to a replica that has applied at least the LSN the current request requires, chosen round robin, and to
+ * the primary if none has. A request requires the LSN of its client's last write (see beginRequest), which gives
+ * each client read-your-writes without holding anyone else to the primary.
+ */
+public class ReplicaSet implements AutoCloseable {
+
+    /**
+     * Above this many remembered clients, those whose last write every replica has applied are forgotten.
+     */
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+
+    private static final ThreadLocal<long[]> SESSION = ThreadLocal.withInitial(() -> new long[2]);
+    private static final int REQUIRED = 0;
+    private static final int WRITTEN = 1;
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /**
+     * Number of row locks; writes to rows whose keys share a stripe wait for each other.
+     */
+    private static final int ROW_STRIPES = 64;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Object logLock = new Object();
+    private final ReentrantReadWriteLock batchLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] rowLocks = new ReentrantLock[ROW_STRIPES];
+    private final ConcurrentHashMap<String, Long> clientWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private volatile long lastLsn;
+
+    /**
+     * Creates the replicas, copies the primary into each and starts applying changes to them.
+     *
+     * @param primary The database writes go to.
+     * @param count Number of replicas.
+     * @param poolSize Maximum connections per replica.
+     * @throws SQLException if the primary cannot be copied.
+     */
+    public ReplicaSet(DataSource primary, int count, int poolSize) throws SQLException {
+        this.primary = primary;
+        for(int i = 0; i < ROW_STRIPES; i++){
+            rowLocks[i] = new ReentrantLock();
+        }
+        int instance = INSTANCES.incrementAndGet();
+        batchLock.writeLock().lock();
+        try{
+            List<String> snapshot = snapshot();
+            for(int i = 0; i < count; i++){
+                Replica replica = new Replica("jdbc:h2:mem:replica-" + instance + "-" + i, poolSize, lastLsn);
+                replica.load(snapshot);
+                replicas.add(replica);
+                replica.start();
+            }
+        } finally{
+            batchLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A statement that reproduces part of a write on a replica.
+     */
+    static final class Change {
+        final String sql;
+        final Object[] params;
+
+        Change(String sql, Object... params){
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    /**
+     * @return An unmodifiable list of changes.
+     */
+    static List<Change> changes(Change... changes){
+        return Collections.unmodifiableList(Arrays.asList(changes));
+    }
+
+    /**
+     * Runs a write that only adds new rows on the primary, rows no later write changes, and logs the changes it
+     * made. Nothing is logged if the write made none.
+     *
+     * @param write Runs the write on the primary.
+     * @param changes Turns the result into the changes to replicate, an empty list if the write failed.
+     * @return The result of the write.
+     */
+    <T> T write(Supplier<T> write, Function<T, List<Change>> changes){
+        batchLock.readLock().lock();
+        try{
+            return log(write.get(), changes);
+        } finally{
+            batchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a write to an existing row on the primary and logs the changes it made, holding the row's lock
+     * throughout so no other write to it is logged in between.
+     *
+     * @param key Identifies the row, e.g. its Message ID.
+     * @param write Runs the write on the primary.
+     * @param changes Turns the result into the changes to replicate, an empty list if the write failed.
+     * @return The result of the write.
+     */
+    <T> T write(Object key, Supplier<T> write, Function<T, List<Change>> changes){
+        batchLock.readLock().lock();
+        ReentrantLock row = rowLock(key);
+        row.lock();
+        try{
+            return log(write.get(), changes);
+        } finally{
+            row.unlock();
+            batchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a write that adds a row whose key the primary assigns, such as a new Message ID, and logs the changes
+     * it made. The write hands the key to lock before it commits, and the row's lock is held from then until the
+     * changes are logged, so a write to the new row, which can only find it once committed, is logged after it.
+     *
+     * @param write Runs the write on the primary, passing the new row's key to the given callback before commit.
+     * @param changes Turns the result into the changes to replicate, an empty list if the write failed.
+     * @return The result of the write.
+     */
+    <T> T writeNew(Function<Consumer<Object>, T> write, Function<T, List<Change>> changes){
+        batchLock.readLock().lock();
+        ReentrantLock[] row = new ReentrantLock[1];
+        try{
+            T result = write.apply(key -> {
+                row[0] = rowLock(key);
+                row[0].lock();
+            });
+            return log(result, changes);
+        } finally{
+            if(row[0] != null){
+                row[0].unlock();
+            }
+            batchLock.readLock().unlock();
+        }
+    }
+
+    private ReentrantLock rowLock(Object key){
+        return rowLocks[Math.floorMod(key.hashCode(), ROW_STRIPES)];
+    }
+
+    /**
+     * Runs a batch write on the primary with no other write running and logs the changes it made.
+     *
+     * @param write Runs the write on the primary.
+     * @param changes Turns the result into the changes to replicate, an empty list if the write failed.
+     * @return The result of the write.
+     */
+    <T> T writeExclusive(Supplier<T> write, Function<T, List<Change>> changes){
+        batchLock.writeLock().lock();
+        try{
+            return log(write.get(), changes);
+        } finally{
+            batchLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Numbers a write's changes with the next LSN and queues them for every working replica.
+     */
+    private <T> T log(T result, Function<T, List<Change>> changes){
+        List<Change> logged = changes.apply(result);
+        if(logged.isEmpty()){
+            return result;
+        }
+        long lsn;
+        synchronized(logLock){
+            lsn = lastLsn + 1;
+            Entry entry = new Entry(lsn, logged);
+            for(Replica replica : replicas){
+                if(!replica.failed){
+                    replica.log.add(entry);
+                }
+            }
+            lastLsn = lsn;
+        }
+        long[] session = SESSION.get();
+        session[WRITTEN] = lsn;
+        session[REQUIRED] = lsn;
+        return result;
+    }
+
+    /**
+     * Picks where a read in the current request goes.
+     *
+     * @return Index of a replica that has applied every write the request must see, -1 for the primary.
+     */
+    int route(){
+        long required = SESSION.get()[REQUIRED];
+        int size = replicas.size();
+        int start = nextReplica.getAndIncrement();
+        for(int i = 0; i < size; i++){
+            Replica replica = replicas.get(Math.floorMod(start + i, size));
+            if(!replica.failed && replica.appliedLsn >= required){
+                replicaReads.increment();
+                return Math.floorMod(start + i, size);
+            }
+        }
+        primaryReads.increment();
+        return -1;
+    }
+
+    /**
+     * @param index Index of a replica.
+     * @return Its data source.
+     */
+    DataSource replica(int index){
+        return replicas.get(index).pool;
+    }
+
+    /**
+     * Starts a request on the current thread: its reads must see the client's last write.
+     *
+     * @param client Identifies the client, e.g. its address.
+     */
+    public void beginRequest(String client){
+        long[] session = SESSION.get();
+        Long written = clientWrites.get(client);
+        session[REQUIRED] = written == null ? 0 : written;
+        session[WRITTEN] = 0;
+    }
+
+    /**
+     * Ends the request on the current thread, remembering its last write for the client's next request.
+     *
+     * @param client Identifies the client, e.g. its address.
+     */
+    public void endRequest(String client){
+        long[] session = SESSION.get();
+        if(session[WRITTEN] > 0){
+            if(clientWrites.size() >= MAX_TRACKED_CLIENTS){
+                long everywhere = getMinAppliedLsn();
+                clientWrites.values().removeIf(lsn -> lsn <= everywhere);
+            }
+            clientWrites.merge(client, session[WRITTEN], Math::max);
+        }
+        session[REQUIRED] = 0;
+        session[WRITTEN] = 0;
+    }
+
+    /**
+     * @return Number of replicas.
+     */
+    public int getReplicaCount(){
+        return replicas.size();
+    }
+
+    /**
+     * @return LSN of the newest write.
+     */
+    public long getLastLsn(){
+        return lastLsn;
+    }
+
+    /**
+     * @return The lowest LSN every working replica has applied.
+     */
+    public long getMinAppliedLsn(){
+        long min = lastLsn;
+        for(Replica replica : replicas){
+            if(!replica.failed){
+                min = Math.min(min, replica.appliedLsn);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return Number of writes the furthest-behind working replica has yet to apply.
+     */
+    public long getMaxLag(){
+        return lastLsn - getMinAppliedLsn();
+    }
+
+    /**
+     * @return Number of reads served by replicas since startup.
+     */
+    public long getReplicaReads(){
+        return replicaReads.sum();
+    }
+
+    /**
+     * @return Number of reads sent to the primary because no replica had caught up.
+     */
+    public long getPrimaryReads(){
+        return primaryReads.sum();
+    }
+
+    /**
+     * Blocks until every working replica has applied every write made so far.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitReplication() throws InterruptedException {
+        long target = lastLsn;
+        while(getMinAppliedLsn() < target){
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Stops applying changes and discards the replicas.
+     */
+    @Override
+    public void close(){
+        for(Replica replica : replicas){
+            replica.close();
+        }
+    }
+
+    /**
+     * @return The statements that recreate the primary, taken with H2's SCRIPT command.
+     */
+    private List<String> snapshot() throws SQLException {
+        List<String> statements = new ArrayList<>();
+        try(Connection conn = primary.getConnection()){
+            ResultSet rs = conn.createStatement().executeQuery("SCRIPT NOPASSWORDS;");
+            while(rs.next()){
+                statements.add(rs.getString(1));
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * One log entry: every change made by one write.
+     */
+    private static final class Entry {
+        final long lsn;
+        final List<Change> changes;
+
+        Entry(long lsn, List<Change> changes){
+            this.lsn = lsn;
+            this.changes = changes;
+        }
+    }
+
+    private static final class Replica {
+        private static final int APPLY_BATCH = 256;
+
+        final JdbcConnectionPool pool;
+        final LinkedBlockingQueue<Entry> log = new LinkedBlockingQueue<>();
+        final Connection keepAlive;
+        final Thread applier;
+        volatile long appliedLsn;
+        volatile boolean failed;
+
+        Replica(String url, int poolSize, long lsn) throws SQLException {
+            this.pool = JdbcConnectionPool.create(url, "sa", "sa");
+            pool.setMaxConnections(poolSize);
+            // an in-memory database lives as long as a connection to it is open
+            this.keepAlive = pool.getConnection();
+            this.appliedLsn = lsn;
+            this.applier = new Thread(this::apply, "replica-applier");
+            applier.setDaemon(true);
+        }
+
+        void load(List<String> snapshot) throws SQLException {
+            try(Statement st = keepAlive.createStatement()){
+                for(String sql : snapshot){
+                    if(!sql.startsWith("CREATE USER")){
+                        st.execute(sql);
+                    }
+                }
+            }
+        }
+
+        void start(){
+            applier.start();
+        }
+
+        private void apply(){
+            List<Entry> batch = new ArrayList<>(APPLY_BATCH);
+            try(Connection conn = pool.getConnection()){
+                conn.setAutoCommit(false);
+                while(!Thread.currentThread().isInterrupted()){
+                    batch.add(log.take());
+                    log.drainTo(batch, APPLY_BATCH - 1);
+                    for(Entry entry : batch){
+                        for(Change change : entry.changes){
+                            try(PreparedStatement ps = conn.prepareStatement(change.sql)){
+                                for(int i = 0; i < change.params.length; i++){
+                                    ps.setObject(i + 1, change.params[i]);
+                                }
+                                ps.executeUpdate();
+                            }
+                        }
+                    }
+                    conn.commit();
+                    appliedLsn = batch.get(batch.size() - 1).lsn;
+                    batch.clear();
+                }
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            } catch(SQLException e){
+                ErrorLog.sqlFailure("ReplicaSet.apply", e);
+                failed = true;
+                // nothing more is queued once failed is seen, and what was queued will never be applied
+                log.clear();
+            }
+        }
+
+        void close(){
+            applier.interrupt();
+            try{
+                keepAlive.close();
+            } catch(SQLException e){
+                ErrorLog.sqlFailure("ReplicaSet.close", e);
+            }
+            pool.dispose();
+        }
+    }
+}
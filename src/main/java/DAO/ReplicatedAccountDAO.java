@@ -0,0 +1,89 @@
+package DAO;
+
+import Model.Account;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+
+/**
+ * AccountDAO that writes to the primary of a ReplicaSet and reads from whichever replica the set routes to.
+ */
+public class ReplicatedAccountDAO implements AccountDAO {
+
+    private static final String MERGE = "MERGE INTO account (account_id, username, password) KEY (account_id) "
+            + "VALUES (?, ?, ?);";
+
+    private final ReplicaSet replicas;
+    private final JdbcAccountDAO primary;
+    private final List<JdbcAccountDAO> readers = new ArrayList<>();
+
+    /**
+     * @param replicas Routes reads and logs writes.
+     * @param primary The database writes go to.
+     */
+    public ReplicatedAccountDAO(ReplicaSet replicas, DataSource primary){
+        this.replicas = replicas;
+        this.primary = new JdbcAccountDAO(primary);
+        for(int i = 0; i < replicas.getReplicaCount(); i++){
+            readers.add(new JdbcAccountDAO(replicas.replica(i)));
+        }
+    }
+
+    @Override
+    public Account insertAccount(Account acc){
+        return replicas.write(() -> primary.insertAccount(acc), inserted -> inserted == null
+                ? Collections.emptyList() : ReplicaSet.changes(change(inserted)));
+    }
+
+    @Override
+    public Account getAccount(Account acc){
+        return reader().getAccount(acc);
+    }
+
+    @Override
+    public long forEachAccount(Consumer<Account> visitor){
+        return reader().forEachAccount(visitor);
+    }
+
+    /**
+     * Inserts on the primary, then replicates every row the batch added: those that kept their own Account ID and
+     * those given one above the previous highest.
+     */
+    @Override
+    public boolean insertAccounts(List<Account> accs){
+        List<ReplicaSet.Change> changes = replicas.writeExclusive(() -> {
+            int before = primary.getMaxAccountId();
+            if(!primary.insertAccounts(accs)){
+                return null;
+            }
+            List<ReplicaSet.Change> rows = new ArrayList<>();
+            for(Account acc : accs){
+                if(acc.getAccount_id() > 0 && acc.getAccount_id() <= before){
+                    rows.add(change(acc));
+                }
+            }
+            for(Account acc : primary.getAccountsAbove(before)){
+                rows.add(change(acc));
+            }
+            return rows;
+        }, rows -> rows == null ? Collections.emptyList() : rows);
+        return changes != null;
+    }
+
+    @Override
+    public void restartAccountIds(){
+        primary.restartAccountIds();
+    }
+
+    private AccountDAO reader(){
+        int replica = replicas.route();
+        return replica < 0 ? primary : readers.get(replica);
+    }
+
+    private static ReplicaSet.Change change(Account acc){
+        return new ReplicaSet.Change(MERGE, acc.getAccount_id(), acc.getUsername(), acc.getPassword());
+    }
+}
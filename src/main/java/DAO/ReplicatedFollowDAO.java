@@ -0,0 +1,86 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.sql.DataSource;
+
+/**
+ * FollowDAO that writes to the primary of a ReplicaSet and reads from whichever replica the set routes to.
+ */
+public class ReplicatedFollowDAO implements FollowDAO {
+
+    private static final String MERGE = "MERGE INTO follow (follower_id, followee_id) KEY (follower_id, followee_id) "
+            + "VALUES (?, ?);";
+    private static final String DELETE = "DELETE FROM follow WHERE follower_id = ? AND followee_id = ?;";
+
+    private final ReplicaSet replicas;
+    private final JdbcFollowDAO primary;
+    private final List<JdbcFollowDAO> readers = new ArrayList<>();
+    private final boolean readPrimary;
+
+    /**
+     * @param replicas Routes reads and logs writes.
+     * @param primary The database writes go to.
+     */
+    public ReplicatedFollowDAO(ReplicaSet replicas, DataSource primary){
+        this(replicas, primary, false);
+    }
+
+    /**
+     * @param replicas Routes reads and logs writes.
+     * @param primary The database writes go to.
+     * @param readPrimary Whether every read goes to the primary too, for state that is built from a read and then
+     *                    kept up to date by later writes, which a read from a lagging replica would miss.
+     */
+    public ReplicatedFollowDAO(ReplicaSet replicas, DataSource primary, boolean readPrimary){
+        this.replicas = replicas;
+        this.primary = new JdbcFollowDAO(primary);
+        this.readPrimary = readPrimary;
+        for(int i = 0; i < replicas.getReplicaCount(); i++){
+            readers.add(new JdbcFollowDAO(replicas.replica(i)));
+        }
+    }
+
+    @Override
+    public boolean insertFollow(int followerId, int followeeId){
+        return replicas.write(key(followerId, followeeId), () -> primary.insertFollow(followerId, followeeId),
+                inserted -> !inserted ? Collections.emptyList()
+                        : ReplicaSet.changes(new ReplicaSet.Change(MERGE, followerId, followeeId)));
+    }
+
+    @Override
+    public boolean deleteFollow(int followerId, int followeeId){
+        return replicas.write(key(followerId, followeeId), () -> primary.deleteFollow(followerId, followeeId),
+                deleted -> !deleted ? Collections.emptyList()
+                        : ReplicaSet.changes(new ReplicaSet.Change(DELETE, followerId, followeeId)));
+    }
+
+    @Override
+    public List<Integer> getFollowerIds(int followeeId){
+        return reader().getFollowerIds(followeeId);
+    }
+
+    @Override
+    public List<Integer> getFolloweeIds(int followerId){
+        return reader().getFolloweeIds(followerId);
+    }
+
+    @Override
+    public void forEachFollow(BiConsumer<Integer, Integer> visitor){
+        reader().forEachFollow(visitor);
+    }
+
+    private static Long key(int followerId, int followeeId){
+        return ((long) followerId << 32) | (followeeId & 0xFFFFFFFFL);
+    }
+
+    private FollowDAO reader(){
+        if(readPrimary){
+            return primary;
+        }
+        int replica = replicas.route();
+        return replica < 0 ? primary : readers.get(replica);
+    }
+}
@@ -0,0 +1,187 @@
+package DAO;
+
+import Model.Message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+
+/**
+ * MessageDAO that writes to the primary of a ReplicaSet and reads from whichever replica the set routes to.
+ */
+public class ReplicatedMessageDAO implements MessageDAO {
+
+    private static final String MERGE = "MERGE INTO message (message_id, posted_by, message_text, time_posted_epoch) "
+            + "KEY (message_id) VALUES (?, ?, ?, ?);";
+    private static final String UPDATE = "UPDATE message SET message_text = ?, version = version + 1 "
+            + "WHERE message_id = ?;";
+    private static final String DELETE = "DELETE FROM message WHERE message_id = ?;";
+
+    private final ReplicaSet replicas;
+    private final JdbcMessageDAO primary;
+    private final List<JdbcMessageDAO> readers = new ArrayList<>();
+    private final boolean readPrimary;
+
+    /**
+     * @param replicas Routes reads and logs writes.
+     * @param primary The database writes go to.
+     */
+    public ReplicatedMessageDAO(ReplicaSet replicas, DataSource primary){
+        this(replicas, primary, false);
+    }
+
+    /**
+     * @param replicas Routes reads and logs writes.
+     * @param primary The database writes go to.
+     * @param readPrimary Whether every read goes to the primary too, for state that is built from a read and then
+     *                    kept up to date by later writes, which a read from a lagging replica would miss.
+     */
+    public ReplicatedMessageDAO(ReplicaSet replicas, DataSource primary, boolean readPrimary){
+        this.replicas = replicas;
+        this.primary = new JdbcMessageDAO(primary);
+        this.readPrimary = readPrimary;
+        for(int i = 0; i < replicas.getReplicaCount(); i++){
+            readers.add(new JdbcMessageDAO(replicas.replica(i)));
+        }
+    }
+
+    @Override
+    public Message createMessage(Message msg){
+        return replicas.writeNew(lock -> primary.createMessage(msg, created -> lock.accept(created.getMessage_id())),
+                ReplicatedMessageDAO::merge);
+    }
+
+    @Override
+    public List<Message> getAllMessages(){
+        return reader().getAllMessages();
+    }
+
+    @Override
+    public Message getMessageById(int id){
+        return reader().getMessageById(id);
+    }
+
+    @Override
+    public Versioned<Message> getVersionedMessageById(int id){
+        return reader().getVersionedMessageById(id);
+    }
+
+    @Override
+    public List<Versioned<Message>> getMessagesByIds(List<Integer> ids){
+        return reader().getMessagesByIds(ids);
+    }
+
+    @Override
+    public List<Integer> getRecentMessageIds(int limit){
+        return reader().getRecentMessageIds(limit);
+    }
+
+    @Override
+    public Message deleteMessage(int id){
+        return replicas.write(id, () -> primary.deleteMessage(id), deleted -> deleted == null
+                ? Collections.emptyList() : ReplicaSet.changes(new ReplicaSet.Change(DELETE, id)));
+    }
+
+    @Override
+    public Message updateMessage(Message msg){
+        return replicas.write(msg.getMessage_id(), () -> primary.updateMessage(msg),
+                updated -> update(msg, updated != null));
+    }
+
+    @Override
+    public Versioned<Message> updateMessage(Message msg, long expectedVersion){
+        return replicas.write(msg.getMessage_id(), () -> primary.updateMessage(msg, expectedVersion),
+                updated -> update(msg, updated != null));
+    }
+
+    @Override
+    public List<Message> getAllMessagesByAccountId(int accountId){
+        return reader().getAllMessagesByAccountId(accountId);
+    }
+
+    @Override
+    public List<Message> getRecentMessagesByAccountId(int accountId, int limit){
+        return reader().getRecentMessagesByAccountId(accountId, limit);
+    }
+
+    @Override
+    public List<Message> getRecentMessagesFollowedBy(int followerId, int limit){
+        return reader().getRecentMessagesFollowedBy(followerId, limit);
+    }
+
+    @Override
+    public long countMessages(){
+        return reader().countMessages();
+    }
+
+    @Override
+    public Map<Integer, Long> countMessagesByAccount(){
+        return reader().countMessagesByAccount();
+    }
+
+    @Override
+    public long forEachMessage(Consumer<Message> visitor){
+        return reader().forEachMessage(visitor);
+    }
+
+    /**
+     * Inserts on the primary, then replicates every row the batch added: those that kept their own Message ID and
+     * those given one above the previous highest.
+     */
+    @Override
+    public boolean insertMessages(List<Message> msgs){
+        List<ReplicaSet.Change> changes = replicas.writeExclusive(() -> {
+            int before = primary.getMaxMessageId();
+            if(!primary.insertMessages(msgs)){
+                return null;
+            }
+            List<ReplicaSet.Change> rows = new ArrayList<>();
+            for(Message msg : msgs){
+                if(msg.getMessage_id() > 0 && msg.getMessage_id() <= before){
+                    rows.add(change(msg));
+                }
+            }
+            for(Message msg : primary.getMessagesAbove(before)){
+                rows.add(change(msg));
+            }
+            return rows;
+        }, rows -> rows == null ? Collections.emptyList() : rows);
+        return changes != null;
+    }
+
+    @Override
+    public void restartMessageIds(){
+        primary.restartMessageIds();
+    }
+
+    private MessageDAO reader(){
+        if(readPrimary){
+            return primary;
+        }
+        int replica = replicas.route();
+        return replica < 0 ? primary : readers.get(replica);
+    }
+
+    private static List<ReplicaSet.Change> merge(Message msg){
+        return msg == null ? Collections.emptyList() : ReplicaSet.changes(change(msg));
+    }
+
+    /**
+     * Replicates an update as the same UPDATE statement rather than a MERGE, so that each replica's version column
+     * moves on exactly as the primary's did.
+     */
+    private static List<ReplicaSet.Change> update(Message msg, boolean updated){
+        if(!updated){
+            return Collections.emptyList();
+        }
+        return ReplicaSet.changes(new ReplicaSet.Change(UPDATE, msg.getMessage_text(), msg.getMessage_id()));
+    }
+
+    private static ReplicaSet.Change change(Message msg){
+        return new ReplicaSet.Change(MERGE, msg.getMessage_id(), msg.getPosted_by(), msg.getMessage_text(),
+                msg.getTime_posted_epoch());
+    }
+}
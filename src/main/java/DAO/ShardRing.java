@@ -0,0 +1,62 @@
+package DAO;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hashing ring that assigns each bucket to a shard.
+ *
+ * Every shard owns many points on a ring of hash values and a bucket belongs to the owner of the first point at or
+ * after the bucket's own hash. Points depend only on the shard number, so adding a shard takes buckets only from
+ * their old owners to the new shard and moves about 1/N of the data, where N is the new number of shards.
+ */
+final class ShardRing {
+
+    /**
+     * Points per shard, enough to spread buckets evenly across a handful of shards.
+     */
+    static final int VIRTUAL_NODES = 160;
+
+    private final int[] owners;
+
+    /**
+     * @param shards Number of shards, shard numbers running from 0.
+     * @param buckets Number of buckets.
+     */
+    ShardRing(int shards, int buckets){
+        if(shards < 1){
+            throw new IllegalArgumentException("need at least one shard");
+        }
+        TreeMap<Integer, Integer> ring = new TreeMap<>();
+        for(int shard = 0; shard < shards; shard++){
+            for(int node = 0; node < VIRTUAL_NODES; node++){
+                ring.putIfAbsent(mix(shard * 0x9E3779B9 + node), shard);
+            }
+        }
+        owners = new int[buckets];
+        for(int bucket = 0; bucket < buckets; bucket++){
+            Map.Entry<Integer, Integer> point = ring.ceilingEntry(mix(bucket ^ 0x7F4A7C15));
+            owners[bucket] = (point != null ? point : ring.firstEntry()).getValue();
+        }
+    }
+
+    /**
+     * @param bucket A bucket number.
+     * @return Number of the shard that owns it.
+     */
+    int ownerOf(int bucket){
+        return owners[bucket];
+    }
+
+    /**
+     * MurmurHash3's finalizer: spreads nearby inputs across the whole int range.
+     */
+    private static int mix(int h){
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
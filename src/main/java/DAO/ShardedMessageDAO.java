@@ -0,0 +1,702 @@
+package DAO;
+
+import Model.Message;
+import Util.ErrorLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import javax.sql.DataSource;
+
+/**
+ * MessageDAO that partitions Messages across several databases (shards) by the Account that posted them.
+ *
+ * An Account's bucket is the low BUCKET_BITS bits of its Account ID and a ShardRing assigns buckets to shards, so
+ * all of an Account's Messages live on one shard and changing the number of shards moves whole buckets (see
+ * rebalance).
+ * Message IDs come from one sequence kept here with the poster's bucket in their low BUCKET_BITS bits: they are
+ * unique across shards, still increase in the order Messages are created, and lead straight to the shard holding
+ * the Message. Messages whose ID does not carry their bucket, those stored before sharding or imported with their
+ * own ID, are found through a directory held in memory and rebuilt on startup.
+ *
+ * Reads of one Message or of one Account's Messages go to a single shard. Reads across Accounts query every shard
+ * involved in parallel and merge the results. The shards hold only the message table, so posted_by is checked
+ * against the Account store before every write.
+ */
+public class ShardedMessageDAO implements MessageDAO, AutoCloseable {
+
+    /**
+     * Low bits of a Message ID that hold the poster's bucket. The rest hold the sequence, which allows for about
+     * 134 million Messages. Every bit taken from the sequence halves that.
+     */
+    static final int BUCKET_BITS = 4;
+
+    /**
+     * Number of buckets, the unit in which Messages move between shards, and so the most shards that hold any.
+     */
+    static final int BUCKETS = 1 << BUCKET_BITS;
+
+    private static final int BUCKET_MASK = BUCKETS - 1;
+    private static final int MAX_SEQUENCE = Integer.MAX_VALUE >> BUCKET_BITS;
+
+    /**
+     * Threads per shard for queries that run on several shards at once.
+     */
+    private static final int SCATTER_THREADS_PER_SHARD = 8;
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS message (message_id int primary key, posted_by int, "
+                + "message_text varchar(255), time_posted_epoch bigint, version bigint not null default 0);",
+        "ALTER TABLE message ADD COLUMN IF NOT EXISTS version bigint not null default 0;",
+        "CREATE INDEX IF NOT EXISTS message_posted_by ON message (posted_by);"
+    };
+
+    private static final Comparator<Message> BY_ID = Comparator.comparingInt(Message::getMessage_id);
+
+    private static final Comparator<Message> NEWEST_FIRST = Comparator
+            .comparingLong(Message::getTime_posted_epoch)
+            .thenComparingInt(Message::getMessage_id)
+            .reversed();
+
+    private final List<DataSource> dataSources;
+    private final List<JdbcMessageDAO> shards = new ArrayList<>();
+    private final ShardRing ring;
+    private final IntPredicate accountExists;
+    private final FollowDAO follows;
+    private final ExecutorService scatterPool;
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, Integer> misplaced = new ConcurrentHashMap<>();
+    private final boolean fresh;
+
+    /**
+     * Opens the shards, creating the message table in any that lack it, and rebuilds the directory of Messages
+     * whose ID does not carry their bucket.
+     *
+     * @param dataSources One database per shard, in shard order. The order must not change between runs except
+     *                    through rebalance.
+     * @param accountExists Tells whether an Account ID is in use, since no shard can check posted_by itself.
+     * @param follows Follows, for building timelines.
+     * @throws SQLException if a shard cannot be opened.
+     */
+    public ShardedMessageDAO(List<DataSource> dataSources, IntPredicate accountExists, FollowDAO follows)
+            throws SQLException {
+        this.dataSources = new ArrayList<>(dataSources);
+        this.ring = new ShardRing(dataSources.size(), BUCKETS);
+        this.accountExists = accountExists;
+        this.follows = follows;
+        for(DataSource dataSource : this.dataSources){
+            createSchema(dataSource);
+            findMisplaced(dataSource);
+            shards.add(new JdbcMessageDAO(dataSource));
+        }
+        this.scatterPool = Executors.newFixedThreadPool(dataSources.size() * SCATTER_THREADS_PER_SHARD, task -> {
+            Thread thread = new Thread(task, "shard-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        restartMessageIds();
+        this.fresh = countMessages() == 0;
+    }
+
+    /**
+     * @param accountId An Account ID no.
+     * @return The bucket of the Account's Messages: its low bits, as BITAND(posted_by, BUCKET_MASK) finds them in
+     *         SQL, which unlike MOD is never negative.
+     */
+    static int bucketOf(int accountId){
+        return accountId & BUCKET_MASK;
+    }
+
+    /**
+     * DAO implementation to create a Message on its poster's shard with the next Message ID.
+     *
+     * @param msg Message object to be created
+     * @return Message with its new Message ID if insertion successful, null if not.
+     */
+    @Override
+    public Message createMessage(Message msg){
+        if(!accountExists.test(msg.getPosted_by())){
+            return null;
+        }
+        Message stored = withNewId(msg);
+        if(stored == null){
+            return null;
+        }
+        return shardOfAccount(msg.getPosted_by()).insertMessages(Collections.singletonList(stored)) ? stored : null;
+    }
+
+    /**
+     * DAO implementation to get every Message from every shard, queried in parallel.
+     *
+     * @return List of every Message in Message ID order, blank if there are none.
+     */
+    @Override
+    public List<Message> getAllMessages(){
+        List<Callable<List<Message>>> queries = new ArrayList<>();
+        for(JdbcMessageDAO shard : shards){
+            queries.add(shard::getAllMessages);
+        }
+        List<Message> messageList = new ArrayList<>();
+        for(List<Message> part : scatter(queries)){
+            messageList.addAll(part);
+        }
+        messageList.sort(BY_ID);
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get a Message from the shard its Message ID leads to.
+     *
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message if retrieval is successful, null if not.
+     */
+    @Override
+    public Message getMessageById(int id){
+        return shardOfMessage(id).getMessageById(id);
+    }
+
+    /**
+     * DAO implementation to get a Message with its version from the shard its Message ID leads to.
+     *
+     * @param id ID no. for the Message to be retrieved.
+     * @return Message with its version if retrieval is successful, null if not.
+     */
+    @Override
+    public Versioned<Message> getVersionedMessageById(int id){
+        return shardOfMessage(id).getVersionedMessageById(id);
+    }
+
+    /**
+     * DAO implementation to get several Messages, asking each shard their Message IDs lead to for its share in one
+     * query, in parallel.
+     *
+     * @param ids ID nos. of the Messages to be retrieved.
+     * @return List of those of the Messages that exist, in no particular order.
+     */
+    @Override
+    public List<Versioned<Message>> getMessagesByIds(List<Integer> ids){
+        Map<Integer, List<Integer>> idsByShard = new TreeMap<>();
+        for(int id : ids){
+            idsByShard.computeIfAbsent(shardIndexOfMessage(id), shard -> new ArrayList<>()).add(id);
+        }
+        List<Callable<List<Versioned<Message>>>> queries = new ArrayList<>();
+        for(Map.Entry<Integer, List<Integer>> entry : idsByShard.entrySet()){
+            JdbcMessageDAO shard = shards.get(entry.getKey());
+            queries.add(() -> shard.getMessagesByIds(entry.getValue()));
+        }
+        List<Versioned<Message>> messageList = new ArrayList<>();
+        for(List<Versioned<Message>> part : scatter(queries)){
+            messageList.addAll(part);
+        }
+        return messageList;
+    }
+
+    /**
+     * DAO implementation to get the Message IDs of the most recently posted Messages. Message IDs come from one
+     * sequence for every shard, so each shard is asked for its highest, in parallel, and the highest of those kept.
+     *
+     * @param limit Maximum number of Message IDs to return.
+     * @return ID nos. of the most recently posted Messages, highest first.
+     */
+    @Override
+    public List<Integer> getRecentMessageIds(int limit){
+        List<Callable<List<Integer>>> queries = new ArrayList<>();
+        for(JdbcMessageDAO shard : shards){
+            queries.add(() -> shard.getRecentMessageIds(limit));
+        }
+        // a Message being moved between shards may be seen in both
+        TreeSet<Integer> ids = new TreeSet<>(Comparator.reverseOrder());
+        for(List<Integer> part : scatter(queries)){
+            ids.addAll(part);
+        }
+        List<Integer> recent = new ArrayList<>(Math.min(limit, ids.size()));
+        for(Iterator<Integer> it = ids.iterator(); it.hasNext() && recent.size() < limit; ){
+            recent.add(it.next());
+        }
+        return recent;
+    }
+
+    /**
+     * DAO implementation to delete a Message from the shard its Message ID leads to.
+     *
+     * @param id ID no. of the Message to be deleted.
+     * @return The deleted Message if deletion was successful, null if not.
+     */
+    @Override
+    public Message deleteMessage(int id){
+        Message deleted = shardOfMessage(id).deleteMessage(id);
+        if(deleted != null){
+            misplaced.remove(id);
+        }
+        return deleted;
+    }
+
+    /**
+     * DAO implementation to update a Message on the shard its Message ID leads to.
+     *
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @return The updated Message if successful, null if not.
+     */
+    @Override
+    public Message updateMessage(Message msg){
+        return shardOfMessage(msg.getMessage_id()).updateMessage(msg);
+    }
+
+    /**
+     * DAO implementation to update a Message at an expected version on the shard its Message ID leads to.
+     *
+     * @param msg Message object with Message ID and Message Text fields only.
+     * @param expectedVersion Version the caller last read.
+     * @return The updated Message with its new version, null if it does not exist or is at another version.
+     */
+    @Override
+    public Versioned<Message> updateMessage(Message msg, long expectedVersion){
+        return shardOfMessage(msg.getMessage_id()).updateMessage(msg, expectedVersion);
+    }
+
+    /**
+     * DAO implementation to get an Account's Messages from its shard.
+     *
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @return List of the Account's Messages in Message ID order, blank if there are none.
+     */
+    @Override
+    public List<Message> getAllMessagesByAccountId(int accountId){
+        return shardOfAccount(accountId).getAllMessagesByAccountId(accountId);
+    }
+
+    /**
+     * DAO implementation to get an Account's newest Messages from its shard.
+     *
+     * @param accountId Account ID no. of Message objects to be retrieved.
+     * @param limit Maximum number of Messages to return.
+     * @return List of the Account's newest Messages, newest first.
+     */
+    @Override
+    public List<Message> getRecentMessagesByAccountId(int accountId, int limit){
+        return shardOfAccount(accountId).getRecentMessagesByAccountId(accountId, limit);
+    }
+
+    /**
+     * DAO implementation to get the newest Messages of every followed Account. Each shard holding a followed
+     * Account is asked for its newest Messages by those Accounts, in parallel, and the answers are merged.
+     *
+     * @param followerId Account ID no. of the Account whose timeline is being built.
+     * @param limit Maximum number of Messages to return.
+     * @return List of the newest Messages posted by Accounts the follower follows, newest first.
+     */
+    @Override
+    public List<Message> getRecentMessagesFollowedBy(int followerId, int limit){
+        Map<Integer, List<Integer>> followeesByShard = new TreeMap<>();
+        for(int followeeId : follows.getFolloweeIds(followerId)){
+            followeesByShard.computeIfAbsent(ring.ownerOf(bucketOf(followeeId)), shard -> new ArrayList<>())
+                    .add(followeeId);
+        }
+        List<Callable<List<Message>>> queries = new ArrayList<>();
+        for(Map.Entry<Integer, List<Integer>> entry : followeesByShard.entrySet()){
+            JdbcMessageDAO shard = shards.get(entry.getKey());
+            queries.add(() -> shard.getRecentMessagesByAccountIds(entry.getValue(), limit));
+        }
+        List<Message> messageList = new ArrayList<>();
+        for(List<Message> part : scatter(queries)){
+            messageList.addAll(part);
+        }
+        messageList.sort(NEWEST_FIRST);
+        return messageList.size() > limit ? new ArrayList<>(messageList.subList(0, limit)) : messageList;
+    }
+
+    /**
+     * DAO implementation to count the Messages on every shard.
+     *
+     * @return Number of Messages stored.
+     */
+    @Override
+    public long countMessages(){
+        List<Callable<Long>> queries = new ArrayList<>();
+        for(JdbcMessageDAO shard : shards){
+            queries.add(shard::countMessages);
+        }
+        long count = 0;
+        for(long part : scatter(queries)){
+            count += part;
+        }
+        return count;
+    }
+
+    /**
+     * DAO implementation to count each Account's Messages on every shard.
+     *
+     * @return Map of Account ID to Message count, without Accounts that have not posted; null if any shard could
+     *         not be counted.
+     */
+    @Override
+    public Map<Integer, Long> countMessagesByAccount(){
+        List<Callable<Map<Integer, Long>>> queries = new ArrayList<>();
+        for(JdbcMessageDAO shard : shards){
+            queries.add(shard::countMessagesByAccount);
+        }
+        Map<Integer, Long> counts = new HashMap<>();
+        for(Map<Integer, Long> part : scatter(queries)){
+            if(part == null){
+                return null;
+            }
+            part.forEach((accountId, count) -> counts.merge(accountId, count, Long::sum));
+        }
+        return counts;
+    }
+
+    /**
+     * DAO implementation to visit every Message in Message ID order. Each shard is read a page at a time and the
+     * pages are merged, so at most one page per shard is held in memory.
+     *
+     * @param visitor Called once per Message.
+     * @return Number of Messages visited.
+     */
+    @Override
+    public long forEachMessage(Consumer<Message> visitor){
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingInt(cursor -> cursor.id()));
+        for(JdbcMessageDAO shard : shards){
+            Cursor cursor = new Cursor(shard);
+            if(cursor.advance()){
+                cursors.add(cursor);
+            }
+        }
+        long rows = 0;
+        while(!cursors.isEmpty()){
+            Cursor cursor = cursors.poll();
+            visitor.accept(cursor.current());
+            rows++;
+            if(cursor.advance()){
+                cursors.add(cursor);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * DAO implementation to insert many Messages, one transaction per shard. Messages with a Message ID above 0
+     * keep it and the rest are given the next ones. If a shard rejects its part, the parts already committed on
+     * other shards are deleted again; a crash in between can leave them in place.
+     *
+     * @param msgs Messages to be inserted.
+     * @return true if every Message was inserted, false if none were.
+     */
+    @Override
+    public boolean insertMessages(List<Message> msgs){
+        Set<Integer> posters = new HashSet<>();
+        Map<Integer, List<Integer>> ownIdsByShard = new TreeMap<>();
+        Map<Integer, List<Message>> byShard = new TreeMap<>();
+        for(Message msg : msgs){
+            if(posters.add(msg.getPosted_by()) && !accountExists.test(msg.getPosted_by())){
+                return false;
+            }
+            Message stored = msg;
+            if(msg.getMessage_id() > 0){
+                ownIdsByShard.computeIfAbsent(shardIndexOfMessage(msg.getMessage_id()), shard -> new ArrayList<>())
+                        .add(msg.getMessage_id());
+            } else if((stored = withNewId(msg)) == null){
+                return false;
+            }
+            byShard.computeIfAbsent(ring.ownerOf(bucketOf(msg.getPosted_by())), shard -> new ArrayList<>())
+                    .add(stored);
+        }
+        for(Map.Entry<Integer, List<Integer>> entry : ownIdsByShard.entrySet()){
+            if(anyExist(dataSources.get(entry.getKey()), entry.getValue())){
+                return false;
+            }
+        }
+        List<Map.Entry<Integer, List<Message>>> inserted = new ArrayList<>();
+        for(Map.Entry<Integer, List<Message>> entry : byShard.entrySet()){
+            if(!shards.get(entry.getKey()).insertMessages(entry.getValue())){
+                for(Map.Entry<Integer, List<Message>> done : inserted){
+                    deleteAll(dataSources.get(done.getKey()), done.getValue());
+                }
+                return false;
+            }
+            inserted.add(entry);
+        }
+        for(Message msg : msgs){
+            int bucket = bucketOf(msg.getPosted_by());
+            if(msg.getMessage_id() > 0 && (msg.getMessage_id() & BUCKET_MASK) != bucket){
+                misplaced.put(msg.getMessage_id(), bucket);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * DAO implementation to move the Message ID sequence past the highest Message ID on any shard.
+     */
+    @Override
+    public void restartMessageIds(){
+        int max = 0;
+        for(JdbcMessageDAO shard : shards){
+            max = Math.max(max, shard.getMaxMessageId());
+        }
+        sequence.accumulateAndGet(max >> BUCKET_BITS, Math::max);
+    }
+
+    /**
+     * @return true if no shard held any Messages when this DAO was created.
+     */
+    public boolean isFresh(){
+        return fresh;
+    }
+
+    /**
+     * @return Number of shards.
+     */
+    public int getShardCount(){
+        return shards.size();
+    }
+
+    /**
+     * Stops the threads that query shards in parallel. The shards' data sources are left open.
+     */
+    @Override
+    public void close(){
+        scatterPool.shutdown();
+    }
+
+    /**
+     * Moves Messages between shards after the number of shards changes, one bucket at a time: every bucket the
+     * new ring assigns elsewhere is copied to its new shard, then deleted from the old one. Copying overwrites by
+     * Message ID, so a rebalance cut short can simply be run again. Nothing may use the shards meanwhile.
+     *
+     * @param dataSources One database per shard, as many as the larger of the two shard counts.
+     * @param fromShards Number of shards the Messages are spread over now.
+     * @param toShards Number of shards to spread them over.
+     * @return Number of Messages moved.
+     * @throws SQLException if a shard cannot be read or written.
+     */
+    public static long rebalance(List<DataSource> dataSources, int fromShards, int toShards) throws SQLException {
+        ShardRing before = new ShardRing(fromShards, BUCKETS);
+        ShardRing after = new ShardRing(toShards, BUCKETS);
+        for(DataSource dataSource : dataSources.subList(0, Math.max(fromShards, toShards))){
+            createSchema(dataSource);
+        }
+        long moved = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++){
+            int source = before.ownerOf(bucket);
+            int target = after.ownerOf(bucket);
+            if(source != target){
+                moved += moveBucket(dataSources.get(source), dataSources.get(target), bucket);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Gives a Message the next Message ID, carrying its poster's bucket.
+     *
+     * @return A copy of the Message with its new Message ID, null if the Message IDs have run out.
+     */
+    private Message withNewId(Message msg){
+        int next = sequence.incrementAndGet();
+        if(next > MAX_SEQUENCE){
+            ErrorLog.failure("ShardedMessageDAO.withNewId", new IllegalStateException("Message IDs exhausted"));
+            return null;
+        }
+        return new Message((next << BUCKET_BITS) | bucketOf(msg.getPosted_by()), msg.getPosted_by(),
+                msg.getMessage_text(), msg.getTime_posted_epoch());
+    }
+
+    private JdbcMessageDAO shardOfAccount(int accountId){
+        return shards.get(ring.ownerOf(bucketOf(accountId)));
+    }
+
+    private JdbcMessageDAO shardOfMessage(int id){
+        return shards.get(shardIndexOfMessage(id));
+    }
+
+    private int shardIndexOfMessage(int id){
+        Integer bucket = misplaced.get(id);
+        return ring.ownerOf(bucket != null ? bucket : id & BUCKET_MASK);
+    }
+
+    /**
+     * Runs queries on the shards in parallel, the first on the calling thread.
+     *
+     * @return Their results, in the order of the queries.
+     */
+    private <T> List<T> scatter(List<Callable<T>> queries){
+        List<Future<T>> futures = new ArrayList<>();
+        for(Callable<T> query : queries.subList(Math.min(1, queries.size()), queries.size())){
+            futures.add(scatterPool.submit(query));
+        }
+        List<T> results = new ArrayList<>();
+        try{
+            if(!queries.isEmpty()){
+                results.add(queries.get(0).call());
+            }
+            for(Future<T> future : futures){
+                results.add(future.get());
+            }
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while querying shards", e);
+        } catch(ExecutionException e){
+            throw new IllegalStateException("shard query failed", e.getCause());
+        } catch(Exception e){
+            throw new IllegalStateException("shard query failed", e);
+        }
+        return results;
+    }
+
+    private static void createSchema(DataSource dataSource) throws SQLException {
+        try(Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()){
+            for(String sql : SCHEMA){
+                st.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Adds the shard's Messages whose Message ID does not carry their bucket to the directory.
+     */
+    private void findMisplaced(DataSource dataSource) throws SQLException {
+        try(Connection conn = dataSource.getConnection()){
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT message_id, posted_by FROM message WHERE BITAND(message_id, " + BUCKET_MASK + ") <> "
+                    + "BITAND(posted_by, " + BUCKET_MASK + ");");
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                misplaced.put(rs.getInt(1), bucketOf(rs.getInt(2)));
+            }
+        }
+    }
+
+    /**
+     * @return true if any of the Message IDs is taken on the shard, or the shard could not be asked.
+     */
+    private static boolean anyExist(DataSource dataSource, List<Integer> ids){
+        try(Connection conn = dataSource.getConnection()){
+            PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM message WHERE message_id = ANY(?);");
+            ps.setArray(1, conn.createArrayOf("INTEGER", ids.toArray()));
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            return rs.getLong(1) > 0;
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("ShardedMessageDAO.anyExist", e);
+        }
+        return true;
+    }
+
+    private static void deleteAll(DataSource dataSource, List<Message> msgs){
+        Object[] ids = msgs.stream().map(Message::getMessage_id).toArray();
+        try(Connection conn = dataSource.getConnection()){
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM message WHERE message_id = ANY(?);");
+            ps.setArray(1, conn.createArrayOf("INTEGER", ids));
+            ps.executeUpdate();
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("ShardedMessageDAO.deleteAll", e);
+        }
+    }
+
+    /**
+     * Copies one bucket's Messages to another shard a page per transaction, then deletes them from their old one.
+     *
+     * @return Number of Messages moved.
+     */
+    private static long moveBucket(DataSource source, DataSource target, int bucket) throws SQLException {
+        long rows = 0;
+        try(Connection from = source.getConnection(); Connection to = target.getConnection()){
+            PreparedStatement select = from.prepareStatement("SELECT * FROM message WHERE BITAND(posted_by, "
+                    + BUCKET_MASK + ") = ? AND message_id > ? ORDER BY message_id LIMIT ?;");
+            PreparedStatement merge = to.prepareStatement("MERGE INTO message (message_id, posted_by, message_text, "
+                    + "time_posted_epoch, version) KEY (message_id) VALUES (?, ?, ?, ?, ?);");
+            to.setAutoCommit(false);
+            int after = Integer.MIN_VALUE;
+            while(true){
+                select.setInt(1, bucket);
+                select.setInt(2, after);
+                select.setInt(3, JdbcMessageDAO.STREAM_FETCH_SIZE);
+                ResultSet rs = select.executeQuery();
+                int page = 0;
+                while(rs.next()){
+                    after = rs.getInt(1);
+                    merge.setInt(1, after);
+                    merge.setInt(2, rs.getInt(2));
+                    merge.setString(3, rs.getString(3));
+                    merge.setLong(4, rs.getLong(4));
+                    merge.setLong(5, rs.getLong("version"));
+                    merge.addBatch();
+                    page++;
+                }
+                if(page == 0){
+                    break;
+                }
+                merge.executeBatch();
+                to.commit();
+                rows += page;
+            }
+            PreparedStatement delete = from.prepareStatement("DELETE FROM message WHERE BITAND(posted_by, "
+                    + BUCKET_MASK + ") = ?;");
+            delete.setInt(1, bucket);
+            delete.executeUpdate();
+        }
+        return rows;
+    }
+
+    /**
+     * Reads one shard in Message ID order a page at a time.
+     */
+    private static final class Cursor {
+        private final JdbcMessageDAO shard;
+        private List<Message> page = Collections.emptyList();
+        private int position = -1;
+        private boolean exhausted;
+
+        Cursor(JdbcMessageDAO shard){
+            this.shard = shard;
+        }
+
+        Message current(){
+            return page.get(position);
+        }
+
+        int id(){
+            return current().getMessage_id();
+        }
+
+        /**
+         * @return true if there is another Message, now current.
+         */
+        boolean advance(){
+            if(++position < page.size()){
+                return true;
+            }
+            if(exhausted){
+                return false;
+            }
+            int after = page.isEmpty() ? Integer.MIN_VALUE : page.get(page.size() - 1).getMessage_id();
+            page = shard.getMessagesAbove(after, JdbcMessageDAO.STREAM_FETCH_SIZE);
+            exhausted = page.size() < JdbcMessageDAO.STREAM_FETCH_SIZE;
+            position = 0;
+            return !page.isEmpty();
+        }
+    }
+}
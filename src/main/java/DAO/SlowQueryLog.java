@@ -0,0 +1,275 @@
+package DAO;
+
+import Util.AppConfig;
+import Util.ErrorLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+/**
+ * Keeps the most recent DAO calls that took longer than db.slow_query.threshold_ms, with the statement, its
+ * parameters (passwords redacted) and the plan H2 chose for it.
+ *
+ * The plan is captured off the request path: a single background thread runs EXPLAIN ANALYZE for queries, which
+ * runs the query again and reports the rows each table scan read, or plain EXPLAIN for statements that change rows,
+ * which must not run twice. A SELECT from a data change delta table (FINAL, OLD or NEW TABLE) changes rows too. If plans are already waiting to be captured, the entry is kept without one.
+ */
+public class SlowQueryLog {
+
+    /**
+     * Most slow calls waiting for their plan before further ones are kept without.
+     */
+    private static final int EXPLAIN_QUEUE = 16;
+
+    /**
+     * A data change delta table, as in SELECT * FROM FINAL TABLE (UPDATE ...): a SELECT that writes.
+     */
+    private static final Pattern CHANGES_ROWS = Pattern.compile("\\b(FINAL|OLD|NEW)\\s+TABLE\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final SlowQueryLog SHARED = new SlowQueryLog(
+            AppConfig.get().getInt("db.slow_query.threshold_ms"), AppConfig.get().getInt("db.slow_query.capacity"));
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final int capacity;
+    private final ThreadPoolExecutor explainer;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder unexplained = new LongAdder();
+    private volatile long thresholdNanos;
+
+    /**
+     * @param thresholdMillis Calls taking at least this long are kept.
+     * @param capacity Most calls kept; the oldest is dropped for a new one.
+     */
+    public SlowQueryLog(long thresholdMillis, int capacity){
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.capacity = capacity;
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(EXPLAIN_QUEUE), task -> {
+                    Thread thread = new Thread(task, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return The log every JDBC DAO reports to.
+     */
+    public static SlowQueryLog shared(){
+        return SHARED;
+    }
+
+    /**
+     * @return Shortest duration that counts as slow, in nanoseconds.
+     */
+    public long getThresholdNanos(){
+        return thresholdNanos;
+    }
+
+    /**
+     * @param millis Shortest duration that counts as slow from now on.
+     */
+    public void setThresholdMillis(long millis){
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Keeps a slow call and queues the capture of its plan.
+     *
+     * @param method Class and method that made the call.
+     * @param sql Last statement the call prepared.
+     * @param params Values bound to it, null if none were noted.
+     * @param elapsedNanos How long the whole call took.
+     * @param connectionWaitNanos How much of that was spent waiting for a connection.
+     * @param dataSource Database the statement ran on, null if no connection was taken.
+     */
+    void record(String method, String sql, Object[] params, long elapsedNanos, long connectionWaitNanos,
+            DataSource dataSource){
+        Object[] values = params == null ? new Object[0] : params;
+        Entry entry = new Entry(System.currentTimeMillis(), method, sql, redact(values),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), TimeUnit.NANOSECONDS.toMillis(connectionWaitNanos));
+        synchronized(entries){
+            if(entries.size() == capacity){
+                entries.removeFirst();
+            }
+            entries.addLast(entry);
+        }
+        recorded.increment();
+        if(dataSource == null){
+            return;
+        }
+        try{
+            explainer.execute(() -> entry.plan = explain(dataSource, sql, values));
+        } catch(RejectedExecutionException e){
+            unexplained.increment();
+        }
+    }
+
+    /**
+     * @return The slow calls kept, newest first.
+     */
+    public List<Entry> getEntries(){
+        List<Entry> copy;
+        synchronized(entries){
+            copy = new ArrayList<>(entries);
+        }
+        Collections.reverse(copy);
+        return copy;
+    }
+
+    /**
+     * @return Number of slow calls seen, including those since dropped from the log.
+     */
+    public long getRecordedCount(){
+        return recorded.sum();
+    }
+
+    /**
+     * @return Number of slow calls kept without a plan because others were waiting for theirs.
+     */
+    public long getUnexplainedCount(){
+        return unexplained.sum();
+    }
+
+    /**
+     * Empties the log, for tests.
+     */
+    public void clear(){
+        synchronized(entries){
+            entries.clear();
+        }
+    }
+
+    /**
+     * Asks H2 for the plan of a statement, binding the same values; parameters not noted are bound to NULL.
+     *
+     * @return The plan, or why it could not be captured.
+     */
+    private static String explain(DataSource dataSource, String sql, Object[] values){
+        boolean query = sql.trim().regionMatches(true, 0, "SELECT", 0, 6) && !CHANGES_ROWS.matcher(sql).find();
+        try(Connection conn = dataSource.getConnection()){
+            PreparedStatement ps = conn.prepareStatement((query ? "EXPLAIN ANALYZE " : "EXPLAIN ") + sql);
+            int count = ps.getParameterMetaData().getParameterCount();
+            for(int i = 0; i < count; i++){
+                Object value = i < values.length ? values[i] : null;
+                ps.setObject(i + 1, value instanceof Secret ? ((Secret) value).value : value);
+            }
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getString(1) : "";
+        } catch(SQLException e){
+            ErrorLog.sqlFailure("SlowQueryLog.explain", e);
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    private static List<String> redact(Object[] values){
+        List<String> shown = new ArrayList<>(values.length);
+        for(Object value : values){
+            shown.add(value instanceof Object[] ? Arrays.toString((Object[]) value) : String.valueOf(value));
+        }
+        return shown;
+    }
+
+    /**
+     * A parameter value that is bound when capturing the plan but never shown.
+     */
+    static final class Secret {
+        final Object value;
+
+        Secret(Object value){
+            this.value = value;
+        }
+
+        @Override
+        public String toString(){
+            return "<redacted>";
+        }
+    }
+
+    /**
+     * One slow call. Serialized as JSON by the admin endpoint through its getters.
+     */
+    public static final class Entry {
+        private final long time;
+        private final String method;
+        private final String sql;
+        private final List<String> params;
+        private final long durationMillis;
+        private final long connectionWaitMillis;
+        private volatile String plan;
+
+        Entry(long time, String method, String sql, List<String> params, long durationMillis,
+                long connectionWaitMillis){
+            this.time = time;
+            this.method = method;
+            this.sql = sql;
+            this.params = params;
+            this.durationMillis = durationMillis;
+            this.connectionWaitMillis = connectionWaitMillis;
+        }
+
+        /**
+         * @return When the call ended, in epoch milliseconds.
+         */
+        public long getTime(){
+            return time;
+        }
+
+        /**
+         * @return Class and method that made the call.
+         */
+        public String getMethod(){
+            return method;
+        }
+
+        /**
+         * @return The statement.
+         */
+        public String getSql(){
+            return sql;
+        }
+
+        /**
+         * @return The values bound to it, with passwords redacted.
+         */
+        public List<String> getParams(){
+            return params;
+        }
+
+        /**
+         * @return How long the whole call took.
+         */
+        public long getDurationMillis(){
+            return durationMillis;
+        }
+
+        /**
+         * @return How much of that was spent waiting for a connection.
+         */
+        public long getConnectionWaitMillis(){
+            return connectionWaitMillis;
+        }
+
+        /**
+         * @return The plan H2 reports, null while it is still being captured or if it was skipped.
+         */
+        public String getPlan(){
+            return plan;
+        }
+    }
+}
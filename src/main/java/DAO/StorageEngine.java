@@ -0,0 +1,271 @@
+package DAO;
+
+import Util.AppConfig;
+import Util.ConnectionUtil;
+import Model.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * The set of DAOs the application runs against, chosen once at startup.
+ *
+ * "jdbc" is the H2 database in ConnectionUtil. "memory" keeps everything in concurrent maps with primitive
+ * secondary indexes; it is loaded from the database when created and never writes back, so it suits benchmarks,
+ * tests and throwaway instances rather than data that must survive a restart. "log" is the memory engine with
+ * Messages kept in a LogMessageDAO instead, which does survive a restart; it is seeded with Messages from the
+ * database only when its directory is new. Its Accounts and follows are loaded from the database every time and
+ * written through to it, so they survive a restart too. "sharded" keeps Accounts and follows in the database and
+ * spreads Messages over several databases by poster, see ShardedMessageDAO; it is seeded from the database when its
+ * shards are empty.
+ *
+ * The "jdbc" engine can also send reads to in-memory read replicas (db.replicas), see ReplicaSet. Requests must
+ * then be bracketed with beginRequest and endRequest so that clients read their own writes. State built once from
+ * a read and kept, such as home timelines, reads through getPrimaryMessageDAO and getPrimaryFollowDAO instead.
+ */
+public class StorageEngine {
+
+    private final String name;
+    private final MessageDAO messageDAO;
+    private final AccountDAO accountDAO;
+    private final FollowDAO followDAO;
+    private final ReplicaSet replicas;
+    private final MessageDAO primaryMessageDAO;
+    private final FollowDAO primaryFollowDAO;
+
+    private StorageEngine(String name, MessageDAO messageDAO, AccountDAO accountDAO, FollowDAO followDAO){
+        this(name, messageDAO, accountDAO, followDAO, null, messageDAO, followDAO);
+    }
+
+    private StorageEngine(String name, MessageDAO messageDAO, AccountDAO accountDAO, FollowDAO followDAO,
+            ReplicaSet replicas, MessageDAO primaryMessageDAO, FollowDAO primaryFollowDAO){
+        this.name = name;
+        this.messageDAO = messageDAO;
+        this.accountDAO = accountDAO;
+        this.followDAO = followDAO;
+        this.replicas = replicas;
+        this.primaryMessageDAO = primaryMessageDAO;
+        this.primaryFollowDAO = primaryFollowDAO;
+    }
+
+    /**
+     * @param config Configuration naming the engine in storage.engine, the log directory in storage.log.dir, the
+     *               number of read replicas for the "jdbc" engine in db.replicas and the Message shards in
+     *               storage.shard*.
+     * @return The configured engine.
+     * @throws IllegalArgumentException if the setting names no known engine.
+     * @throws UncheckedIOException if the "log" engine's directory cannot be opened.
+     * @throws IllegalStateException if the replicas cannot be created or the shards opened.
+     */
+    public static StorageEngine fromConfig(AppConfig config){
+        String engine = config.getString("storage.engine");
+        switch(engine){
+            case "jdbc":
+                int count = config.getInt("db.replicas");
+                if(count == 0){
+                    return jdbc();
+                }
+                try{
+                    return replicated(count, config.getInt("db.replica.pool.max_connections"));
+                } catch(SQLException e){
+                    throw new IllegalStateException("cannot create read replicas", e);
+                }
+            case "memory":
+                return memory();
+            case "log":
+                try{
+                    return log(Paths.get(config.getString("storage.log.dir")));
+                } catch(IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            case "sharded":
+                try{
+                    return sharded(ConnectionUtil.createShardPools(config, config.getInt("storage.shards")));
+                } catch(SQLException e){
+                    throw new IllegalStateException("cannot open the Message shards", e);
+                }
+            default:
+                throw new IllegalArgumentException("unknown storage.engine: " + engine);
+        }
+    }
+
+    /**
+     * @return An engine backed by the database in ConnectionUtil.
+     */
+    public static StorageEngine jdbc(){
+        return new StorageEngine("jdbc", new JdbcMessageDAO(), new JdbcAccountDAO(), new JdbcFollowDAO());
+    }
+
+    /**
+     * @param count Number of read replicas.
+     * @param poolSize Maximum connections per replica.
+     * @return An engine that writes to the database in ConnectionUtil and reads from in-memory replicas of it.
+     * @throws SQLException if the database cannot be copied to the replicas.
+     */
+    public static StorageEngine replicated(int count, int poolSize) throws SQLException {
+        DataSource primary = ConnectionUtil.getDataSource();
+        ReplicaSet replicas = new ReplicaSet(primary, count, poolSize);
+        return new StorageEngine("jdbc", new ReplicatedMessageDAO(replicas, primary),
+                new ReplicatedAccountDAO(replicas, primary), new ReplicatedFollowDAO(replicas, primary), replicas,
+                new ReplicatedMessageDAO(replicas, primary, true), new ReplicatedFollowDAO(replicas, primary, true));
+    }
+
+    /**
+     * @param shards One database per Message shard, in shard order.
+     * @return An engine with Accounts and follows in the database in ConnectionUtil and Messages on the shards.
+     * @throws SQLException if a shard cannot be opened.
+     */
+    public static StorageEngine sharded(List<DataSource> shards) throws SQLException {
+        JdbcAccountDAO accounts = new JdbcAccountDAO();
+        JdbcFollowDAO follows = new JdbcFollowDAO();
+        ShardedMessageDAO messages = new ShardedMessageDAO(shards, accounts::exists, follows);
+        if(messages.isFresh()){
+            List<Message> batch = new ArrayList<>();
+            new JdbcMessageDAO().forEachMessage(msg -> {
+                batch.add(msg);
+                if(batch.size() == JdbcMessageDAO.STREAM_FETCH_SIZE){
+                    messages.insertMessages(batch);
+                    batch.clear();
+                }
+            });
+            messages.insertMessages(batch);
+            messages.restartMessageIds();
+        }
+        return new StorageEngine("sharded", messages, accounts, follows);
+    }
+
+    /**
+     * @return An in-memory engine holding a copy of everything currently in the database.
+     */
+    public static StorageEngine memory(){
+        StorageEngine engine = emptyMemory();
+        engine.load(jdbc(), true);
+        return engine;
+    }
+
+    /**
+     * @param directory Directory of the Message log's segment files.
+     * @return An engine with Accounts and follows read from a copy in memory and written through to the database,
+     *         and Messages in a log.
+     * @throws IOException if the log cannot be opened.
+     */
+    public static StorageEngine log(Path directory) throws IOException {
+        InMemoryAccountDAO accounts = new InMemoryAccountDAO();
+        InMemoryFollowDAO follows = new InMemoryFollowDAO(accounts);
+        LogMessageDAO messages = new LogMessageDAO(directory, LogMessageDAO.DEFAULT_SEGMENT_SIZE,
+                accounts::exists, follows);
+        new StorageEngine("log", messages, accounts, follows).load(jdbc(), messages.isFresh());
+        return new StorageEngine("log", messages, new WriteThroughAccountDAO(new JdbcAccountDAO(), accounts),
+                new WriteThroughFollowDAO(new JdbcFollowDAO(), follows));
+    }
+
+    /**
+     * @return An in-memory engine with no data in it.
+     */
+    public static StorageEngine emptyMemory(){
+        InMemoryAccountDAO accounts = new InMemoryAccountDAO();
+        InMemoryFollowDAO follows = new InMemoryFollowDAO(accounts);
+        return new StorageEngine("memory", new InMemoryMessageDAO(accounts, follows), accounts, follows);
+    }
+
+    /**
+     * Copies Accounts, follows and optionally Messages from another engine into this one.
+     */
+    private void load(StorageEngine source, boolean messages){
+        source.accountDAO.forEachAccount(acc -> accountDAO.insertAccounts(Collections.singletonList(acc)));
+        source.followDAO.forEachFollow(followDAO::insertFollow);
+        accountDAO.restartAccountIds();
+        if(messages){
+            source.messageDAO.forEachMessage(msg -> messageDAO.insertMessages(Collections.singletonList(msg)));
+            messageDAO.restartMessageIds();
+        }
+    }
+
+    /**
+     * Starts a request on the current thread. With read replicas, its reads will see the client's own earlier writes.
+     *
+     * @param client Identifies the client.
+     */
+    public void beginRequest(String client){
+        if(replicas != null){
+            replicas.beginRequest(client);
+        }
+    }
+
+    /**
+     * Ends the request on the current thread.
+     *
+     * @param client Identifies the client.
+     */
+    public void endRequest(String client){
+        if(replicas != null){
+            replicas.endRequest(client);
+        }
+    }
+
+    /**
+     * @return true if the engine can serve requests: the database is reachable, or the engine does not use it after
+     *         loading. The "log" engine writes Accounts and follows to it.
+     */
+    public boolean isReachable(){
+        return name.equals("memory") || ConnectionUtil.isReachable();
+    }
+
+    /**
+     * @return The read replicas, null if this engine has none.
+     */
+    public ReplicaSet getReplicas(){
+        return replicas;
+    }
+
+    /**
+     * @return "jdbc", "memory" or "log".
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * @return The MessageDAO of this engine.
+     */
+    public MessageDAO getMessageDAO(){
+        return messageDAO;
+    }
+
+    /**
+     * @return The AccountDAO of this engine.
+     */
+    public AccountDAO getAccountDAO(){
+        return accountDAO;
+    }
+
+    /**
+     * @return The FollowDAO of this engine.
+     */
+    public FollowDAO getFollowDAO(){
+        return followDAO;
+    }
+
+    /**
+     * @return A MessageDAO of this engine whose reads see every committed write, for state kept from a read, such
+     *         as home timelines and Message counts. The same as getMessageDAO unless the engine has replicas.
+     */
+    public MessageDAO getPrimaryMessageDAO(){
+        return primaryMessageDAO;
+    }
+
+    /**
+     * @return A FollowDAO of this engine whose reads see every committed write. The same as getFollowDAO unless
+     *         the engine has replicas.
+     */
+    public FollowDAO getPrimaryFollowDAO(){
+        return primaryFollowDAO;
+    }
+}
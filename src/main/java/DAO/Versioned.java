@@ -0,0 +1,36 @@
+package DAO;
+
+/**
+ * A stored object together with the version it was read at. The version changes on every write to the object, so
+ * comparing versions tells whether it changed in between; it is what the API sends as the ETag of a Message.
+ *
+ * @param <T> Type of the object.
+ */
+public final class Versioned<T> {
+
+    private final T value;
+    private final long version;
+
+    /**
+     * @param value The object as read.
+     * @param version Its version when read.
+     */
+    public Versioned(T value, long version){
+        this.value = value;
+        this.version = version;
+    }
+
+    /**
+     * @return The object as read.
+     */
+    public T getValue(){
+        return value;
+    }
+
+    /**
+     * @return Its version when read.
+     */
+    public long getVersion(){
+        return version;
+    }
+}
@@ -0,0 +1,73 @@
+package DAO;
+
+import Model.Account;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * AccountDAO that reads from a copy of the Accounts in memory and writes to the database as well, so the Accounts
+ * outlive the process. The database assigns Account IDs and its answer decides whether a write succeeded; the
+ * copy then takes the row as the database stored it.
+ */
+public class WriteThroughAccountDAO implements AccountDAO {
+
+    private final JdbcAccountDAO database;
+    private final AccountDAO memory;
+
+    /**
+     * @param database Where writes go first.
+     * @param memory Copy of the database's Accounts that reads are served from.
+     */
+    public WriteThroughAccountDAO(JdbcAccountDAO database, AccountDAO memory){
+        this.database = database;
+        this.memory = memory;
+    }
+
+    @Override
+    public Account insertAccount(Account acc){
+        Account inserted = database.insertAccount(acc);
+        if(inserted != null){
+            memory.insertAccounts(Collections.singletonList(inserted));
+        }
+        return inserted;
+    }
+
+    @Override
+    public Account getAccount(Account acc){
+        return memory.getAccount(acc);
+    }
+
+    @Override
+    public long forEachAccount(Consumer<Account> visitor){
+        return memory.forEachAccount(visitor);
+    }
+
+    /**
+     * Inserts in the database, then copies every row the batch added: those that kept their own Account ID and
+     * those given one above the previous highest. A row another writer already copied is skipped.
+     */
+    @Override
+    public boolean insertAccounts(List<Account> accs){
+        int before = database.getMaxAccountId();
+        if(!database.insertAccounts(accs)){
+            return false;
+        }
+        for(Account acc : accs){
+            if(acc.getAccount_id() > 0 && acc.getAccount_id() <= before){
+                memory.insertAccounts(Collections.singletonList(acc));
+            }
+        }
+        for(Account acc : database.getAccountsAbove(before)){
+            memory.insertAccounts(Collections.singletonList(acc));
+        }
+        return true;
+    }
+
+    @Override
+    public void restartAccountIds(){
+        database.restartAccountIds();
+        memory.restartAccountIds();
+    }
+}
@@ -0,0 +1,57 @@
+package DAO;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * FollowDAO that reads from a copy of the follows in memory and writes to the database as well, so the follows
+ * outlive the process. Writes are applied to the database first and one at a time, so the copy sees them in the
+ * database's order.
+ */
+public class WriteThroughFollowDAO implements FollowDAO {
+
+    private final JdbcFollowDAO database;
+    private final FollowDAO memory;
+
+    /**
+     * @param database Where writes go first.
+     * @param memory Copy of the database's follows that reads are served from.
+     */
+    public WriteThroughFollowDAO(JdbcFollowDAO database, FollowDAO memory){
+        this.database = database;
+        this.memory = memory;
+    }
+
+    @Override
+    public synchronized boolean insertFollow(int followerId, int followeeId){
+        if(!database.insertFollow(followerId, followeeId)){
+            return false;
+        }
+        memory.insertFollow(followerId, followeeId);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteFollow(int followerId, int followeeId){
+        if(!database.deleteFollow(followerId, followeeId)){
+            return false;
+        }
+        memory.deleteFollow(followerId, followeeId);
+        return true;
+    }
+
+    @Override
+    public List<Integer> getFollowerIds(int followeeId){
+        return memory.getFollowerIds(followeeId);
+    }
+
+    @Override
+    public List<Integer> getFolloweeIds(int followerId){
+        return memory.getFolloweeIds(followerId);
+    }
+
+    @Override
+    public void forEachFollow(BiConsumer<Integer, Integer> visitor){
+        memory.forEachFollow(visitor);
+    }
+}
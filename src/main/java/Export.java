@@ -0,0 +1,37 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import DAO.StorageEngine;
+import Service.ExportService;
+import Util.AppConfig;
+
+/**
+ * Command line entry point that dumps a table as newline-delimited JSON, one row per line.
+ *
+ * Usage: Export (messages | accounts) [output file]
+ * Reads from the storage engine AppConfig names. Writes to standard output when no file is given; the row count
+ * and rows/sec are reported on standard error.
+ */
+public class Export {
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1 || !(args[0].equals("messages") || args[0].equals("accounts"))){
+            System.err.println("Usage: Export (messages | accounts) [output file]");
+            System.exit(2);
+        }
+        StorageEngine storage = StorageEngine.fromConfig(AppConfig.load());
+        ExportService exportService = new ExportService(storage.getMessageDAO(), storage.getAccountDAO());
+        WritableByteChannel out = args.length > 1
+                ? new FileOutputStream(args[1]).getChannel()
+                : Channels.newChannel(System.out);
+        try{
+            ExportService.Report report = args[0].equals("messages")
+                    ? exportService.exportMessages(out)
+                    : exportService.exportAccounts(out);
+            System.err.println("Exported " + args[0] + ": " + report);
+        } finally {
+            out.close();
+        }
+    }
+}
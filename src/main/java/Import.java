@@ -0,0 +1,32 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import DAO.StorageEngine;
+import Service.ImportService;
+import Util.AppConfig;
+
+/**
+ * Command line entry point that bulk loads a newline-delimited JSON or CSV file into a table.
+ *
+ * Usage: Import (messages | accounts) (file.ndjson | file.csv) [rows per transaction]
+ * Writes to the storage engine AppConfig names. A progress line is printed after every transaction and a summary at
+ * the end. Import accounts before the messages that reference them.
+ */
+public class Import {
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2 || !(args[0].equals("messages") || args[0].equals("accounts"))){
+            System.err.println("Usage: Import (messages | accounts) (file.ndjson | file.csv) [rows per transaction]");
+            System.exit(2);
+        }
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : ImportService.DEFAULT_CHUNK_SIZE;
+        StorageEngine storage = StorageEngine.fromConfig(AppConfig.load());
+        ImportService importService = new ImportService(storage.getMessageDAO(), storage.getAccountDAO(), chunkSize,
+                System.err);
+        Path file = Paths.get(args[1]);
+        ImportService.Report report = args[0].equals("messages")
+                ? importService.importMessages(file)
+                : importService.importAccounts(file);
+        System.err.println("Imported " + args[0] + ": " + report);
+    }
+}
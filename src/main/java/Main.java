@@ -1,14 +1,46 @@
 import Controller.SocialMediaController;
+import Util.AppConfig;
 import io.javalin.Javalin;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * This class is provided with a main method to allow you to manually run and test your application. This class will not
  * affect your program in any way and you may write whatever code you like here.
+ *
+ * Settings come from AppConfig; pick a profile with -Dapp.profile=test|bench|prod (prod by default).
+ * With --exit-when-ready the server answers one request to itself and stops, logging how long after JVM start it
+ * became ready and answered; the appcds Maven profile uses this as the training run for its class-data archive.
  */
 public class Main {
-    public static void main(String[] args) {
-        SocialMediaController controller = new SocialMediaController();
+    public static void main(String[] args) throws IOException, InterruptedException {
+        AppConfig config = AppConfig.load();
+        Logger log = LoggerFactory.getLogger(Main.class);
+        log.info(config.describe());
+        log.info("Database URL: {}", config.getDatabaseUrl());
+        SocialMediaController controller = new SocialMediaController(config);
         Javalin app = controller.startAPI();
-        app.start(8080);
+        controller.getReadiness().thenRun(() -> log.info("Ready {} ms after JVM start, {} ms of it warming the caches",
+                ManagementFactory.getRuntimeMXBean().getUptime(), controller.getWarmUpService().getMillis()));
+        app.start(config.getInt("http.port"));
+
+        if(args.length > 0 && args[0].equals("--exit-when-ready")){
+            controller.getReadiness().join();
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:" + config.getInt("http.port") + "/ready")).build();
+            HttpResponse<String> response = HttpClient.newHttpClient()
+                    .send(request, HttpResponse.BodyHandlers.ofString());
+            log.info("First request answered {} with {} ms after JVM start", response.statusCode(),
+                    ManagementFactory.getRuntimeMXBean().getUptime());
+            app.stop();
+        }
     }
 }
@@ -0,0 +1,32 @@
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import DAO.ShardedMessageDAO;
+import Util.AppConfig;
+import Util.ConnectionUtil;
+
+/**
+ * Command line entry point that moves Messages between shards when the number of shards changes.
+ *
+ * Usage: Rebalance (current shards) (new shards)
+ * Stop the server first, and set storage.shards to the new number before starting it again. Shard databases are
+ * named by storage.shard.url. Only the buckets whose shard changes are moved, so adding one shard to N moves about
+ * 1/(N+1) of the Messages.
+ */
+public class Rebalance {
+    public static void main(String[] args) throws SQLException {
+        if(args.length != 2){
+            System.err.println("Usage: Rebalance (current shards) (new shards)");
+            System.exit(2);
+        }
+        int from = Integer.parseInt(args[0]);
+        int to = Integer.parseInt(args[1]);
+        List<DataSource> shards = ConnectionUtil.createShardPools(AppConfig.load(), Math.max(from, to));
+        long start = System.nanoTime();
+        long moved = ShardedMessageDAO.rebalance(shards, from, to);
+        System.err.println("Moved " + moved + " messages from " + from + " to " + to + " shards in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms; now set storage.shards=" + to);
+    }
+}
@@ -0,0 +1,126 @@
+package Service;
+
+import Model.Message;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache of each Account's full list of Messages, invalidated exactly rather than by age.
+ *
+ * Every Account has a version, which a call to changed moves on after each write to its Messages has committed. A
+ * list is cached with the version its reader saw before it went to the DAO and is served only while that is still
+ * the Account's version, so a list read before a write is never served after it, however the read and the write
+ * interleave. Versions are kept for every Account written to while the cache lives, one long each, as forgetting
+ * one could make an old list look current again. When the cache is full an arbitrary list is evicted.
+ *
+ * Cached lists are read-only and shared between callers.
+ */
+public class AccountMessagesCache {
+
+    private final int capacity;
+    private final ConcurrentHashMap<Integer, Entry> lists = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity Most Accounts whose lists are kept; 0 turns the cache off.
+     */
+    public AccountMessagesCache(int capacity){
+        if(capacity < 0){
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param accountId Account ID no. of the poster.
+     * @return The cached list if it is still current, null if not.
+     */
+    public List<Message> get(int accountId){
+        Entry cached = capacity == 0 ? null : lists.get(accountId);
+        if(cached == null || cached.version != version(accountId)){
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.messages;
+    }
+
+    /**
+     * @param accountId Account ID no. of the poster.
+     * @return Version to take before reading the Account's Messages from the DAO and pass to fill with them.
+     */
+    public long version(int accountId){
+        AtomicLong version = versions.get(accountId);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Caches an Account's Messages as read from the DAO. A newer list already cached is kept.
+     *
+     * @param accountId Account ID no. of the poster.
+     * @param readVersion What version returned before the read.
+     * @param messages The read-only list as read.
+     */
+    public void fill(int accountId, long readVersion, List<Message> messages){
+        if(capacity == 0 || messages == null || readVersion != version(accountId)){
+            return;
+        }
+        if(lists.size() >= capacity && !lists.containsKey(accountId)){
+            Iterator<Integer> victims = lists.keySet().iterator();
+            if(victims.hasNext()){
+                victims.next();
+                victims.remove();
+            }
+        }
+        lists.merge(accountId, new Entry(readVersion, messages),
+                (old, read) -> read.version >= old.version ? read : old);
+    }
+
+    /**
+     * Moves an Account's version on after a write to its Messages has committed, so no list read before it is
+     * served again.
+     *
+     * @param accountId Account ID no. of the poster.
+     */
+    public void changed(int accountId){
+        versions.computeIfAbsent(accountId, id -> new AtomicLong()).incrementAndGet();
+        lists.remove(accountId);
+    }
+
+    /**
+     * @return Number of Accounts whose lists are cached.
+     */
+    public int size(){
+        return lists.size();
+    }
+
+    /**
+     * @return Number of lookups answered from the cache.
+     */
+    public long getHitCount(){
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups that had to go to the DAO.
+     */
+    public long getMissCount(){
+        return misses.sum();
+    }
+
+    private static final class Entry {
+        final long version;
+        final List<Message> messages;
+
+        Entry(long version, List<Message> messages){
+            this.version = version;
+            this.messages = messages;
+        }
+    }
+}
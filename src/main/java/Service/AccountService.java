@@ -2,6 +2,7 @@ package Service;
 
 import Model.Account;
 import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
 
 public class AccountService {
 
@@ -11,7 +12,7 @@ public class AccountService {
      * No-args constructor
      */
     public AccountService(){
-        accountDAO = new AccountDAO();
+        accountDAO = new JdbcAccountDAO();
     }
 
     /**
@@ -45,10 +46,7 @@ public class AccountService {
      * @return Account object if successfull, null if not.
      */
     private Account validateAddAccount(Account acc){
-        if((acc.getPassword()).length() < 4){
-            return null;
-        }
-        if(acc.getUsername() == null || acc.getUsername().equals("")){
+        if(!meetsRequirements(acc)){
             return null;
         }
         if(accountDAO.getAccount(acc) != null){
@@ -58,6 +56,18 @@ public class AccountService {
         return acc;
     }
 
+    /**
+     * Checks the username and password requirements that do not need the database: a username that is not blank
+     * and a password of at least 4 characters. Shared with the bulk importer.
+     * 
+     * @param acc Account object to be checked.
+     * @return true if the requirements are met, false if not.
+     */
+    public static boolean meetsRequirements(Account acc){
+        return acc.getUsername() != null && !acc.getUsername().equals("")
+                && acc.getPassword() != null && acc.getPassword().length() >= 4;
+    }
+
     /**
      * Service layer implementation for getting an existing Account by its username and password.
      * 
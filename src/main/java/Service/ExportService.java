@@ -0,0 +1,166 @@
+package Service;
+
+import Model.Account;
+import Model.Message;
+import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
+import DAO.MessageDAO;
+import DAO.JdbcMessageDAO;
+import Util.ModelCodec;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes whole tables as newline-delimited JSON (one object per line) for backups and analytics.
+ *
+ * Rows are streamed from a database cursor straight into a JSON generator and out through a buffered channel, so
+ * memory use does not grow with the size of the table.
+ */
+public class ExportService {
+
+    /**
+     * Bytes buffered before each write to the output channel.
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private MessageDAO messageDAO;
+    private AccountDAO accountDAO;
+
+    /**
+     * No-args constructor
+     */
+    public ExportService(){
+        this(new JdbcMessageDAO(), new JdbcAccountDAO());
+    }
+
+    /**
+     * Constructor that creates an ExportService with specified DAO objects.
+     *
+     * @param messageDAO The message DAO layer that is being used.
+     * @param accountDAO The account DAO layer that is being used.
+     */
+    public ExportService(MessageDAO messageDAO, AccountDAO accountDAO){
+        this.messageDAO = messageDAO;
+        this.accountDAO = accountDAO;
+    }
+
+    /**
+     * Writes every Message as one JSON object per line, in Message ID order.
+     *
+     * @param out Channel to write to. It is flushed but not closed.
+     * @return Number of rows written and how long it took.
+     * @throws IOException if the channel cannot be written to.
+     */
+    public Report exportMessages(WritableByteChannel out) throws IOException {
+        return export(out, gen -> messageDAO.forEachMessage(msg -> write(gen, msg)));
+    }
+
+    /**
+     * Writes every Account, including its password, as one JSON object per line, in Account ID order.
+     *
+     * @param out Channel to write to. It is flushed but not closed.
+     * @return Number of rows written and how long it took.
+     * @throws IOException if the channel cannot be written to.
+     */
+    public Report exportAccounts(WritableByteChannel out) throws IOException {
+        return exportAccounts(out, true);
+    }
+
+    /**
+     * Writes every Account as one JSON object per line, in Account ID order.
+     *
+     * @param out Channel to write to. It is flushed but not closed.
+     * @param passwords Whether to include passwords. A dump that leaves them out cannot be imported to log in with.
+     * @return Number of rows written and how long it took.
+     * @throws IOException if the channel cannot be written to.
+     */
+    public Report exportAccounts(WritableByteChannel out, boolean passwords) throws IOException {
+        return export(out, gen -> accountDAO.forEachAccount(acc -> write(gen, acc, passwords)));
+    }
+
+    private interface Dump {
+        long rows(JsonGenerator gen);
+    }
+
+    private Report export(WritableByteChannel out, Dump dump) throws IOException {
+        long start = System.nanoTime();
+        OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(out), WRITE_BUFFER_SIZE);
+        JsonGenerator gen = ModelCodec.JSON.createGenerator(stream, JsonEncoding.UTF8);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.setRootValueSeparator(null);
+        long rows;
+        try{
+            rows = dump.rows(gen);
+        } catch(UncheckedIOException e){
+            throw e.getCause();
+        }
+        gen.flush();
+        stream.flush();
+        return new Report(rows, System.nanoTime() - start);
+    }
+
+    private static void write(JsonGenerator gen, Message msg){
+        try{
+            ModelCodec.write(gen, msg);
+            gen.writeRaw('\n');
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(JsonGenerator gen, Account acc, boolean password){
+        try{
+            ModelCodec.write(gen, acc, password);
+            gen.writeRaw('\n');
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Outcome of one export or import.
+     */
+    public static class Report {
+        private final long rows;
+        private final long nanos;
+
+        public Report(long rows, long nanos){
+            this.rows = rows;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return Number of rows processed.
+         */
+        public long getRows(){
+            return rows;
+        }
+
+        /**
+         * @return Elapsed time in milliseconds.
+         */
+        public long getMillis(){
+            return nanos / 1_000_000;
+        }
+
+        /**
+         * @return Rows processed per second.
+         */
+        public double getRowsPerSecond(){
+            return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%d rows in %d ms (%.0f rows/sec)", rows, getMillis(), getRowsPerSecond());
+        }
+    }
+}
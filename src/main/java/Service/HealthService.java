@@ -0,0 +1,81 @@
+package Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps the last known reachability of the database for the health and readiness probes.
+ *
+ * Load balancers may poll the probes many times a second, so a probe never touches the database itself: a single
+ * background thread checks it every interval and the probes read the cached answer. Everything else the probes
+ * report is read from counters the server already keeps.
+ */
+public class HealthService {
+
+    private final BooleanSupplier database;
+    private final long checkIntervalMillis;
+    private ScheduledExecutorService checker;
+    private volatile Boolean reachable;
+    private volatile long checkedAt;
+
+    /**
+     * @param database Checks whether the database can serve requests; called only from the background thread.
+     * @param checkIntervalMillis Time between checks.
+     */
+    public HealthService(BooleanSupplier database, long checkIntervalMillis){
+        this.database = database;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    /**
+     * Starts checking the database in the background, first right away. Does nothing if already started.
+     */
+    public synchronized void start(){
+        if(checker != null){
+            return;
+        }
+        checker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::check, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background checks; the last answer is kept.
+     */
+    public synchronized void close(){
+        if(checker != null){
+            checker.shutdownNow();
+            checker = null;
+        }
+    }
+
+    /**
+     * @return true or false as of the last check, null if the database has not been checked yet.
+     */
+    public Boolean isDatabaseReachable(){
+        return reachable;
+    }
+
+    /**
+     * @return Milliseconds since the last check, -1 if there has been none.
+     */
+    public long getMillisSinceCheck(){
+        return reachable == null ? -1 : System.currentTimeMillis() - checkedAt;
+    }
+
+    private void check(){
+        boolean result;
+        try{
+            result = database.getAsBoolean();
+        } catch(RuntimeException e){
+            result = false;
+        }
+        checkedAt = System.currentTimeMillis();
+        reachable = result;
+    }
+}
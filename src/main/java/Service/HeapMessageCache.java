@@ -0,0 +1,123 @@
+package Service;
+
+import DAO.Versioned;
+import Model.Message;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MessageCache that keeps Messages as objects on the heap, in a concurrent map by Message ID. When the cache is full
+ * an arbitrary entry is evicted, which is cheap and close enough to LRU for feeds where reads cluster on recent
+ * Messages.
+ */
+public class HeapMessageCache implements MessageCache {
+
+    private final int capacity;
+    private final ConcurrentHashMap<Integer, Versioned<Message>> messages = new ConcurrentHashMap<>();
+    private final AtomicLong stamp = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity Most Messages kept; 0 turns the cache off.
+     */
+    public HeapMessageCache(int capacity){
+        if(capacity < 0){
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param id ID no. of the Message.
+     * @return A copy of the cached Message with its version, null if it is not cached.
+     */
+    @Override
+    public Versioned<Message> get(int id){
+        Versioned<Message> cached = capacity == 0 ? null : messages.get(id);
+        if(cached == null){
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(cached);
+    }
+
+    /**
+     * @return Stamp to take before reading Messages from the DAO and pass to fill with what was read.
+     */
+    @Override
+    public long stamp(){
+        return stamp.get();
+    }
+
+    /**
+     * Caches a Message read from the DAO, unless some Message was invalidated since the stamp was taken.
+     *
+     * @param msg Message as read, with its version.
+     * @param readStamp What stamp returned before the read.
+     */
+    @Override
+    public void fill(Versioned<Message> msg, long readStamp){
+        if(capacity == 0 || msg == null){
+            return;
+        }
+        if(messages.size() >= capacity){
+            Iterator<Integer> victims = messages.keySet().iterator();
+            if(victims.hasNext()){
+                victims.next();
+                victims.remove();
+            }
+        }
+        int id = msg.getValue().getMessage_id();
+        messages.put(id, copy(msg));
+        // an invalidation may have slipped in between the read and the put; undo rather than keep stale text
+        if(stamp.get() != readStamp){
+            messages.remove(id);
+        }
+    }
+
+    /**
+     * Drops a Message that was updated or deleted.
+     *
+     * @param id ID no. of the Message.
+     */
+    @Override
+    public void invalidate(int id){
+        stamp.incrementAndGet();
+        messages.remove(id);
+    }
+
+    /**
+     * @return Number of Messages cached.
+     */
+    @Override
+    public int size(){
+        return messages.size();
+    }
+
+    /**
+     * @return Number of lookups answered from the cache.
+     */
+    @Override
+    public long getHitCount(){
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups that had to go to the DAO.
+     */
+    @Override
+    public long getMissCount(){
+        return misses.sum();
+    }
+
+    private static Versioned<Message> copy(Versioned<Message> versioned){
+        Message msg = versioned.getValue();
+        return new Versioned<>(new Message(msg.getMessage_id(), msg.getPosted_by(), msg.getMessage_text(),
+                msg.getTime_posted_epoch()), versioned.getVersion());
+    }
+}
@@ -0,0 +1,436 @@
+package Service;
+
+import Model.Account;
+import Model.Message;
+import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
+import DAO.MessageDAO;
+import DAO.JdbcMessageDAO;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Loads Accounts or Messages from a newline-delimited JSON or CSV file straight into the database.
+ *
+ * The file is read sequentially through a large channel buffer and parsed row by row (Jackson's streaming parser for
+ * NDJSON), so memory is bounded by the chunk size rather than the file size. Rows are checked against the same
+ * requirements as AccountService and MessageService and written in chunks, each chunk one JDBC batch in one
+ * transaction. If a chunk is rejected by the database (a duplicate username, an unknown posted_by, ...) its rows are
+ * retried one at a time so that only the offending rows are lost.
+ *
+ * CSV files must start with a header row naming the columns, using the same names as the JSON fields. Rows that
+ * carry an ID keep it, which lets an export be restored as-is.
+ */
+public class ImportService {
+
+    /**
+     * Default number of rows written per transaction.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    /**
+     * Bytes read from the file per read call.
+     */
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private MessageDAO messageDAO;
+    private AccountDAO accountDAO;
+    private final int chunkSize;
+    private final PrintStream progress;
+
+    /**
+     * No-args constructor
+     */
+    public ImportService(){
+        this(new JdbcMessageDAO(), new JdbcAccountDAO(), DEFAULT_CHUNK_SIZE, null);
+    }
+
+    /**
+     * Constructor that creates an ImportService with specified DAO objects and chunk size.
+     *
+     * @param messageDAO The message DAO layer that is being used.
+     * @param accountDAO The account DAO layer that is being used.
+     * @param chunkSize Number of rows written per transaction.
+     * @param progress Where a progress line is printed after every chunk, or null for none.
+     */
+    public ImportService(MessageDAO messageDAO, AccountDAO accountDAO, int chunkSize, PrintStream progress){
+        this.messageDAO = messageDAO;
+        this.accountDAO = accountDAO;
+        this.chunkSize = chunkSize;
+        this.progress = progress;
+    }
+
+    /**
+     * Loads Messages from a file. Files ending in ".csv" are read as CSV, anything else as NDJSON.
+     *
+     * @param file File to be read.
+     * @return Number of rows imported and rejected, and how long it took.
+     * @throws IOException if the file cannot be read or is not well-formed.
+     */
+    public Report importMessages(Path file) throws IOException {
+        Report report;
+        try(InputStream in = open(file)){
+            Rows<Message> rows = isCsv(file) ? csvMessages(in) : jsonMessages(in);
+            report = load(rows, MessageService::meetsRequirements, messageDAO::insertMessages);
+        }
+        messageDAO.restartMessageIds();
+        return report;
+    }
+
+    /**
+     * Loads Accounts from a file. Files ending in ".csv" are read as CSV, anything else as NDJSON.
+     *
+     * @param file File to be read.
+     * @return Number of rows imported and rejected, and how long it took.
+     * @throws IOException if the file cannot be read or is not well-formed.
+     */
+    public Report importAccounts(Path file) throws IOException {
+        Report report;
+        try(InputStream in = open(file)){
+            Rows<Account> rows = isCsv(file) ? csvAccounts(in) : jsonAccounts(in);
+            report = load(rows, AccountService::meetsRequirements, accountDAO::insertAccounts);
+        }
+        accountDAO.restartAccountIds();
+        return report;
+    }
+
+    /**
+     * A source of parsed rows.
+     */
+    private interface Rows<T> {
+
+        /**
+         * @return The next row, null at the end of the file.
+         * @throws InvalidRowException if the row was read but could not be converted.
+         * @throws IOException if the file cannot be read or parsed any further.
+         */
+        T next() throws IOException;
+    }
+
+    /**
+     * Thrown for a row that can be skipped without losing track of where the next row starts.
+     */
+    private static class InvalidRowException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        InvalidRowException(String message){
+            super(message);
+        }
+    }
+
+    private <T> Report load(Rows<T> rows, Predicate<T> valid, Predicate<List<T>> insert) throws IOException {
+        long start = System.nanoTime();
+        long imported = 0;
+        long rejected = 0;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        while(true){
+            T row;
+            try{
+                row = rows.next();
+            } catch(InvalidRowException e){
+                rejected++;
+                continue;
+            }
+            if(row != null){
+                if(valid.test(row)){
+                    chunk.add(row);
+                } else {
+                    rejected++;
+                }
+            }
+            if(chunk.size() == chunkSize || (row == null && !chunk.isEmpty())){
+                int written = write(chunk, insert);
+                imported += written;
+                rejected += chunk.size() - written;
+                chunk.clear();
+                if(progress != null){
+                    progress.println(new Report(imported, rejected, System.nanoTime() - start));
+                }
+            }
+            if(row == null){
+                return new Report(imported, rejected, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Writes a chunk as one batch, falling back to one row at a time if the batch is rolled back.
+     *
+     * @return Number of rows written.
+     */
+    private static <T> int write(List<T> chunk, Predicate<List<T>> insert){
+        if(insert.test(chunk)){
+            return chunk.size();
+        }
+        int written = 0;
+        for(T row : chunk){
+            if(insert.test(Collections.singletonList(row))){
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_SIZE);
+    }
+
+    private static boolean isCsv(Path file){
+        return file.getFileName().toString().toLowerCase().endsWith(".csv");
+    }
+
+    private static Rows<Message> jsonMessages(InputStream in) throws IOException {
+        JsonParser parser = JSON.createParser(in);
+        return () -> {
+            if(!nextObject(parser)){
+                return null;
+            }
+            Message msg = new Message();
+            while(parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch(field){
+                    case "message_id": msg.setMessage_id(parser.getValueAsInt()); break;
+                    case "posted_by": msg.setPosted_by(parser.getValueAsInt()); break;
+                    case "message_text": msg.setMessage_text(parser.getValueAsString()); break;
+                    case "time_posted_epoch": msg.setTime_posted_epoch(parser.getValueAsLong()); break;
+                    default: parser.skipChildren();
+                }
+            }
+            return msg;
+        };
+    }
+
+    private static Rows<Account> jsonAccounts(InputStream in) throws IOException {
+        JsonParser parser = JSON.createParser(in);
+        return () -> {
+            if(!nextObject(parser)){
+                return null;
+            }
+            Account acc = new Account();
+            while(parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch(field){
+                    case "account_id": acc.setAccount_id(parser.getValueAsInt()); break;
+                    case "username": acc.setUsername(parser.getValueAsString()); break;
+                    case "password": acc.setPassword(parser.getValueAsString()); break;
+                    default: parser.skipChildren();
+                }
+            }
+            return acc;
+        };
+    }
+
+    /**
+     * Advances to the start of the next top-level object.
+     *
+     * @return true if positioned on an object, false at the end of the input.
+     * @throws IOException if the next value is not an object.
+     */
+    private static boolean nextObject(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if(token == null){
+            return false;
+        }
+        if(token != JsonToken.START_OBJECT){
+            throw new IOException("Expected a JSON object per line at " + parser.getCurrentLocation());
+        }
+        return true;
+    }
+
+    private static Rows<Message> csvMessages(InputStream in) throws IOException {
+        CsvReader csv = new CsvReader(in);
+        return () -> {
+            Map<String, String> row = csv.next();
+            if(row == null){
+                return null;
+            }
+            try{
+                Message msg = new Message();
+                msg.setMessage_id(parseInt(row.get("message_id")));
+                msg.setPosted_by(parseInt(row.get("posted_by")));
+                msg.setMessage_text(row.get("message_text"));
+                String epoch = row.get("time_posted_epoch");
+                msg.setTime_posted_epoch(epoch == null || epoch.isEmpty() ? 0 : Long.parseLong(epoch.trim()));
+                return msg;
+            } catch(NumberFormatException e){
+                throw new InvalidRowException(e.getMessage());
+            }
+        };
+    }
+
+    private static Rows<Account> csvAccounts(InputStream in) throws IOException {
+        CsvReader csv = new CsvReader(in);
+        return () -> {
+            Map<String, String> row = csv.next();
+            if(row == null){
+                return null;
+            }
+            try{
+                return new Account(parseInt(row.get("account_id")), row.get("username"), row.get("password"));
+            } catch(NumberFormatException e){
+                throw new InvalidRowException(e.getMessage());
+            }
+        };
+    }
+
+    private static int parseInt(String value){
+        return value == null || value.isEmpty() ? 0 : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, fields optionally double-quoted, "" for a quote inside a quoted
+     * field, and line breaks allowed inside quoted fields. The first record names the columns.
+     */
+    private static class CsvReader {
+        private final Reader reader;
+        private final String[] header;
+        private final StringBuilder field = new StringBuilder();
+        private int pushedBack = -2;
+
+        CsvReader(InputStream in) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+            List<String> names = record();
+            this.header = names == null ? new String[0] : names.toArray(new String[0]);
+        }
+
+        Map<String, String> next() throws IOException {
+            List<String> values = record();
+            if(values == null){
+                return null;
+            }
+            Map<String, String> row = new HashMap<>();
+            for(int i = 0; i < header.length && i < values.size(); i++){
+                row.put(header[i].trim(), values.get(i));
+            }
+            return row;
+        }
+
+        private int read() throws IOException {
+            if(pushedBack != -2){
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        /**
+         * @return The fields of the next non-empty record, null at the end of the input.
+         */
+        private List<String> record() throws IOException {
+            List<String> values = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while((c = read()) != -1){
+                any = true;
+                if(quoted){
+                    if(c == '"'){
+                        int d = read();
+                        if(d == '"'){
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            pushedBack = d;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if(c == '"'){
+                    quoted = true;
+                } else if(c == ','){
+                    values.add(field.toString());
+                    field.setLength(0);
+                } else if(c == '\n' || c == '\r'){
+                    if(c == '\r'){
+                        int d = read();
+                        if(d != '\n'){
+                            pushedBack = d;
+                        }
+                    }
+                    if(values.isEmpty() && field.length() == 0){
+                        any = false;
+                        continue;
+                    }
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if(!any && values.isEmpty() && field.length() == 0){
+                return null;
+            }
+            values.add(field.toString());
+            return values;
+        }
+    }
+
+    /**
+     * Outcome of one import.
+     */
+    public static class Report {
+        private final long imported;
+        private final long rejected;
+        private final long nanos;
+
+        public Report(long imported, long rejected, long nanos){
+            this.imported = imported;
+            this.rejected = rejected;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return Number of rows written to the database.
+         */
+        public long getImported(){
+            return imported;
+        }
+
+        /**
+         * @return Number of rows skipped as invalid or refused by the database.
+         */
+        public long getRejected(){
+            return rejected;
+        }
+
+        /**
+         * @return Rows read per second.
+         */
+        public double getRowsPerSecond(){
+            return nanos == 0 ? 0 : (imported + rejected) * 1_000_000_000.0 / nanos;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%d rows imported, %d rejected in %d ms (%.0f rows/sec)",
+                    imported, rejected, nanos / 1_000_000, getRowsPerSecond());
+        }
+    }
+}
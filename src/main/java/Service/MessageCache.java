@@ -0,0 +1,70 @@
+package Service;
+
+import DAO.Versioned;
+import Model.Message;
+import Util.AppConfig;
+
+/**
+ * Bounded cache of Messages by Message ID with their versions, for reads that name Messages one by one.
+ *
+ * A Message read from the DAO is only kept if no Message was changed while it was being read: callers take a stamp
+ * before the read and hand it back with the result, and every invalidation moves the stamp on. A read that raced
+ * with an update or delete therefore never puts the old text back after the change removed it.
+ *
+ * Messages are copied in and out, so callers may modify what they get as they may with DAO results.
+ */
+public interface MessageCache {
+
+    /**
+     * @param config Configuration naming the capacity and whether the cache is kept off the heap.
+     * @return The cache the configuration asks for; one of capacity 0 keeps nothing.
+     */
+    static MessageCache fromConfig(AppConfig config){
+        int capacity = config.getInt("message_cache.capacity");
+        if(capacity > 0 && config.getBoolean("message_cache.off_heap")){
+            return new OffHeapMessageCache(capacity, config.getInt("message_cache.off_heap_bytes"));
+        }
+        return new HeapMessageCache(capacity);
+    }
+
+    /**
+     * @param id ID no. of the Message.
+     * @return A copy of the cached Message with its version, null if it is not cached.
+     */
+    Versioned<Message> get(int id);
+
+    /**
+     * @return Stamp to take before reading Messages from the DAO and pass to fill with what was read.
+     */
+    long stamp();
+
+    /**
+     * Caches a Message read from the DAO, unless some Message was invalidated since the stamp was taken.
+     *
+     * @param msg Message as read, with its version.
+     * @param readStamp What stamp returned before the read.
+     */
+    void fill(Versioned<Message> msg, long readStamp);
+
+    /**
+     * Drops a Message that was updated or deleted.
+     *
+     * @param id ID no. of the Message.
+     */
+    void invalidate(int id);
+
+    /**
+     * @return Number of Messages cached.
+     */
+    int size();
+
+    /**
+     * @return Number of lookups answered from the cache.
+     */
+    long getHitCount();
+
+    /**
+     * @return Number of lookups that had to go to the DAO.
+     */
+    long getMissCount();
+}
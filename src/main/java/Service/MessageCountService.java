@@ -0,0 +1,124 @@
+package Service;
+
+import Model.Message;
+import DAO.MessageDAO;
+import DAO.JdbcMessageDAO;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the total and per-Account Message counts in memory so that count requests never touch the database.
+ *
+ * The counters are loaded with SELECT COUNT when they are first read, not when the service is created, so a large
+ * table does not hold up startup. Every post and delete that MessageService makes moves them, from creation on,
+ * and loading corrects them to the database's counts plus whatever moved them while the query ran, so no write is
+ * lost to the load. LongAdder cells keep concurrent posters from contending on a single counter.
+ */
+public class MessageCountService implements MessageListener {
+
+    private MessageDAO messageDAO;
+    private final LongAdder total = new LongAdder();
+    private final ConcurrentHashMap<Integer, LongAdder> byAccount = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * No-args constructor
+     */
+    public MessageCountService(){
+        this(new JdbcMessageDAO());
+    }
+
+    /**
+     * Constructor that creates a MessageCountService with a specified MessageDAO object. The counts are loaded on
+     * first use.
+     *
+     * @param messageDAO The DAO layer that is being used.
+     */
+    public MessageCountService(MessageDAO messageDAO){
+        this.messageDAO = messageDAO;
+    }
+
+    /**
+     * Brings the in-memory counts to the database's own. Posts and deletes made while the query runs are kept on top
+     * of its result, as they may have committed after it read their rows. One that committed before the query but
+     * reached this service after it began is counted twice, so this is meant for startup or after offline changes
+     * such as a bulk import. If the Messages cannot be counted the counters are left as they are and loaded again
+     * on the next read.
+     */
+    public synchronized void reconcile(){
+        Map<Integer, Long> before = new HashMap<>();
+        for(Map.Entry<Integer, LongAdder> count : byAccount.entrySet()){
+            before.put(count.getKey(), count.getValue().sum());
+        }
+        long totalBefore = total.sum();
+        Map<Integer, Long> counts = messageDAO.countMessagesByAccount();
+        if(counts == null){
+            return;
+        }
+        // only the difference from the counts before the query is added, so what moved them since stays
+        long snapshotTotal = 0;
+        for(Map.Entry<Integer, Long> count : counts.entrySet()){
+            counter(count.getKey()).add(count.getValue() - before.getOrDefault(count.getKey(), 0L));
+            snapshotTotal += count.getValue();
+        }
+        for(Map.Entry<Integer, Long> count : before.entrySet()){
+            if(!counts.containsKey(count.getKey())){
+                counter(count.getKey()).add(-count.getValue());
+            }
+        }
+        total.add(snapshotTotal - totalBefore);
+        loaded = true;
+    }
+
+    /**
+     * @return Number of Messages in the database.
+     */
+    public long getMessageCount(){
+        load();
+        return total.sum();
+    }
+
+    /**
+     * @param accountId Account ID no. of the poster.
+     * @return Number of Messages posted by the Account, 0 if it has posted none or does not exist.
+     */
+    public long getMessageCountByAccountId(int accountId){
+        load();
+        LongAdder count = byAccount.get(accountId);
+        return count == null ? 0 : count.sum();
+    }
+
+    @Override
+    public void messagePosted(Message msg){
+        total.increment();
+        counter(msg.getPosted_by()).increment();
+    }
+
+    @Override
+    public void messageUpdated(Message msg){
+    }
+
+    @Override
+    public void messageDeleted(Message msg){
+        total.decrement();
+        counter(msg.getPosted_by()).decrement();
+    }
+
+    private void load(){
+        if(!loaded){
+            synchronized(this){
+                if(!loaded){
+                    reconcile();
+                }
+            }
+        }
+    }
+
+    private LongAdder counter(int accountId){
+        LongAdder count = byAccount.get(accountId);
+        return count != null ? count : byAccount.computeIfAbsent(accountId, id -> new LongAdder());
+    }
+}
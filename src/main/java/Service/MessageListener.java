@@ -0,0 +1,25 @@
+package Service;
+
+import Model.Message;
+
+/**
+ * Receives every Message change that MessageService has successfully written to the database.
+ * Listeners are called on the request thread, so they should hand off anything slow.
+ */
+public interface MessageListener {
+
+    /**
+     * @param msg Message that has just been created, with its Message ID.
+     */
+    void messagePosted(Message msg);
+
+    /**
+     * @param msg Message with its updated text.
+     */
+    void messageUpdated(Message msg);
+
+    /**
+     * @param msg Message that has just been deleted.
+     */
+    void messageDeleted(Message msg);
+}
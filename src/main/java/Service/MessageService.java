@@ -1,17 +1,37 @@
 package Service;
 
 import Model.Message;
+import DAO.FollowDAO;
+import DAO.JdbcFollowDAO;
 import DAO.MessageDAO;
+import DAO.JdbcMessageDAO;
+import DAO.Versioned;
+import Util.SingleFlight;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 public class MessageService {   
     private MessageDAO messageDAO;
+    private final List<MessageListener> listeners = new CopyOnWriteArrayList<>();
+    private final SingleFlight<Integer, Message> messageReads = new SingleFlight<>();
+    private final SingleFlight<Integer, Versioned<Message>> versionedReads = new SingleFlight<>();
+    private final SingleFlight<Integer, List<Message>> accountReads = new SingleFlight<>();
+    private final MessageCache cache;
+    private final AccountMessagesCache accountCache;
+    private final boolean coalesce;
 
     /**
      * No-args constructor
      */
     public MessageService(){
-        messageDAO = new MessageDAO();
+        this(new JdbcMessageDAO());
     }
 
     /**
@@ -20,7 +40,75 @@ public class MessageService {
      * @param messageDAO The DAO layer that is being used.
      */
     public MessageService(MessageDAO messageDAO){
+        this(messageDAO, new TimelineService(new JdbcFollowDAO(), messageDAO));
+    }
+
+    /**
+     * Constructor that creates a MessageService with a specified MessageDAO object that keeps the given
+     * TimelineService's home timelines up to date.
+     * 
+     * @param messageDAO The DAO layer that is being used.
+     * @param timelineService The timelines that new, edited and deleted Messages are fanned out to.
+     */
+    public MessageService(MessageDAO messageDAO, TimelineService timelineService){
+        this(messageDAO, timelineService, new HeapMessageCache(0));
+    }
+
+    /**
+     * Constructor that creates a MessageService with a specified MessageDAO object that keeps the given
+     * TimelineService's home timelines up to date and answers reads by Message ID from a cache where it can.
+     * 
+     * @param messageDAO The DAO layer that is being used.
+     * @param timelineService The timelines that new, edited and deleted Messages are fanned out to.
+     * @param cache Cache of Messages by Message ID; one of capacity 0 sends every read to the DAO.
+     */
+    public MessageService(MessageDAO messageDAO, TimelineService timelineService, MessageCache cache){
+        this(messageDAO, timelineService, cache, new AccountMessagesCache(0));
+    }
+
+    /**
+     * Constructor that creates a MessageService with a specified MessageDAO object that keeps the given
+     * TimelineService's home timelines up to date and answers reads by Message ID and by Account ID from caches
+     * where it can.
+     * 
+     * @param messageDAO The DAO layer that is being used.
+     * @param timelineService The timelines that new, edited and deleted Messages are fanned out to.
+     * @param cache Cache of Messages by Message ID; one of capacity 0 sends every read to the DAO.
+     * @param accountCache Cache of Message lists by Account ID; one of capacity 0 sends every read to the DAO.
+     */
+    public MessageService(MessageDAO messageDAO, TimelineService timelineService, MessageCache cache,
+            AccountMessagesCache accountCache){
+        this(messageDAO, timelineService, cache, accountCache, true);
+    }
+
+    /**
+     * Constructor that creates a MessageService with a specified MessageDAO object that keeps the given
+     * TimelineService's home timelines up to date, answers reads by Message ID and by Account ID from caches
+     * where it can and may let concurrent identical reads share one DAO call.
+     * 
+     * @param messageDAO The DAO layer that is being used.
+     * @param timelineService The timelines that new, edited and deleted Messages are fanned out to.
+     * @param cache Cache of Messages by Message ID; one of capacity 0 sends every read to the DAO.
+     * @param accountCache Cache of Message lists by Account ID; one of capacity 0 sends every read to the DAO.
+     * @param coalesce Whether concurrent identical reads share one DAO call. Off with read replicas, where a
+     *        shared read may come from a replica that has not applied a write the joining client has made.
+     */
+    public MessageService(MessageDAO messageDAO, TimelineService timelineService, MessageCache cache,
+            AccountMessagesCache accountCache, boolean coalesce){
         this.messageDAO = messageDAO;
+        this.cache = cache;
+        this.accountCache = accountCache;
+        this.coalesce = coalesce;
+        addListener(timelineService);
+    }
+
+    /**
+     * Registers a listener that is told about every Message this service creates, updates or deletes.
+     * 
+     * @param listener Listener to be called after each successful write.
+     */
+    public void addListener(MessageListener listener){
+        listeners.add(listener);
     }
 
     /**
@@ -31,7 +119,15 @@ public class MessageService {
      */
     public Message postMessage(Message msg){
         msg = validatePostMessage(msg);
-        return msg == null ? null : messageDAO.createMessage(msg);
+        Message posted = msg == null ? null : messageDAO.createMessage(msg);
+        if(posted != null){
+            accountReads.forget(posted.getPosted_by());
+            accountCache.changed(posted.getPosted_by());
+            for(MessageListener listener : listeners){
+                listener.messagePosted(posted);
+            }
+        }
+        return posted;
     }
 
     /**
@@ -41,7 +137,17 @@ public class MessageService {
      * @return Same message object if requirements are met, null if not.
      */
     private Message validatePostMessage(Message msg){
-        return (msg.getMessage_text() == null || msg.getMessage_text().length() == 0) ? null : msg;
+        return meetsRequirements(msg) ? msg : null;
+    }
+
+    /**
+     * Checks the message text requirements: not blank and no longer than 255 characters. Shared with the bulk importer.
+     * 
+     * @param msg Message object to be checked.
+     * @return true if the requirements are met, false if not.
+     */
+    public static boolean meetsRequirements(Message msg){
+        return validateUpdateMessage(msg.getMessage_text()) != null;
     }
 
     /**
@@ -55,12 +161,91 @@ public class MessageService {
 
     /**
      * Service layer implementation for getting a message by its Message ID.
+     * A cached Message is returned without a database call; otherwise concurrent requests for the same Message ID
+     * share one database call.
      * 
      * @param msgId ID no. of the Message to be retrieved.
      * @return Message identified by Message ID, null if ID is not present in database.
      */
     public Message getMessageById(int msgId){
-        return messageDAO.getMessageById(msgId);
+        Versioned<Message> cached = cache.get(msgId);
+        if(cached != null){
+            return cached.getValue();
+        }
+        return read(messageReads, msgId, () -> messageDAO.getMessageById(msgId));
+    }
+
+    /**
+     * Service layer implementation for getting a message by its Message ID with its version, which callers send
+     * back to update it only if nobody else has. A cached Message is returned without a database call; otherwise
+     * concurrent requests for the same Message ID share one database call, whose result is cached.
+     * 
+     * @param msgId ID no. of the Message to be retrieved.
+     * @return Message identified by Message ID with its version, null if ID is not present in database.
+     */
+    public Versioned<Message> getVersionedMessageById(int msgId){
+        Versioned<Message> cached = cache.get(msgId);
+        if(cached != null){
+            return cached;
+        }
+        return read(versionedReads, msgId, () -> {
+            long stamp = cache.stamp();
+            Versioned<Message> msg = messageDAO.getVersionedMessageById(msgId);
+            cache.fill(msg, stamp);
+            return msg;
+        });
+    }
+
+    /**
+     * Service layer implementation for getting several messages by their Message IDs.
+     * Cached Messages are taken from the cache and the rest are read in one DAO call, then cached.
+     * 
+     * @param msgIds ID nos. of the Messages to be retrieved; repeated IDs are looked up once.
+     * @return List of the Messages that exist, in the order their IDs were given, without the missing ones.
+     */
+    public List<Message> getMessagesByIds(List<Integer> msgIds){
+        Set<Integer> distinct = new LinkedHashSet<>(msgIds);
+        Map<Integer, Message> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for(int id : distinct){
+            Versioned<Message> cached = cache.get(id);
+            if(cached != null){
+                found.put(id, cached.getValue());
+            } else {
+                missing.add(id);
+            }
+        }
+        if(!missing.isEmpty()){
+            long stamp = cache.stamp();
+            for(Versioned<Message> msg : messageDAO.getMessagesByIds(missing)){
+                found.put(msg.getValue().getMessage_id(), msg.getValue());
+                cache.fill(msg, stamp);
+            }
+        }
+        List<Message> messageList = new ArrayList<>(distinct.size());
+        for(int id : distinct){
+            Message msg = found.get(id);
+            if(msg != null){
+                messageList.add(msg);
+            }
+        }
+        return messageList;
+    }
+
+    /**
+     * Reads Messages into the cache in one DAO call, for warming it before the server takes traffic. Not counted
+     * as cache hits or misses.
+     * 
+     * @param msgIds ID nos. of the Messages to be cached.
+     * @return Number of those Messages that exist.
+     */
+    public int preload(List<Integer> msgIds){
+        long stamp = cache.stamp();
+        List<Versioned<Message>> found = messageDAO.getMessagesByIds(msgIds);
+        for(Versioned<Message> msg : found){
+            cache.fill(msg, stamp);
+        }
+        return found.size();
     }
 
     /**
@@ -70,7 +255,18 @@ public class MessageService {
      * @return Deleted Message if Message ID exists, null if ID is not present in database.
      */
     public Message deleteMessage(int msgId){
-        return messageDAO.deleteMessage(msgId);
+        Message deleted = messageDAO.deleteMessage(msgId);
+        if(deleted != null){
+            cache.invalidate(msgId);
+            messageReads.forget(msgId);
+            versionedReads.forget(msgId);
+            accountReads.forget(deleted.getPosted_by());
+            accountCache.changed(deleted.getPosted_by());
+            for(MessageListener listener : listeners){
+                listener.messageDeleted(deleted);
+            }
+        }
+        return deleted;
     }
 
     /**
@@ -82,7 +278,52 @@ public class MessageService {
      */
     public Message updateMessage(Message msg){
         String patchMsg = validateUpdateMessage(msg.getMessage_text());
-        return patchMsg == null ? null : messageDAO.updateMessage(msg);
+        Message updated = patchMsg == null ? null : messageDAO.updateMessage(msg);
+        if(updated != null){
+            updated(updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Service layer implementation for updating message text of a Message only if it is still at the version the
+     * caller read. The DAO checks the version and writes in one step, so of two concurrent updates from the same
+     * version exactly one succeeds.
+     * 
+     * @param msg Message object that will have its text updated.
+     * @param expectedVersion Version the caller read the Message at.
+     * @return Message with updated messageText field and its new version if Message ID exists and requirements
+     *         met, null if not.
+     * @throws VersionConflictException if the Message exists but is no longer at the expected version.
+     */
+    public Versioned<Message> updateMessage(Message msg, long expectedVersion){
+        if(validateUpdateMessage(msg.getMessage_text()) == null){
+            return null;
+        }
+        Versioned<Message> updated = messageDAO.updateMessage(msg, expectedVersion);
+        if(updated == null){
+            Versioned<Message> current = messageDAO.getVersionedMessageById(msg.getMessage_id());
+            if(current != null && current.getVersion() != expectedVersion){
+                throw new VersionConflictException(current.getVersion());
+            }
+            return null;
+        }
+        updated(updated.getValue());
+        return updated;
+    }
+
+    /**
+     * Drops what is cached or being read for an updated Message and tells the listeners.
+     */
+    private void updated(Message updated){
+        cache.invalidate(updated.getMessage_id());
+        messageReads.forget(updated.getMessage_id());
+        versionedReads.forget(updated.getMessage_id());
+        accountReads.forget(updated.getPosted_by());
+        accountCache.changed(updated.getPosted_by());
+        for(MessageListener listener : listeners){
+            listener.messageUpdated(updated);
+        }
     }
 
     /**
@@ -91,16 +332,108 @@ public class MessageService {
      * @param msg Message text to be evaluated.
      * @return Message text if requirements are met, null if not.
      */
-    private String validateUpdateMessage(String msg){
+    private static String validateUpdateMessage(String msg){
         return (msg == null || msg.isEmpty() || msg.length() > 255) ? null : msg;
     }
 
     /**
      * Service layer implementation for getting all Message object that match a specific Account ID.
+     * A list cached since the Account's Messages last changed is returned without a database call; otherwise
+     * concurrent requests for the same Account ID share one database call and one read-only List, which is cached.
      * @param accountId Account ID no. that is a foerign key of Message table in database.
      * @return List of Message objects if Account ID exists, null if not.
      */
     public List<Message> getAllMessagesByAccountId(int accountId){
-        return messageDAO.getAllMessagesByAccountId(accountId);
+        List<Message> cached = accountCache.get(accountId);
+        return cached != null ? cached : readAccountMessages(accountId);
+    }
+
+    /**
+     * Reads an Account's Messages into the cache ahead of their first request, for warming it before the server
+     * takes traffic. Not counted as a cache hit or miss.
+     * 
+     * @param accountId Account ID no. of the poster.
+     */
+    public void preloadAccountMessages(int accountId){
+        readAccountMessages(accountId);
+    }
+
+    /**
+     * Reads an Account's Messages from the DAO and caches them under the version taken before the read. Writes
+     * forget the shared read before moving the version on, so a caller that saw the new version cannot join a
+     * read that began before the write.
+     */
+    private List<Message> readAccountMessages(int accountId){
+        long version = accountCache.version(accountId);
+        List<Message> messageList = read(accountReads, accountId,
+                () -> Collections.unmodifiableList(messageDAO.getAllMessagesByAccountId(accountId)));
+        accountCache.fill(accountId, version, messageList);
+        return messageList;
+    }
+
+    /**
+     * Runs a read through its coalescer, or straight against the DAO when coalescing is off.
+     */
+    private <V> V read(SingleFlight<Integer, V> reads, int key, Supplier<V> load){
+        return coalesce ? reads.execute(key, load) : load.get();
+    }
+
+    /**
+     * @return Cache of Messages by Message ID, for its counters.
+     */
+    public MessageCache getCache(){
+        return cache;
+    }
+
+    /**
+     * @return Cache of Message lists by Account ID, for its counters.
+     */
+    public AccountMessagesCache getAccountCache(){
+        return accountCache;
+    }
+
+    /**
+     * @return Coalescer for Message ID reads, for its counters.
+     */
+    public SingleFlight<Integer, Message> getMessageReads(){
+        return messageReads;
+    }
+
+    /**
+     * @return Coalescer for Message ID reads with versions, for its counters.
+     */
+    public SingleFlight<Integer, Versioned<Message>> getVersionedReads(){
+        return versionedReads;
+    }
+
+    /**
+     * @return Coalescer for Account ID Message list reads, for its counters.
+     */
+    public SingleFlight<Integer, List<Message>> getAccountReads(){
+        return accountReads;
+    }
+
+    /**
+     * Thrown when an update names a version the Message is no longer at.
+     */
+    public static class VersionConflictException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long currentVersion;
+
+        /**
+         * @param currentVersion Version the Message is at now, -1 if the caller named no version at all.
+         */
+        public VersionConflictException(long currentVersion){
+            super(null, null, false, false);
+            this.currentVersion = currentVersion;
+        }
+
+        /**
+         * @return Version the Message is at now, -1 if the caller named no version at all.
+         */
+        public long getCurrentVersion(){
+            return currentVersion;
+        }
     }
 }
@@ -0,0 +1,255 @@
+package Service;
+
+import Model.Message;
+
+import Util.ErrorLog;
+import Util.ModelCodec;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes new, updated and deleted Messages to live subscribers.
+ *
+ * Each event is serialized once and offered to a bounded buffer per subscriber; a small shared pool drains the
+ * buffers, so thousands of idle subscribers cost no threads. A subscriber whose buffer is full is disconnected
+ * rather than allowed to slow down publishing or grow without bound.
+ */
+public class MessageStreamService implements MessageListener {
+
+    /**
+     * Default number of undelivered events a subscriber may have before it is disconnected.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    /**
+     * Maximum events a delivery thread sends to one subscriber before moving on to the next.
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    /**
+     * Where a subscriber's events are written, e.g. a Server-Sent Events connection.
+     */
+    public interface Sink {
+
+        /**
+         * @param event Event name: "created", "updated" or "deleted".
+         * @param data JSON representation of the Message.
+         * @throws Exception if the event could not be delivered; the subscriber is then disconnected.
+         */
+        void send(String event, String data) throws Exception;
+
+        /**
+         * Closes the underlying connection. Called at most once.
+         */
+        void close();
+    }
+
+    private final ExecutorService deliveryPool;
+    private final int bufferSize;
+    private final Set<Subscriber> allMessages = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, Set<Subscriber>> byPoster = new ConcurrentHashMap<>();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder slowConsumersDisconnected = new LongAdder();
+
+    /**
+     * No-args constructor
+     */
+    public MessageStreamService(){
+        this(DEFAULT_BUFFER_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor that creates a MessageStreamService with specified buffer and pool sizes.
+     *
+     * @param bufferSize Number of undelivered events a subscriber may have before it is disconnected.
+     * @param deliveryThreads Number of threads writing events to subscribers.
+     */
+    public MessageStreamService(int bufferSize, int deliveryThreads){
+        this.bufferSize = bufferSize;
+        this.deliveryPool = Executors.newFixedThreadPool(deliveryThreads, r -> {
+            Thread t = new Thread(r, "message-stream");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Adds a subscriber.
+     *
+     * @param sink Where the subscriber's events are written.
+     * @param postedBy Account ID no. to receive Messages for, or null for every Message.
+     * @return Handle used to unsubscribe.
+     */
+    public Subscriber subscribe(Sink sink, Integer postedBy){
+        Subscriber sub = new Subscriber(sink, postedBy, bufferSize);
+        if(postedBy == null){
+            allMessages.add(sub);
+        } else {
+            byPoster.computeIfAbsent(postedBy, id -> ConcurrentHashMap.newKeySet()).add(sub);
+        }
+        return sub;
+    }
+
+    /**
+     * Removes a subscriber and closes its sink. Safe to call more than once.
+     *
+     * @param sub Subscriber to be removed.
+     */
+    public void unsubscribe(Subscriber sub){
+        if(!sub.closed.compareAndSet(false, true)){
+            return;
+        }
+        if(sub.postedBy == null){
+            allMessages.remove(sub);
+        } else {
+            byPoster.computeIfPresent(sub.postedBy, (id, subs) -> {
+                subs.remove(sub);
+                return subs.isEmpty() ? null : subs;
+            });
+        }
+        sub.queue.clear();
+        sub.sink.close();
+    }
+
+    @Override
+    public void messagePosted(Message msg){
+        publish("created", msg);
+    }
+
+    @Override
+    public void messageUpdated(Message msg){
+        publish("updated", msg);
+    }
+
+    @Override
+    public void messageDeleted(Message msg){
+        publish("deleted", msg);
+    }
+
+    /**
+     * @return Number of subscribers currently connected.
+     */
+    public int getSubscriberCount(){
+        int count = allMessages.size();
+        for(Set<Subscriber> subs : byPoster.values()){
+            count += subs.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return Number of events written to subscribers since startup.
+     */
+    public long getDeliveredCount(){
+        return delivered.sum();
+    }
+
+    /**
+     * @return Number of subscribers disconnected for falling too far behind since startup.
+     */
+    public long getSlowConsumersDisconnected(){
+        return slowConsumersDisconnected.sum();
+    }
+
+    /**
+     * Serializes a Message once, the same way as HTTP responses, and offers it to every matching subscriber.
+     *
+     * @param event Event name.
+     * @param msg Message the event is about.
+     */
+    private void publish(String event, Message msg){
+        Set<Subscriber> posterSubs = byPoster.get(msg.getPosted_by());
+        if(allMessages.isEmpty() && posterSubs == null){
+            return;
+        }
+        Event ev;
+        try{
+            ev = new Event(event, ModelCodec.toJson(msg));
+        } catch(IOException e){
+            ErrorLog.failure("MessageStreamService.publish", e);
+            return;
+        }
+        for(Subscriber sub : allMessages){
+            offer(sub, ev);
+        }
+        if(posterSubs != null){
+            for(Subscriber sub : posterSubs){
+                offer(sub, ev);
+            }
+        }
+    }
+
+    private void offer(Subscriber sub, Event ev){
+        if(!sub.queue.offer(ev)){
+            slowConsumersDisconnected.increment();
+            unsubscribe(sub);
+            return;
+        }
+        if(sub.scheduled.compareAndSet(false, true)){
+            deliveryPool.execute(() -> drain(sub));
+        }
+    }
+
+    /**
+     * Writes up to a batch of a subscriber's buffered events, rescheduling itself if more arrive meanwhile.
+     */
+    private void drain(Subscriber sub){
+        try{
+            Event ev;
+            int sent = 0;
+            while(sent < DRAIN_BATCH && !sub.closed.get() && (ev = sub.queue.poll()) != null){
+                sub.sink.send(ev.name, ev.data);
+                delivered.increment();
+                sent++;
+            }
+        } catch(Exception e){
+            unsubscribe(sub);
+        } finally {
+            sub.scheduled.set(false);
+        }
+        if(!sub.closed.get() && !sub.queue.isEmpty() && sub.scheduled.compareAndSet(false, true)){
+            deliveryPool.execute(() -> drain(sub));
+        }
+    }
+
+    private static class Event {
+        final String name;
+        final String data;
+
+        Event(String name, String data){
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A live subscriber and its bounded buffer of undelivered events.
+     */
+    public static class Subscriber {
+        private final Sink sink;
+        private final Integer postedBy;
+        private final ArrayBlockingQueue<Event> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(Sink sink, Integer postedBy, int bufferSize){
+            this.sink = sink;
+            this.postedBy = postedBy;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        /**
+         * @return true once the subscriber has been removed.
+         */
+        public boolean isClosed(){
+            return closed.get();
+        }
+    }
+}
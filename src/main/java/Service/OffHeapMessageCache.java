@@ -0,0 +1,335 @@
+package Service;
+
+import DAO.Versioned;
+import Model.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * MessageCache that keeps Messages encoded in one direct ByteBuffer outside the Java heap, so a large cache adds
+ * neither objects for the collector to trace nor old-generation heap to copy and compact. Only the index is on the
+ * heap, and it is two primitive arrays: an open-addressed table from Message ID to the offset of its record.
+ *
+ * Records are appended to the buffer as a ring. When a record does not fit, or the index already holds capacity
+ * Messages, the oldest records are dropped until it does, so eviction is first in first out. A record that was
+ * replaced or invalidated stays in the buffer as garbage until the ring comes round to it.
+ *
+ * Writes take a write lock. Reads are optimistic: they decode without locking and only take the read lock if a
+ * write happened meanwhile, so lookups of a settled cache never contend. Decoded Messages are new objects each time.
+ */
+public class OffHeapMessageCache implements MessageCache {
+
+    // record: length, message_id, posted_by, text length (-1 for null), time_posted_epoch, version, UTF-8 text
+    private static final int HEADER = 32;
+    // a record length of WRAP, or fewer than 4 bytes left, sends the ring back to offset 0
+    private static final int WRAP = -1;
+
+    private final int capacity;
+    private final ByteBuffer arena;
+    private final ByteBuffer writer;
+    private final int[] keys;
+    // offset of the record plus 1; 0 marks an empty slot
+    private final long[] offsets;
+    private final StampedLock lock = new StampedLock();
+    private final AtomicLong stamp = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile int count;
+    private int head;
+    private int tail;
+    private int used;
+
+    /**
+     * @param capacity Most Messages kept.
+     * @param bytes Size of the buffer the Messages are encoded into.
+     */
+    public OffHeapMessageCache(int capacity, int bytes){
+        if(capacity < 1 || capacity > 1 << 29){
+            throw new IllegalArgumentException("capacity must be between 1 and 2^29");
+        }
+        if(bytes < HEADER){
+            throw new IllegalArgumentException("bytes must be at least " + HEADER);
+        }
+        this.capacity = capacity;
+        this.arena = ByteBuffer.allocateDirect(bytes);
+        this.writer = arena.duplicate();
+        // at most half full, so probes stay short and always reach an empty slot
+        int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.keys = new int[slots];
+        this.offsets = new long[slots];
+    }
+
+    /**
+     * @param id ID no. of the Message.
+     * @return A copy of the cached Message with its version, null if it is not cached.
+     */
+    @Override
+    public Versioned<Message> get(int id){
+        long seq = lock.tryOptimisticRead();
+        Versioned<Message> cached;
+        try{
+            cached = read(id);
+        } catch(RuntimeException e){
+            // a write moved the record while it was decoded; validate fails below and the read is repeated
+            cached = null;
+        }
+        if(!lock.validate(seq)){
+            seq = lock.readLock();
+            try{
+                cached = read(id);
+            } finally{
+                lock.unlockRead(seq);
+            }
+        }
+        if(cached == null){
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached;
+    }
+
+    /**
+     * @return Stamp to take before reading Messages from the DAO and pass to fill with what was read.
+     */
+    @Override
+    public long stamp(){
+        return stamp.get();
+    }
+
+    /**
+     * Caches a Message read from the DAO, unless some Message was invalidated since the stamp was taken.
+     *
+     * @param msg Message as read, with its version.
+     * @param readStamp What stamp returned before the read.
+     */
+    @Override
+    public void fill(Versioned<Message> msg, long readStamp){
+        if(msg == null){
+            return;
+        }
+        Message value = msg.getValue();
+        byte[] text = value.getMessage_text() == null ? null
+                : value.getMessage_text().getBytes(StandardCharsets.UTF_8);
+        int length = HEADER + (text == null ? 0 : text.length);
+        if(length > arena.capacity()){
+            return;
+        }
+        long seq = lock.writeLock();
+        try{
+            // checked under the lock that invalidate takes, so no invalidation can slip in before the put
+            if(stamp.get() != readStamp){
+                return;
+            }
+            int id = value.getMessage_id();
+            int slot = slotOf(id);
+            if(slot >= 0){
+                removeSlot(slot);
+            }
+            int offset = allocate(length);
+            writer.putInt(offset, length);
+            writer.putInt(offset + 4, id);
+            writer.putInt(offset + 8, value.getPosted_by());
+            writer.putInt(offset + 12, text == null ? -1 : text.length);
+            writer.putLong(offset + 16, value.getTime_posted_epoch());
+            writer.putLong(offset + 24, msg.getVersion());
+            if(text != null){
+                writer.position(offset + HEADER);
+                writer.put(text);
+            }
+            insert(id, offset);
+        } finally{
+            lock.unlockWrite(seq);
+        }
+    }
+
+    /**
+     * Drops a Message that was updated or deleted.
+     *
+     * @param id ID no. of the Message.
+     */
+    @Override
+    public void invalidate(int id){
+        long seq = lock.writeLock();
+        try{
+            stamp.incrementAndGet();
+            int slot = slotOf(id);
+            if(slot >= 0){
+                removeSlot(slot);
+            }
+        } finally{
+            lock.unlockWrite(seq);
+        }
+    }
+
+    /**
+     * @return Number of Messages cached.
+     */
+    @Override
+    public int size(){
+        return count;
+    }
+
+    /**
+     * @return Number of lookups answered from the cache.
+     */
+    @Override
+    public long getHitCount(){
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups that had to go to the DAO.
+     */
+    @Override
+    public long getMissCount(){
+        return misses.sum();
+    }
+
+    /**
+     * Decodes the record of a Message. Without a lock the index and buffer may be mid-write, so anything that does
+     * not look like a record of this Message reads as a miss; the caller then validates and retries under the lock.
+     *
+     * @param id ID no. of the Message.
+     * @return The Message with its version, null if it is not cached.
+     */
+    private Versioned<Message> read(int id){
+        int slot = slotOf(id);
+        if(slot < 0){
+            return null;
+        }
+        int offset = (int) (offsets[slot] - 1);
+        int textLength = arena.getInt(offset + 12);
+        if(arena.getInt(offset + 4) != id || textLength > arena.capacity() - offset - HEADER
+                || arena.getInt(offset) != HEADER + Math.max(textLength, 0)){
+            return null;
+        }
+        String text = null;
+        if(textLength >= 0){
+            byte[] bytes = new byte[textLength];
+            // absolute gets, as a positioned duplicate of the buffer would be one more object per read
+            for(int i = 0; i < textLength; i++){
+                bytes[i] = arena.get(offset + HEADER + i);
+            }
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Message msg = new Message(id, arena.getInt(offset + 8), text, arena.getLong(offset + 16));
+        return new Versioned<>(msg, arena.getLong(offset + 24));
+    }
+
+    /**
+     * Makes room at the end of the ring for a record, dropping the oldest records as needed.
+     *
+     * @param length Size of the record; no more than the buffer.
+     * @return Offset to write the record at.
+     */
+    private int allocate(int length){
+        while(true){
+            if(used == 0){
+                head = 0;
+                tail = 0;
+            }
+            if(count < capacity){
+                if(used == 0 || tail > head){
+                    if(arena.capacity() - tail >= length){
+                        break;
+                    }
+                    if(arena.capacity() - tail >= 4){
+                        writer.putInt(tail, WRAP);
+                    }
+                    used += arena.capacity() - tail;
+                    tail = 0;
+                    continue;
+                }
+                if(head - tail >= length){
+                    break;
+                }
+            }
+            evictOldest();
+        }
+        int offset = tail;
+        tail += length;
+        used += length;
+        return offset;
+    }
+
+    /**
+     * Drops the record at the head of the ring, and its index entry if it is still the live copy of its Message.
+     */
+    private void evictOldest(){
+        int length = arena.capacity() - head < 4 ? WRAP : writer.getInt(head);
+        if(length == WRAP){
+            used -= arena.capacity() - head;
+            head = 0;
+            return;
+        }
+        int slot = slotOf(writer.getInt(head + 4));
+        if(slot >= 0 && offsets[slot] == head + 1){
+            removeSlot(slot);
+        }
+        head += length;
+        used -= length;
+        if(head == arena.capacity()){
+            head = 0;
+        }
+    }
+
+    /**
+     * @param id ID no. of a Message.
+     * @return Index slot holding it, -1 if it is not in the index.
+     */
+    private int slotOf(int id){
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        for(int probes = 0; probes < keys.length && offsets[slot] != 0; probes++){
+            if(keys[slot] == id){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int id, int offset){
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while(offsets[slot] != 0){
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        offsets[slot] = offset + 1L;
+        count++;
+    }
+
+    /**
+     * Empties an index slot, shifting later entries of the same probe run back so no lookup stops short of them.
+     */
+    private void removeSlot(int slot){
+        int mask = keys.length - 1;
+        int next = slot;
+        while(true){
+            next = (next + 1) & mask;
+            if(offsets[next] == 0){
+                break;
+            }
+            int home = hash(keys[next]) & mask;
+            boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if(!reachable){
+                keys[slot] = keys[next];
+                offsets[slot] = offsets[next];
+                slot = next;
+            }
+        }
+        offsets[slot] = 0;
+        count--;
+    }
+
+    private static int hash(int id){
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
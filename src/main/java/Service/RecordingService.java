@@ -0,0 +1,99 @@
+package Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Owns at most one Java Flight Recorder recording, started, stopped and dumped from the admin endpoints.
+ *
+ * A recording keeps only its most recent events, up to a maximum age, so it can be left running in production and
+ * dumped after the fact when an endpoint turns out to be slow. The custom request and query events are enabled by
+ * default under every JFR configuration; the configuration picks how much JVM detail (GC, locks, sampling) is kept
+ * alongside them.
+ */
+public class RecordingService {
+
+    private final Duration maxAge;
+    private Recording recording;
+
+    /**
+     * @param maxAge How far back a recording keeps events.
+     */
+    public RecordingService(Duration maxAge){
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Starts a recording unless one is already running. A stopped recording that was never dumped is discarded.
+     *
+     * @param settings Name of a JFR configuration shipped with the JDK: "default" (about 1% overhead) or "profile"
+     *                 (about 2%, with more frequent sampling).
+     * @return true if a recording was started, false if one was already running.
+     * @throws IOException if the configuration cannot be read.
+     * @throws ParseException if the configuration cannot be parsed.
+     */
+    public synchronized boolean start(String settings) throws IOException, ParseException {
+        if(isRunning()){
+            return false;
+        }
+        close();
+        recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName("socialmedia");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.start();
+        return true;
+    }
+
+    /**
+     * Stops the running recording, keeping what it recorded for a later dump.
+     *
+     * @return true if a recording was stopped, false if none was running.
+     */
+    public synchronized boolean stop(){
+        if(!isRunning()){
+            return false;
+        }
+        recording.stop();
+        return true;
+    }
+
+    /**
+     * Copies what the recording holds so far to a file. A running recording keeps running.
+     *
+     * @param file Where to write the .jfr data.
+     * @return true if it was written, false if there is no recording to dump.
+     * @throws IOException if the file cannot be written.
+     */
+    public synchronized boolean dump(Path file) throws IOException {
+        if(recording == null || recording.getState() == RecordingState.NEW
+                || recording.getState() == RecordingState.CLOSED){
+            return false;
+        }
+        recording.dump(file);
+        return true;
+    }
+
+    /**
+     * @return true if a recording is collecting events.
+     */
+    public synchronized boolean isRunning(){
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    /**
+     * Discards the recording, stopping it first if it is running.
+     */
+    public synchronized void close(){
+        if(recording != null){
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package Service;
+
+import Model.Message;
+import DAO.FollowDAO;
+import DAO.JdbcFollowDAO;
+import DAO.MessageDAO;
+import DAO.JdbcMessageDAO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Maintains the follow graph and a precomputed, bounded home timeline per Account.
+ *
+ * New Messages are pushed into the in-memory timelines of the poster's followers when they are posted
+ * (fan-out on write). Accounts with more followers than the fan-out limit are skipped on write and their
+ * Messages are merged into a follower's timeline when it is read instead (fan-out on read).
+ *
+ * At most a set number of timelines are held. Building one more evicts the least recently read of a few sampled
+ * timelines, which is rebuilt from the database if it is read again.
+ */
+public class TimelineService implements MessageListener {
+
+    /**
+     * Default number of Messages kept per timeline.
+     */
+    public static final int DEFAULT_CAPACITY = 200;
+
+    /**
+     * Default follower count above which an Account's Messages are no longer fanned out on write.
+     */
+    public static final int DEFAULT_FAN_OUT_LIMIT = 10_000;
+
+    /**
+     * Default number of Accounts whose timelines are held.
+     */
+    public static final int DEFAULT_MAX_TIMELINES = 10_000;
+
+    /**
+     * Timelines compared to pick one to evict.
+     */
+    private static final int EVICTION_SAMPLES = 8;
+
+    /**
+     * Newest first, ties broken by Message ID so the order is stable.
+     */
+    private static final Comparator<Message> NEWEST_FIRST = Comparator
+            .comparingLong(Message::getTime_posted_epoch)
+            .thenComparingInt(Message::getMessage_id)
+            .reversed();
+
+    private FollowDAO followDAO;
+    private MessageDAO messageDAO;
+    private final int capacity;
+    private final int fanOutLimit;
+    private final int maxTimelines;
+    private final ConcurrentHashMap<Integer, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Set<Integer> fanOutOnRead = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * No-args constructor
+     */
+    public TimelineService(){
+        this(new JdbcFollowDAO(), new JdbcMessageDAO());
+    }
+
+    /**
+     * Constructor that creates a TimelineService with specified DAO objects and default limits.
+     *
+     * @param followDAO The follow DAO layer that is being used.
+     * @param messageDAO The message DAO layer that is being used.
+     */
+    public TimelineService(FollowDAO followDAO, MessageDAO messageDAO){
+        this(followDAO, messageDAO, DEFAULT_CAPACITY, DEFAULT_FAN_OUT_LIMIT);
+    }
+
+    /**
+     * Constructor that creates a TimelineService with specified DAO objects and limits.
+     *
+     * @param followDAO The follow DAO layer that is being used.
+     * @param messageDAO The message DAO layer that is being used.
+     * @param capacity Maximum number of Messages kept per timeline.
+     * @param fanOutLimit Follower count above which Messages are merged on read instead of fanned out on write.
+     */
+    public TimelineService(FollowDAO followDAO, MessageDAO messageDAO, int capacity, int fanOutLimit){
+        this(followDAO, messageDAO, capacity, fanOutLimit, DEFAULT_MAX_TIMELINES);
+    }
+
+    /**
+     * Constructor that creates a TimelineService with specified DAO objects and limits, holding at most
+     * maxTimelines timelines.
+     *
+     * @param followDAO The follow DAO layer that is being used.
+     * @param messageDAO The message DAO layer that is being used.
+     * @param capacity Maximum number of Messages kept per timeline.
+     * @param fanOutLimit Follower count above which Messages are merged on read instead of fanned out on write.
+     * @param maxTimelines Maximum number of Accounts whose timelines are held, at least 1.
+     */
+    public TimelineService(FollowDAO followDAO, MessageDAO messageDAO, int capacity, int fanOutLimit,
+            int maxTimelines){
+        if(maxTimelines < 1){
+            throw new IllegalArgumentException("maxTimelines must be at least 1");
+        }
+        this.followDAO = followDAO;
+        this.messageDAO = messageDAO;
+        this.capacity = capacity;
+        this.fanOutLimit = fanOutLimit;
+        this.maxTimelines = maxTimelines;
+    }
+
+    /**
+     * Service layer implementation for following an Account.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account to be followed.
+     * @return true if the follow was created, false if it is a self-follow, a duplicate or either Account is missing.
+     */
+    public boolean follow(int followerId, int followeeId){
+        if(followerId == followeeId || !followDAO.insertFollow(followerId, followeeId)){
+            return false;
+        }
+        timelines.remove(followerId);
+        return true;
+    }
+
+    /**
+     * Service layer implementation for unfollowing an Account.
+     *
+     * @param followerId Account ID no. of the Account doing the following.
+     * @param followeeId Account ID no. of the Account to be unfollowed.
+     * @return true if a follow was removed, false if there was none.
+     */
+    public boolean unfollow(int followerId, int followeeId){
+        if(!followDAO.deleteFollow(followerId, followeeId)){
+            return false;
+        }
+        timelines.remove(followerId);
+        return true;
+    }
+
+    /**
+     * Service layer implementation for reading the newest Messages on an Account's home timeline.
+     * Only the requested page is copied out of the precomputed timeline.
+     *
+     * @param accountId Account ID no. of the timeline owner.
+     * @param limit Maximum number of Messages to return, capped at the timeline capacity.
+     * @return List of Messages ordered newest first, blank if there are none.
+     */
+    public List<Message> getTimeline(int accountId, int limit){
+        limit = Math.max(0, Math.min(limit, capacity));
+        Timeline timeline = loadTimeline(accountId);
+        if(fanOutOnRead.isEmpty()){
+            return timeline.newest(limit, msg -> false);
+        }
+        // held copies of fan-out-on-read posters' Messages are no longer kept up to date, so they are left out
+        List<Message> page = timeline.newest(limit, msg -> fanOutOnRead.contains(msg.getPosted_by()));
+        return mergeFanOutOnRead(accountId, page, limit);
+    }
+
+    /**
+     * Pushes a newly posted Message into the timelines of the poster's followers.
+     *
+     * @param msg Message that has just been stored.
+     */
+    @Override
+    public void messagePosted(Message msg){
+        if(fanOutOnRead.contains(msg.getPosted_by())){
+            return;
+        }
+        List<Integer> followers = followDAO.getFollowerIds(msg.getPosted_by());
+        if(followers.size() > fanOutLimit){
+            fanOutOnRead.add(msg.getPosted_by());
+            return;
+        }
+        for(int followerId : followers){
+            Timeline timeline = timelines.get(followerId);
+            if(timeline != null){
+                timeline.add(msg);
+            }
+        }
+    }
+
+    /**
+     * Replaces an edited Message in every held timeline of the poster's followers. Fan-out-on-read posters are
+     * skipped, as their Messages are read afresh with every timeline.
+     *
+     * @param msg Message with its updated text.
+     */
+    @Override
+    public void messageUpdated(Message msg){
+        if(fanOutOnRead.contains(msg.getPosted_by())){
+            return;
+        }
+        for(int followerId : followDAO.getFollowerIds(msg.getPosted_by())){
+            Timeline timeline = timelines.get(followerId);
+            if(timeline != null){
+                timeline.replace(msg);
+            }
+        }
+    }
+
+    /**
+     * Removes a deleted Message from every held timeline of the poster's followers. Fan-out-on-read posters are
+     * skipped, as their Messages are read afresh with every timeline.
+     *
+     * @param msg Message that has just been deleted.
+     */
+    @Override
+    public void messageDeleted(Message msg){
+        if(fanOutOnRead.contains(msg.getPosted_by())){
+            return;
+        }
+        for(int followerId : followDAO.getFollowerIds(msg.getPosted_by())){
+            Timeline timeline = timelines.get(followerId);
+            if(timeline != null){
+                timeline.remove(msg.getMessage_id());
+            }
+        }
+    }
+
+    /**
+     * Gets the held timeline for an Account, building it from the database on first use.
+     * The empty timeline is published before it is filled so that a concurrent fan-out is not lost.
+     *
+     * @param accountId Account ID no. of the timeline owner.
+     * @return The Account's loaded timeline.
+     */
+    private Timeline loadTimeline(int accountId){
+        Timeline timeline = timelineOf(accountId);
+        if(timeline.loadIfEmpty(() -> messageDAO.getRecentMessagesFollowedBy(accountId, capacity))){
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return timeline;
+    }
+
+    /**
+     * Builds an Account's timeline ahead of its first read, for warming timelines before the server takes traffic.
+     * Not counted as a hit or miss.
+     *
+     * @param accountId Account ID no. of the timeline owner.
+     * @return true if the timeline was built now, false if it was already held.
+     */
+    public boolean preload(int accountId){
+        Timeline timeline = timelineOf(accountId);
+        return timeline.loadIfEmpty(() -> messageDAO.getRecentMessagesFollowedBy(accountId, capacity));
+    }
+
+    /**
+     * Gets the held timeline for an Account, or holds a new empty one, first evicting another if maxTimelines
+     * are held. Marks it as just read.
+     */
+    private Timeline timelineOf(int accountId){
+        Timeline timeline = timelines.get(accountId);
+        if(timeline == null){
+            if(timelines.size() >= maxTimelines){
+                evictOne();
+            }
+            timeline = timelines.computeIfAbsent(accountId, id -> new Timeline(capacity));
+        }
+        timeline.lastRead = System.nanoTime();
+        return timeline;
+    }
+
+    /**
+     * Drops the least recently read of the first EVICTION_SAMPLES held timelines. Iteration order follows hash
+     * buckets rather than age, so the sample is close to a random one.
+     */
+    private void evictOne(){
+        Map.Entry<Integer, Timeline> victim = null;
+        Iterator<Map.Entry<Integer, Timeline>> held = timelines.entrySet().iterator();
+        for(int i = 0; i < EVICTION_SAMPLES && held.hasNext(); i++){
+            Map.Entry<Integer, Timeline> candidate = held.next();
+            if(victim == null || candidate.getValue().lastRead - victim.getValue().lastRead < 0){
+                victim = candidate;
+            }
+        }
+        if(victim != null){
+            timelines.remove(victim.getKey(), victim.getValue());
+        }
+    }
+
+    /**
+     * @return Number of timelines held.
+     */
+    public int size(){
+        return timelines.size();
+    }
+
+    /**
+     * @return Number of timeline reads served from a timeline already held in memory.
+     */
+    public long getHitCount(){
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of timeline reads that had to build the timeline from the database first.
+     */
+    public long getMissCount(){
+        return misses.sum();
+    }
+
+    /**
+     * Merges the newest Messages of followed fan-out-on-read Accounts into a page of the precomputed timeline.
+     *
+     * @param accountId Account ID no. of the timeline owner.
+     * @param page Newest Messages from the precomputed timeline.
+     * @param limit Maximum number of Messages to return.
+     * @return Merged List of Messages ordered newest first.
+     */
+    private List<Message> mergeFanOutOnRead(int accountId, List<Message> page, int limit){
+        List<Message> merged = new ArrayList<>(page);
+        Set<Integer> seen = new HashSet<>();
+        for(Message msg : page){
+            seen.add(msg.getMessage_id());
+        }
+        for(int followeeId : followDAO.getFolloweeIds(accountId)){
+            if(!fanOutOnRead.contains(followeeId)){
+                continue;
+            }
+            for(Message msg : messageDAO.getRecentMessagesByAccountId(followeeId, limit)){
+                if(seen.add(msg.getMessage_id())){
+                    merged.add(msg);
+                }
+            }
+        }
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * A bounded home timeline held oldest first so that the common case, a newer Message arriving, is an append.
+     */
+    private static class Timeline {
+        private final int capacity;
+        private final ArrayList<Message> messages;
+        private boolean loaded;
+        volatile long lastRead;
+
+        Timeline(int capacity){
+            this.capacity = capacity;
+            this.messages = new ArrayList<>(capacity + 1);
+        }
+
+        synchronized boolean loadIfEmpty(Supplier<List<Message>> source){
+            if(loaded){
+                return false;
+            }
+            List<Message> newestFirst = source.get();
+            for(int i = newestFirst.size() - 1; i >= 0; i--){
+                insert(newestFirst.get(i));
+            }
+            loaded = true;
+            return true;
+        }
+
+        synchronized void add(Message msg){
+            insert(msg);
+        }
+
+        synchronized void replace(Message msg){
+            for(int i = 0; i < messages.size(); i++){
+                if(messages.get(i).getMessage_id() == msg.getMessage_id()){
+                    messages.set(i, msg);
+                    return;
+                }
+            }
+        }
+
+        synchronized void remove(int messageId){
+            messages.removeIf(msg -> msg.getMessage_id() == messageId);
+        }
+
+        synchronized List<Message> newest(int limit, Predicate<Message> skip){
+            List<Message> page = new ArrayList<>(Math.min(limit, messages.size()));
+            for(int i = messages.size() - 1; i >= 0 && page.size() < limit; i--){
+                if(!skip.test(messages.get(i))){
+                    page.add(messages.get(i));
+                }
+            }
+            return page;
+        }
+
+        /**
+         * Inserts a Message in order, ignoring one already present, then drops the oldest beyond capacity.
+         */
+        private void insert(Message msg){
+            int i = messages.size();
+            while(i > 0 && NEWEST_FIRST.compare(messages.get(i - 1), msg) < 0){
+                i--;
+            }
+            if(i > 0 && messages.get(i - 1).getMessage_id() == msg.getMessage_id()){
+                return;
+            }
+            messages.add(i, msg);
+            if(messages.size() > capacity){
+                messages.remove(0);
+            }
+        }
+    }
+}
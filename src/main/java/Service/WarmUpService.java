@@ -0,0 +1,227 @@
+package Service;
+
+import DAO.MessageDAO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fills the caches before the server reports ready, so the first requests after a restart are not all misses that
+ * fall through to the database at once.
+ *
+ * Warm-up reads the most recently posted Messages into the Message cache, in batches of one DAO call each, and
+ * caches the Message lists and builds the home timelines of the Accounts that posted most. All of these are loaded
+ * in parallel by a fixed number of threads, which bounds how many database connections warm-up holds at a time.
+ * Once the server is ready the cache hit rates are tracked for its first minute, to show how much of the traffic
+ * warm-up anticipated.
+ */
+public class WarmUpService {
+
+    /**
+     * Seconds after the server became ready over which the first-minute hit rates are counted.
+     */
+    public static final int REPORT_SECONDS = 60;
+
+    /**
+     * Most Message IDs read into the cache by one DAO call.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    private MessageDAO messageDAO;
+    private MessageService messageService;
+    private TimelineService timelineService;
+    private final int recentMessages;
+    private final int activeAccounts;
+    private final int concurrency;
+    private final LongAdder messagesLoaded = new LongAdder();
+    private final LongAdder timelinesLoaded = new LongAdder();
+    private final LongAdder accountListsLoaded = new LongAdder();
+    private volatile long millis = -1;
+    // hits and misses of the Message cache, timelines and Account lists, when the server became ready and
+    // REPORT_SECONDS later
+    private volatile long[] atReady;
+    private volatile long[] afterReport;
+
+    /**
+     * @param messageDAO The DAO the most recent Messages and most active Accounts are found with.
+     * @param messageService The service whose Message and Account list caches are filled.
+     * @param timelineService The service whose home timelines are built.
+     * @param recentMessages Number of most recently posted Messages to cache; 0 for none.
+     * @param activeAccounts Number of Accounts, those that posted most, whose Message lists are cached and home
+     * timelines built; 0 for none.
+     * @param concurrency Most loads run at once.
+     */
+    public WarmUpService(MessageDAO messageDAO, MessageService messageService, TimelineService timelineService,
+            int recentMessages, int activeAccounts, int concurrency){
+        if(concurrency < 1){
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.messageDAO = messageDAO;
+        this.messageService = messageService;
+        this.timelineService = timelineService;
+        this.recentMessages = recentMessages;
+        this.activeAccounts = activeAccounts;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Warms the caches, returning when every load has finished. A load that fails only leaves its part of the
+     * cache cold; DAO failures are already in the ErrorLog.
+     *
+     * @throws InterruptedException if interrupted while waiting for the loads.
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        if(recentMessages <= 0 && activeAccounts <= 0){
+            millis = 0;
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService loaders = Executors.newFixedThreadPool(concurrency, task -> {
+            Thread thread = new Thread(task, "warm-up-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try{
+            List<Future<?>> loads = new ArrayList<>();
+            if(recentMessages > 0){
+                List<Integer> ids = messageDAO.getRecentMessageIds(recentMessages);
+                for(int from = 0; from < ids.size(); from += BATCH_SIZE){
+                    List<Integer> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+                    loads.add(loaders.submit(() -> messagesLoaded.add(messageService.preload(batch))));
+                }
+            }
+            if(activeAccounts > 0){
+                Map<Integer, Long> counts = messageDAO.countMessagesByAccount();
+                for(int accountId : mostActive(counts, activeAccounts)){
+                    loads.add(loaders.submit(() -> {
+                        messageService.preloadAccountMessages(accountId);
+                        accountListsLoaded.increment();
+                    }));
+                    loads.add(loaders.submit(() -> {
+                        if(timelineService.preload(accountId)){
+                            timelinesLoaded.increment();
+                        }
+                    }));
+                }
+            }
+            for(Future<?> load : loads){
+                try{
+                    load.get();
+                } catch(ExecutionException e){
+                    // the rest of the cache is still worth having
+                }
+            }
+        } finally{
+            loaders.shutdownNow();
+            millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Starts counting the first-minute hit rates; called when the server becomes ready.
+     */
+    public void serverReady(){
+        atReady = counts();
+        CompletableFuture.delayedExecutor(REPORT_SECONDS, TimeUnit.SECONDS).execute(() -> afterReport = counts());
+    }
+
+    /**
+     * @return Milliseconds warm-up took, -1 if it has not finished.
+     */
+    public long getMillis(){
+        return millis;
+    }
+
+    /**
+     * @return Number of Messages read into the Message cache.
+     */
+    public long getMessagesLoaded(){
+        return messagesLoaded.sum();
+    }
+
+    /**
+     * @return Number of home timelines built.
+     */
+    public long getTimelinesLoaded(){
+        return timelinesLoaded.sum();
+    }
+
+    /**
+     * @return Number of Accounts whose Message lists were cached.
+     */
+    public long getAccountListsLoaded(){
+        return accountListsLoaded.sum();
+    }
+
+    /**
+     * @return Message cache hit rate over the first minute after the server became ready, so far if that minute
+     * has not passed; null before it was ready or while there have been no lookups.
+     */
+    public Double getFirstMinuteMessageHitRate(){
+        return firstMinuteRate(0);
+    }
+
+    /**
+     * @return Timeline hit rate over the first minute after the server became ready, so far if that minute has not
+     * passed; null before it was ready or while there have been no reads.
+     */
+    public Double getFirstMinuteTimelineHitRate(){
+        return firstMinuteRate(2);
+    }
+
+    /**
+     * @return Account Message list cache hit rate over the first minute after the server became ready, so far if
+     * that minute has not passed; null before it was ready or while there have been no reads.
+     */
+    public Double getFirstMinuteAccountListHitRate(){
+        return firstMinuteRate(4);
+    }
+
+    private Double firstMinuteRate(int at){
+        long[] start = atReady;
+        if(start == null){
+            return null;
+        }
+        long[] end = afterReport != null ? afterReport : counts();
+        long hits = end[at] - start[at];
+        long lookups = hits + end[at + 1] - start[at + 1];
+        return lookups == 0 ? null : (double) hits / lookups;
+    }
+
+    private long[] counts(){
+        MessageCache cache = messageService.getCache();
+        AccountMessagesCache accountCache = messageService.getAccountCache();
+        return new long[]{cache.getHitCount(), cache.getMissCount(),
+                timelineService.getHitCount(), timelineService.getMissCount(),
+                accountCache.getHitCount(), accountCache.getMissCount()};
+    }
+
+    /**
+     * @param counts Messages posted by each Account, null if they could not be counted.
+     * @param limit Most Accounts to return.
+     * @return Account IDs of the Accounts that posted most, most first.
+     */
+    private static List<Integer> mostActive(Map<Integer, Long> counts, int limit){
+        if(counts == null){
+            return new ArrayList<>();
+        }
+        List<Map.Entry<Integer, Long>> accounts = new ArrayList<>(counts.entrySet());
+        accounts.sort(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()));
+        List<Integer> ids = new ArrayList<>(Math.min(limit, accounts.size()));
+        for(int i = 0; i < accounts.size() && ids.size() < limit; i++){
+            ids.add(accounts.get(i).getKey());
+        }
+        return ids;
+    }
+}
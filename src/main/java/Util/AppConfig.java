@@ -0,0 +1,215 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Runtime settings, read once per load from these layers, each overriding the ones before it:
+ *
+ * 1. application.properties on the classpath, which holds every setting with its default,
+ * 2. application-{profile}.properties on the classpath for the active profile ("test", "bench" or "prod"),
+ * 3. the file named by the config.file system property or CONFIG_FILE environment variable, if any,
+ * 4. environment variables, named after the setting in upper case with dots as underscores (DB_URL),
+ * 5. system properties (-Ddb.url=...).
+ *
+ * The profile itself is chosen by the app.profile system property or APP_PROFILE environment variable and is
+ * "prod" if neither is set. Only settings named in application.properties are read from the environment.
+ */
+public class AppConfig {
+
+    /**
+     * System property naming the profile.
+     */
+    public static final String PROFILE_PROPERTY = "app.profile";
+
+    private static final String DEFAULT_PROFILE = "prod";
+
+    private static volatile AppConfig current;
+
+    private final String profile;
+    private final Map<String, String> values = new TreeMap<>();
+    private final Map<String, String> sources = new TreeMap<>();
+
+    private AppConfig(String profile){
+        this.profile = profile;
+    }
+
+    /**
+     * Reads the settings afresh from every layer.
+     *
+     * @return The settings in effect now.
+     * @throws IllegalStateException if a configuration file cannot be read.
+     */
+    public static AppConfig load(){
+        String profile = System.getProperty(PROFILE_PROPERTY, env(PROFILE_PROPERTY, DEFAULT_PROFILE));
+        AppConfig config = new AppConfig(profile);
+        config.readResource("application.properties");
+        config.readResource("application-" + profile + ".properties");
+        String file = System.getProperty("config.file", env("config.file", null));
+        if(file != null){
+            config.readFile(file);
+        }
+        for(String key : config.values.keySet()){
+            String value = env(key, null);
+            if(value != null){
+                config.set(key, value, "environment");
+            }
+        }
+        for(String key : System.getProperties().stringPropertyNames()){
+            if(config.values.containsKey(key)){
+                config.set(key, System.getProperty(key), "system property");
+            }
+        }
+        current = config;
+        return config;
+    }
+
+    /**
+     * @return The settings from the most recent load, loading them if that has not happened yet.
+     */
+    public static AppConfig get(){
+        AppConfig config = current;
+        return config != null ? config : load();
+    }
+
+    /**
+     * @return Name of the active profile.
+     */
+    public String getProfile(){
+        return profile;
+    }
+
+    /**
+     * @param key Name of the setting, e.g. "http.port".
+     * @return Its value.
+     * @throws IllegalArgumentException if there is no such setting.
+     */
+    public String getString(String key){
+        String value = values.get(key);
+        if(value == null){
+            throw new IllegalArgumentException("no setting named " + key);
+        }
+        return value;
+    }
+
+    /**
+     * @param key Name of the setting.
+     * @return Its value as an int.
+     * @throws IllegalArgumentException if there is no such setting or it is not a number.
+     */
+    public int getInt(String key){
+        try{
+            return Integer.parseInt(getString(key).trim());
+        } catch(NumberFormatException e){
+            throw new IllegalArgumentException(key + " must be a whole number: " + values.get(key));
+        }
+    }
+
+    /**
+     * @param key Name of the setting.
+     * @return Its value as a double.
+     * @throws IllegalArgumentException if there is no such setting or it is not a number.
+     */
+    public double getDouble(String key){
+        try{
+            return Double.parseDouble(getString(key).trim());
+        } catch(NumberFormatException e){
+            throw new IllegalArgumentException(key + " must be a number: " + values.get(key));
+        }
+    }
+
+    /**
+     * @param key Name of the setting.
+     * @return Its value as a boolean.
+     * @throws IllegalArgumentException if there is no such setting or it is not true or false.
+     */
+    public boolean getBoolean(String key){
+        String value = getString(key).trim();
+        if(!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")){
+            throw new IllegalArgumentException(key + " must be true or false: " + values.get(key));
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Builds the JDBC URL from db.url and the H2 tuning settings. A setting left blank keeps H2's own default.
+     *
+     * @return URL to open the database with.
+     */
+    public String getDatabaseUrl(){
+        StringBuilder url = new StringBuilder(getString("db.url").replaceAll(";+$", ""));
+        appendSetting(url, "CACHE_SIZE", getString("db.h2.cache_size_kb"));
+        appendSetting(url, "LOCK_TIMEOUT", getString("db.h2.lock_timeout_ms"));
+        for(String setting : getString("db.h2.settings").split(";")){
+            if(!setting.isBlank()){
+                url.append(';').append(setting.trim());
+            }
+        }
+        return url.toString();
+    }
+
+    /**
+     * @return One line per setting with its value and the layer it came from, passwords masked, for the startup log.
+     */
+    public String describe(){
+        StringBuilder report = new StringBuilder("Effective configuration (profile ").append(profile).append("):");
+        for(Map.Entry<String, String> entry : values.entrySet()){
+            String key = entry.getKey();
+            String value = key.contains("password") ? "******" : entry.getValue();
+            report.append(System.lineSeparator()).append(String.format("  %-32s = %-40s [%s]", key, value,
+                    sources.get(key)));
+        }
+        return report.toString();
+    }
+
+    private static void appendSetting(StringBuilder url, String name, String value){
+        if(!value.isBlank()){
+            url.append(';').append(name).append('=').append(value.trim());
+        }
+    }
+
+    private void set(String key, String value, String source){
+        values.put(key, value);
+        sources.put(key, source);
+    }
+
+    private void readResource(String name){
+        try(InputStream in = AppConfig.class.getClassLoader().getResourceAsStream(name)){
+            if(in != null){
+                Properties props = new Properties();
+                props.load(in);
+                read(props, name);
+            }
+        } catch(IOException e){
+            throw new IllegalStateException("cannot read " + name, e);
+        }
+    }
+
+    private void readFile(String file){
+        try(Reader in = Files.newBufferedReader(Paths.get(file))){
+            Properties props = new Properties();
+            props.load(in);
+            read(props, file);
+        } catch(IOException e){
+            throw new IllegalStateException("cannot read " + file, e);
+        }
+    }
+
+    private void read(Properties props, String source){
+        for(String key : props.stringPropertyNames()){
+            set(key, props.getProperty(key), source);
+        }
+    }
+
+    private static String env(String key, String otherwise){
+        String value = System.getenv(key.toUpperCase(Locale.ROOT).replace('.', '_'));
+        return value != null ? value : otherwise;
+    }
+}
@@ -0,0 +1,169 @@
+package Util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many requests run at once, at a limit that follows the latency the requests observe.
+ *
+ * The limit is adjusted with a gradient, as in TCP Vegas: every finished request feeds its latency into a short
+ * and a long moving average. While the short one stays within a tolerance of the long one the limit grows by about
+ * its square root, probing for more throughput; once it rises above, requests are queueing somewhere (usually for
+ * H2) and the limit shrinks by the ratio of the two, down to half per sample. Samples taken while less than half
+ * the limit is in use say nothing about the limit and are ignored.
+ *
+ * Lower priorities may only use part of the limit, so as it shrinks bulk requests are shed first and the rest of
+ * the limit stays free for cheaper ones. A request over its share is refused at once rather than queued.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * How much of the limit requests of each kind may use.
+     */
+    public enum Priority {
+        /** Single-row reads, which are cheap and what most clients wait on. */
+        HIGH(1.0),
+        /** Writes. */
+        NORMAL(0.8),
+        /** Reads that list or stream many rows. */
+        LOW(0.5);
+
+        final double share;
+
+        Priority(double share){
+            this.share = share;
+        }
+    }
+
+    /**
+     * Samples averaged by the short-term latency.
+     */
+    private static final int SHORT_WINDOW = 10;
+
+    /**
+     * Samples averaged by the long-term latency, the baseline the short one is compared with.
+     */
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+    // guarded by this
+    private double shortRtt;
+    private double longRtt;
+
+    /**
+     * @param initialLimit Limit before any latency has been observed.
+     * @param minLimit Lowest the limit goes.
+     * @param maxLimit Highest the limit goes.
+     * @param tolerance How many times the long-term latency the short-term one may reach before the limit shrinks.
+     * @param smoothing Weight of each new limit estimate, from 0 (never move) to 1 (jump straight to it).
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing){
+        if(minLimit < 1 || maxLimit < minLimit || tolerance < 1 || smoothing <= 0 || smoothing > 1){
+            throw new IllegalArgumentException("limits must satisfy 1 <= min <= max, tolerance >= 1, "
+                    + "0 < smoothing <= 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Lets a request start if its priority's share of the limit is not yet in use. A request that starts must call
+     * release when it ends.
+     *
+     * @param priority Kind of request.
+     * @return true if the request may start, false if it should be refused.
+     */
+    public boolean tryAcquire(Priority priority){
+        int allowed = Math.max(1, (int) (limit * priority.share));
+        while(true){
+            int current = inflight.get();
+            if(current >= allowed){
+                rejected.increment();
+                return false;
+            }
+            if(inflight.compareAndSet(current, current + 1)){
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request started by tryAcquire and adjusts the limit to how long it took.
+     *
+     * @param rttNanos Time from tryAcquire to now.
+     */
+    public void release(long rttNanos){
+        int running = inflight.getAndDecrement();
+        sample(rttNanos, running);
+    }
+
+    /**
+     * @return Requests the limiter currently lets run at once, at the highest priority.
+     */
+    public int getLimit(){
+        return (int) limit;
+    }
+
+    /**
+     * @return Requests running now.
+     */
+    public int getInflight(){
+        return inflight.get();
+    }
+
+    /**
+     * @return Number of requests let through since startup.
+     */
+    public long getAcceptedCount(){
+        return accepted.sum();
+    }
+
+    /**
+     * @return Number of requests refused since startup.
+     */
+    public long getRejectedCount(){
+        return rejected.sum();
+    }
+
+    /**
+     * @return Long-term average latency in milliseconds, 0 before the first sample.
+     */
+    public synchronized double getBaselineMillis(){
+        return longRtt / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private synchronized void sample(long rttNanos, int running){
+        double rtt = Math.max(1, rttNanos);
+        if(longRtt == 0){
+            shortRtt = rtt;
+            longRtt = rtt;
+        } else {
+            shortRtt += (rtt - shortRtt) / SHORT_WINDOW;
+            longRtt += (rtt - longRtt) / LONG_WINDOW;
+        }
+        // after a long stretch of slowness, let the baseline catch up with the new normal quickly
+        if(longRtt > 2 * shortRtt){
+            longRtt *= 0.95;
+        }
+        double current = limit;
+        if(running < current / 2){
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double estimate = current * gradient + Math.sqrt(current);
+        double next = current * (1 - smoothing) + estimate * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -1,48 +1,95 @@
 package Util;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.FileReader;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.h2.jdbcx.JdbcDataSource;
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcConnectionPool;
 import org.h2.tools.RunScript;
 
 /**
  * The ConnectionUtil class will be utilized to create an active connection to
- * our database. This class utilizes the singleton design pattern. We will be
- * utilizing an in-memory called h2database for the sql demos.
- *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * our database. This class utilizes the singleton design pattern. The database
+ * URL, credentials and pool size come from AppConfig.
  */
 public class ConnectionUtil {
 
 	/**
-	 * url will represent our connection string. Since this is an in-memory db, we
-	 * will represent a file location to store the data
+	 * Connection pool for the database named by the db.* settings of AppConfig. Connections must be closed to
+	 * return them to the pool.
 	 */
-	private static String url = "jdbc:h2:./h2/db;";
+	private static JdbcConnectionPool pool;
+
 	/**
-	 * Default username for connecting to h2
+	 * Statements that bring a database created by an older SocialMedia.sql up to date, each run once at startup if
+	 * the table it names exists. They must be safe to run again.
 	 */
-	private static String username = "sa";
+	private static final String[][] SCHEMA_UPGRADES = {
+		{ "MESSAGE", "ALTER TABLE message ADD COLUMN IF NOT EXISTS version bigint not null default 0;" },
+		{ "FOLLOW", "CREATE INDEX IF NOT EXISTS follow_followee ON follow (followee_id);" }
+	};
+
 	/**
-	 * Default password for connecting to h2
+	 * static initialization block to create the pool from the current configuration and upgrade the schema
 	 */
-	private static String password = "sa";
+	static {
+		AppConfig config = AppConfig.get();
+		pool = JdbcConnectionPool.create(config.getDatabaseUrl(), config.getString("db.user"),
+				config.getString("db.password"));
+		pool.setMaxConnections(config.getInt("db.pool.max_connections"));
+		upgradeSchema();
+	}
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * Runs the SCHEMA_UPGRADES whose tables exist. A database that cannot be reached is left as it is; its
+	 * failure is logged and surfaces again on first use.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static void upgradeSchema() {
+		try (Connection conn = pool.getConnection(); Statement statement = conn.createStatement()) {
+			for (String[] upgrade : SCHEMA_UPGRADES) {
+				try (ResultSet tables = conn.getMetaData().getTables(null, null, upgrade[0], null)) {
+					if (tables.next()) {
+						statement.execute(upgrade[1]);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			ErrorLog.sqlFailure("ConnectionUtil.upgradeSchema", e);
+		}
+	}
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * @return the pool itself, for code that takes a DataSource
 	 */
-	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+	public static DataSource getDataSource() {
+		return pool;
+	}
+
+	/**
+	 * Creates a connection pool for each Message shard, on the database named by storage.shard.url with {shard}
+	 * replaced by the shard number.
+	 * 
+	 * @param config configuration with the shard settings and the db.* credentials
+	 * @param count number of shards
+	 * @return the pools, in shard order
+	 */
+	public static List<DataSource> createShardPools(AppConfig config, int count) {
+		List<DataSource> pools = new ArrayList<>();
+		for (int shard = 0; shard < count; shard++) {
+			JdbcConnectionPool shardPool = JdbcConnectionPool.create(
+					config.getString("storage.shard.url").replace("{shard}", String.valueOf(shard)),
+					config.getString("db.user"), config.getString("db.password"));
+			shardPool.setMaxConnections(config.getInt("storage.shard.pool.max_connections"));
+			pools.add(shardPool);
+		}
+		return pools;
 	}
 
 	/**
@@ -52,23 +99,74 @@ public class ConnectionUtil {
 		try {
 			return pool.getConnection();
 		} catch (SQLException e) {
-			e.printStackTrace();
+			ErrorLog.sqlFailure("ConnectionUtil.getConnection", e);
 		}
 
 		return null;
 	}
 
+	/**
+	 * Rolls back the current transaction, ignoring any failure to do so.
+	 * 
+	 * @param conn connection with an open transaction
+	 */
+	public static void rollbackQuietly(Connection conn) {
+		try {
+			conn.rollback();
+		} catch (SQLException e) {
+			ErrorLog.sqlFailure("ConnectionUtil.rollbackQuietly", e);
+		}
+	}
+
+	/**
+	 * @return true if a connection to the database can be opened and answers within a second
+	 */
+	public static boolean isReachable() {
+		try (Connection conn = pool.getConnection()) {
+			return conn.isValid(1);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return Number of pooled connections currently handed out.
+	 */
+	public static int getActiveConnections() {
+		return pool.getActiveConnections();
+	}
+
+	/**
+	 * @return Most connections the pool hands out at once.
+	 */
+	public static int getMaxConnections() {
+		return pool.getMaxConnections();
+	}
+
+	/**
+	 * Closes a connection, returning it to the pool, ignoring any failure to do so.
+	 * 
+	 * @param conn connection to be closed
+	 */
+	public static void closeQuietly(Connection conn) {
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			ErrorLog.sqlFailure("ConnectionUtil.closeQuietly", e);
+		}
+	}
+
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
 	 * tables to keep it consistent across all tests. The method will read the sql
 	 * file in resources. This will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
-			e.printStackTrace();
+		try (Connection conn = getConnection();
+				FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql")) {
+			RunScript.execute(conn, sqlReader);
+		} catch (SQLException | IOException e) {
+			ErrorLog.failure("ConnectionUtil.resetTestDatabase", e);
 		}
 	}
 }
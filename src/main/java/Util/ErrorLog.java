@@ -0,0 +1,326 @@
+package Util;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts and logs the errors the DAOs catch, without doing any I/O on the thread that caught them.
+ *
+ * Recording an error bumps a counter for the operation that failed and one for the class of its SQLState, then
+ * offers a structured event to a fixed-size lock-free ring buffer. A single daemon thread drains the ring and hands
+ * each event to the sink as one key=value line. When the ring is full the event is dropped and counted rather than
+ * waited for, so a storm of failures costs request threads a few compare-and-sets each instead of queueing them
+ * behind the console.
+ */
+public class ErrorLog {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Seconds of history kept for getRecentCount.
+     */
+    public static final int RECENT_SECONDS = 60;
+
+    private static final ErrorLog SHARED = new ErrorLog(4096, LoggerFactory.getLogger("DAO")::warn);
+
+    private final Ring ring;
+    private final Consumer<String> sink;
+    private final ConcurrentHashMap<String, LongAdder> operations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> classes = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    // errors per second over the last RECENT_SECONDS, each slot stamped with the second it counts
+    private final AtomicLongArray recentSeconds = new AtomicLongArray(RECENT_SECONDS);
+    private final AtomicLongArray recentCounts = new AtomicLongArray(RECENT_SECONDS);
+
+    /**
+     * Starts a log with its own writer thread.
+     *
+     * @param capacity Most events waiting to be written; rounded up to a power of two.
+     * @param sink Receives each event as one line, on the writer thread.
+     */
+    public ErrorLog(int capacity, Consumer<String> sink){
+        this.ring = new Ring(capacity);
+        this.sink = sink;
+        Thread writer = new Thread(this::drain, "error-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return The log the DAOs and ConnectionUtil record to, which writes to the "DAO" slf4j logger.
+     */
+    public static ErrorLog shared(){
+        return SHARED;
+    }
+
+    /**
+     * Records a failed database operation in the shared log.
+     *
+     * @param operation Class and method that failed, e.g. "JdbcMessageDAO.insertMessage".
+     * @param e What it caught.
+     */
+    public static void sqlFailure(String operation, SQLException e){
+        SHARED.record(operation, e);
+    }
+
+    /**
+     * Records any other failed operation, such as a write to the message log, in the shared log. A SQLException
+     * passed here is still classified by its SQLState.
+     *
+     * @param operation Class and method that failed.
+     * @param e What it caught.
+     */
+    public static void failure(String operation, Exception e){
+        SHARED.record(operation, e);
+    }
+
+    /**
+     * Counts an error and queues it to be written. Never blocks.
+     *
+     * @param operation Class and method that failed.
+     * @param e What it caught.
+     */
+    public void record(String operation, Exception e){
+        String sqlState = e instanceof SQLException ? ((SQLException) e).getSQLState() : null;
+        String errorClass = e instanceof SQLException ? classify(sqlState) : "io";
+        count(operations, operation);
+        count(classes, errorClass);
+        long now = System.currentTimeMillis();
+        countRecent(now / 1000);
+        Event event = new Event(now, operation, errorClass, sqlState,
+                e instanceof SQLException ? ((SQLException) e).getErrorCode() : 0, e.getClass().getSimpleName(),
+                e.getMessage(), Thread.currentThread().getName());
+        if(!ring.offer(event)){
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Groups a SQLState by the kind of failure it describes, from its two-character class and H2's own codes.
+     *
+     * @param sqlState SQLState of a SQLException, may be null.
+     * @return One of connection, constraint, data, syntax, transaction, timeout, other or unknown.
+     */
+    public static String classify(String sqlState){
+        if(sqlState == null || sqlState.length() < 2){
+            return "unknown";
+        }
+        switch(sqlState){
+            case "HYT00":
+            case "57014":
+                return "timeout";
+            case "90067":
+            case "90098":
+            case "90121":
+                return "connection";
+            default:
+                break;
+        }
+        switch(sqlState.substring(0, 2)){
+            case "08": return "connection";
+            case "23": return "constraint";
+            case "22": return "data";
+            case "42": return "syntax";
+            case "40": return "transaction";
+            default: return "other";
+        }
+    }
+
+    /**
+     * @return Errors recorded so far per operation, sorted by operation.
+     */
+    public Map<String, Long> getOperationCounts(){
+        return snapshot(operations);
+    }
+
+    /**
+     * @return Errors recorded so far per SQLState class, sorted by class.
+     */
+    public Map<String, Long> getClassCounts(){
+        return snapshot(classes);
+    }
+
+    /**
+     * @return Number of events not written because the ring was full.
+     */
+    public long getDroppedCount(){
+        return dropped.sum();
+    }
+
+    /**
+     * @return Errors recorded in the last RECENT_SECONDS seconds, read from per-second counters without locking.
+     */
+    public long getRecentCount(){
+        long second = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for(int i = 0; i < RECENT_SECONDS; i++){
+            if(second - recentSeconds.get(i) < RECENT_SECONDS){
+                total += recentCounts.get(i);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Number of events handed to the sink.
+     */
+    public long getWrittenCount(){
+        return written.sum();
+    }
+
+    /**
+     * Counts an error in its second's slot, first clearing the slot if it still holds a count from a minute ago.
+     * A count landing while another thread clears the slot can be lost, which a rate can afford.
+     */
+    private void countRecent(long second){
+        int slot = (int) (second % RECENT_SECONDS);
+        long stamp = recentSeconds.get(slot);
+        if(stamp != second && recentSeconds.compareAndSet(slot, stamp, second)){
+            recentCounts.set(slot, 0);
+        }
+        recentCounts.incrementAndGet(slot);
+    }
+
+    private static void count(ConcurrentHashMap<String, LongAdder> counters, String key){
+        counters.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentHashMap<String, LongAdder> counters){
+        Map<String, Long> copy = new TreeMap<>();
+        counters.forEach((key, count) -> copy.put(key, count.sum()));
+        return copy;
+    }
+
+    private void drain(){
+        long reportedDrops = 0;
+        while(true){
+            Event event = ring.poll();
+            if(event == null){
+                long drops = dropped.sum();
+                if(drops != reportedDrops){
+                    write("dropped=" + (drops - reportedDrops) + " reason=\"error log full\"");
+                    reportedDrops = drops;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            write(event.toString());
+            written.increment();
+        }
+    }
+
+    private void write(String line){
+        try{
+            sink.accept(line);
+        } catch(RuntimeException e){
+            // a failing sink must not stop the writer
+        }
+    }
+
+    /**
+     * One recorded error, kept as fields until the writer formats it.
+     */
+    private static final class Event {
+        final long timeMillis;
+        final String operation;
+        final String errorClass;
+        final String sqlState;
+        final int errorCode;
+        final String exception;
+        final String message;
+        final String thread;
+
+        Event(long timeMillis, String operation, String errorClass, String sqlState, int errorCode, String exception,
+                String message, String thread){
+            this.timeMillis = timeMillis;
+            this.operation = operation;
+            this.errorClass = errorClass;
+            this.sqlState = sqlState;
+            this.errorCode = errorCode;
+            this.exception = exception;
+            this.message = message;
+            this.thread = thread;
+        }
+
+        @Override
+        public String toString(){
+            return "time=" + timeMillis + " op=" + operation + " class=" + errorClass + " sql_state=" + sqlState
+                    + " code=" + errorCode + " exception=" + exception + " thread=\"" + thread + "\" message=\""
+                    + (message == null ? "" : message.replace("\"", "'").replace('\n', ' ')) + "\"";
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring. Each slot carries a sequence number telling producers whether it
+     * is free for their lap and the consumer whether it has been filled, so neither side ever takes a lock.
+     */
+    static final class Ring {
+        private final int mask;
+        private final AtomicReferenceArray<Event> slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        Ring(int capacity){
+            int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+            this.mask = size - 1;
+            this.slots = new AtomicReferenceArray<>(size);
+            this.sequences = new AtomicLongArray(size);
+            for(int i = 0; i < size; i++){
+                sequences.set(i, i);
+            }
+        }
+
+        /**
+         * @return false if the ring is full.
+         */
+        boolean offer(Event event){
+            long pos = tail.get();
+            while(true){
+                int slot = (int) (pos & mask);
+                long lap = sequences.get(slot) - pos;
+                if(lap == 0){
+                    if(tail.compareAndSet(pos, pos + 1)){
+                        slots.lazySet(slot, event);
+                        sequences.set(slot, pos + 1);
+                        return true;
+                    }
+                    pos = tail.get();
+                } else if(lap < 0){
+                    return false;
+                } else {
+                    pos = tail.get();
+                }
+            }
+        }
+
+        /**
+         * Only called from the writer thread.
+         *
+         * @return The oldest event, or null if the ring is empty.
+         */
+        Event poll(){
+            int slot = (int) (head & mask);
+            if(sequences.get(slot) != head + 1){
+                return null;
+            }
+            Event event = slots.get(slot);
+            slots.lazySet(slot, null);
+            sequences.set(slot, head + mask + 1);
+            head++;
+            return event;
+        }
+    }
+}
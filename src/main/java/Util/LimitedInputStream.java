@@ -0,0 +1,95 @@
+package Util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that passes through at most a fixed number of bytes and throws LimitExceededException as soon as its
+ * source offers one more, so an oversized request body is refused after reading only the limit rather than buffered
+ * whole first.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long count;
+
+    /**
+     * @param in Stream to read from.
+     * @param limit Most bytes that may be read from it.
+     */
+    public LimitedInputStream(InputStream in, long limit){
+        super(in);
+        this.limit = limit;
+    }
+
+    /**
+     * @throws LimitExceededException if the byte read is past the limit.
+     */
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if(b != -1){
+            count(1);
+        }
+        return b;
+    }
+
+    /**
+     * Reads no more than one byte past the limit, which is enough to tell that it was exceeded.
+     *
+     * @throws LimitExceededException if any byte read is past the limit.
+     */
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        int n = super.read(buf, off, (int) Math.min(len, limit - count + 1));
+        if(n > 0){
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, limit - count + 1));
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported(){
+        return false;
+    }
+
+    private void count(long n){
+        count += n;
+        if(count > limit){
+            throw new LimitExceededException(limit);
+        }
+    }
+
+    /**
+     * Thrown when more bytes are offered than the limit allows. Unchecked so that it passes unchanged through JSON
+     * parsers, which wrap the IOExceptions of their source.
+     */
+    public static class LimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long limit;
+
+        /**
+         * @param limit The limit that was exceeded, in bytes.
+         */
+        public LimitExceededException(long limit){
+            super("More than " + limit + " bytes", null, false, false);
+            this.limit = limit;
+        }
+
+        /**
+         * @return The limit that was exceeded, in bytes.
+         */
+        public long getLimit(){
+            return limit;
+        }
+    }
+}
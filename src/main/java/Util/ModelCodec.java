@@ -0,0 +1,253 @@
+package Util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import Model.Account;
+import Model.Message;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads and writes Accounts and Messages as JSON with Jackson's streaming parser and generator: each field is read
+ * or written by name in code, with no tree and no reflection.
+ *
+ * Parsing accepts what ObjectMapper accepts for these classes: fields in any order, numbers given as JSON strings,
+ * null for a number meaning 0. Like ObjectMapper, it rejects unknown fields and values of the wrong shape.
+ */
+public final class ModelCodec {
+
+    /**
+     * Factory shared by every parser and generator; it is thread-safe and recycles their buffers.
+     */
+    public static final JsonFactory JSON = new JsonFactory();
+
+    // field names quoted and encoded once, as Jackson's own bean serializers keep them
+    private static final SerializedString MESSAGE_ID = new SerializedString("message_id");
+    private static final SerializedString POSTED_BY = new SerializedString("posted_by");
+    private static final SerializedString MESSAGE_TEXT = new SerializedString("message_text");
+    private static final SerializedString TIME_POSTED_EPOCH = new SerializedString("time_posted_epoch");
+    private static final SerializedString ACCOUNT_ID = new SerializedString("account_id");
+    private static final SerializedString USERNAME = new SerializedString("username");
+    private static final SerializedString PASSWORD = new SerializedString("password");
+
+    private ModelCodec(){
+    }
+
+    /**
+     * @param json One JSON object.
+     * @return The Message it describes, with 0 or null for any field it leaves out.
+     * @throws IOException if the text is not a JSON object of Message fields.
+     */
+    public static Message readMessage(String json) throws IOException {
+        try(JsonParser parser = JSON.createParser(json)){
+            parser.nextToken();
+            return readMessage(parser);
+        }
+    }
+
+    /**
+     * @param json One JSON object.
+     * @return The Account it describes, with 0 or null for any field it leaves out.
+     * @throws IOException if the text is not a JSON object of Account fields.
+     */
+    public static Account readAccount(String json) throws IOException {
+        try(JsonParser parser = JSON.createParser(json)){
+            parser.nextToken();
+            return readAccount(parser);
+        }
+    }
+
+    /**
+     * Reads a Message from a parser positioned on the object's START_OBJECT, leaving it on the matching END_OBJECT.
+     *
+     * @param parser Parser positioned on the start of the object.
+     * @return The Message read.
+     * @throws IOException if the value is not a JSON object of Message fields.
+     */
+    public static Message readMessage(JsonParser parser) throws IOException {
+        expectObject(parser);
+        Message msg = new Message();
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch(field){
+                case "message_id": msg.setMessage_id(readInt(parser)); break;
+                case "posted_by": msg.setPosted_by(readInt(parser)); break;
+                case "message_text": msg.setMessage_text(readString(parser)); break;
+                case "time_posted_epoch": msg.setTime_posted_epoch(readLong(parser)); break;
+                default: throw new JsonParseException(parser, "Unrecognized field \"" + field + "\" for Message");
+            }
+        }
+        return msg;
+    }
+
+    /**
+     * Reads an Account from a parser positioned on the object's START_OBJECT, leaving it on the matching END_OBJECT.
+     *
+     * @param parser Parser positioned on the start of the object.
+     * @return The Account read.
+     * @throws IOException if the value is not a JSON object of Account fields.
+     */
+    public static Account readAccount(JsonParser parser) throws IOException {
+        expectObject(parser);
+        Account acc = new Account();
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch(field){
+                case "account_id": acc.setAccount_id(readInt(parser)); break;
+                case "username": acc.setUsername(readString(parser)); break;
+                case "password": acc.setPassword(readString(parser)); break;
+                default: throw new JsonParseException(parser, "Unrecognized field \"" + field + "\" for Account");
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Writes a Message as one JSON object, fields in the order ObjectMapper writes them.
+     *
+     * @param gen Where to write.
+     * @param msg Message to write.
+     * @throws IOException if the generator cannot write.
+     */
+    public static void write(JsonGenerator gen, Message msg) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(MESSAGE_ID);
+        gen.writeNumber(msg.getMessage_id());
+        gen.writeFieldName(POSTED_BY);
+        gen.writeNumber(msg.getPosted_by());
+        gen.writeFieldName(MESSAGE_TEXT);
+        gen.writeString(msg.getMessage_text());
+        gen.writeFieldName(TIME_POSTED_EPOCH);
+        gen.writeNumber(msg.getTime_posted_epoch());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes an Account as one JSON object, fields in the order ObjectMapper writes them.
+     *
+     * @param gen Where to write.
+     * @param acc Account to write.
+     * @throws IOException if the generator cannot write.
+     */
+    public static void write(JsonGenerator gen, Account acc) throws IOException {
+        write(gen, acc, true);
+    }
+
+    /**
+     * Writes an Account as one JSON object, fields in the order ObjectMapper writes them.
+     *
+     * @param gen Where to write.
+     * @param acc Account to write.
+     * @param password Whether to write its password; without it the object has no password field.
+     * @throws IOException if the generator cannot write.
+     */
+    public static void write(JsonGenerator gen, Account acc, boolean password) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ACCOUNT_ID);
+        gen.writeNumber(acc.getAccount_id());
+        gen.writeFieldName(USERNAME);
+        gen.writeString(acc.getUsername());
+        if(password){
+            gen.writeFieldName(PASSWORD);
+            gen.writeString(acc.getPassword());
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * @param msg Message to write.
+     * @return It as a JSON object.
+     * @throws IOException never in practice, as the output is in memory.
+     */
+    public static String toJson(Message msg) throws IOException {
+        SegmentedStringWriter out = new SegmentedStringWriter(JSON._getBufferRecycler());
+        try(JsonGenerator gen = JSON.createGenerator(out)){
+            write(gen, msg);
+        }
+        return out.getAndClear();
+    }
+
+    /**
+     * @param acc Account to write.
+     * @return It as a JSON object.
+     * @throws IOException never in practice, as the output is in memory.
+     */
+    public static String toJson(Account acc) throws IOException {
+        SegmentedStringWriter out = new SegmentedStringWriter(JSON._getBufferRecycler());
+        try(JsonGenerator gen = JSON.createGenerator(out)){
+            write(gen, acc);
+        }
+        return out.getAndClear();
+    }
+
+    /**
+     * @param msgs Messages to write.
+     * @return Them as a JSON array.
+     * @throws IOException never in practice, as the output is in memory.
+     */
+    public static String toJson(List<Message> msgs) throws IOException {
+        SegmentedStringWriter out = new SegmentedStringWriter(JSON._getBufferRecycler());
+        try(JsonGenerator gen = JSON.createGenerator(out)){
+            gen.writeStartArray();
+            for(Message msg : msgs){
+                write(gen, msg);
+            }
+            gen.writeEndArray();
+        }
+        return out.getAndClear();
+    }
+
+    private static void expectObject(JsonParser parser) throws IOException {
+        if(parser.currentToken() != JsonToken.START_OBJECT){
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+    }
+
+    private static int readInt(JsonParser parser) throws IOException {
+        long value = readLong(parser);
+        if(value != (int) value){
+            throw new JsonParseException(parser, "Number out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readLong(JsonParser parser) throws IOException {
+        switch(parser.currentToken()){
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return (long) parser.getDoubleValue();
+            case VALUE_NULL:
+                return 0;
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                try{
+                    return text.isEmpty() ? 0 : Long.parseLong(text);
+                } catch(NumberFormatException e){
+                    throw new JsonParseException(parser, "Not a number: \"" + text + "\"");
+                }
+            default:
+                throw new JsonParseException(parser, "Expected a number");
+        }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if(token == JsonToken.VALUE_NULL){
+            return null;
+        }
+        if(!token.isScalarValue()){
+            throw new JsonParseException(parser, "Expected a string");
+        }
+        return parser.getText();
+    }
+}
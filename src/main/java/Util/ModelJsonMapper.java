@@ -0,0 +1,101 @@
+package Util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Account;
+import Model.Message;
+
+import io.javalin.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Javalin JsonMapper that handles Accounts, Messages and lists of Messages with ModelCodec and leaves every other
+ * type, such as the maps of counters, to an ObjectMapper. Failures to read or write are thrown as
+ * UncheckedIOException, which Javalin answers with 500 as it did the ObjectMapper's exceptions.
+ */
+public class ModelJsonMapper implements JsonMapper {
+
+    private final ObjectMapper fallback = new ObjectMapper();
+
+    @Override
+    public String toJsonString(Object obj, Type type){
+        try{
+            if(obj instanceof Message){
+                return ModelCodec.toJson((Message) obj);
+            }
+            if(obj instanceof Account){
+                return ModelCodec.toJson((Account) obj);
+            }
+            if(isMessageList(obj)){
+                @SuppressWarnings("unchecked")
+                List<Message> msgs = (List<Message>) obj;
+                return ModelCodec.toJson(msgs);
+            }
+            return fallback.writeValueAsString(obj);
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type){
+        return new ByteArrayInputStream(toJsonString(obj, type).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T fromJsonString(String json, Type targetType){
+        try{
+            if(targetType == Message.class){
+                return (T) ModelCodec.readMessage(json);
+            }
+            if(targetType == Account.class){
+                return (T) ModelCodec.readAccount(json);
+            }
+            return fallback.readValue(json, fallback.constructType(targetType));
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T fromJsonStream(InputStream json, Type targetType){
+        try{
+            if(targetType == Message.class || targetType == Account.class){
+                try(JsonParser parser = ModelCodec.JSON.createParser(json)){
+                    parser.nextToken();
+                    return (T) (targetType == Message.class
+                            ? ModelCodec.readMessage(parser)
+                            : ModelCodec.readAccount(parser));
+                }
+            }
+            return fallback.readValue(json, fallback.constructType(targetType));
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return true for a list whose elements are all Messages, including an empty list.
+     */
+    private static boolean isMessageList(Object obj){
+        if(!(obj instanceof List)){
+            return false;
+        }
+        for(Object element : (List<?>) obj){
+            if(!(element instanceof Message)){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package Util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical calls into one.
+ *
+ * The first caller for a key runs the load and every caller that arrives for the same key while it is running
+ * waits for and shares its result. Nothing is kept once the load finishes, so this never serves stale data; it
+ * only stops a burst of identical reads from each running its own query.
+ *
+ * @param <K> Key identifying identical calls.
+ * @param <V> Result type.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * Runs the load for a key, or joins the one already running.
+     *
+     * @param key Identifies the call.
+     * @param load Produces the result; only run by the first caller.
+     * @return The shared result.
+     */
+    public V execute(K key, Supplier<V> load){
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if(running != null){
+            collapsed.increment();
+            return await(running);
+        }
+        executed.increment();
+        try{
+            V value = load.get();
+            mine.complete(value);
+            return value;
+        } catch(RuntimeException | Error e){
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Detaches the load running for a key, if any, so that later callers start a fresh one. Callers already
+     * waiting still get its result. Used after a write so a load that began before it is not shared afterwards.
+     *
+     * @param key Identifies the call.
+     */
+    public void forget(K key){
+        inFlight.remove(key);
+    }
+
+    /**
+     * @return Number of loads actually run since startup.
+     */
+    public long getExecutedCount(){
+        return executed.sum();
+    }
+
+    /**
+     * @return Number of calls that shared another caller's load since startup.
+     */
+    public long getCollapsedCount(){
+        return collapsed.sum();
+    }
+
+    private static <V> V await(CompletableFuture<V> running){
+        boolean interrupted = false;
+        try{
+            while(true){
+                try{
+                    return running.get();
+                } catch(InterruptedException e){
+                    interrupted = true;
+                }
+            }
+        } catch(ExecutionException e){
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if(interrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
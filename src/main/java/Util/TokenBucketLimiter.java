@@ -0,0 +1,115 @@
+package Util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A table of token buckets, one per key (an Account ID, a remote address, ...).
+ *
+ * Each bucket is a single AtomicLong holding the time at which it will next be full again, which is all a token
+ * bucket needs: taking a token pushes that time forward by one refill interval, and the bucket is empty when
+ * that time is more than a full burst ahead of now. Taking a token is therefore one compare-and-set, with no
+ * locks and no background refill thread.
+ *
+ * A bucket whose full-again time has passed holds no state worth keeping, so the table sweeps those out once
+ * it reaches its size bound. If it is still full of active buckets, unseen keys are refused until some expire.
+ */
+public class TokenBucketLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = 100_000_000L;
+
+    private final long refillNanos;
+    private final long burstNanos;
+    private final int maxBuckets;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * @param permitsPerSecond Sustained rate each key is allowed.
+     * @param burst Number of requests a key may make at once after being idle.
+     * @param maxBuckets Maximum number of keys tracked at the same time.
+     */
+    public TokenBucketLimiter(double permitsPerSecond, int burst, int maxBuckets){
+        if(permitsPerSecond <= 0 || burst < 1 || maxBuckets < 1){
+            throw new IllegalArgumentException("rate, burst and table size must be positive");
+        }
+        this.refillNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.burstNanos = refillNanos * burst;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Takes a token from a key's bucket if one is available.
+     *
+     * @param key Identifies the bucket, e.g. "account:1".
+     * @return 0 if the request may proceed, otherwise the number of nanoseconds until a token is available.
+     */
+    public long tryAcquire(String key){
+        long now = System.nanoTime();
+        AtomicLong bucket = bucket(key, now);
+        if(bucket == null){
+            throttled.increment();
+            return refillNanos;
+        }
+        while(true){
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + refillNanos;
+            long wait = next - now - burstNanos;
+            if(wait > 0){
+                throttled.increment();
+                return wait;
+            }
+            if(bucket.compareAndSet(fullAt, next)){
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return Number of requests allowed since startup.
+     */
+    public long getAllowedCount(){
+        return allowed.sum();
+    }
+
+    /**
+     * @return Number of requests refused since startup.
+     */
+    public long getThrottledCount(){
+        return throttled.sum();
+    }
+
+    /**
+     * @return Number of keys currently tracked.
+     */
+    public int getBucketCount(){
+        return buckets.size();
+    }
+
+    /**
+     * Finds or creates a key's bucket, sweeping out full buckets first if the table is at its bound.
+     * Sweeps are spaced out so that a flood of new keys against a full table does not rescan it every time.
+     *
+     * @return The bucket, or null if the table is full of active buckets.
+     */
+    private AtomicLong bucket(String key, long now){
+        AtomicLong bucket = buckets.get(key);
+        if(bucket != null){
+            return bucket;
+        }
+        if(buckets.size() >= maxBuckets){
+            long last = lastSweep.get();
+            if(now - last >= SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)){
+                buckets.values().removeIf(b -> b.get() - now <= 0);
+            }
+            if(buckets.size() >= maxBuckets){
+                return null;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+}
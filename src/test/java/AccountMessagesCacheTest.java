@@ -0,0 +1,151 @@
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import DAO.StorageEngine;
+import Model.Account;
+import Model.Message;
+import Service.AccountMessagesCache;
+import Service.HeapMessageCache;
+import Service.MessageService;
+import Service.TimelineService;
+
+/**
+ * Checks that cached Account Message lists are served until the Account's Messages change and never after.
+ */
+public class AccountMessagesCacheTest {
+    ExecutorService callers;
+
+    @Before
+    public void setUp(){
+        callers = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown(){
+        callers.shutdownNow();
+    }
+
+    private static MessageService service(MessageDAO messageDAO, TimelineService timelineService){
+        return new MessageService(messageDAO, timelineService, new HeapMessageCache(0), new AccountMessagesCache(100));
+    }
+
+    /**
+     * A list read before a post, updates and deletes is served until the write and never after it.
+     */
+    @Test
+    public void writesInvalidateExactly(){
+        MessageDAO messageDAO = mock(MessageDAO.class);
+        MessageService messageService = service(messageDAO, mock(TimelineService.class));
+        Message original = new Message(1, 1, "original", 1669947792);
+        Message edited = new Message(1, 1, "edited", 1669947792);
+        when(messageDAO.getAllMessagesByAccountId(1))
+                .thenReturn(List.of(original))
+                .thenReturn(List.of(edited))
+                .thenReturn(List.of());
+        when(messageDAO.updateMessage(any(Message.class))).thenReturn(edited);
+        when(messageDAO.deleteMessage(1)).thenReturn(edited);
+
+        Assert.assertEquals(List.of(original), messageService.getAllMessagesByAccountId(1));
+        Assert.assertEquals(List.of(original), messageService.getAllMessagesByAccountId(1));
+        verify(messageDAO, times(1)).getAllMessagesByAccountId(1);
+
+        messageService.updateMessage(new Message(1, 0, "edited", 0));
+        Assert.assertEquals(List.of(edited), messageService.getAllMessagesByAccountId(1));
+        Assert.assertEquals(List.of(edited), messageService.getAllMessagesByAccountId(1));
+
+        messageService.deleteMessage(1);
+        Assert.assertEquals(List.of(), messageService.getAllMessagesByAccountId(1));
+        verify(messageDAO, times(3)).getAllMessagesByAccountId(1);
+        Assert.assertEquals(2, messageService.getAccountCache().getHitCount());
+        Assert.assertEquals(3, messageService.getAccountCache().getMissCount());
+    }
+
+    /**
+     * A read whose query began before a post finishes after it: its result is returned to it but not cached, so
+     * the next read sees the post.
+     */
+    @Test
+    public void readThatRacedAPostIsNotServedAfterIt() throws Exception {
+        MessageDAO messageDAO = mock(MessageDAO.class);
+        MessageService messageService = service(messageDAO, mock(TimelineService.class));
+        Message first = new Message(1, 1, "first", 1669947792);
+        Message second = new Message(2, 1, "second", 1669947793);
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch releaseQuery = new CountDownLatch(1);
+        when(messageDAO.getAllMessagesByAccountId(1)).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            releaseQuery.await(10, TimeUnit.SECONDS);
+            return List.of(first);
+        }).thenReturn(List.of(first, second));
+        when(messageDAO.createMessage(any(Message.class))).thenReturn(second);
+
+        Future<List<Message>> before = callers.submit(() -> messageService.getAllMessagesByAccountId(1));
+        Assert.assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        messageService.postMessage(new Message(1, "second", 1669947793));
+        releaseQuery.countDown();
+        Assert.assertEquals(List.of(first), before.get(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(List.of(first, second), messageService.getAllMessagesByAccountId(1));
+        Assert.assertEquals(List.of(first, second), messageService.getAllMessagesByAccountId(1));
+        verify(messageDAO, times(2)).getAllMessagesByAccountId(1);
+    }
+
+    /**
+     * Writers post and delete while readers read the same Account's list; every writer must see its own write in
+     * the next list it reads.
+     */
+    @Test
+    public void concurrentReadersNeverSeeAListOlderThanTheirWrite() throws Exception {
+        StorageEngine engine = StorageEngine.emptyMemory();
+        int accountId = engine.getAccountDAO().insertAccount(new Account("cache", "password")).getAccount_id();
+        MessageDAO messageDAO = engine.getMessageDAO();
+        MessageService messageService = service(messageDAO, new TimelineService(engine.getFollowDAO(), messageDAO));
+
+        List<Future<?>> workers = new ArrayList<>();
+        for(int w = 0; w < 4; w++){
+            int writer = w;
+            workers.add(callers.submit(() -> {
+                for(int i = 0; i < 200; i++){
+                    Message posted = messageService.postMessage(new Message(accountId, writer + ":" + i, i));
+                    Assert.assertTrue(messageService.getAllMessagesByAccountId(accountId).contains(posted));
+                    if(i % 3 == 0){
+                        messageService.deleteMessage(posted.getMessage_id());
+                        Assert.assertFalse(messageService.getAllMessagesByAccountId(accountId).contains(posted));
+                    }
+                }
+                return null;
+            }));
+        }
+        for(int r = 0; r < 4; r++){
+            workers.add(callers.submit(() -> {
+                for(int i = 0; i < 2000; i++){
+                    messageService.getAllMessagesByAccountId(accountId);
+                }
+                return null;
+            }));
+        }
+        for(Future<?> worker : workers){
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(messageDAO.getAllMessagesByAccountId(accountId),
+                messageService.getAllMessagesByAccountId(accountId));
+        Assert.assertTrue(messageService.getAccountCache().getHitCount() > 0);
+    }
+}
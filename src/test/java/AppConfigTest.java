@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import Util.AppConfig;
+
+/**
+ * Checks the order in which configuration layers override each other.
+ */
+public class AppConfigTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown(){
+        System.clearProperty("config.file");
+        System.clearProperty("http.threads.max");
+        AppConfig.load();
+    }
+
+    @Test
+    public void profileOverridesDefaults(){
+        AppConfig config = AppConfig.load();
+        Assert.assertEquals("test", config.getProfile());
+        Assert.assertEquals("jdbc:h2:mem:socialmedia;DB_CLOSE_DELAY=-1", config.getString("db.url"));
+        Assert.assertEquals(8080, config.getInt("http.port"));
+    }
+
+    @Test
+    public void fileThenSystemPropertiesOverrideProfile() throws IOException {
+        Path file = folder.newFile("override.properties").toPath();
+        Files.writeString(file, "http.threads.max=64\ndb.h2.cache_size_kb=1024\ndb.h2.settings=RETENTION_TIME=0\n");
+        System.setProperty("config.file", file.toString());
+        System.setProperty("http.threads.max", "16");
+
+        AppConfig config = AppConfig.load();
+
+        Assert.assertEquals(16, config.getInt("http.threads.max"));
+        Assert.assertEquals("jdbc:h2:mem:socialmedia;DB_CLOSE_DELAY=-1;CACHE_SIZE=1024;RETENTION_TIME=0",
+                config.getDatabaseUrl());
+        Assert.assertTrue(config.describe().contains("[system property]"));
+        Assert.assertTrue(config.describe().matches("(?s).*db.password +\\Q= ******\\E.*"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSettingIsRejected(){
+        AppConfig.load().getString("no.such.setting");
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.ConcurrencyLimiter;
+import Util.ConcurrencyLimiter.Priority;
+
+/**
+ * Checks that the concurrency limit follows observed latency and that lower priorities are shed first.
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Runs requests one after another while keeping the limiter loaded to its limit, so every sample counts.
+     */
+    private static void load(ConcurrencyLimiter limiter, int requests, long rttNanos){
+        for(int i = 0; i < requests; i++){
+            int held = 0;
+            while(limiter.tryAcquire(Priority.HIGH)){
+                held++;
+            }
+            for(int j = 0; j < held; j++){
+                limiter.release(rttNanos);
+            }
+        }
+    }
+
+    @Test
+    public void limitShrinksWhenLatencyRisesAndRecovers(){
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 200, 1.5, 0.2);
+        load(limiter, 50, FAST);
+        int grown = limiter.getLimit();
+        Assert.assertTrue("limit " + grown, grown > 20);
+
+        load(limiter, 5, SLOW);
+        int shrunk = limiter.getLimit();
+        Assert.assertTrue("limit " + shrunk, shrunk < grown / 2);
+
+        load(limiter, 200, FAST);
+        Assert.assertTrue("limit " + limiter.getLimit(), limiter.getLimit() > shrunk);
+    }
+
+    @Test
+    public void idleSamplesLeaveTheLimitAlone(){
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 200, 1.5, 0.2);
+        for(int i = 0; i < 100; i++){
+            Assert.assertTrue(limiter.tryAcquire(Priority.HIGH));
+            limiter.release(i % 2 == 0 ? FAST : SLOW);
+        }
+        Assert.assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void bulkRequestsAreShedBeforeSingleReads(){
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 10, 1.5, 0.2);
+        for(int i = 0; i < 5; i++){
+            Assert.assertTrue(limiter.tryAcquire(Priority.LOW));
+        }
+        Assert.assertFalse(limiter.tryAcquire(Priority.LOW));
+        Assert.assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        Assert.assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        Assert.assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        Assert.assertFalse(limiter.tryAcquire(Priority.NORMAL));
+        Assert.assertTrue(limiter.tryAcquire(Priority.HIGH));
+        Assert.assertTrue(limiter.tryAcquire(Priority.HIGH));
+        Assert.assertFalse(limiter.tryAcquire(Priority.HIGH));
+        Assert.assertEquals(10, limiter.getInflight());
+        Assert.assertEquals(3, limiter.getRejectedCount());
+    }
+}
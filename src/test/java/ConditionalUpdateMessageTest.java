@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalUpdateMessageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> get(String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1"));
+        if(ifNoneMatch != null){
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> patch(int messageId, String text, String ifMatch)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"" + text + "\"}"))
+                .header("Content-Type", "application/json")
+                .header("If-Match", ifMatch)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Two clients read message 1 and both send PATCH localhost:8080/messages/1 with the ETag they read.
+     *
+     * Expected Response:
+     *  The first: Status Code 200, a new ETag and the updated message
+     *  The second: Status Code 412, and the message keeps the first client's text
+     */
+    @Test
+    public void secondUpdateFromSameVersionConflicts() throws IOException, InterruptedException {
+        HttpResponse<String> read = get(null);
+        Assert.assertEquals(200, read.statusCode());
+        String etag = read.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> first = patch(1, "first edit", etag);
+        Assert.assertEquals(200, first.statusCode());
+        String newEtag = first.headers().firstValue("ETag").orElseThrow();
+        Assert.assertNotEquals(etag, newEtag);
+        Assert.assertEquals(new Message(1, 1, "first edit", 1669947792),
+                objectMapper.readValue(first.body(), Message.class));
+
+        Assert.assertEquals(412, patch(1, "second edit", etag).statusCode());
+
+        HttpResponse<String> after = get(null);
+        Assert.assertEquals(newEtag, after.headers().firstValue("ETag").orElseThrow());
+        Assert.assertEquals("first edit", objectMapper.readValue(after.body(), Message.class).getMessage_text());
+        Assert.assertEquals(200, patch(1, "second edit", "W/" + newEtag).statusCode());
+    }
+
+    /**
+     * Sending GET localhost:8080/messages/1 with the current ETag in If-None-Match.
+     *
+     * Expected Response:
+     *  Status Code: 304
+     *  Response Body:
+     */
+    @Test
+    public void unchangedMessageIsNotSentAgain() throws IOException, InterruptedException {
+        String etag = get(null).headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> response = get(etag);
+        Assert.assertEquals(304, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    /**
+     * Sending PATCH with If-Match for a blank text, a message that does not exist, a malformed ETag and "*".
+     *
+     * Expected Response:
+     *  Status Code: 400, 400, 412 and 200
+     */
+    @Test
+    public void invalidConditionalUpdates() throws IOException, InterruptedException {
+        String etag = get(null).headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(400, patch(1, "", etag).statusCode());
+        Assert.assertEquals(400, patch(100, "no such message", etag).statusCode());
+        Assert.assertEquals(412, patch(1, "edit", "\"not a version\"").statusCode());
+        Assert.assertEquals(200, patch(1, "edit", "*").statusCode());
+        Assert.assertNotEquals(etag, get(null).headers().firstValue("ETag").orElseThrow());
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -35,7 +36,7 @@ public class CreateMessageTest {
         webClient = HttpClient.newHttpClient();
         objectMapper = new ObjectMapper();
         app.start(8080);
-        Thread.sleep(1000);
+        socialMediaController.getReadiness().join();
     }
 
     @After
@@ -124,6 +125,39 @@ public class CreateMessageTest {
     }
 
 
+    /**
+     * Sending an http request to POST localhost:8080/messages with a body larger than http.max_body_bytes, first
+     * with a Content-Length and then streamed without one
+     * 
+     * Expected Response:
+     *  Status Code: 413
+     */
+    @Test
+    public void createMessageBodyTooLarge() throws IOException, InterruptedException {
+        String body = "{\"posted_by\":1, \"message_text\": \"" + "a".repeat(100000) + "\", \"time_posted_epoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(413, response.statusCode());
+
+        HttpRequest streamedRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(body.getBytes())))
+                .header("Content-Type", "application/json")
+                .build();
+        response = webClient.send(streamedRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(413, response.statusCode());
+        HttpRequest getMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        Assert.assertEquals(1, objectMapper.readValue(webClient.send(getMessagesRequest,
+                HttpResponse.BodyHandlers.ofString()).body(), Message[].class).length);
+    }
+
+
     /**
      * Sending an http request to POST localhost:8080/messages with a user id that doesnt exist in db
      * 
@@ -141,11 +175,11 @@ public class CreateMessageTest {
                         "\"time_posted_epoch\": 1669947792}"))
                 .header("Content-Type", "application/json")
                 .build();
-        HttpResponse response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
         int status = response.statusCode();
         
         Assert.assertEquals(400, status);        
-        Assert.assertEquals("", response.body().toString());
+        Assert.assertEquals("", response.body());
     }
 
 
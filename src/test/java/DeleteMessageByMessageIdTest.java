@@ -36,7 +36,7 @@ public class DeleteMessageByMessageIdTest {
         webClient = HttpClient.newHttpClient();
         objectMapper = new ObjectMapper();
         app.start(8080);
-        Thread.sleep(1000);
+        socialMediaController.getReadiness().join();
     }
 
     @After
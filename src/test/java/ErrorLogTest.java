@@ -0,0 +1,78 @@
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcAccountDAO;
+import Model.Account;
+import Util.ConnectionUtil;
+import Util.ErrorLog;
+
+/**
+ * Checks that DAO failures are counted and classified, and that a full error log drops rather than blocks.
+ */
+public class ErrorLogTest {
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    @Test
+    public void daoFailureIsCountedByOperationAndClass() throws InterruptedException {
+        ErrorLog log = ErrorLog.shared();
+        long failures = log.getOperationCounts().getOrDefault("JdbcAccountDAO.insertAccount", 0L);
+        long constraints = log.getClassCounts().getOrDefault("constraint", 0L);
+        long written = log.getWrittenCount();
+
+        Assert.assertNull(new JdbcAccountDAO().insertAccount(new Account("testuser1", "password")));
+
+        Assert.assertEquals(failures + 1, (long) log.getOperationCounts().get("JdbcAccountDAO.insertAccount"));
+        Assert.assertEquals(constraints + 1, (long) log.getClassCounts().get("constraint"));
+        for(int i = 0; i < 100 && log.getWrittenCount() == written; i++){
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(log.getWrittenCount() > written);
+    }
+
+    @Test
+    public void fullLogDropsInsteadOfBlocking() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> lines = new CopyOnWriteArrayList<>();
+        ErrorLog log = new ErrorLog(4, line -> {
+            try{
+                release.await();
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            lines.add(line);
+        });
+        for(int i = 0; i < 20; i++){
+            log.record("Test.op", new SQLException("lock timeout " + i, "HYT00"));
+        }
+        Assert.assertTrue(log.getDroppedCount() >= 15);
+        Assert.assertEquals(Long.valueOf(20), log.getClassCounts().get("timeout"));
+
+        release.countDown();
+        for(int i = 0; i < 100 && log.getWrittenCount() + log.getDroppedCount() < 20; i++){
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(20, log.getWrittenCount() + log.getDroppedCount());
+        Assert.assertTrue(lines.get(0).contains("op=Test.op class=timeout sql_state=HYT00"));
+    }
+
+    @Test
+    public void sqlStatesAreClassified(){
+        Assert.assertEquals("constraint", ErrorLog.classify("23505"));
+        Assert.assertEquals("connection", ErrorLog.classify("08001"));
+        Assert.assertEquals("connection", ErrorLog.classify("90067"));
+        Assert.assertEquals("syntax", ErrorLog.classify("42S02"));
+        Assert.assertEquals("timeout", ErrorLog.classify("HYT00"));
+        Assert.assertEquals("other", ErrorLog.classify("90000"));
+        Assert.assertEquals("unknown", ErrorLog.classify(null));
+    }
+}
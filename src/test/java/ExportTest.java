@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.StorageEngine;
+import Model.Message;
+import Util.AppConfig;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ExportTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> export(String table) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/export/" + table))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/admin/export/messages after posting a second message.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON message per line, in message_id order
+     */
+    @Test
+    public void exportMessages() throws IOException, InterruptedException {
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"line\\nbreak\", " +
+                        "\"time_posted_epoch\": 1669947800}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        HttpResponse<String> response = export("messages");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+
+        String[] lines = response.body().split("\n");
+        Assert.assertEquals(2, lines.length);
+        Assert.assertTrue(lines[1].startsWith("{"));
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(lines[0], Message.class));
+        Assert.assertEquals(new Message(2, 1, "line\nbreak", 1669947800),
+                objectMapper.readValue(lines[1], Message.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/admin/export/accounts.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON account per line, without its password
+     */
+    @Test
+    public void exportAccounts() throws IOException, InterruptedException {
+        HttpResponse<String> response = export("accounts");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(Map.of("account_id", 1, "username", "testuser1"),
+                objectMapper.readValue(response.body().trim(), new TypeReference<Map<String, Object>>(){}));
+    }
+
+    /**
+     * With http.admin.enabled=false, the admin routes that dump data are not served.
+     *
+     * Expected Response:
+     *  Status Code: 404
+     */
+    @Test
+    public void adminRoutesAreOffByDefault() throws IOException, InterruptedException {
+        app.stop();
+        System.setProperty("http.admin.enabled", "false");
+        try{
+            AppConfig config = AppConfig.load();
+            socialMediaController = new SocialMediaController(config, StorageEngine.fromConfig(config));
+            app = socialMediaController.startAPI();
+            app.start(8080);
+            socialMediaController.getReadiness().join();
+            Assert.assertEquals(404, export("accounts").statusCode());
+            Assert.assertEquals(404, webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/admin/slow-queries"))
+                    .build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+            Assert.assertEquals(404, webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/admin/jfr/dump"))
+                    .build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        } finally {
+            System.clearProperty("http.admin.enabled");
+            AppConfig.load();
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/admin/export/follow.
+     *
+     * Expected Response:
+     *  Status Code: 404
+     */
+    @Test
+    public void exportUnknownTable() throws IOException, InterruptedException {
+        Assert.assertEquals(404, export("follow").statusCode());
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.StorageEngine;
+import Util.AppConfig;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Checks that a recording started at /admin/jfr captures request and query events and can be downloaded.
+ */
+public class FlightRecorderTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController(AppConfig.load(), StorageEngine.jdbc());
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+    }
+
+    @After
+    public void tearDown(){
+        app.stop();
+    }
+
+    private HttpResponse<byte[]> send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    public void recordingCapturesRequestsAndQueries() throws IOException, InterruptedException {
+        Assert.assertEquals(404, send("GET", "/admin/jfr/dump").statusCode());
+        Assert.assertEquals(409, send("POST", "/admin/jfr/stop").statusCode());
+        Assert.assertEquals(400, send("POST", "/admin/jfr/start?settings=nonsense").statusCode());
+        Assert.assertEquals(200, send("POST", "/admin/jfr/start").statusCode());
+        Assert.assertEquals(409, send("POST", "/admin/jfr/start").statusCode());
+
+        Assert.assertEquals(200, send("GET", "/messages/1").statusCode());
+        Assert.assertEquals(404, send("GET", "/no/such/route").statusCode());
+        Assert.assertEquals(200, send("POST", "/admin/jfr/stop").statusCode());
+
+        HttpResponse<byte[]> dump = send("GET", "/admin/jfr/dump");
+        Assert.assertEquals(200, dump.statusCode());
+        Path file = Files.createTempFile("test-", ".jfr");
+        try{
+            Files.write(file, dump.body());
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            RecordedEvent request = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("socialmedia.Request"))
+                    .filter(e -> e.getString("path").equals("/messages/1"))
+                    .findFirst().orElseThrow();
+            Assert.assertEquals("GET", request.getString("method"));
+            Assert.assertEquals("/messages/{message_id}", request.getString("route"));
+            Assert.assertEquals(200, request.getInt("status"));
+
+            RecordedEvent query = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("socialmedia.Query"))
+                    .filter(e -> e.getString("method").equals("JdbcMessageDAO.getVersionedMessageById"))
+                    .findFirst().orElseThrow();
+            Assert.assertEquals("SELECT * FROM message WHERE message_id = ?;", query.getString("sql"));
+            Assert.assertEquals(1, query.getLong("rows"));
+            Assert.assertTrue(query.getStartTime().compareTo(request.getStartTime()) >= 0);
+            Assert.assertTrue(query.getEndTime().compareTo(request.getEndTime()) <= 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
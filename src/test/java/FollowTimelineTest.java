@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.StorageEngine;
+import Model.Account;
+import Model.Message;
+import Service.MessageService;
+import Service.TimelineService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class FollowTimelineTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web. A second account (id 2) is registered to act as the follower.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, IOException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"follower\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> follow(String method, int follower, int followee) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + follower + "/following/" + followee))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build());
+    }
+
+    private List<Message> timeline(int accountId) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + accountId + "/timeline"))
+                .build());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    /**
+     * Following an account and then having it post shows both its existing and new messages, newest first.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of a list of messages
+     */
+    @Test
+    public void timelineShowsFollowedMessagesNewestFirst() throws IOException, InterruptedException {
+        Assert.assertEquals(200, follow("POST", 2, 1).statusCode());
+        Assert.assertEquals(1, timeline(2).size());
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello followers\", " +
+                        "\"time_posted_epoch\": 1669947800}"))
+                .header("Content-Type", "application/json")
+                .build());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "hello followers", 1669947800));
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expectedResult, timeline(2));
+    }
+
+    /**
+     * Deleting a followed account's message removes it from the held timeline.
+     */
+    @Test
+    public void timelineDropsDeletedMessage() throws IOException, InterruptedException {
+        follow("POST", 2, 1);
+        Assert.assertEquals(1, timeline(2).size());
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build());
+
+        Assert.assertTrue(timeline(2).isEmpty());
+    }
+
+    /**
+     * Once a poster has more followers than the fan-out limit its edits and deletes are no longer pushed to held
+     * timelines, and timeline reads still show them, as that poster's Messages are read afresh.
+     */
+    @Test
+    public void fanOutOnReadPosterEditsAndDeletesShow(){
+        StorageEngine engine = StorageEngine.emptyMemory();
+        int poster = engine.getAccountDAO().insertAccount(new Account("poster", "password")).getAccount_id();
+        int follower = engine.getAccountDAO().insertAccount(new Account("reader", "password")).getAccount_id();
+        TimelineService timelineService = new TimelineService(engine.getFollowDAO(), engine.getMessageDAO(), 10, 0);
+        MessageService messageService = new MessageService(engine.getMessageDAO(), timelineService);
+        Assert.assertTrue(timelineService.follow(follower, poster));
+        Message first = messageService.postMessage(new Message(poster, "first", 1669947792));
+        Assert.assertEquals(List.of(first), timelineService.getTimeline(follower, 10));
+
+        Message second = messageService.postMessage(new Message(poster, "second", 1669947793));
+        Message edited = messageService.updateMessage(new Message(first.getMessage_id(), 0, "edited", 0));
+        Assert.assertEquals(List.of(second, edited), timelineService.getTimeline(follower, 10));
+
+        messageService.deleteMessage(first.getMessage_id());
+        Assert.assertEquals(List.of(second), timelineService.getTimeline(follower, 10));
+    }
+
+    /**
+     * Only maxTimelines timelines are held; building another drops the least recently read one, which is rebuilt
+     * from the database when read again.
+     */
+    @Test
+    public void heldTimelinesAreCapped(){
+        StorageEngine engine = StorageEngine.emptyMemory();
+        TimelineService timelineService = new TimelineService(engine.getFollowDAO(), engine.getMessageDAO(), 10,
+                TimelineService.DEFAULT_FAN_OUT_LIMIT, 2);
+        timelineService.getTimeline(1, 10);
+        timelineService.getTimeline(2, 10);
+        timelineService.getTimeline(1, 10);
+        timelineService.getTimeline(3, 10);
+        Assert.assertEquals(2, timelineService.size());
+        Assert.assertEquals(3, timelineService.getMissCount());
+
+        timelineService.getTimeline(1, 10);
+        Assert.assertEquals(3, timelineService.getMissCount());
+        timelineService.getTimeline(2, 10);
+        Assert.assertEquals(4, timelineService.getMissCount());
+        Assert.assertEquals(2, timelineService.size());
+    }
+
+    /**
+     * A limit that is not a number is rejected.
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void timelineLimitNotANumber() throws IOException, InterruptedException {
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/2/timeline?limit=abc"))
+                .build());
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    /**
+     * Unfollowing an account removes its messages from the timeline.
+     */
+    @Test
+    public void unfollowEmptiesTimeline() throws IOException, InterruptedException {
+        follow("POST", 2, 1);
+        Assert.assertEquals(1, timeline(2).size());
+
+        Assert.assertEquals(200, follow("DELETE", 2, 1).statusCode());
+        Assert.assertTrue(timeline(2).isEmpty());
+    }
+
+    /**
+     * Following yourself, an account that does not exist, or the same account twice is rejected.
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void followInvalid() throws IOException, InterruptedException {
+        Assert.assertEquals(400, follow("POST", 1, 1).statusCode());
+        Assert.assertEquals(400, follow("POST", 2, 404).statusCode());
+        Assert.assertEquals(200, follow("POST", 2, 1).statusCode());
+        HttpResponse<String> response = follow("POST", 2, 1);
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Service.HealthService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * Checks the health and readiness reports, and that probing them never runs the database check itself.
+ */
+public class HealthTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+    }
+
+    @After
+    public void tearDown(){
+        app.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Map<String, Object> report(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<Map<String, Object>>(){});
+    }
+
+    @Test
+    public void healthReportsSaturationAndCacheCounters() throws IOException, InterruptedException {
+        Assert.assertEquals(200, get("/accounts/1/timeline").statusCode());
+        Assert.assertEquals(200, get("/accounts/1/timeline").statusCode());
+
+        HttpResponse<String> response = get("/health");
+        Assert.assertEquals(200, response.statusCode());
+        Map<String, Object> report = report(response);
+        Assert.assertEquals("up", report.get("status"));
+        Assert.assertEquals(0.5, (Double) report.get("cache.timeline.hit_rate"), 0.0);
+        Assert.assertTrue((Integer) report.get("db.pool.max") > 0);
+        Assert.assertTrue((Integer) report.get("http.threads.busy") >= 1);
+        Assert.assertTrue(report.containsKey("http.queue.size"));
+        Assert.assertTrue(report.containsKey("errors.last_minute"));
+    }
+
+    @Test
+    public void readyReportsDatabaseOnceChecked() throws IOException, InterruptedException {
+        Map<String, Object> report = report(get("/ready"));
+        for(int i = 0; i < 100 && report.get("db.reachable") == null; i++){
+            Thread.sleep(10);
+            report = report(get("/ready"));
+        }
+        Assert.assertEquals("ready", report.get("status"));
+        Assert.assertEquals(true, report.get("db.reachable"));
+    }
+
+    @Test
+    public void probesReadTheLastCheck() throws InterruptedException {
+        AtomicInteger checks = new AtomicInteger();
+        AtomicBoolean up = new AtomicBoolean(false);
+        HealthService health = new HealthService(() -> {
+            checks.incrementAndGet();
+            return up.get();
+        }, 60_000);
+        Assert.assertNull(health.isDatabaseReachable());
+        Assert.assertEquals(-1, health.getMillisSinceCheck());
+
+        health.start();
+        for(int i = 0; i < 100 && health.isDatabaseReachable() == null; i++){
+            Thread.sleep(10);
+        }
+        up.set(true);
+        for(int i = 0; i < 1000; i++){
+            Assert.assertEquals(false, health.isDatabaseReachable());
+        }
+        health.close();
+        Assert.assertEquals(1, checks.get());
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
+import DAO.MessageDAO;
+import DAO.JdbcMessageDAO;
+import Model.Account;
+import Model.Message;
+import Service.ImportService;
+import Util.ConnectionUtil;
+
+public class ImportTest {
+    ImportService importService;
+    MessageDAO messageDAO;
+    AccountDAO accountDAO;
+    Path dir;
+
+    /**
+     * Before every test, reset the database and create an ImportService writing two rows per transaction.
+     */
+    @Before
+    public void setUp() throws IOException {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new JdbcMessageDAO();
+        accountDAO = new JdbcAccountDAO();
+        importService = new ImportService(messageDAO, accountDAO, 2, null);
+        dir = Files.createTempDirectory("import");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for(Path file : Files.list(dir).toArray(Path[]::new)){
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * NDJSON messages are imported with their IDs; blank, over-long and unknown-poster rows are rejected
+     * without losing the valid rows in the same transaction.
+     */
+    @Test
+    public void importNdjsonMessages() throws IOException {
+        Path file = write("messages.ndjson",
+                "{\"message_id\":10,\"posted_by\":1,\"message_text\":\"ten\",\"time_posted_epoch\":1669947800}\n" +
+                "{\"message_id\":11,\"posted_by\":1,\"message_text\":\"\",\"time_posted_epoch\":1669947801}\n" +
+                "{\"message_id\":12,\"posted_by\":404,\"message_text\":\"nobody\",\"time_posted_epoch\":1669947802}\n" +
+                "{\"message_id\":13,\"posted_by\":1,\"message_text\":\"" + "a".repeat(256) + "\",\"time_posted_epoch\":1}\n" +
+                "{\"posted_by\":1,\"message_text\":\"no id\",\"time_posted_epoch\":1669947803,\"extra\":[1,2]}\n");
+
+        ImportService.Report report = importService.importMessages(file);
+
+        Assert.assertEquals(2, report.getImported());
+        Assert.assertEquals(3, report.getRejected());
+        Assert.assertEquals(new Message(10, 1, "ten", 1669947800), messageDAO.getMessageById(10));
+        List<Message> all = messageDAO.getAllMessages();
+        Assert.assertEquals(3, all.size());
+        Assert.assertTrue(all.stream().anyMatch(msg -> msg.getMessage_text().equals("no id")));
+
+        Message next = messageDAO.createMessage(new Message(1, "after import", 1669947900));
+        Assert.assertTrue(next.getMessage_id() > 10);
+    }
+
+    /**
+     * CSV accounts with a header row, quoted fields and a duplicate username.
+     */
+    @Test
+    public void importCsvAccounts() throws IOException {
+        Path file = write("accounts.csv",
+                "username,password\n" +
+                "\"comma, user\",secret\n" +
+                "testuser1,password\n" +
+                "short,abc\n" +
+                "\"quote \"\"user\"\"\",\"pass\nword\"\n");
+
+        ImportService.Report report = importService.importAccounts(file);
+
+        Assert.assertEquals(2, report.getImported());
+        Assert.assertEquals(2, report.getRejected());
+        Assert.assertNotNull(accountDAO.getAccount(new Account("comma, user", "secret")));
+        Assert.assertNotNull(accountDAO.getAccount(new Account("quote \"user\"", "pass\nword")));
+    }
+}
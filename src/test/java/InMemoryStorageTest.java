@@ -0,0 +1,103 @@
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.FollowDAO;
+import DAO.MessageDAO;
+import DAO.StorageEngine;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Checks that the in-memory engine enforces the same constraints as the database tables.
+ */
+public class InMemoryStorageTest {
+    AccountDAO accounts;
+    MessageDAO messages;
+    FollowDAO follows;
+
+    @Before
+    public void setUp(){
+        StorageEngine engine = StorageEngine.emptyMemory();
+        accounts = engine.getAccountDAO();
+        messages = engine.getMessageDAO();
+        follows = engine.getFollowDAO();
+    }
+
+    @Test
+    public void usernamesAreUnique(){
+        Assert.assertEquals(1, accounts.insertAccount(new Account("user", "password")).getAccount_id());
+        Assert.assertNull(accounts.insertAccount(new Account("user", "other")));
+        Assert.assertEquals(2, accounts.insertAccount(new Account("user2", "password")).getAccount_id());
+        Assert.assertNull(accounts.getAccount(new Account("user", "other")));
+        Assert.assertEquals(new Account(1, "user", "password"), accounts.getAccount(new Account("user", "password")));
+    }
+
+    @Test
+    public void messagesNeedAnExistingPoster(){
+        accounts.insertAccount(new Account("user", "password"));
+        Assert.assertNull(messages.createMessage(new Message(2, "text", 1)));
+        Assert.assertEquals(new Message(1, 1, "text", 1), messages.createMessage(new Message(1, "text", 1)));
+    }
+
+    @Test
+    public void returnedMessagesAreCopies(){
+        accounts.insertAccount(new Account("user", "password"));
+        messages.createMessage(new Message(1, "text", 1));
+        messages.getMessageById(1).setMessage_text("changed");
+        Assert.assertEquals("text", messages.getMessageById(1).getMessage_text());
+    }
+
+    @Test
+    public void recentMessagesAreNewestFirstAndIndexKeptOnDelete(){
+        accounts.insertAccount(new Account("user", "password"));
+        messages.createMessage(new Message(1, "a", 30));
+        messages.createMessage(new Message(1, "b", 10));
+        messages.createMessage(new Message(1, "c", 20));
+        messages.deleteMessage(1);
+        Assert.assertEquals(Arrays.asList(new Message(3, 1, "c", 20), new Message(2, 1, "b", 10)),
+                messages.getRecentMessagesByAccountId(1, 5));
+        Assert.assertEquals(2, messages.countMessages());
+        Assert.assertEquals(Long.valueOf(2), messages.countMessagesByAccount().get(1));
+    }
+
+    @Test
+    public void failedBatchInsertsNothing(){
+        accounts.insertAccount(new Account("user", "password"));
+        List<Message> batch = Arrays.asList(new Message(5, 1, "ok", 1), new Message(6, 9, "no poster", 1));
+        Assert.assertFalse(messages.insertMessages(batch));
+        Assert.assertEquals(0, messages.countMessages());
+        Assert.assertNull(messages.getMessageById(5));
+    }
+
+    @Test
+    public void timelineMergesFollowees(){
+        accounts.insertAccount(new Account("a", "password"));
+        accounts.insertAccount(new Account("b", "password"));
+        accounts.insertAccount(new Account("c", "password"));
+        Assert.assertTrue(follows.insertFollow(1, 2));
+        Assert.assertTrue(follows.insertFollow(1, 3));
+        Assert.assertFalse(follows.insertFollow(1, 3));
+        Assert.assertFalse(follows.insertFollow(1, 4));
+        messages.createMessage(new Message(2, "b1", 1));
+        messages.createMessage(new Message(3, "c1", 2));
+        messages.createMessage(new Message(2, "b2", 3));
+        List<Message> timeline = messages.getRecentMessagesFollowedBy(1, 2);
+        Assert.assertEquals(Arrays.asList(new Message(3, 2, "b2", 3), new Message(2, 3, "c1", 2)), timeline);
+        Assert.assertEquals(Arrays.asList(1), follows.getFollowerIds(2));
+    }
+
+    @Test
+    public void memoryEngineLoadsTheDatabase(){
+        ConnectionUtil.resetTestDatabase();
+        StorageEngine engine = StorageEngine.memory();
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), engine.getMessageDAO().getMessageById(1));
+        Assert.assertEquals(2, engine.getMessageDAO().createMessage(new Message(1, "next", 1)).getMessage_id());
+        Assert.assertNotNull(engine.getAccountDAO().getAccount(new Account("testuser1", "password")));
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import DAO.InMemoryAccountDAO;
+import DAO.InMemoryFollowDAO;
+import DAO.LogMessageDAO;
+import DAO.StorageEngine;
+import DAO.Versioned;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Checks that the Message log keeps its contents across a reopen, including updates, deletes and compaction.
+ */
+public class LogMessageDAOTest {
+
+    /**
+     * Small enough that a few hundred Messages span several segments.
+     */
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Path directory;
+    InMemoryAccountDAO accounts;
+    InMemoryFollowDAO follows;
+    LogMessageDAO log;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath();
+        accounts = new InMemoryAccountDAO();
+        follows = new InMemoryFollowDAO(accounts);
+        accounts.insertAccount(new Account("user1", "password"));
+        accounts.insertAccount(new Account("user2", "password"));
+        log = open();
+    }
+
+    @After
+    public void tearDown(){
+        log.close();
+    }
+
+    private LogMessageDAO open() throws IOException {
+        return new LogMessageDAO(directory, SEGMENT_SIZE, id -> id == 1 || id == 2, follows);
+    }
+
+    private LogMessageDAO reopen() throws IOException {
+        log.close();
+        log = open();
+        return log;
+    }
+
+    @Test
+    public void writesSurviveReopen() throws IOException {
+        log.createMessage(new Message(1, "first", 10));
+        log.createMessage(new Message(2, "second \u2713", 20));
+        log.createMessage(new Message(1, "third", 30));
+        log.updateMessage(new Message(1, 0, "first, edited", 0));
+        log.deleteMessage(2);
+
+        reopen();
+
+        Assert.assertFalse(log.isFresh());
+        Assert.assertEquals(Arrays.asList(new Message(1, 1, "first, edited", 10), new Message(3, 1, "third", 30)),
+                log.getAllMessages());
+        Assert.assertNull(log.getMessageById(2));
+        Assert.assertEquals(2, log.countMessages());
+        Assert.assertEquals(Long.valueOf(2), log.countMessagesByAccount().get(1));
+        Assert.assertEquals(4, log.createMessage(new Message(2, "fourth", 40)).getMessage_id());
+    }
+
+    @Test
+    public void rejectsUnknownPosterAndLongText(){
+        Assert.assertNull(log.createMessage(new Message(3, "no such account", 1)));
+        char[] text = new char[256];
+        Arrays.fill(text, 'a');
+        Assert.assertNull(log.createMessage(new Message(1, new String(text), 1)));
+        Assert.assertEquals(0, log.countMessages());
+    }
+
+    @Test
+    public void compactionDropsSupersededSegments() throws IOException {
+        for(int i = 1; i <= 200; i++){
+            log.createMessage(new Message(1 + i % 2, "message number " + i, i));
+        }
+        for(int i = 1; i <= 190; i++){
+            log.deleteMessage(i);
+        }
+        int segments = log.getSegmentCount();
+        Assert.assertTrue(segments > 3);
+
+        log.compact();
+
+        Assert.assertTrue(log.getCompactionCount() > 0);
+        Assert.assertTrue(log.getSegmentCount() < segments);
+        Assert.assertEquals(10, log.countMessages());
+
+        reopen();
+
+        Assert.assertEquals(10, log.countMessages());
+        Assert.assertEquals(new Message(200, 1, "message number 200", 200), log.getMessageById(200));
+        Assert.assertNull(log.getMessageById(150));
+        Assert.assertEquals(5, log.getAllMessagesByAccountId(2).size());
+        Assert.assertEquals(log.getSegmentCount(), Files.list(directory).count());
+    }
+
+    @Test
+    public void conditionalUpdateChecksTheRecordLocation(){
+        Message created = log.createMessage(new Message(1, "first", 10));
+        Versioned<Message> read = log.getVersionedMessageById(created.getMessage_id());
+        Versioned<Message> updated = log.updateMessage(new Message(created.getMessage_id(), 0, "second", 0),
+                read.getVersion());
+        Assert.assertEquals("second", updated.getValue().getMessage_text());
+        Assert.assertNotEquals(read.getVersion(), updated.getVersion());
+        Assert.assertNull(log.updateMessage(new Message(created.getMessage_id(), 0, "third", 0), read.getVersion()));
+        Assert.assertEquals(updated.getVersion(), log.getVersionedMessageById(created.getMessage_id()).getVersion());
+        Assert.assertEquals("second", log.getMessageById(created.getMessage_id()).getMessage_text());
+    }
+
+    @Test
+    public void batchInsertIsAllOrNothing(){
+        Assert.assertFalse(log.insertMessages(Arrays.asList(new Message(7, 1, "ok", 1), new Message(8, 5, "bad", 1))));
+        Assert.assertEquals(0, log.countMessages());
+        Assert.assertTrue(log.insertMessages(Arrays.asList(new Message(7, 1, "ok", 1), new Message(8, 2, "ok", 1))));
+        log.restartMessageIds();
+        Assert.assertEquals(9, log.createMessage(new Message(1, "next", 2)).getMessage_id());
+    }
+
+    /**
+     * Accounts and follows made while the log engine runs are in the database, so after a restart their Account IDs
+     * are not handed out again to Accounts that would inherit their Messages.
+     */
+    @Test
+    public void accountsAndFollowsSurviveEngineRestart() throws IOException {
+        ConnectionUtil.resetTestDatabase();
+        Path engineDirectory = folder.newFolder("engine").toPath();
+        StorageEngine engine = StorageEngine.log(engineDirectory);
+        Account registered = engine.getAccountDAO().insertAccount(new Account("registered", "password"));
+        Assert.assertTrue(engine.getFollowDAO().insertFollow(1, registered.getAccount_id()));
+        engine.getMessageDAO().createMessage(new Message(registered.getAccount_id(), "mine", 10));
+        ((LogMessageDAO) engine.getMessageDAO()).close();
+
+        engine = StorageEngine.log(engineDirectory);
+        try{
+            Assert.assertEquals(registered, engine.getAccountDAO().getAccount(new Account("registered", "password")));
+            Assert.assertEquals(Arrays.asList(1), engine.getFollowDAO().getFollowerIds(registered.getAccount_id()));
+            Account next = engine.getAccountDAO().insertAccount(new Account("next", "password"));
+            Assert.assertNotEquals(registered.getAccount_id(), next.getAccount_id());
+            Assert.assertTrue(engine.getMessageDAO().getAllMessagesByAccountId(next.getAccount_id()).isEmpty());
+        } finally{
+            ((LogMessageDAO) engine.getMessageDAO()).close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.MessageCountService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageCountTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private long count(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        Map<String, Long> body = objectMapper.readValue(response.body(), new TypeReference<Map<String, Long>>(){});
+        return body.get("count");
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/count and GET localhost:8080/accounts/{id}/messages/count
+     * before and after posting and deleting messages.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: {"count": n}
+     */
+    @Test
+    public void countsFollowPostsAndDeletes() throws IOException, InterruptedException {
+        Assert.assertEquals(1, count("/messages/count"));
+        Assert.assertEquals(1, count("/accounts/1/messages/count"));
+        Assert.assertEquals(0, count("/accounts/2/messages/count"));
+
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(2, count("/messages/count"));
+        Assert.assertEquals(2, count("/accounts/1/messages/count"));
+
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(1, count("/messages/count"));
+        Assert.assertEquals(1, count("/accounts/1/messages/count"));
+    }
+
+    /**
+     * A rejected post does not move the counters.
+     */
+    @Test
+    public void rejectedPostNotCounted() throws IOException, InterruptedException {
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(1, count("/messages/count"));
+    }
+
+    /**
+     * A post and a delete that commit while the counts are being loaded are neither lost nor counted twice, and
+     * writes made before the first read are only counted once.
+     */
+    @Test
+    public void writesDuringLoadAreKept(){
+        MessageDAO messageDAO = mock(MessageDAO.class);
+        MessageCountService counts = new MessageCountService(messageDAO);
+        counts.messagePosted(new Message(1, 1, "before the load", 1669947792));
+        when(messageDAO.countMessagesByAccount()).thenAnswer(invocation -> {
+            counts.messagePosted(new Message(2, 2, "during the load", 1669947793));
+            counts.messageDeleted(new Message(3, 1, "during the load", 1669947790));
+            Map<Integer, Long> snapshot = new HashMap<>();
+            snapshot.put(1, 4L);
+            snapshot.put(3, 2L);
+            return snapshot;
+        });
+
+        Assert.assertEquals(6, counts.getMessageCount());
+        Assert.assertEquals(3, counts.getMessageCountByAccountId(1));
+        Assert.assertEquals(1, counts.getMessageCountByAccountId(2));
+        Assert.assertEquals(2, counts.getMessageCountByAccountId(3));
+    }
+
+    /**
+     * A count query that fails leaves the counters as the writes moved them and is run again on the next read,
+     * rather than zeroing them for good.
+     */
+    @Test
+    public void failedLoadIsRetried(){
+        MessageDAO messageDAO = mock(MessageDAO.class);
+        MessageCountService counts = new MessageCountService(messageDAO);
+        counts.messagePosted(new Message(1, 1, "before the load", 1669947792));
+        when(messageDAO.countMessagesByAccount()).thenReturn(null, Map.of(1, 3L));
+
+        Assert.assertEquals(1, counts.getMessageCount());
+        Assert.assertEquals(3, counts.getMessageCountByAccountId(1));
+        Assert.assertEquals(3, counts.getMessageCount());
+        verify(messageDAO, times(2)).countMessagesByAccount();
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import DAO.InMemoryAccountDAO;
+import DAO.InMemoryFollowDAO;
+import DAO.JdbcAccountDAO;
+import DAO.JdbcMessageDAO;
+import DAO.LogMessageDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Compares sustained Message insert throughput of H2 and the Message log. Only run by the bench profile:
+ * mvn test -Pbench
+ */
+public class MessageInsertBenchmark {
+
+    private static final int THREADS = 4;
+    private static final int INSERTS_PER_THREAD = 25_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    @Test
+    public void h2() throws InterruptedException {
+        new JdbcAccountDAO().insertAccount(new Account("bench", "password"));
+        run("h2", new JdbcMessageDAO());
+    }
+
+    @Test
+    public void log() throws IOException, InterruptedException {
+        InMemoryAccountDAO accounts = new InMemoryAccountDAO();
+        accounts.insertAccount(new Account("bench", "password"));
+        try(LogMessageDAO log = new LogMessageDAO(folder.getRoot().toPath(), LogMessageDAO.DEFAULT_SEGMENT_SIZE,
+                id -> true, new InMemoryFollowDAO(accounts))){
+            run("log", log);
+        }
+    }
+
+    private void run(String name, MessageDAO messages) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long start = System.nanoTime();
+        for(int t = 0; t < THREADS; t++){
+            pool.execute(() -> {
+                for(int i = 0; i < INSERTS_PER_THREAD; i++){
+                    messages.createMessage(new Message(1, "benchmark message number " + i, i));
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        long inserts = (long) THREADS * INSERTS_PER_THREAD;
+        System.out.printf("%s: %d inserts in %d ms (%.0f inserts/sec)%n",
+                name, inserts, nanos / 1_000_000, inserts * 1_000_000_000.0 / nanos);
+    }
+}
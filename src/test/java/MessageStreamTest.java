@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Service.MessageStreamService;
+import io.javalin.Javalin;
+
+public class MessageStreamTest {
+
+    /**
+     * Sink that counts delivered events and counts down a latch for each one.
+     */
+    static class CountingSink implements MessageStreamService.Sink {
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch latch;
+        volatile boolean closed;
+
+        CountingSink(CountDownLatch latch){
+            this.latch = latch;
+        }
+
+        @Override
+        public void send(String event, String data){
+            received.incrementAndGet();
+            latch.countDown();
+        }
+
+        @Override
+        public void close(){
+            closed = true;
+        }
+    }
+
+    /**
+     * Every one of thousands of local subscribers receives every published event.
+     */
+    @Test
+    public void thousandsOfSubscribersReceiveEveryEvent() throws InterruptedException {
+        int subscribers = 5000;
+        int events = 20;
+        MessageStreamService stream = new MessageStreamService(64, 4);
+        CountDownLatch latch = new CountDownLatch(subscribers * events);
+        CountingSink[] sinks = new CountingSink[subscribers];
+        for(int i = 0; i < subscribers; i++){
+            sinks[i] = new CountingSink(latch);
+            stream.subscribe(sinks[i], null);
+        }
+
+        for(int i = 1; i <= events; i++){
+            stream.messagePosted(new Message(i, 1, "message " + i, 1669947792L + i));
+        }
+
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        for(CountingSink sink : sinks){
+            Assert.assertEquals(events, sink.received.get());
+        }
+        Thread.sleep(100);
+        Assert.assertEquals((long) subscribers * events, stream.getDeliveredCount());
+        Assert.assertEquals(0, stream.getSlowConsumersDisconnected());
+    }
+
+    /**
+     * A subscriber filtered by posted_by only receives that account's messages.
+     */
+    @Test
+    public void postedByFilter() throws InterruptedException {
+        MessageStreamService stream = new MessageStreamService(64, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        CountingSink sink = new CountingSink(latch);
+        stream.subscribe(sink, 2);
+
+        stream.messagePosted(new Message(1, 1, "not for you", 1669947792));
+        stream.messageDeleted(new Message(2, 2, "for you", 1669947792));
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        Assert.assertEquals(1, sink.received.get());
+    }
+
+    /**
+     * A subscriber that stops reading is disconnected once its buffer is full, without blocking the publisher
+     * or other subscribers.
+     */
+    @Test
+    public void slowConsumerIsDisconnected() throws InterruptedException {
+        MessageStreamService stream = new MessageStreamService(8, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountingSink slow = new CountingSink(new CountDownLatch(0)){
+            @Override
+            public void send(String event, String data){
+                try{
+                    release.await();
+                } catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        CountDownLatch fastLatch = new CountDownLatch(20);
+        CountingSink fast = new CountingSink(fastLatch);
+        MessageStreamService.Subscriber slowSub = stream.subscribe(slow, null);
+        stream.subscribe(fast, null);
+
+        for(int i = 1; i <= 20; i++){
+            stream.messageUpdated(new Message(i, 1, "message " + i, 1669947792));
+            if(i % 4 == 0){
+                Thread.sleep(20);
+            }
+        }
+        release.countDown();
+
+        Assert.assertTrue(fastLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(slowSub.isClosed());
+        Assert.assertTrue(slow.closed);
+        Assert.assertEquals(1, stream.getSlowConsumersDisconnected());
+        Assert.assertEquals(1, stream.getSubscriberCount());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/stream?posted_by=abc.
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void postedByNotANumber() throws IOException, InterruptedException {
+        SocialMediaController socialMediaController = new SocialMediaController();
+        Javalin app = socialMediaController.startAPI();
+        app.start(8080);
+        try{
+            HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/stream?posted_by=abc"))
+                    .header("Accept", "text/event-stream")
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(400, response.statusCode());
+        } finally {
+            app.stop();
+        }
+    }
+}
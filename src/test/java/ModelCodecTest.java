@@ -0,0 +1,64 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Account;
+import Model.Message;
+import Util.ModelCodec;
+
+/**
+ * Checks that the streaming codecs read and write exactly what ObjectMapper does for Accounts and Messages.
+ */
+public class ModelCodecTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void writesWhatObjectMapperWrites() throws IOException {
+        Message msg = new Message(7, 3, "quote \" backslash \\ newline \n unicode \u2713", 1669947792L);
+        Account acc = new Account(3, "user\"1", "pass\\word");
+        List<Message> msgs = Arrays.asList(msg, new Message(8, 3, null, 0));
+
+        Assert.assertEquals(objectMapper.writeValueAsString(msg), ModelCodec.toJson(msg));
+        Assert.assertEquals(objectMapper.writeValueAsString(acc), ModelCodec.toJson(acc));
+        Assert.assertEquals(objectMapper.writeValueAsString(msgs), ModelCodec.toJson(msgs));
+        Assert.assertEquals("[]", ModelCodec.toJson(Collections.<Message>emptyList()));
+    }
+
+    @Test
+    public void readsWhatObjectMapperReads() throws IOException {
+        String[] messages = {
+            "{\"posted_by\":1,\"message_text\":\"hello\",\"time_posted_epoch\":1669947792}",
+            "{\"time_posted_epoch\":\"5\",\"message_text\":null,\"posted_by\":\"2\",\"message_id\":null}",
+            "{}"
+        };
+        for(String json : messages){
+            // compared as JSON because Message.equals cannot handle null text
+            Assert.assertEquals(objectMapper.writeValueAsString(objectMapper.readValue(json, Message.class)),
+                    ModelCodec.toJson(ModelCodec.readMessage(json)));
+        }
+        String account = "{\"username\":\"user1\",\"password\":\"password\"}";
+        Assert.assertEquals(objectMapper.readValue(account, Account.class), ModelCodec.readAccount(account));
+    }
+
+    @Test
+    public void rejectsWhatObjectMapperRejects(){
+        String[] invalid = {
+            "{\"posted_by\":1,\"unknown\":2}",
+            "{\"posted_by\":\"one\"}",
+            "{\"posted_by\":4294967296}",
+            "{\"message_text\":{\"nested\":1}}",
+            "[1]"
+        };
+        for(String json : invalid){
+            Assert.assertThrows(json, IOException.class, () -> objectMapper.readValue(json, Message.class));
+            Assert.assertThrows(json, IOException.class, () -> ModelCodec.readMessage(json));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import DAO.Versioned;
+import Model.Message;
+import Service.OffHeapMessageCache;
+
+/**
+ * Checks that the off-heap Message cache decodes what it encoded, honours invalidation stamps and evicts the
+ * oldest records once its buffer or index is full.
+ */
+public class OffHeapMessageCacheTest {
+
+    private static Versioned<Message> message(int id, String text, long version){
+        return new Versioned<>(new Message(id, id % 7, text, 1669947792L + id), version);
+    }
+
+    @Test
+    public void cachedMessagesComeBackAsCopies(){
+        OffHeapMessageCache cache = new OffHeapMessageCache(100, 4096);
+        Assert.assertNull(cache.get(1));
+        cache.fill(message(1, "h\u00e9llo \u2603", 3), cache.stamp());
+        cache.fill(message(2, null, 0), cache.stamp());
+
+        Versioned<Message> cached = cache.get(1);
+        Assert.assertEquals(message(1, "h\u00e9llo \u2603", 3).getValue(), cached.getValue());
+        Assert.assertEquals(3, cached.getVersion());
+        cached.getValue().setMessage_text("changed by the caller");
+        Assert.assertEquals("h\u00e9llo \u2603", cache.get(1).getValue().getMessage_text());
+        Assert.assertNull(cache.get(2).getValue().getMessage_text());
+
+        cache.fill(message(1, "replaced", 4), cache.stamp());
+        Assert.assertEquals("replaced", cache.get(1).getValue().getMessage_text());
+        Assert.assertEquals(4, cache.get(1).getVersion());
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(5, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void readsThatRacedAnInvalidationAreNotKept(){
+        OffHeapMessageCache cache = new OffHeapMessageCache(100, 4096);
+        cache.fill(message(1, "old text", 0), cache.stamp());
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        Assert.assertNull(cache.get(1));
+
+        cache.fill(message(1, "old text", 0), stamp);
+        Assert.assertNull(cache.get(1));
+        cache.fill(message(1, "new text", 1), cache.stamp());
+        Assert.assertEquals("new text", cache.get(1).getValue().getMessage_text());
+    }
+
+    @Test
+    public void oldestMessagesAreEvictedAsTheRingWraps(){
+        OffHeapMessageCache cache = new OffHeapMessageCache(50, 2000);
+        Map<Integer, Versioned<Message>> latest = new HashMap<>();
+        Random random = new Random(42);
+        for(int i = 0; i < 5000; i++){
+            int id = 1 + random.nextInt(200);
+            Versioned<Message> msg = message(id, "x".repeat(random.nextInt(60)), i);
+            if(random.nextInt(10) == 0){
+                cache.invalidate(id);
+                latest.remove(id);
+            } else{
+                cache.fill(msg, cache.stamp());
+                latest.put(id, msg);
+                Assert.assertEquals(msg.getVersion(), cache.get(id).getVersion());
+            }
+            Assert.assertTrue(cache.size() <= 50);
+        }
+        int cached = 0;
+        for(int id = 1; id <= 200; id++){
+            Versioned<Message> found = cache.get(id);
+            if(found != null){
+                cached++;
+                Assert.assertEquals(latest.get(id).getValue(), found.getValue());
+                Assert.assertEquals(latest.get(id).getVersion(), found.getVersion());
+            }
+        }
+        Assert.assertEquals(cache.size(), cached);
+        Assert.assertTrue("cached " + cached, cached > 10);
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.TokenBucketLimiter;
+import io.javalin.Javalin;
+
+public class RateLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with a per-account burst of 2 requests
+     * refilled at one request every 100 seconds.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("ratelimit.account.rate", "0.01");
+        System.setProperty("ratelimit.account.burst", "2");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("ratelimit.account.rate");
+        System.clearProperty("ratelimit.account.burst");
+    }
+
+    private HttpResponse<String> post(int postedBy) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending more POST localhost:8080/messages requests for one account than its burst allows.
+     *
+     * Expected Response:
+     *  Status Code: 429
+     *  Retry-After header: seconds until the next token
+     *  Response Body:
+     */
+    @Test
+    public void postMessageOverAccountLimit() throws IOException, InterruptedException {
+        Assert.assertEquals(200, post(1).statusCode());
+        Assert.assertEquals(200, post(1).statusCode());
+
+        HttpResponse<String> response = post(1);
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertEquals("", response.body());
+        long retryAfter = Long.parseLong(response.headers().firstValue("Retry-After").orElseThrow());
+        Assert.assertTrue(retryAfter > 0 && retryAfter <= 100);
+
+        Assert.assertEquals(400, post(2).statusCode());
+    }
+
+    /**
+     * A bucket allows its burst at once, then refills at the configured rate.
+     */
+    @Test
+    public void bucketRefills() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(20, 3, 10);
+        for(int i = 0; i < 3; i++){
+            Assert.assertEquals(0, limiter.tryAcquire("a"));
+        }
+        Assert.assertTrue(limiter.tryAcquire("a") > 0);
+        Assert.assertEquals(0, limiter.tryAcquire("b"));
+
+        Thread.sleep(60);
+        Assert.assertEquals(0, limiter.tryAcquire("a"));
+        Assert.assertEquals(5, limiter.getAllowedCount());
+        Assert.assertEquals(1, limiter.getThrottledCount());
+    }
+
+    /**
+     * The bucket table never grows past its bound; once full, idle buckets are swept out to make room.
+     */
+    @Test
+    public void bucketTableIsBounded() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(100, 1, 2);
+        Assert.assertEquals(0, limiter.tryAcquire("a"));
+        Assert.assertEquals(0, limiter.tryAcquire("b"));
+        Assert.assertTrue(limiter.tryAcquire("c") > 0);
+        Assert.assertEquals(2, limiter.getBucketCount());
+
+        Thread.sleep(150);
+        Assert.assertEquals(0, limiter.tryAcquire("c"));
+        Assert.assertEquals(1, limiter.getBucketCount());
+    }
+}
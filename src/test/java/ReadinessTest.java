@@ -0,0 +1,46 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * Checks that the server reports ready only once it is listening.
+ */
+public class ReadinessTest {
+    SocialMediaController socialMediaController;
+    Javalin app;
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+    }
+
+    @After
+    public void tearDown(){
+        app.stop();
+    }
+
+    @Test
+    public void readyOnceStarted() throws IOException, InterruptedException {
+        Assert.assertFalse(socialMediaController.getReadiness().isDone());
+        app.start(8080);
+        Assert.assertTrue(socialMediaController.getReadiness().isDone());
+
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/ready")).build();
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body(), response.body().contains("\"status\":\"ready\""));
+    }
+}
@@ -0,0 +1,167 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcMessageDAO;
+import DAO.ReplicaSet;
+import DAO.StorageEngine;
+import DAO.Versioned;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Checks that replicas catch up with the primary and that a client always reads its own writes.
+ */
+public class ReplicationTest {
+
+    StorageEngine engine;
+    ReplicaSet replicas;
+
+    @Before
+    public void setUp() throws SQLException {
+        ConnectionUtil.resetTestDatabase();
+        engine = StorageEngine.replicated(2, 4);
+        replicas = engine.getReplicas();
+    }
+
+    @After
+    public void tearDown(){
+        replicas.close();
+    }
+
+    @Test
+    public void replicasStartWithPrimaryAndCatchUp() throws InterruptedException {
+        Assert.assertEquals(1, engine.getMessageDAO().getMessageById(1).getPosted_by());
+
+        engine.beginRequest("writer");
+        Account acc = engine.getAccountDAO().insertAccount(new Account("replicated", "password"));
+        Message msg = engine.getMessageDAO().createMessage(new Message(acc.getAccount_id(), "hello replicas", 5));
+        engine.getMessageDAO().deleteMessage(1);
+        engine.endRequest("writer");
+        replicas.awaitReplication();
+
+        engine.beginRequest("reader");
+        long primaryReads = replicas.getPrimaryReads();
+        Assert.assertEquals(msg, engine.getMessageDAO().getMessageById(msg.getMessage_id()));
+        Assert.assertNull(engine.getMessageDAO().getMessageById(1));
+        Assert.assertEquals(acc, engine.getAccountDAO().getAccount(new Account("replicated", "password")));
+        Assert.assertEquals(primaryReads, replicas.getPrimaryReads());
+        engine.endRequest("reader");
+        Assert.assertEquals(0, replicas.getMaxLag());
+    }
+
+    @Test
+    public void clientReadsOwnWritesInLaterRequests(){
+        for(int i = 0; i < 50; i++){
+            engine.beginRequest("client");
+            Message msg = engine.getMessageDAO().createMessage(new Message(1, "message " + i, i));
+            engine.endRequest("client");
+
+            engine.beginRequest("client");
+            Assert.assertEquals(msg, engine.getMessageDAO().getMessageById(msg.getMessage_id()));
+            engine.endRequest("client");
+        }
+        Assert.assertEquals(50, replicas.getLastLsn());
+    }
+
+    /**
+     * A delete racing the create of the Message it names, as soon as the row is committed, reaches the replicas
+     * after the create, so they do not keep a Message the primary has deleted.
+     */
+    @Test
+    public void deleteRacingItsCreateReplicatesAfterIt() throws Exception {
+        ExecutorService deleters = Executors.newSingleThreadExecutor();
+        int last = engine.getMessageDAO().createMessage(new Message(1, "before the race", 0)).getMessage_id();
+        try{
+            for(int i = 0; i < 100; i++){
+                int next = ++last;
+                Future<Message> deleted = deleters.submit(() -> {
+                    long deadline = System.currentTimeMillis() + 5000;
+                    Message gone = null;
+                    while(gone == null && System.currentTimeMillis() < deadline){
+                        gone = engine.getMessageDAO().deleteMessage(next);
+                    }
+                    return gone;
+                });
+                Assert.assertEquals(next, engine.getMessageDAO().createMessage(new Message(1, "racing " + i, i))
+                        .getMessage_id());
+                Assert.assertNotNull(deleted.get(10, TimeUnit.SECONDS));
+            }
+        } finally{
+            deleters.shutdownNow();
+        }
+        replicas.awaitReplication();
+
+        engine.beginRequest("reader");
+        long primaryReads = replicas.getPrimaryReads();
+        Assert.assertEquals(new JdbcMessageDAO().countMessages(), engine.getMessageDAO().countMessages());
+        Assert.assertEquals(primaryReads, replicas.getPrimaryReads());
+        engine.endRequest("reader");
+    }
+
+    /**
+     * Reads kept for good, such as a home timeline's first load, see a write at once, even from a request that
+     * has not made it and before any replica has applied it.
+     */
+    @Test
+    public void primaryReadsSeeEveryCommittedWrite(){
+        long replicaReads = replicas.getReplicaReads();
+        for(int i = 0; i < 50; i++){
+            engine.beginRequest("writer");
+            Message msg = engine.getMessageDAO().createMessage(new Message(1, "message " + i, i));
+            engine.endRequest("writer");
+
+            engine.beginRequest("reader");
+            Assert.assertEquals(msg, engine.getPrimaryMessageDAO().getMessageById(msg.getMessage_id()));
+            Assert.assertEquals(i + 2, engine.getPrimaryMessageDAO().countMessagesByAccount().get(1).longValue());
+            engine.endRequest("reader");
+        }
+        Assert.assertEquals(replicaReads, replicas.getReplicaReads());
+    }
+
+    /**
+     * Writes to one row from many threads run against the primary concurrently, yet reach the replicas in the
+     * primary's order.
+     */
+    @Test
+    public void concurrentUpdatesOfOneRowReplicateInOrder() throws Exception {
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try{
+            List<Future<?>> updates = new ArrayList<>();
+            for(int w = 0; w < 8; w++){
+                int writer = w;
+                updates.add(writers.submit(() -> {
+                    for(int i = 0; i < 25; i++){
+                        engine.getMessageDAO().updateMessage(new Message(1, 0, writer + ":" + i, 0));
+                    }
+                }));
+            }
+            for(Future<?> update : updates){
+                update.get(30, TimeUnit.SECONDS);
+            }
+        } finally{
+            writers.shutdownNow();
+        }
+        replicas.awaitReplication();
+
+        engine.beginRequest("reader");
+        long primaryReads = replicas.getPrimaryReads();
+        Versioned<Message> replicated = engine.getMessageDAO().getVersionedMessageById(1);
+        Assert.assertEquals(primaryReads, replicas.getPrimaryReads());
+        engine.endRequest("reader");
+        Versioned<Message> primary = new JdbcMessageDAO().getVersionedMessageById(1);
+        Assert.assertEquals(200, primary.getVersion());
+        Assert.assertEquals(primary.getValue(), replicated.getValue());
+        Assert.assertEquals(primary.getVersion(), replicated.getVersion());
+    }
+}
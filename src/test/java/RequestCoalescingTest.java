@@ -0,0 +1,131 @@
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.FollowDAO;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.AccountMessagesCache;
+import Service.HeapMessageCache;
+import Service.MessageService;
+import Service.TimelineService;
+
+public class RequestCoalescingTest {
+    MessageDAO messageDAO;
+    MessageService messageService;
+    ExecutorService callers;
+    CountDownLatch queryStarted;
+    CountDownLatch releaseQuery;
+
+    /**
+     * Before every test, create a MessageService over a mock DAO whose getMessageById blocks until released.
+     */
+    @Before
+    public void setUp() {
+        messageDAO = mock(MessageDAO.class);
+        messageService = new MessageService(messageDAO);
+        callers = Executors.newFixedThreadPool(16);
+        queryStarted = new CountDownLatch(1);
+        releaseQuery = new CountDownLatch(1);
+        when(messageDAO.getMessageById(1)).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            releaseQuery.await(10, TimeUnit.SECONDS);
+            return new Message(1, 1, "test message 1", 1669947792);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    /**
+     * Sixteen concurrent reads of the same message run a single query and all get its result.
+     */
+    @Test
+    public void concurrentIdenticalReadsShareOneQuery() throws Exception {
+        List<Future<Message>> results = new ArrayList<>();
+        results.add(callers.submit(() -> messageService.getMessageById(1)));
+        Assert.assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        for(int i = 1; i < 16; i++){
+            results.add(callers.submit(() -> messageService.getMessageById(1)));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while(messageService.getMessageReads().getCollapsedCount() < 15 && System.currentTimeMillis() < deadline){
+            Thread.sleep(5);
+        }
+        releaseQuery.countDown();
+
+        Message expected = new Message(1, 1, "test message 1", 1669947792);
+        for(Future<Message> result : results){
+            Assert.assertEquals(expected, result.get(5, TimeUnit.SECONDS));
+        }
+        verify(messageDAO, times(1)).getMessageById(1);
+        Assert.assertEquals(1, messageService.getMessageReads().getExecutedCount());
+        Assert.assertEquals(15, messageService.getMessageReads().getCollapsedCount());
+    }
+
+    /**
+     * With coalescing off, as with read replicas, concurrent reads of the same message each run their own query.
+     */
+    @Test
+    public void concurrentReadsRunTheirOwnQueriesWithCoalescingOff() throws Exception {
+        messageService = new MessageService(messageDAO, new TimelineService(mock(FollowDAO.class), messageDAO),
+                new HeapMessageCache(0), new AccountMessagesCache(0), false);
+        queryStarted = new CountDownLatch(2);
+        Future<Message> first = callers.submit(() -> messageService.getMessageById(1));
+        Future<Message> second = callers.submit(() -> messageService.getMessageById(1));
+        Assert.assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        releaseQuery.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        verify(messageDAO, times(2)).getMessageById(1);
+        Assert.assertEquals(0, messageService.getMessageReads().getCollapsedCount());
+    }
+
+    /**
+     * A read that starts after the previous one finished runs its own query.
+     */
+    @Test
+    public void sequentialReadsAreNotCollapsed() {
+        releaseQuery.countDown();
+        messageService.getMessageById(1);
+        messageService.getMessageById(1);
+        verify(messageDAO, times(2)).getMessageById(1);
+        Assert.assertEquals(0, messageService.getMessageReads().getCollapsedCount());
+    }
+
+    /**
+     * A read arriving after an update does not join a query that began before the update.
+     */
+    @Test
+    public void readAfterWriteIsNotCollapsedIntoEarlierRead() throws Exception {
+        Message patched = new Message(1, 1, "patched", 1669947792);
+        when(messageDAO.updateMessage(patched)).thenReturn(patched);
+
+        Future<Message> before = callers.submit(() -> messageService.getMessageById(1));
+        Assert.assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        messageService.updateMessage(patched);
+        Future<Message> after = callers.submit(() -> messageService.getMessageById(1));
+        releaseQuery.countDown();
+
+        before.get(5, TimeUnit.SECONDS);
+        after.get(5, TimeUnit.SECONDS);
+        verify(messageDAO, times(2)).getMessageById(1);
+    }
+}
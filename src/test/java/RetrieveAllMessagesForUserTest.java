@@ -38,7 +38,7 @@ public class RetrieveAllMessagesForUserTest {
         webClient = HttpClient.newHttpClient();
         objectMapper = new ObjectMapper();
         app.start(8080);
-        Thread.sleep(1000);
+        socialMediaController.getReadiness().join();
     }
 
     @After
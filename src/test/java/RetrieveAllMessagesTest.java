@@ -41,7 +41,7 @@ public class RetrieveAllMessagesTest {
         webClient = HttpClient.newHttpClient();
         objectMapper = new ObjectMapper();
         app.start(8080);
-        Thread.sleep(1000);
+        socialMediaController.getReadiness().join();
     }
 
     @After
@@ -35,7 +35,7 @@ public class RetrieveMessageByMessageIdTest {
         webClient = HttpClient.newHttpClient();
         objectMapper = new ObjectMapper();
         app.start(8080);
-        Thread.sleep(1000);
+        socialMediaController.getReadiness().join();
     }
 
     @After
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesByIdsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, create a new webClient and ObjectMapper
+     * and post two more messages, ids 2 and 3.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, IOException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+        for(int i = 2; i <= 3; i++){
+            send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{" +
+                            "\"posted_by\":1, " +
+                            "\"message_text\": \"test message " + i + "\", " +
+                            "\"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build());
+    }
+
+    private List<Message> messages(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private long metric(String name) throws IOException, InterruptedException {
+        Map<String, Object> metrics = objectMapper.readValue(get("/admin/metrics").body(),
+                new TypeReference<Map<String, Object>>(){});
+        return ((Number) metrics.get(name)).longValue();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?ids=3,100,1,2,3 (message id 100 does not exist)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON list of messages 3, 1 and 2 in that order, the second time from the cache
+     */
+    @Test
+    public void getMessagesByIdsInRequestedOrder() throws IOException, InterruptedException {
+        List<Message> expected = List.of(
+                new Message(3, 1, "test message 3", 1669947792),
+                new Message(1, 1, "test message 1", 1669947792),
+                new Message(2, 1, "test message 2", 1669947792));
+
+        HttpResponse<String> response = get("/messages?ids=3,100,1,2,3");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(expected, messages(response));
+
+        long hits = metric("cache.messages.hits");
+        Assert.assertEquals(expected, messages(get("/messages?ids=3,100,1,2,3")));
+        Assert.assertEquals(hits + 3, metric("cache.messages.hits"));
+    }
+
+    /**
+     * Updating a cached message and then asking for it again.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON list with the updated text
+     */
+    @Test
+    public void getMessagesByIdsAfterUpdate() throws IOException, InterruptedException {
+        Assert.assertEquals("test message 1", messages(get("/messages?ids=1")).get(0).getMessage_text());
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+
+        Assert.assertEquals("updated message", messages(get("/messages?ids=1")).get(0).getMessage_text());
+        Assert.assertEquals(200, get("/messages/1").statusCode());
+        Assert.assertTrue(get("/messages/1").body().contains("updated message"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with too many or malformed ids.
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesByIdsInvalid() throws IOException, InterruptedException {
+        String tooMany = IntStream.rangeClosed(1, 101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        Assert.assertEquals(400, get("/messages?ids=" + tooMany).statusCode());
+        Assert.assertEquals(400, get("/messages?ids=1,two").statusCode());
+        Assert.assertEquals(200, get("/messages?ids=").statusCode());
+        Assert.assertEquals("[]", get("/messages?ids=").body());
+    }
+}
@@ -0,0 +1,80 @@
+package Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import DAO.Versioned;
+import Model.Message;
+
+/**
+ * JMH comparison of the heap and off-heap MessageCache holding the same million Messages in the same 1 GB heap,
+ * under lookups by Message ID with one in ten operations replacing a Message, as edits and cache misses do. Sampled
+ * time reports the p99 latency of an operation; the GC profiler reports gc.count and gc.time, the time spent in
+ * collections, per iteration.
+ * Only run by the bench profile: mvn test -Pbench -Dtest=Service.MessageCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MessageCacheBenchmark {
+
+    private static final int MESSAGES = 1_000_000;
+
+    @Param({"heap", "off-heap"})
+    String type;
+
+    MessageCache cache;
+
+    @Setup(Level.Trial)
+    public void fill(){
+        cache = type.equals("heap") ? new HeapMessageCache(MESSAGES) : new OffHeapMessageCache(MESSAGES, 256 << 20);
+        for(int id = 1; id <= MESSAGES; id++){
+            cache.fill(message(id, 0), cache.stamp());
+        }
+    }
+
+    private static Versioned<Message> message(int id, long version){
+        return new Versioned<>(new Message(id, id % 1000, "benchmark message number " + id
+                + ", long enough to be a typical post of around a hundred characters", 1669947792L + id), version);
+    }
+
+    @Benchmark
+    public Object readMostly(){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = 1 + random.nextInt(MESSAGES);
+        if(random.nextInt(10) == 0){
+            cache.fill(message(id, random.nextLong()), cache.stamp());
+            return null;
+        }
+        return cache.get(id);
+    }
+
+    @Test
+    public void run() throws RunnerException {
+        new Runner(new OptionsBuilder().include(MessageCacheBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,177 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import DAO.ShardedMessageDAO;
+import DAO.StorageEngine;
+import DAO.Versioned;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Checks routing, scatter-gather reads and rebalancing of the sharded engine.
+ */
+public class ShardedMessageDAOTest {
+
+    List<DataSource> shards = new ArrayList<>();
+    StorageEngine engine;
+    MessageDAO messages;
+
+    @Before
+    public void setUp() throws SQLException {
+        ConnectionUtil.resetTestDatabase();
+        String run = UUID.randomUUID().toString();
+        for(int i = 0; i < 4; i++){
+            shards.add(JdbcConnectionPool.create("jdbc:h2:mem:" + run + "-" + i + ";DB_CLOSE_DELAY=-1", "sa", "sa"));
+        }
+        engine = StorageEngine.sharded(shards.subList(0, 3));
+        messages = engine.getMessageDAO();
+        for(int i = 2; i <= 40; i++){
+            engine.getAccountDAO().insertAccount(new Account("user" + i, "password"));
+        }
+    }
+
+    @After
+    public void tearDown(){
+        ((ShardedMessageDAO) messages).close();
+        for(DataSource shard : shards){
+            ((JdbcConnectionPool) shard).dispose();
+        }
+    }
+
+    private StorageEngine reopen(int count) throws SQLException {
+        ((ShardedMessageDAO) messages).close();
+        engine = StorageEngine.sharded(shards.subList(0, count));
+        messages = engine.getMessageDAO();
+        return engine;
+    }
+
+    @Test
+    public void idsCarryTheBucketAndIncrease(){
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), messages.getMessageById(1));
+        int last = 1;
+        for(int accountId = 1; accountId <= 40; accountId++){
+            Message msg = messages.createMessage(new Message(accountId, "hello from " + accountId, accountId));
+            Assert.assertTrue(msg.getMessage_id() > last);
+            Assert.assertEquals(accountId % 16, msg.getMessage_id() % 16);
+            Assert.assertEquals(msg, messages.getMessageById(msg.getMessage_id()));
+            last = msg.getMessage_id();
+        }
+        Assert.assertNull(messages.createMessage(new Message(41, "no such account", 1)));
+
+        List<Message> all = messages.getAllMessages();
+        List<Message> visited = new ArrayList<>();
+        Assert.assertEquals(41, messages.forEachMessage(visited::add));
+        Assert.assertEquals(all, visited);
+        Assert.assertEquals(41, messages.countMessages());
+        Assert.assertEquals(Long.valueOf(2), messages.countMessagesByAccount().get(1));
+        Assert.assertEquals(2, messages.getAllMessagesByAccountId(1).size());
+    }
+
+    @Test
+    public void multiGetAsksEveryShardOnce(){
+        List<Integer> ids = new ArrayList<>();
+        for(int accountId = 2; accountId <= 7; accountId++){
+            ids.add(messages.createMessage(new Message(accountId, "hello from " + accountId, accountId)).getMessage_id());
+        }
+        ids.add(99999);
+        List<Versioned<Message>> found = messages.getMessagesByIds(ids);
+        Assert.assertEquals(6, found.size());
+        for(Versioned<Message> msg : found){
+            Assert.assertEquals(msg.getValue(), messages.getMessageById(msg.getValue().getMessage_id()));
+            Assert.assertEquals(0, msg.getVersion());
+        }
+    }
+
+    @Test
+    public void recentMessageIdsMergeShards(){
+        List<Integer> ids = new ArrayList<>();
+        for(int accountId = 2; accountId <= 7; accountId++){
+            ids.add(messages.createMessage(new Message(accountId, "hello from " + accountId, accountId)).getMessage_id());
+        }
+        Collections.reverse(ids);
+        Assert.assertEquals(ids.subList(0, 4), messages.getRecentMessageIds(4));
+    }
+
+    @Test
+    public void timelineMergesShards(){
+        for(int accountId = 2; accountId <= 6; accountId++){
+            engine.getFollowDAO().insertFollow(1, accountId);
+            messages.createMessage(new Message(accountId, "older", accountId));
+            messages.createMessage(new Message(accountId, "newer", 100 + accountId));
+        }
+        List<Message> timeline = messages.getRecentMessagesFollowedBy(1, 4);
+        Assert.assertEquals(4, timeline.size());
+        Assert.assertEquals(Arrays.asList(106L, 105L, 104L, 103L), Arrays.asList(timeline.get(0).getTime_posted_epoch(),
+                timeline.get(1).getTime_posted_epoch(), timeline.get(2).getTime_posted_epoch(),
+                timeline.get(3).getTime_posted_epoch()));
+    }
+
+    @Test
+    public void rebalanceMovesOnlyToTheNewShard() throws SQLException {
+        for(int i = 0; i < 200; i++){
+            messages.createMessage(new Message(1 + i % 40, "message " + i, i));
+        }
+        Assert.assertTrue(messages.insertMessages(Arrays.asList(new Message(5000, 3, "imported", 1))));
+        Assert.assertFalse(messages.insertMessages(Arrays.asList(new Message(5000, 4, "same id", 1))));
+        List<Message> before = messages.getAllMessages();
+        long[] counts = new long[3];
+        for(int i = 0; i < 3; i++){
+            counts[i] = new JdbcMessageDAO(shards.get(i)).countMessages();
+        }
+
+        ((ShardedMessageDAO) messages).close();
+        long moved = ShardedMessageDAO.rebalance(shards, 3, 4);
+        reopen(4);
+
+        Assert.assertTrue(moved > 0 && moved < before.size());
+        Assert.assertEquals(moved, new JdbcMessageDAO(shards.get(3)).countMessages());
+        for(int i = 0; i < 3; i++){
+            Assert.assertTrue(new JdbcMessageDAO(shards.get(i)).countMessages() <= counts[i]);
+        }
+        Assert.assertEquals(before, messages.getAllMessages());
+        for(Message msg : before){
+            Assert.assertEquals(msg, messages.getMessageById(msg.getMessage_id()));
+        }
+        Assert.assertTrue(messages.createMessage(new Message(1, "after", 1)).getMessage_id()
+                > before.get(before.size() - 1).getMessage_id());
+    }
+
+    /**
+     * Negative poster IDs land in the same bucket in Java and in SQL, so rebalancing moves their Messages along
+     * with the bucket the DAO looks for them in.
+     */
+    @Test
+    public void negativePostersMoveWithTheirBucket() throws SQLException {
+        ((ShardedMessageDAO) messages).close();
+        messages = new ShardedMessageDAO(shards.subList(0, 3), accountId -> true, engine.getFollowDAO());
+        for(int accountId = -1; accountId >= -16; accountId--){
+            messages.createMessage(new Message(accountId, "from " + accountId, -accountId));
+        }
+        List<Message> before = messages.getAllMessages();
+
+        ((ShardedMessageDAO) messages).close();
+        Assert.assertTrue(ShardedMessageDAO.rebalance(shards, 3, 4) > 0);
+        messages = new ShardedMessageDAO(shards.subList(0, 4), accountId -> true, engine.getFollowDAO());
+
+        Assert.assertEquals(before, messages.getAllMessages());
+        for(Message msg : before){
+            Assert.assertEquals(msg, messages.getMessageById(msg.getMessage_id()));
+            Assert.assertEquals(Collections.singletonList(msg), messages.getAllMessagesByAccountId(msg.getPosted_by()));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcAccountDAO;
+import DAO.JdbcMessageDAO;
+import DAO.SlowQueryLog;
+import Model.Account;
+import Model.Message;
+import Util.AppConfig;
+import Util.ConnectionUtil;
+
+/**
+ * Checks what the slow query log keeps for a call over its threshold, here 0 ms so that every call is slow.
+ */
+public class SlowQueryLogTest {
+
+    SlowQueryLog log = SlowQueryLog.shared();
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+        log.clear();
+        log.setThresholdMillis(0);
+    }
+
+    @After
+    public void tearDown(){
+        log.setThresholdMillis(AppConfig.get().getInt("db.slow_query.threshold_ms"));
+        log.clear();
+    }
+
+    private SlowQueryLog.Entry entryFor(String method) throws InterruptedException {
+        for(int i = 0; i < 200; i++){
+            for(SlowQueryLog.Entry entry : log.getEntries()){
+                if(entry.getMethod().equals(method) && entry.getPlan() != null){
+                    return entry;
+                }
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("no explained entry for " + method + " in " + log.getEntries().size());
+    }
+
+    @Test
+    public void queryIsKeptWithParametersAndAnalyzedPlan() throws InterruptedException {
+        new JdbcMessageDAO().getAllMessagesByAccountId(1);
+
+        SlowQueryLog.Entry entry = entryFor("JdbcMessageDAO.getAllMessagesByAccountId");
+        Assert.assertEquals("SELECT * FROM message WHERE posted_by = ?;", entry.getSql());
+        Assert.assertEquals(List.of("1"), entry.getParams());
+        Assert.assertTrue(entry.getPlan(), entry.getPlan().contains("FROM \"PUBLIC\".\"MESSAGE\""));
+        Assert.assertTrue(entry.getPlan(), entry.getPlan().contains("scanCount"));
+    }
+
+    @Test
+    public void passwordIsRedacted() throws InterruptedException {
+        Assert.assertNotNull(new JdbcAccountDAO().getAccount(new Account("testuser1", "password")));
+
+        SlowQueryLog.Entry entry = entryFor("JdbcAccountDAO.getAccount");
+        Assert.assertEquals(List.of("testuser1", "<redacted>"), entry.getParams());
+        Assert.assertFalse(entry.getPlan().startsWith("EXPLAIN failed"));
+    }
+
+    @Test
+    public void changesAreExplainedWithoutRunningTwice() throws InterruptedException {
+        JdbcMessageDAO messages = new JdbcMessageDAO();
+        messages.createMessage(new Message(1, "only once", 1));
+
+        SlowQueryLog.Entry entry = entryFor("JdbcMessageDAO.createMessage");
+        Assert.assertTrue(entry.getPlan(), entry.getPlan().startsWith("INSERT INTO"));
+        log.setThresholdMillis(Long.MAX_VALUE / 1_000_000);
+        Assert.assertEquals(2, messages.countMessages());
+    }
+
+    /**
+     * An update that reads its row back through FINAL TABLE is a change, so capturing its plan must not run it
+     * again and move the version a second time.
+     */
+    @Test
+    public void updateReadingItsRowBackRunsOnce() throws InterruptedException {
+        JdbcMessageDAO messages = new JdbcMessageDAO();
+        Assert.assertNotNull(messages.updateMessage(new Message(1, 0, "edited once", 0)));
+
+        SlowQueryLog.Entry entry = entryFor("JdbcMessageDAO.updateMessage");
+        Assert.assertFalse(entry.getPlan(), entry.getPlan().contains("scanCount"));
+        log.setThresholdMillis(Long.MAX_VALUE / 1_000_000);
+        Assert.assertEquals(1, messages.getVersionedMessageById(1).getVersion());
+
+        log.setThresholdMillis(0);
+        Assert.assertNotNull(messages.deleteMessage(1));
+        entryFor("JdbcMessageDAO.deleteMessage");
+        log.setThresholdMillis(Long.MAX_VALUE / 1_000_000);
+        Assert.assertEquals(0, messages.countMessages());
+    }
+}
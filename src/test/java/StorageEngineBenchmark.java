@@ -0,0 +1,121 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import DAO.StorageEngine;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Runs the same mixed workload against each storage engine and prints its throughput. Only run by the bench
+ * profile: mvn test -Pbench
+ */
+public class StorageEngineBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int THREADS = 8;
+    private static final int OPS_PER_THREAD = 20_000;
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    @Test
+    public void jdbcEngine() throws InterruptedException {
+        run(StorageEngine.jdbc());
+    }
+
+    @Test
+    public void jdbcEngineWithReplicas() throws InterruptedException, SQLException {
+        for(int count : new int[]{1, 2, 4}){
+            ConnectionUtil.resetTestDatabase();
+            StorageEngine engine = StorageEngine.replicated(count, THREADS);
+            System.out.print(count + " replicas, ");
+            run(engine);
+            engine.getReplicas().close();
+        }
+    }
+
+    @Test
+    public void shardedEngine() throws InterruptedException, SQLException {
+        for(int count : new int[]{1, 2, 4, 8}){
+            ConnectionUtil.resetTestDatabase();
+            List<DataSource> shards = new ArrayList<>();
+            for(int i = 0; i < count; i++){
+                shards.add(JdbcConnectionPool.create("jdbc:h2:mem:bench-" + count + "-shard-" + i, "sa", "sa"));
+            }
+            StorageEngine engine = StorageEngine.sharded(shards);
+            System.out.print(count + " shards, ");
+            run(engine);
+            for(DataSource shard : shards){
+                ((JdbcConnectionPool) shard).dispose();
+            }
+        }
+    }
+
+    @Test
+    public void memoryEngine() throws InterruptedException {
+        run(StorageEngine.memory());
+    }
+
+    /**
+     * Each operation is, at random, a post (10%), a read by Message ID (60%) or a read of one Account's newest
+     * Messages (30%).
+     */
+    private void run(StorageEngine engine) throws InterruptedException {
+        AccountDAO accounts = engine.getAccountDAO();
+        MessageDAO messages = engine.getMessageDAO();
+        List<Integer> accountIds = new ArrayList<>();
+        for(int i = 0; i < ACCOUNTS; i++){
+            accountIds.add(accounts.insertAccount(new Account("bench" + i, "password")).getAccount_id());
+        }
+        for(int i = 0; i < ACCOUNTS * 10; i++){
+            messages.createMessage(new Message(accountIds.get(i % ACCOUNTS), "seed " + i, i));
+        }
+        int seeded = (int) messages.countMessages();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long start = System.nanoTime();
+        for(int t = 0; t < THREADS; t++){
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for(int i = 0; i < OPS_PER_THREAD; i++){
+                    int op = random.nextInt(10);
+                    int accountId = accountIds.get(random.nextInt(ACCOUNTS));
+                    if(op == 0){
+                        messages.createMessage(new Message(accountId, "bench", i));
+                    } else if(op < 7){
+                        messages.getMessageById(1 + random.nextInt(seeded));
+                    } else {
+                        messages.getRecentMessagesByAccountId(accountId, 20);
+                    }
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        long ops = (long) THREADS * OPS_PER_THREAD;
+        System.out.printf("%s engine: %d ops in %d ms (%.0f ops/sec)%n",
+                engine.getName(), ops, nanos / 1_000_000, ops * 1_000_000_000.0 / nanos);
+        Assert.assertTrue(messages.countMessages() > seeded);
+    }
+}
@@ -0,0 +1,106 @@
+package Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Message;
+
+/**
+ * JMH comparison of ObjectMapper and ModelCodec on the JSON the API reads and writes most: a posted Message body
+ * and a page of 20 Messages, and of reading a request body as a String before parsing it against parsing it from
+ * the stream. The GC profiler reports bytes allocated per operation as gc.alloc.rate.norm.
+ * Only run by the bench profile: mvn test -Pbench -Dtest=Util.JsonCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private static final String BODY =
+            "{\"posted_by\":1,\"message_text\":\"benchmark message text\",\"time_posted_epoch\":1669947792}";
+
+    private static final byte[] BODY_BYTES = BODY.getBytes(StandardCharsets.UTF_8);
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    ModelJsonMapper jsonMapper = new ModelJsonMapper();
+    Message message = new Message(1, 1, "benchmark message text", 1669947792L);
+    List<Message> page = new ArrayList<>();
+
+    public JsonCodecBenchmark(){
+        for(int i = 0; i < 20; i++){
+            page.add(new Message(i, i % 5, "benchmark message number " + i, 1669947792L + i));
+        }
+    }
+
+    @Benchmark
+    public Message readMessageObjectMapper() throws IOException {
+        return objectMapper.readValue(BODY, Message.class);
+    }
+
+    @Benchmark
+    public Message readMessageCodec() throws IOException {
+        return ModelCodec.readMessage(BODY);
+    }
+
+    @Benchmark
+    public Message readBodyAsString() throws IOException {
+        String body = new String(new ByteArrayInputStream(BODY_BYTES).readAllBytes(), StandardCharsets.UTF_8);
+        return jsonMapper.fromJsonString(body, Message.class);
+    }
+
+    @Benchmark
+    public Message readBodyFromStream(){
+        return jsonMapper.fromJsonStream(new LimitedInputStream(new ByteArrayInputStream(BODY_BYTES), 4096),
+                Message.class);
+    }
+
+    @Benchmark
+    public String writeMessageObjectMapper() throws IOException {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String writeMessageCodec() throws IOException {
+        return ModelCodec.toJson(message);
+    }
+
+    @Benchmark
+    public String writePageObjectMapper() throws IOException {
+        return objectMapper.writeValueAsString(page);
+    }
+
+    @Benchmark
+    public String writePageCodec() throws IOException {
+        return ModelCodec.toJson(page);
+    }
+
+    @Test
+    public void run() throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.StorageEngine;
+import Model.Message;
+import Util.AppConfig;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * Checks that the caches are filled before the server reports ready and that the first reads are then hits.
+ */
+public class WarmUpTest {
+    HttpClient webClient = HttpClient.newHttpClient();
+    ObjectMapper objectMapper = new ObjectMapper();
+    Javalin app;
+
+    /**
+     * Before every test, reset the database; each test starts the app with its own warm-up settings.
+     */
+    @Before
+    public void setUp(){
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    @After
+    public void tearDown(){
+        if(app != null){
+            app.stop();
+        }
+        System.clearProperty("warmup.messages");
+        System.clearProperty("warmup.accounts");
+        AppConfig.load();
+    }
+
+    /**
+     * Posts messages 2 to 5 straight to storage, then starts the app with the given warm-up settings and waits
+     * until it is ready.
+     */
+    private void start(int messages, int accounts){
+        System.setProperty("warmup.messages", String.valueOf(messages));
+        System.setProperty("warmup.accounts", String.valueOf(accounts));
+        AppConfig config = AppConfig.load();
+        StorageEngine storage = StorageEngine.fromConfig(config);
+        for(int i = 2; i <= 5; i++){
+            storage.getMessageDAO().createMessage(new Message(1, "test message " + i, 1669947792L + i));
+        }
+        SocialMediaController socialMediaController = new SocialMediaController(config, storage);
+        app = socialMediaController.startAPI();
+        app.start(8080);
+        socialMediaController.getReadiness().join();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Map<String, Object> metrics() throws IOException, InterruptedException {
+        return objectMapper.readValue(get("/admin/metrics").body(), new TypeReference<Map<String, Object>>(){});
+    }
+
+    @Test
+    public void firstReadsAfterWarmUpAreHits() throws IOException, InterruptedException {
+        start(10, 10);
+        Map<String, Object> metrics = metrics();
+        Assert.assertEquals(5, metrics.get("warmup.messages"));
+        Assert.assertEquals(1, metrics.get("warmup.timelines"));
+        Assert.assertEquals(1, metrics.get("warmup.account_messages"));
+        Assert.assertTrue(((Number) metrics.get("warmup.ms")).longValue() >= 0);
+        Assert.assertNull(metrics.get("warmup.first_minute.messages.hit_rate"));
+
+        Assert.assertEquals(200, get("/messages?ids=1,3,5").statusCode());
+        Assert.assertEquals(200, get("/messages/2").statusCode());
+        Assert.assertEquals(200, get("/accounts/1/timeline").statusCode());
+        Assert.assertEquals(200, get("/accounts/1/messages").statusCode());
+
+        metrics = metrics();
+        Assert.assertEquals(4, metrics.get("cache.messages.hits"));
+        Assert.assertEquals(0, metrics.get("cache.messages.misses"));
+        Assert.assertEquals(1.0, (Double) metrics.get("warmup.first_minute.messages.hit_rate"), 0.0);
+        Assert.assertEquals(1.0, (Double) metrics.get("warmup.first_minute.timeline.hit_rate"), 0.0);
+        Assert.assertEquals(1.0, (Double) metrics.get("warmup.first_minute.account_messages.hit_rate"), 0.0);
+    }
+
+    @Test
+    public void onlyTheMostRecentMessagesAreWarmed() throws IOException, InterruptedException {
+        start(2, 0);
+        Assert.assertEquals(2, metrics().get("warmup.messages"));
+        Assert.assertEquals(0, metrics().get("warmup.timelines"));
+
+        Assert.assertEquals(200, get("/messages?ids=5,4,1").statusCode());
+        Map<String, Object> metrics = metrics();
+        Assert.assertEquals(2, metrics.get("cache.messages.hits"));
+        Assert.assertEquals(1, metrics.get("cache.messages.misses"));
+        Assert.assertEquals(2.0 / 3, (Double) metrics.get("warmup.first_minute.messages.hit_rate"), 1e-9);
+    }
+}